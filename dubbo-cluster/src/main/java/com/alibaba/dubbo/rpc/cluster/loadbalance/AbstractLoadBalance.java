@@ -44,7 +44,7 @@ public abstract class AbstractLoadBalance implements LoadBalance {
 
     protected int getWeight(Invoker<?> invoker, Invocation invocation) {
         // 从url中获取权重，默认100
-        int weight = invoker.getUrl().getMethodParameter(invocation.getMethodName(), Constants.WEIGHT_KEY, Constants.DEFAULT_WEIGHT);
+        int weight = invoker.getUrl().getMethodProfile(invocation.getMethodName()).getWeight();
         if (weight > 0) {
             // 获取服务提供者启动时间戳
 	        long timestamp = invoker.getUrl().getParameter(Constants.TIMESTAMP_KEY, 0L);
@@ -18,7 +18,6 @@ package com.alibaba.dubbo.rpc.cluster.loadbalance;
 import java.util.List;
 import java.util.Random;
 
-import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
@@ -48,8 +47,9 @@ public class LeastActiveLoadBalance extends AbstractLoadBalance {
         boolean sameWeight = true; // 是否所有权重相同
         for (int i = 0; i < length; i++) {
         	Invoker<T> invoker = invokers.get(i);
-            int active = RpcStatus.getStatus(invoker.getUrl(), invocation.getMethodName()).getActive(); // 活跃数
-            int weight = invoker.getUrl().getMethodParameter(invocation.getMethodName(), Constants.WEIGHT_KEY, Constants.DEFAULT_WEIGHT); // 权重
+            RpcStatus status = RpcStatus.peekStatus(invoker.getUrl(), invocation.getMethodName());
+            int active = status == null ? 0 : status.getActive(); // 活跃数，没有统计时还没有调用过
+            int weight = invoker.getUrl().getMethodProfile(invocation.getMethodName()).getWeight(); // 权重
             if (leastActive == -1 || active < leastActive) { // 发现更小的活跃数，重新开始
                 leastActive = active; // 记录最小活跃数
                 leastCount = 1; // 重新统计相同最小活跃数的个数
@@ -106,7 +106,7 @@ public abstract class AbstractClusterInvoker<T> implements Invoker<T> {
          * 粘滞连接用于有状态服务，尽可能让客户端总是向同一提供者发起调用，除非该提供者挂了，再连另一台。
          * 具体可以查看文档
          */
-        boolean sticky = invokers.get(0).getUrl().getMethodParameter(methodName,Constants.CLUSTER_STICKY_KEY, Constants.DEFAULT_CLUSTER_STICKY) ;
+        boolean sticky = invokers.get(0).getUrl().getMethodProfile(methodName).isSticky();
         {
             // ignore overloaded method
             /**
@@ -257,7 +257,7 @@ public abstract class AbstractClusterInvoker<T> implements Invoker<T> {
         if (invokers != null && invokers.size() > 0) {
             // 加载LoadBalance，默认是random
             loadbalance = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(invokers.get(0).getUrl()
-                    .getMethodParameter(invocation.getMethodName(),Constants.LOADBALANCE_KEY, Constants.DEFAULT_LOADBALANCE));
+                    .getMethodProfile(invocation.getMethodName()).getLoadbalance());
         } else {
             loadbalance = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(Constants.DEFAULT_LOADBALANCE);
         }
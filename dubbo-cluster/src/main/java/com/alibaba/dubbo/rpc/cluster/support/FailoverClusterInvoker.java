@@ -19,17 +19,21 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.Version;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcFuture;
+import com.alibaba.dubbo.rpc.RpcResult;
 import com.alibaba.dubbo.rpc.cluster.Directory;
 import com.alibaba.dubbo.rpc.cluster.LoadBalance;
 
@@ -49,71 +53,196 @@ public class FailoverClusterInvoker<T> extends AbstractClusterInvoker<T> {
         super(directory);
     }
 
-    @SuppressWarnings({ "unchecked", "rawtypes" })
     public Result doInvoke(Invocation invocation, final List<Invoker<T>> invokers, LoadBalance loadbalance) throws RpcException {
-    	List<Invoker<T>> copyinvokers = invokers;
-    	checkInvokers(copyinvokers, invocation);
+    	checkInvokers(invokers, invocation);
     	// 获取重试次数，默认是2
-        int len = getUrl().getMethodParameter(invocation.getMethodName(), Constants.RETRIES_KEY, Constants.DEFAULT_RETRIES) + 1;
+        int len = getUrl().getMethodProfile(invocation.getMethodName()).getRetries() + 1;
         if (len <= 0) {
             len = 1;
         }
-        // retry loop.
-        RpcException le = null; // last exception.
-        List<Invoker<T>> invoked = new ArrayList<Invoker<T>>(copyinvokers.size()); // invoked invokers.
-        Set<String> providers = new HashSet<String>(len);
-        // 循环调用，失败重试
-        for (int i = 0; i < len; i++) {
-        	// 重试时，进行重新选择，避免重试时invoker列表已发生变化.
-        	// 注意：如果列表发生了变化，那么invoked判断会失效，因为invoker示例已经改变
-        	if (i > 0) {
-        		checkWhetherDestroyed();
-        		// 根据Invocation调用信息从Directory中获取所有可用Invoker
-        		copyinvokers = list(invocation);
-        		// 重新检查一下
-        		checkInvokers(copyinvokers, invocation);
-        	}
-        	// 通过负载均衡选择一个Invoker
-            Invoker<T> invoker = select(loadbalance, invocation, copyinvokers, invoked);
-            invoked.add(invoker);
-            // 将invoked设置到RPC上下文中
-            RpcContext.getContext().setInvokers((List)invoked);
-            try {
-                // 调用实际Invoker的invoke方法
-                Result result = invoker.invoke(invocation);
-                if (le != null && logger.isWarnEnabled()) {
-                    logger.warn("Although retry the method " + invocation.getMethodName()
-                            + " in the service " + getInterface().getName()
-                            + " was successful by the provider " + invoker.getUrl().getAddress()
-                            + ", but there have been failed providers " + providers 
-                            + " (" + providers.size() + "/" + copyinvokers.size()
-                            + ") from the registry " + directory.getUrl().getAddress()
-                            + " on the consumer " + NetUtils.getLocalHost()
-                            + " using the dubbo version " + Version.getVersion() + ". Last error is: "
-                            + le.getMessage(), le);
+        return new Retry(invocation, invokers, loadbalance, len).invoke();
+    }
+
+    /**
+     * 一次调用的重试状态，批量调用等异步结果失败时在完成后继续重试
+     */
+    private class Retry {
+
+        private final Invocation invocation;
+
+        private final LoadBalance loadbalance;
+
+        private final int len;
+
+        private final List<Invoker<T>> invoked; // invoked invokers.
+
+        private final Set<String> providers;
+
+        private List<Invoker<T>> copyinvokers;
+
+        private RpcException le; // last exception.
+
+        private Invoker<T> retrySame; // 超时后再次调用的同一提供者
+
+        private boolean retriedSame;
+
+        private int i;
+
+        Retry(Invocation invocation, List<Invoker<T>> invokers, LoadBalance loadbalance, int len) {
+            this.invocation = invocation;
+            this.copyinvokers = invokers;
+            this.loadbalance = loadbalance;
+            this.len = len;
+            this.invoked = new ArrayList<Invoker<T>>(invokers.size());
+            this.providers = new HashSet<String>(len);
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Result invoke() throws RpcException {
+            // 循环调用，失败重试
+            for (; i < len; i++) {
+            	// 重试时，进行重新选择，避免重试时invoker列表已发生变化.
+            	// 注意：如果列表发生了变化，那么invoked判断会失效，因为invoker示例已经改变
+            	if (i > 0) {
+            		checkWhetherDestroyed();
+            		// 根据Invocation调用信息从Directory中获取所有可用Invoker
+            		copyinvokers = list(invocation);
+            		// 重新检查一下
+            		checkInvokers(copyinvokers, invocation);
+            	}
+                Invoker<T> invoker;
+                if (retrySame != null && copyinvokers.contains(retrySame)) {
+                    invoker = retrySame;
+                } else {
+                    // 通过负载均衡选择一个Invoker
+                    invoker = select(loadbalance, invocation, copyinvokers, invoked);
                 }
-                return result;
-            } catch (RpcException e) {
-                // 业务性质的异常，不重试，直接抛出
-                if (e.isBiz()) { // biz exception.
-                    throw e;
+                retrySame = null;
+                invoked.add(invoker);
+                // 将invoked设置到RPC上下文中
+                RpcContext.getContext().setInvokers((List)invoked);
+                try {
+                    // 调用实际Invoker的invoke方法
+                    Result result = invoker.invoke(invocation);
+                    if (result instanceof AsyncRpcResult && ! ((AsyncRpcResult) result).isDone() && i < len - 1) {
+                        // 批量调用等在完成时才知道是否失败，失败后继续重试
+                        return retryOnFailure(invoker, (AsyncRpcResult) result);
+                    }
+                    if (le != null && logger.isWarnEnabled()) {
+                        logger.warn("Although retry the method " + invocation.getMethodName()
+                                + " in the service " + getInterface().getName()
+                                + " was successful by the provider " + invoker.getUrl().getAddress()
+                                + ", but there have been failed providers " + providers 
+                                + " (" + providers.size() + "/" + copyinvokers.size()
+                                + ") from the registry " + directory.getUrl().getAddress()
+                                + " on the consumer " + NetUtils.getLocalHost()
+                                + " using the dubbo version " + Version.getVersion() + ". Last error is: "
+                                + le.getMessage(), le);
+                    }
+                    return result;
+                } catch (RpcException e) {
+                    // 业务性质的异常，不重试，直接抛出
+                    if (e.isBiz()) { // biz exception.
+                        throw e;
+                    }
+                    failed(invoker, e);
+                } catch (Throwable e) {
+                    le = new RpcException(e.getMessage(), e);
+                } finally {
+                    providers.add(invoker.getUrl().getAddress());
+                }
+            }
+            // 最大可调用次数重试完，抛异常
+            throw new RpcException(le != null ? le.getCode() : 0, "Failed to invoke the method "
+                    + invocation.getMethodName() + " in the service " + getInterface().getName() 
+                    + ". Tried " + len + " times of the providers " + providers 
+                    + " (" + providers.size() + "/" + copyinvokers.size() 
+                    + ") from the registry " + directory.getUrl().getAddress()
+                    + " on the consumer " + NetUtils.getLocalHost() + " using the dubbo version "
+                    + Version.getVersion() + ". Last error is: "
+                    + (le != null ? le.getMessage() : ""), le != null && le.getCause() != null ? le.getCause() : le);
+        }
+
+        private void failed(Invoker<T> invoker, RpcException e) {
+            le = e;
+            // 带幂等请求键的调用超时时提供者可能还在执行，先重试一次同一提供者，由它返回已保存的结果或等待执行完成，
+            // 避免在另一个提供者上重复执行
+            if (e.isTimeout() && ! retriedSame && invocation.getAttachment(Constants.IDEMPOTENT_REQUEST_KEY) != null
+                    && invoker.isAvailable()) {
+                retrySame = invoker;
+                retriedSame = true;
+            }
+        }
+
+        /**
+         * 异步结果失败时在共享线程池中同步执行剩余的重试，不占用完成结果的IO线程
+         */
+        private Result retryOnFailure(final Invoker<T> invoker, AsyncRpcResult result) {
+            final AsyncRpcResult retried = new AsyncRpcResult();
+            result.addListener(new AsyncRpcResult.Listener() {
+                public void onComplete(Result r) {
+                    Throwable exception = r.getException();
+                    if (! (exception instanceof RpcException) || ((RpcException) exception).isBiz()) {
+                        retried.complete(r);
+                        return;
+                    }
+                    failed(invoker, (RpcException) exception);
+                    i ++;
+                    try {
+                        RpcFuture.sharedExecutor().execute(new Runnable() {
+                            public void run() {
+                                retry(retried);
+                            }
+                        });
+                    } catch (Throwable t) {
+                        retried.complete(r);
+                    }
                 }
-                le = e;
-            } catch (Throwable e) {
-                le = new RpcException(e.getMessage(), e);
-            } finally {
-                providers.add(invoker.getUrl().getAddress());
+            });
+            // 批量调用的结果通过RpcContext中的Future获取，换成重试后的结果
+            RpcContext context = RpcContext.getContext();
+            Future<?> f = context.getFuture();
+            if (f instanceof RpcFuture) {
+                @SuppressWarnings("unchecked")
+                RpcFuture<Object> future = (RpcFuture<Object>) f;
+                final RpcFuture<Object> replacement = new RpcFuture<Object>(future.getDefaultExecutor());
+                retried.addListener(new AsyncRpcResult.Listener() {
+                    public void onComplete(Result r) {
+                        if (r.hasException()) {
+                            replacement.completeExceptionally(r.getException());
+                        } else {
+                            replacement.complete(r.getValue());
+                        }
+                    }
+                });
+                context.setFuture(replacement);
+                if (context.isBatchStarted()) {
+                    context.getBatch().replace(future, replacement);
+                }
+            }
+            return retried;
+        }
+
+        private void retry(final AsyncRpcResult retried) {
+            Result result;
+            try {
+                result = invoke();
+            } catch (RpcException e) {
+                result = new RpcResult(e);
+            } catch (Throwable t) {
+                result = new RpcResult(new RpcException(t.getMessage(), t));
+            }
+            if (result instanceof AsyncRpcResult) {
+                ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                    public void onComplete(Result r) {
+                        retried.complete(r);
+                    }
+                });
+            } else {
+                retried.complete(result);
             }
         }
-        // 最大可调用次数重试完，抛异常
-        throw new RpcException(le != null ? le.getCode() : 0, "Failed to invoke the method "
-                + invocation.getMethodName() + " in the service " + getInterface().getName() 
-                + ". Tried " + len + " times of the providers " + providers 
-                + " (" + providers.size() + "/" + copyinvokers.size() 
-                + ") from the registry " + directory.getUrl().getAddress()
-                + " on the consumer " + NetUtils.getLocalHost() + " using the dubbo version "
-                + Version.getVersion() + ". Last error is: "
-                + (le != null ? le.getMessage() : ""), le != null && le.getCause() != null ? le.getCause() : le);
+
     }
 
 }
\ No newline at end of file
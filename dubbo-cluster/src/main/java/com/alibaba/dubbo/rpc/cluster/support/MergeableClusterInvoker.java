@@ -101,7 +101,7 @@ public class MergeableClusterInvoker<T> implements Invoker<T> {
         
         List<Result> resultList = new ArrayList<Result>( results.size() );
         
-        int timeout = getUrl().getMethodParameter( invocation.getMethodName(), Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT );
+        int timeout = getUrl().getMethodProfile( invocation.getMethodName() ).getTimeout();
         for ( Map.Entry<String, Future<Result>> entry : results.entrySet() ) {
             Future<Result> future = entry.getValue();
             try {
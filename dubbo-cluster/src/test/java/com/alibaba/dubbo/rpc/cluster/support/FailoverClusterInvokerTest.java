@@ -24,12 +24,15 @@ import static org.junit.Assert.fail;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.easymock.EasyMock;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
@@ -216,6 +219,64 @@ public class FailoverClusterInvokerTest {
         clusterinvoker.invoke(inv);
     }
     
+    @Test
+    public void testRetrySameProviderAfterIdempotentTimeout() {
+        URL url = URL.valueOf("test://localhost/" + Demo.class.getName() + "?retries=" + retries);
+        final AtomicInteger[] counts = new AtomicInteger[] {new AtomicInteger(), new AtomicInteger()};
+        List<Invoker<Demo>> invokers = new ArrayList<Invoker<Demo>>();
+        for (int i = 0; i < counts.length; i ++) {
+            final AtomicInteger count = counts[i];
+            invokers.add(new MockInvoker<Demo>(Demo.class, url) {
+                @Override
+                protected Result doInvoke(Invocation invocation) throws Throwable {
+                    if (count.incrementAndGet() == 1) {
+                        throw new RpcException(RpcException.TIMEOUT_EXCEPTION, "timeout");
+                    }
+                    return new RpcResult("done");
+                }
+            });
+        }
+        RpcInvocation inv = new RpcInvocation();
+        inv.setMethodName("test");
+        inv.setAttachment(Constants.IDEMPOTENT_REQUEST_KEY, "request-1");
+
+        Result ret = new FailoverClusterInvoker<Demo>(new MockDirectory<Demo>(url, invokers)).invoke(inv);
+        assertEquals("done", ret.getValue());
+        // 超时后重试同一提供者，另一个提供者没有被调用
+        assertEquals(2, counts[0].get() + counts[1].get());
+        assertTrue(counts[0].get() == 2 || counts[1].get() == 2);
+    }
+
+    @Test
+    public void testRetryAfterAsyncResultFailed() {
+        URL url = URL.valueOf("test://localhost/" + Demo.class.getName() + "?retries=" + retries);
+        final AtomicInteger count = new AtomicInteger();
+        final AsyncRpcResult pending = new AsyncRpcResult();
+        List<Invoker<Demo>> invokers = new ArrayList<Invoker<Demo>>();
+        for (int i = 0; i < 2; i ++) {
+            invokers.add(new MockInvoker<Demo>(Demo.class, url) {
+                @Override
+                protected Result doInvoke(Invocation invocation) throws Throwable {
+                    if (count.incrementAndGet() == 1) {
+                        return pending;
+                    }
+                    return new RpcResult("done");
+                }
+            });
+        }
+        RpcInvocation inv = new RpcInvocation();
+        inv.setMethodName("test");
+
+        Result ret = new FailoverClusterInvoker<Demo>(new MockDirectory<Demo>(url, invokers)).invoke(inv);
+        // 异步结果完成前不知道是否需要重试
+        assertTrue(ret instanceof AsyncRpcResult);
+        assertFalse(((AsyncRpcResult) ret).isDone());
+        assertEquals(1, count.get());
+        pending.complete(new RpcResult(new RpcException(RpcException.NETWORK_EXCEPTION, "failed")));
+        assertEquals("done", ret.getValue());
+        assertEquals(2, count.get());
+    }
+
     public static interface Demo{}
     
     public static class MockInvoker<T> extends AbstractInvoker<T> {
@@ -272,6 +272,36 @@ public class Constants {
 
     public static final String  ASYNC_KEY                          = "async";
 
+    /**
+     * 消费方RpcFuture监听器默认的执行方式：inline为在完成Future的线程中执行，shared为共享线程池
+     */
+    public static final String  FUTURE_EXECUTOR_KEY                = "future.executor";
+
+    public static final String  INLINE_FUTURE_EXECUTOR             = "inline";
+
+    public static final String  SHARED_FUTURE_EXECUTOR             = "shared";
+
+    public static final String  DEFAULT_FUTURE_EXECUTOR            = INLINE_FUTURE_EXECUTOR;
+
+    /**
+     * 流式调用的编号，消费方生成，随调用请求发送给提供方
+     */
+    public static final String  STREAM_ID_KEY                      = "stream.id";
+
+    /**
+     * 流式调用接收方的窗口大小，即发送方最多可以发送的未确认消息数
+     */
+    public static final String  STREAM_WINDOW_KEY                  = "stream.window";
+
+    public static final int     DEFAULT_STREAM_WINDOW              = 32;
+
+    /**
+     * 调用剩余的时间预算（毫秒），提供方以收到请求的时间加上预算作为本地的截止时间，不依赖两端时钟一致
+     */
+    public static final String  DEADLINE_BUDGET_KEY                = "deadline.budget";
+
+    public static final String  CONTEXT_REUSE_KEY                  = "context.reuse";
+
     public static final String  RETURN_KEY                         = "return";
 
     public static final String  TOKEN_KEY                          = "token";
@@ -361,6 +391,11 @@ public class Constants {
 
     public static final String  CHANNEL_ATTRIBUTE_READONLY_KEY     = "channel.readonly";
 
+    public static final String  CHANNEL_ATTRIBUTE_CODEC_FEATURES_KEY = "channel.codec.features";
+
+    // 本端codec支持的可选编码特性，连接建立后与对端协商，取交集
+    public static final String  CODEC_FEATURES_KEY                 = "codec.features";
+
     public static final String  CHANNEL_READONLYEVENT_SENT_KEY     = "channel.readonly.sent";
 
     public static final String  CHANNEL_SEND_READONLYEVENT_KEY     = "channel.readonly.send";
@@ -563,6 +598,36 @@ public class Constants {
 
     public static final long DEFAULT_TPS_LIMIT_INTERVAL            = 60 * 1000;
 
+    public static final String TPS_LIMIT_BURST_KEY                 = "tps.burst";
+
+    public static final String TPS_LIMIT_KEYS_KEY                  = "tps.keys";
+
+    public static final String ADAPTIVE_LIMIT_KEY                  = "adaptive.limit";
+
+    public static final String GRADIENT_ADAPTIVE_LIMIT             = "gradient";
+
+    public static final String VEGAS_ADAPTIVE_LIMIT                = "vegas";
+
+    public static final String ADAPTIVE_LIMIT_INITIAL_KEY          = "adaptive.limit.initial";
+
+    public static final int    DEFAULT_ADAPTIVE_LIMIT_INITIAL      = 20;
+
+    public static final String ADAPTIVE_LIMIT_MIN_KEY              = "adaptive.limit.min";
+
+    public static final int    DEFAULT_ADAPTIVE_LIMIT_MIN          = 1;
+
+    public static final String ADAPTIVE_LIMIT_MAX_KEY              = "adaptive.limit.max";
+
+    public static final int    DEFAULT_ADAPTIVE_LIMIT_MAX          = 1000;
+
+    public static final String ACCESS_LOG_BUFFER_KEY               = "accesslog.buffer";
+
+    public static final int    DEFAULT_ACCESS_LOG_BUFFER           = 16 * 1024;
+
+    public static final String ACCESS_LOG_SAMPLE_KEY               = "accesslog.sample";
+
+    public static final String ACCESS_LOG_MAX_SIZE_KEY             = "accesslog.max.size";
+
     public static final String DECODE_IN_IO_THREAD_KEY             = "decode.in.io";
 
     public static final boolean DEFAULT_DECODE_IN_IO_THREAD        = true;
@@ -579,6 +644,73 @@ public class Constants {
 
     public static final String GENERIC_SERIALIZATION_BEAN          = "bean";
 
+    // 参数和结果都是序列化后的字节，提供方直接反序列化为方法参数类型
+    public static final String GENERIC_SERIALIZATION_RAW           = "raw";
+
+    // raw泛化调用的参数使用的序列化方式，扩展名或者序列化id
+    public static final String GENERIC_RAW_SERIALIZATION_KEY       = "generic.serialization";
+
+    // 提供方允许raw泛化调用使用的序列化方式，逗号分隔，默认只允许服务自身配置的序列化
+    public static final String GENERIC_RAW_SERIALIZATIONS_KEY      = "generic.raw.serializations";
+
+    public static final String STALL_THRESHOLD_KEY                 = "dubbo.remoting.stall.threshold";
+
+    public static final int    DEFAULT_STALL_THRESHOLD             = 1000;
+
+    public static final String STALL_HISTORY_KEY                   = "dubbo.remoting.stall.history";
+
+    public static final int    DEFAULT_STALL_HISTORY               = 16;
+
+    public static final String INJVM_FILTER_KEY                    = "injvm.filter";
+
+    public static final String INJVM_COPY_KEY                      = "injvm.copy";
+
+    public static final String EXCEPTION_STACK_KEY                 = "exception.stack";
+
+    public static final String EXCEPTION_STACK_FULL                = "full";
+
+    public static final String EXCEPTION_STACK_TRIM                = "trim";
+
+    public static final String EXCEPTION_STACK_NONE                = "none";
+
+    public static final String EXCEPTION_STACK_DEPTH_KEY           = "exception.stack.depth";
+
+    public static final int    DEFAULT_EXCEPTION_STACK_DEPTH       = 8;
+
+    public static final String IDEMPOTENT_KEY                      = "idempotent";
+
+    public static final String IDEMPOTENT_REQUEST_KEY              = "idempotent.key";
+
+    public static final String IDEMPOTENT_CAPACITY_KEY             = "idempotent.capacity";
+
+    public static final int    DEFAULT_IDEMPOTENT_CAPACITY         = 10000;
+
+    public static final String IDEMPOTENT_TTL_KEY                  = "idempotent.ttl";
+
+    public static final int    DEFAULT_IDEMPOTENT_TTL              = 60 * 1000;
+
+    // 合并单个调用为批量调用的方法名，按方法配置
+    public static final String COLLAPSE_KEY                        = "collapse";
+
+    public static final String COLLAPSE_WINDOW_KEY                 = "collapse.window";
+
+    public static final int    DEFAULT_COLLAPSE_WINDOW             = 5;
+
+    public static final String COLLAPSE_SIZE_KEY                   = "collapse.size";
+
+    public static final int    DEFAULT_COLLAPSE_SIZE               = 100;
+
+    // 录制调用的文件路径
+    public static final String CAPTURE_KEY                         = "capture";
+
+    public static final String CAPTURE_SAMPLE_KEY                  = "capture.sample";
+
+    public static final String CAPTURE_BUFFER_KEY                  = "capture.buffer";
+
+    public static final int    DEFAULT_CAPTURE_BUFFER              = 16 * 1024;
+
+    public static final String CAPTURE_MAX_SIZE_KEY                = "capture.max.size";
+
     /*
      * private Constants(){ }
      */
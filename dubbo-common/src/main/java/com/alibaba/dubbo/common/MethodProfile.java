@@ -0,0 +1,128 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common;
+
+/**
+ * 方法级调用配置，由 {@link URL#getMethodProfile(String)} 按方法编译一次并缓存在不可变的URL上，
+ * URL变更（重新配置）时随新的URL重新编译，调用路径上直接读取字段，不再逐个查找和解析参数。
+ */
+public final class MethodProfile {
+
+    private final String  method;
+
+    private final int     timeout;
+
+    private final boolean async;
+
+    private final boolean oneway;
+
+    private final boolean sent;
+
+    private final int     retries;
+
+    private final String  loadbalance;
+
+    private final int     weight;
+
+    private final boolean sticky;
+
+    private final String  cache;
+
+    private final String  validation;
+
+    private final boolean inlineFutureExecutor;
+
+    MethodProfile(URL url, String method) {
+        this.method = method;
+        this.timeout = url.getMethodParameter(method, Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+        this.async = url.getMethodParameter(method, Constants.ASYNC_KEY, false);
+        this.oneway = ! url.getMethodParameter(method, Constants.RETURN_KEY, true);
+        this.sent = url.getMethodParameter(method, Constants.SENT_KEY, false);
+        this.retries = url.getMethodParameter(method, Constants.RETRIES_KEY, Constants.DEFAULT_RETRIES);
+        this.loadbalance = url.getMethodParameter(method, Constants.LOADBALANCE_KEY, Constants.DEFAULT_LOADBALANCE);
+        this.weight = url.getMethodParameter(method, Constants.WEIGHT_KEY, Constants.DEFAULT_WEIGHT);
+        this.sticky = url.getMethodParameter(method, Constants.CLUSTER_STICKY_KEY, Constants.DEFAULT_CLUSTER_STICKY);
+        this.cache = emptyToNull(url.getMethodParameter(method, Constants.CACHE_KEY));
+        this.validation = emptyToNull(url.getMethodParameter(method, Constants.VALIDATION_KEY));
+        this.inlineFutureExecutor = ! Constants.SHARED_FUTURE_EXECUTOR.equals(
+                url.getMethodParameter(method, Constants.FUTURE_EXECUTOR_KEY, Constants.DEFAULT_FUTURE_EXECUTOR));
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public boolean isOneway() {
+        return oneway;
+    }
+
+    public boolean isSent() {
+        return sent;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public String getLoadbalance() {
+        return loadbalance;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public boolean isSticky() {
+        return sticky;
+    }
+
+    /**
+     * @return 缓存类型，未配置时为null
+     */
+    public String getCache() {
+        return cache;
+    }
+
+    /**
+     * @return 校验类型，未配置时为null
+     */
+    public String getValidation() {
+        return validation;
+    }
+
+    public boolean isInlineFutureExecutor() {
+        return inlineFutureExecutor;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.length() == 0 ? null : value;
+    }
+
+    public String toString() {
+        return "MethodProfile[method=" + method + ", timeout=" + timeout + ", async=" + async + ", oneway=" + oneway
+                + ", sent=" + sent + ", retries=" + retries + ", loadbalance=" + loadbalance + ", weight=" + weight
+                + ", sticky=" + sticky + ", cache=" + cache + ", validation=" + validation + "]";
+    }
+
+}
@@ -116,6 +116,8 @@ public final class URL implements Serializable {
 
     private volatile transient Map<String, URL> urls;
 
+    private volatile transient Map<String, MethodProfile> profiles;
+
     private volatile transient String ip;
 
     private volatile transient String full;
@@ -453,6 +455,13 @@ public final class URL implements Serializable {
         return numbers;
     }
 
+    private Map<String, MethodProfile> getProfiles() {
+        if (profiles == null) { // 允许并发重复创建
+            profiles = new ConcurrentHashMap<String, MethodProfile>();
+        }
+        return profiles;
+    }
+
     private Map<String, URL> getUrls() {
         if (urls == null) { // 允许并发重复创建
             urls = new ConcurrentHashMap<String, URL>();
@@ -841,6 +850,24 @@ public final class URL implements Serializable {
         return Boolean.parseBoolean(value);
     }
 
+    /**
+     * 获取方法级调用配置，每个方法只编译一次。
+     * 
+     * @param method 方法名
+     * @return 方法级调用配置
+     */
+    public MethodProfile getMethodProfile(String method) {
+        if (method == null) {
+            return new MethodProfile(this, null);
+        }
+        MethodProfile profile = getProfiles().get(method);
+        if (profile == null) {
+            profile = new MethodProfile(this, method);
+            getProfiles().put(method, profile);
+        }
+        return profile;
+    }
+
     public boolean hasMethodParameter(String method, String key) {
         if (method == null) {
             String suffix = "." + key;
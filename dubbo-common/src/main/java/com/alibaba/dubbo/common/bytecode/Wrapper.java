@@ -47,6 +47,9 @@ public abstract class Wrapper
 
 	private static final String[] OBJECT_METHODS = new String[]{"getClass", "hashCode", "toString", "equals"};
 
+	// 每个分派方法中switch的最大分支数，避免生成的方法过大而不能被JIT编译
+	private static final int METHOD_SWITCH_SIZE = 32;
+
 	private static final Wrapper OBJECT_WRAPPER = new Wrapper(){
 		public String[] getMethodNames(){ return OBJECT_METHODS; }
 		public String[] getDeclaredMethodNames(){ return OBJECT_METHODS; }
@@ -69,6 +72,15 @@ public abstract class Wrapper
 		}
 	};
 
+	private String className;
+
+	// 方法名 -> 方法序号，同名方法按声明顺序排列
+	private Map<String, int[]> methodIndexes;
+
+	private Class<?>[][] methodTypes;
+
+	private boolean[] methodOverloaded;
+
 	/**
 	 * get wrapper.
 	 * 获取Wrapper类
@@ -200,7 +212,56 @@ public abstract class Wrapper
 	 * @param args argument array.
 	 * @return return value.
 	 */
-	abstract public Object invokeMethod(Object instance, String mn, Class<?>[] types, Object[] args) throws NoSuchMethodException, InvocationTargetException;
+	public Object invokeMethod(Object instance, String mn, Class<?>[] types, Object[] args) throws NoSuchMethodException, InvocationTargetException
+	{
+		int index = getMethodIndex(mn, types);
+		if( index < 0 )
+			throw new NoSuchMethodException("Not found method \"" + mn + "\" in class " + className + ".");
+		return invokeMethod(instance, index, args);
+	}
+
+	/**
+	 * get method index, 可以预先解析后通过 {@link #invokeMethod(Object, int, Object[])} 调用。
+	 *
+	 * @param mn method name.
+	 * @param types parameter types.
+	 * @return method index, -1 if not found.
+	 */
+	public int getMethodIndex(String mn, Class<?>[] types)
+	{
+		int[] indexes = methodIndexes == null ? null : methodIndexes.get(mn);
+		if( indexes == null )
+			return -1;
+		for( int ix : indexes )
+		{
+			Class<?>[] pts = methodTypes[ix];
+			if( types == null )
+			{
+				if( ! methodOverloaded[ix] ) return ix;
+				continue;
+			}
+			if( types.length != pts.length )
+				continue;
+			// 有重载时还要比较参数类型
+			if( methodOverloaded[ix] && ! isSameTypes(types, pts) )
+				continue;
+			return ix;
+		}
+		return -1;
+	}
+
+	/**
+	 * invoke method by index.
+	 *
+	 * @param instance instance.
+	 * @param index method index, see {@link #getMethodIndex(String, Class[])}.
+	 * @param args argument array.
+	 * @return return value.
+	 */
+	public Object invokeMethod(Object instance, int index, Object[] args) throws NoSuchMethodException, InvocationTargetException
+	{
+		throw new NoSuchMethodException("Not found method index " + index + " in class " + className + ".");
+	}
 
 	/**
 	 * 创建一个继承自Wrapper的动态类的新实例
@@ -219,8 +280,8 @@ public abstract class Wrapper
 		StringBuilder c1 = new StringBuilder("public void setPropertyValue(Object o, String n, Object v){ ");
 		// 存储getPropertyValue方法代码
 		StringBuilder c2 = new StringBuilder("public Object getPropertyValue(Object o, String n){ ");
-		// 存储invokeMethod方法代码
-		StringBuilder c3 = new StringBuilder("public Object invokeMethod(Object o, String n, Class[] p, Object[] v) throws " + InvocationTargetException.class.getName() + "{ ");
+		// 存储invokeMethod方法代码，按方法序号分派
+		StringBuilder c3 = new StringBuilder("public Object invokeMethod(Object o, int i, Object[] v) throws " + InvocationTargetException.class.getName() + "{ ");
 
 		// 生成类型转换代码以及异常捕获代码
 		c1.append(name).append(" w; try{ w = ((").append(name).append(")$1); }catch(Throwable e){ throw new IllegalArgumentException(e); }");
@@ -233,6 +294,9 @@ public abstract class Wrapper
 		Map<String, Method> ms = new LinkedHashMap<String, Method>(); // <method desc, Method instance>
 		// 方法名列表
 		List<String> mns = new ArrayList<String>(); // method names.
+		// 按序号排列的方法
+		List<Method> ims = new ArrayList<Method>(); // invokable methods.
+		List<Boolean> ios = new ArrayList<Boolean>(); // overloaded flags.
 		// 定义在当前类中的方法的名称
 		List<String> dmns = new ArrayList<String>(); // declaring method names.
 		
@@ -253,23 +317,12 @@ public abstract class Wrapper
 		
 		Method[] methods = c.getMethods();
 		// get all public method.
-		boolean hasMethod = hasMethods(methods);
-		if( hasMethod ){
-		    c3.append(" try{");
-		}
 		for( Method m : methods )
 		{
 			// 忽略Object中定义的方法
 			if( m.getDeclaringClass() == Object.class ) //ignore Object's method.
 				continue;
 
-			// 方法名判断语句
-			String mn = m.getName();
-			c3.append(" if( \"").append(mn).append("\".equals( $2 ) ");
-			// 运行时传入参数数量与方法参数列表长度判断语句
-            int len = m.getParameterTypes().length;
-            c3.append(" && ").append(" $3.length == ").append(len);
-			
 			boolean override = false;
 			for( Method m2 : methods ) {
 				// 是否有重载：方法对象不同 并且 方法名相同
@@ -278,38 +331,44 @@ public abstract class Wrapper
 					break;
 				}
 			}
-			if (override) {
-				if (len > 0) {
-					for (int l = 0; l < len; l ++) {
-						c3.append(" && ").append(" $3[").append(l).append("].getName().equals(\"")
-							.append(m.getParameterTypes()[l].getName()).append("\")");
-					}
-				}
-			}
-			
-			c3.append(" ) { ");
+			ims.add(m);
+			ios.add(override);
 
-			// 根据返回类型生成目标方法调用语句
-			if( m.getReturnType() == Void.TYPE )
-				c3.append(" w.").append(mn).append('(').append(args(m.getParameterTypes(), "$4")).append(");").append(" return null;");
-			else
-				c3.append(" return ($w)w.").append(mn).append('(').append(args(m.getParameterTypes(), "$4")).append(");");
-
-			c3.append(" }");
-			
+			String mn = m.getName();
 			mns.add(mn);
 			if( m.getDeclaringClass() == c )
 				dmns.add(mn);
 			ms.put(ReflectUtils.getDesc(m), m);
 		}
-		if( hasMethod ){
-		    c3.append(" } catch(Throwable e) { " );
-		    c3.append("     throw new java.lang.reflect.InvocationTargetException(e); " );
-	        c3.append(" }");
-        }
-		
-		c3.append(" throw new " + NoSuchMethodException.class.getName() + "(\"Not found method \\\"\"+$2+\"\\\" in class " + c.getName() + ".\"); }");
-		
+
+		// 生成switch分派代码，方法较多时拆分到多个方法中
+		String notFound = " throw new " + NoSuchMethodException.class.getName() + "(\"Not found method index \"+$2+\" in class " + c.getName() + ".\");";
+		List<String> ics = new ArrayList<String>(); // invoke chunk methods.
+		if( ims.size() > 0 )
+		{
+			c3.append(" try{");
+			if( ims.size() <= METHOD_SWITCH_SIZE )
+			{
+				c3.append(switchMethods(ims, 0, ims.size()));
+			}
+			else
+			{
+				c3.append(" switch( $2 / ").append(METHOD_SWITCH_SIZE).append(" ){");
+				for( int from = 0, k = 0; from < ims.size(); from += METHOD_SWITCH_SIZE, k ++ )
+				{
+					c3.append(" case ").append(k).append(": return invokeMethod").append(k).append("(w, $2, $3);");
+					ics.add("private Object invokeMethod" + k + "(" + name + " w, int i, Object[] v){"
+							+ switchMethods(ims, from, Math.min(from + METHOD_SWITCH_SIZE, ims.size())) + notFound + " }");
+				}
+				c3.append(" }");
+			}
+			c3.append(" } catch(Throwable e) { " );
+			c3.append("     throw new java.lang.reflect.InvocationTargetException(e); " );
+			c3.append(" }");
+		}
+
+		c3.append(notFound).append(" }");
+
 		// deal with get/set method.
 		Matcher matcher;
 		for( Map.Entry<String,Method> entry : ms.entrySet() )
@@ -368,6 +427,9 @@ public abstract class Wrapper
 		cc.addMethod("public String[] getDeclaredMethodNames(){ return dmns; }");
 		cc.addMethod(c1.toString());
 		cc.addMethod(c2.toString());
+		// 先添加被调用的分块方法
+		for( String ic : ics )
+			cc.addMethod(ic);
 		cc.addMethod(c3.toString());
 
 		try
@@ -383,7 +445,32 @@ public abstract class Wrapper
 			for( Method m : ms.values() )
 				wc.getField("mts" + ix++).set(null, m.getParameterTypes());
 			// 创建实例
-			return (Wrapper)wc.newInstance();
+			Wrapper wrapper = (Wrapper)wc.newInstance();
+			wrapper.className = c.getName();
+			wrapper.methodTypes = new Class<?>[ims.size()][];
+			wrapper.methodOverloaded = new boolean[ims.size()];
+			Map<String, int[]> mis = new HashMap<String, int[]>();
+			for( int i = 0; i < ims.size(); i ++ )
+			{
+				Method m = ims.get(i);
+				wrapper.methodTypes[i] = m.getParameterTypes();
+				wrapper.methodOverloaded[i] = ios.get(i);
+				int[] indexes = mis.get(m.getName());
+				if( indexes == null )
+				{
+					indexes = new int[]{ i };
+				}
+				else
+				{
+					int[] tmp = new int[indexes.length + 1];
+					System.arraycopy(indexes, 0, tmp, 0, indexes.length);
+					tmp[indexes.length] = i;
+					indexes = tmp;
+				}
+				mis.put(m.getName(), indexes);
+			}
+			wrapper.methodIndexes = mis;
+			return wrapper;
 		}
 		catch(RuntimeException e)
 		{
@@ -399,9 +486,41 @@ public abstract class Wrapper
 			ms.clear();
 			mns.clear();
 			dmns.clear();
+			ims.clear();
+			ios.clear();
 		}
 	}
 
+	/**
+	 * 生成序号在[from, to)之间的方法的switch分派代码，w为目标对象，$2为序号，$3为参数。
+	 */
+	private static String switchMethods(List<Method> methods, int from, int to)
+	{
+		StringBuilder sb = new StringBuilder(" switch( $2 ){");
+		for( int i = from; i < to; i ++ )
+		{
+			Method m = methods.get(i);
+			sb.append(" case ").append(i).append(": ");
+			// 根据返回类型生成目标方法调用语句
+			if( m.getReturnType() == Void.TYPE )
+				sb.append(" w.").append(m.getName()).append('(').append(args(m.getParameterTypes(), "$3")).append(");").append(" return null;");
+			else
+				sb.append(" return ($w)w.").append(m.getName()).append('(').append(args(m.getParameterTypes(), "$3")).append(");");
+		}
+		sb.append(" }");
+		return sb.toString();
+	}
+
+	private static boolean isSameTypes(Class<?>[] types, Class<?>[] pts)
+	{
+		for( int i = 0; i < types.length; i ++ )
+		{
+			if( types[i] != pts[i] && ( types[i] == null || ! types[i].getName().equals(pts[i].getName()) ) )
+				return false;
+		}
+		return true;
+	}
+
 	private static String arg(Class<?> cl, String name)
 	{
 		if( cl.isPrimitive() )
@@ -445,16 +564,5 @@ public abstract class Wrapper
 	{
 		return pn.length() == 1 || Character.isLowerCase(pn.charAt(1)) ? Character.toLowerCase(pn.charAt(0)) + pn.substring(1) : pn;
 	}
-	
-	private static boolean hasMethods(Method[] methods){
-	    if(methods == null || methods.length == 0){
-	        return false;
-	    }
-	    for(Method m : methods){
-	        if(m.getDeclaringClass() != Object.class){
-	            return true;
-	        }
-	    }
-	    return false;
-	}
+
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadlocal;
+
+/**
+ * Dubbo线程池创建的线程，直接持有{@link InternalThreadLocalMap}。
+ *
+ * @see com.alibaba.dubbo.common.utils.NamedThreadFactory
+ */
+public class InternalThread extends Thread {
+
+    private InternalThreadLocalMap threadLocalMap;
+
+    public InternalThread(Runnable target, String name) {
+        super(target, name);
+    }
+
+    public InternalThread(ThreadGroup group, Runnable target, String name) {
+        super(group, target, name);
+    }
+
+    public InternalThread(ThreadGroup group, Runnable target, String name, long stackSize) {
+        super(group, target, name, stackSize);
+    }
+
+    /**
+     * 只能由当前线程调用
+     */
+    public final InternalThreadLocalMap getThreadLocalMap() {
+        return threadLocalMap;
+    }
+
+    /**
+     * 只能由当前线程调用
+     */
+    public final void setThreadLocalMap(InternalThreadLocalMap threadLocalMap) {
+        this.threadLocalMap = threadLocalMap;
+    }
+
+}
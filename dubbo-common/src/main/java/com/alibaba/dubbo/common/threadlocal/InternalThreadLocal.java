@@ -0,0 +1,68 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadlocal;
+
+/**
+ * 按下标访问的ThreadLocal。
+ *
+ * 在{@link InternalThread}上读写只是一次数组访问，不需要ThreadLocal的哈希查找；
+ * 在其它线程上与普通ThreadLocal等价。
+ *
+ * @see InternalThreadLocalMap
+ */
+public class InternalThreadLocal<V> {
+
+    private final int index;
+
+    public InternalThreadLocal() {
+        index = InternalThreadLocalMap.nextVariableIndex();
+    }
+
+    @SuppressWarnings("unchecked")
+    public final V get() {
+        InternalThreadLocalMap map = InternalThreadLocalMap.get();
+        Object v = map.indexedVariable(index);
+        if (v != InternalThreadLocalMap.UNSET) {
+            return (V) v;
+        }
+        V value = initialValue();
+        map.setIndexedVariable(index, value);
+        return value;
+    }
+
+    public final void set(V value) {
+        if (value == null) {
+            remove();
+        } else {
+            InternalThreadLocalMap.get().setIndexedVariable(index, value);
+        }
+    }
+
+    public final void remove() {
+        InternalThreadLocalMap map = InternalThreadLocalMap.getIfSet();
+        if (map != null) {
+            map.removeIndexedVariable(index);
+        }
+    }
+
+    /**
+     * 当前线程第一次get时的初始值
+     */
+    protected V initialValue() {
+        return null;
+    }
+
+}
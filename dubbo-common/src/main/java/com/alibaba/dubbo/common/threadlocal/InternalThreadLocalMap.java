@@ -0,0 +1,129 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadlocal;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * InternalThreadLocal的存储，按变量下标存放在数组中。
+ *
+ * {@link InternalThread}直接持有自己的Map，其它线程退化为通过一个普通ThreadLocal查找。
+ */
+public final class InternalThreadLocalMap {
+
+    /**
+     * 未设置的槽位
+     */
+    public static final Object UNSET = new Object();
+
+    private static final int INITIAL_SIZE = 32;
+
+    private static final ThreadLocal<InternalThreadLocalMap> SLOW_THREAD_LOCAL_MAP = new ThreadLocal<InternalThreadLocalMap>();
+
+    private static final AtomicInteger NEXT_INDEX = new AtomicInteger();
+
+    private Object[] indexedVariables;
+
+    private InternalThreadLocalMap() {
+        indexedVariables = newIndexedVariables(INITIAL_SIZE);
+    }
+
+    public static InternalThreadLocalMap get() {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof InternalThread) {
+            InternalThread internal = (InternalThread) thread;
+            InternalThreadLocalMap map = internal.getThreadLocalMap();
+            if (map == null) {
+                map = new InternalThreadLocalMap();
+                internal.setThreadLocalMap(map);
+            }
+            return map;
+        }
+        InternalThreadLocalMap map = SLOW_THREAD_LOCAL_MAP.get();
+        if (map == null) {
+            map = new InternalThreadLocalMap();
+            SLOW_THREAD_LOCAL_MAP.set(map);
+        }
+        return map;
+    }
+
+    /**
+     * 当前线程的Map，未创建过时返回null
+     */
+    public static InternalThreadLocalMap getIfSet() {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof InternalThread) {
+            return ((InternalThread) thread).getThreadLocalMap();
+        }
+        return SLOW_THREAD_LOCAL_MAP.get();
+    }
+
+    /**
+     * 丢弃当前线程的全部变量
+     */
+    public static void remove() {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof InternalThread) {
+            ((InternalThread) thread).setThreadLocalMap(null);
+        } else {
+            SLOW_THREAD_LOCAL_MAP.remove();
+        }
+    }
+
+    static int nextVariableIndex() {
+        int index = NEXT_INDEX.getAndIncrement();
+        if (index < 0) {
+            NEXT_INDEX.decrementAndGet();
+            throw new IllegalStateException("Too many thread-local indexed variables");
+        }
+        return index;
+    }
+
+    public Object indexedVariable(int index) {
+        Object[] lookup = indexedVariables;
+        return index < lookup.length ? lookup[index] : UNSET;
+    }
+
+    public void setIndexedVariable(int index, Object value) {
+        Object[] lookup = indexedVariables;
+        if (index >= lookup.length) {
+            // 扩容到不小于index+1的2的幂
+            int newCapacity = Integer.highestOneBit(index) << 1;
+            lookup = Arrays.copyOf(lookup, newCapacity);
+            Arrays.fill(lookup, indexedVariables.length, newCapacity, UNSET);
+            indexedVariables = lookup;
+        }
+        lookup[index] = value;
+    }
+
+    public Object removeIndexedVariable(int index) {
+        Object[] lookup = indexedVariables;
+        if (index < lookup.length) {
+            Object value = lookup[index];
+            lookup[index] = UNSET;
+            return value;
+        }
+        return UNSET;
+    }
+
+    private static Object[] newIndexedVariables(int size) {
+        Object[] array = new Object[size];
+        Arrays.fill(array, UNSET);
+        return array;
+    }
+
+}
@@ -18,6 +18,8 @@ package com.alibaba.dubbo.common.utils;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.alibaba.dubbo.common.threadlocal.InternalThread;
+
 /**
  * InternalThreadFactory.
  * 
@@ -57,7 +59,7 @@ public class NamedThreadFactory implements ThreadFactory
 	public Thread newThread(Runnable runnable)
 	{
 		String name = mPrefix + mThreadNum.getAndIncrement();
-        Thread ret = new Thread(mGroup,runnable,name,0);
+        Thread ret = new InternalThread(mGroup,runnable,name,0);
         ret.setDaemon(mDaemo);
         return ret;
 	}
@@ -629,4 +629,28 @@ public class URLTest {
         assertEquals("path", url.getPath());
     }
 
+    @Test
+    public void test_getMethodProfile() throws Exception {
+        URL url = URL.valueOf("dubbo://127.0.0.1:20880/Demo?timeout=2000&sayHello.timeout=3000&sayHello.async=true&echo.return=false&retries=5&cache=lru");
+        MethodProfile profile = url.getMethodProfile("sayHello");
+        assertEquals(3000, profile.getTimeout());
+        assertTrue(profile.isAsync());
+        assertFalse(profile.isOneway());
+        assertEquals(5, profile.getRetries());
+        assertEquals(Constants.DEFAULT_LOADBALANCE, profile.getLoadbalance());
+        assertEquals("lru", profile.getCache());
+        assertNull(profile.getValidation());
+        assertSame(profile, url.getMethodProfile("sayHello"));
+
+        profile = url.getMethodProfile("echo");
+        assertEquals(2000, profile.getTimeout());
+        assertFalse(profile.isAsync());
+        assertTrue(profile.isOneway());
+
+        // 重新配置得到新的URL，配置随之重新编译
+        URL changed = url.addParameter("sayHello.timeout", 100);
+        assertEquals(100, changed.getMethodProfile("sayHello").getTimeout());
+        assertEquals(3000, url.getMethodProfile("sayHello").getTimeout());
+    }
+
 }
\ No newline at end of file
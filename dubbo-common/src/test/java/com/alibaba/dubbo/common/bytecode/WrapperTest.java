@@ -15,6 +15,10 @@
  */
 package com.alibaba.dubbo.common.bytecode;
 
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -75,6 +79,57 @@ public class WrapperTest
         assertArrayEquals(new String[]{"hello", "world"}, Wrapper.getWrapper(Son.class).getMethodNames());
     }
 
+    @Test
+    public void test_invokeMethodByIndex() throws Exception {
+        Wrapper w = Wrapper.getWrapper(I1.class);
+        Object obj = new Impl1();
+        int index = w.getMethodIndex("showInt", new Class<?>[] { int.class });
+        assertTrue(index >= 0);
+        assertEquals(3, w.invokeMethod(obj, index, new Object[] { 3 }));
+        assertEquals(-1, w.getMethodIndex("showInt", new Class<?>[] { int.class, int.class }));
+        assertEquals(-1, w.getMethodIndex("notExist", new Class<?>[0]));
+        try {
+            w.invokeMethod(obj, 100, new Object[0]);
+            fail();
+        } catch (NoSuchMethodException expected) {
+        }
+    }
+
+    @Test
+    public void test_overloadedMethods() throws Exception {
+        Wrapper w = Wrapper.getWrapper(Overload.class);
+        Object obj = new OverloadImpl();
+        assertEquals("s:a", w.invokeMethod(obj, "echo", new Class<?>[] { String.class }, new Object[] { "a" }));
+        assertEquals("i:1", w.invokeMethod(obj, "echo", new Class<?>[] { int.class }, new Object[] { 1 }));
+        assertEquals("ss:ab", w.invokeMethod(obj, "echo", new Class<?>[] { String.class, String.class }, new Object[] { "a", "b" }));
+        try {
+            w.invokeMethod(obj, "echo", new Class<?>[] { long.class }, new Object[] { 1L });
+            fail();
+        } catch (NoSuchMethodException expected) {
+        }
+    }
+
+    // 方法较多时分派代码拆分到多个方法中
+    @Test
+    public void test_manyMethods() throws Exception {
+        ClassPool pool = ClassGenerator.getClassPool(getClass().getClassLoader());
+        CtClass cc = pool.makeClass(WrapperTest.class.getName() + "$Many");
+        for (int i = 0; i < 100; i ++) {
+            cc.addMethod(CtMethod.make("public int m" + i + "(int v){ return v + " + i + "; }", cc));
+        }
+        Class<?> c = cc.toClass(getClass().getClassLoader(), getClass().getProtectionDomain());
+        Wrapper w = Wrapper.getWrapper(c);
+        Object obj = c.newInstance();
+        for (int i = 0; i < 100; i ++) {
+            assertEquals(i + 1, w.invokeMethod(obj, "m" + i, new Class<?>[] { int.class }, new Object[] { 1 }));
+        }
+        try {
+            w.invokeMethod(obj, 1000, new Object[] { 1 });
+            fail();
+        } catch (NoSuchMethodException expected) {
+        }
+    }
+
     public static class Impl0
 	{
 		public float a,b,c;
@@ -156,4 +211,26 @@ public class WrapperTest
     public static interface Son extends Parent1, Parent2 {
 
     }
+
+    public static interface Overload {
+        String echo(String s);
+
+        String echo(int i);
+
+        String echo(String s1, String s2);
+    }
+
+    public static class OverloadImpl implements Overload {
+        public String echo(String s) {
+            return "s:" + s;
+        }
+
+        public String echo(int i) {
+            return "i:" + i;
+        }
+
+        public String echo(String s1, String s2) {
+            return "ss:" + s1 + s2;
+        }
+    }
 }
\ No newline at end of file
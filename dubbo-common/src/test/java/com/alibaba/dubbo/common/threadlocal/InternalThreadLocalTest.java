@@ -0,0 +1,95 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadlocal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+
+public class InternalThreadLocalTest {
+
+    @Test
+    public void test_initialValue() throws Exception {
+        final InternalThreadLocal<List<String>> local = new InternalThreadLocal<List<String>>() {
+            @Override
+            protected List<String> initialValue() {
+                return new ArrayList<String>();
+            }
+        };
+        List<String> value = local.get();
+        assertSame(value, local.get());
+        local.remove();
+        assertTrue(value != local.get());
+    }
+
+    @Test
+    public void test_setAndRemove() throws Exception {
+        InternalThreadLocal<String> local = new InternalThreadLocal<String>();
+        assertNull(local.get());
+        local.set("a");
+        assertEquals("a", local.get());
+        local.set(null);
+        assertNull(local.get());
+        local.set("b");
+        local.remove();
+        assertNull(local.get());
+    }
+
+    @Test
+    public void test_internalThread() throws Exception {
+        final InternalThreadLocal<String> local = new InternalThreadLocal<String>();
+        local.set("main");
+        final AtomicReference<Object> holder = new AtomicReference<Object>();
+        Thread thread = new NamedThreadFactory("InternalThreadLocalTest").newThread(new Runnable() {
+            public void run() {
+                String before = local.get();
+                local.set("internal");
+                holder.set(new Object[] {before, local.get(), InternalThreadLocalMap.getIfSet()});
+            }
+        });
+        assertTrue(thread instanceof InternalThread);
+        thread.start();
+        thread.join();
+        Object[] values = (Object[]) holder.get();
+        assertNull(values[0]);
+        assertEquals("internal", values[1]);
+        assertSame(values[2], ((InternalThread) thread).getThreadLocalMap());
+        assertEquals("main", local.get());
+    }
+
+    @Test
+    public void test_manyVariables() throws Exception {
+        List<InternalThreadLocal<Integer>> locals = new ArrayList<InternalThreadLocal<Integer>>();
+        for (int i = 0; i < 100; i ++) {
+            InternalThreadLocal<Integer> local = new InternalThreadLocal<Integer>();
+            local.set(i);
+            locals.add(local);
+        }
+        for (int i = 0; i < 100; i ++) {
+            assertEquals(Integer.valueOf(i), locals.get(i).get());
+        }
+    }
+
+}
@@ -31,12 +31,15 @@ import com.alibaba.dubbo.common.beanutil.JavaBeanAccessor;
 import com.alibaba.dubbo.common.beanutil.JavaBeanDescriptor;
 import com.alibaba.dubbo.common.beanutil.JavaBeanSerializeUtil;
 import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.serialize.ObjectOutput;
 import com.alibaba.dubbo.common.serialize.Serialization;
 import com.alibaba.dubbo.common.utils.ReflectUtils;
 import com.alibaba.dubbo.config.api.DemoException;
 import com.alibaba.dubbo.config.api.DemoService;
 import com.alibaba.dubbo.config.api.User;
 import com.alibaba.dubbo.config.provider.impl.DemoServiceImpl;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.service.GenericException;
 import com.alibaba.dubbo.rpc.service.GenericService;
 
@@ -202,6 +205,128 @@ public class GenericServiceTest {
         }
     }
 
+    @Test
+    public void testGenericSerializationRaw() throws Exception {
+        ServiceConfig<DemoService> service = new ServiceConfig<DemoService>();
+        service.setApplication(new ApplicationConfig("generic-provider"));
+        service.setRegistry(new RegistryConfig("N/A"));
+        service.setProtocol(new ProtocolConfig("dubbo", 29581));
+        service.setInterface(DemoService.class.getName());
+        DemoServiceImpl ref = new DemoServiceImpl();
+        service.setRef(ref);
+        service.export();
+        try {
+            ReferenceConfig<GenericService> reference = new ReferenceConfig<GenericService>();
+            reference.setApplication(new ApplicationConfig("generic-consumer"));
+            reference.setInterface(DemoService.class);
+            reference.setUrl("dubbo://127.0.0.1:29581?scope=remote");
+            reference.setGeneric(Constants.GENERIC_SERIALIZATION_RAW);
+            GenericService genericService = reference.get();
+            try {
+                String name = "kimi";
+                Object obj = genericService.$invoke("sayName", new String[]{String.class.getName()},
+                                                    new Object[]{rawSerialize("hessian2", name)});
+                Assert.assertTrue(obj instanceof byte[]);
+                Assert.assertEquals(ref.sayName(name), rawDeserialize("hessian2", (byte[]) obj));
+
+                // getUsers，参数直接反序列化为User
+                List<User> users = new ArrayList<User>();
+                User user = new User();
+                user.setName(name);
+                users.add(user);
+                obj = genericService.$invoke("getUsers", new String[]{List.class.getName()},
+                                             new Object[]{rawSerialize("hessian2", users)});
+                Assert.assertTrue(obj instanceof byte[]);
+                Assert.assertEquals(users, rawDeserialize("hessian2", (byte[]) obj));
+
+                // echo(int)，按序列化id指定
+                RpcContext.getContext().setAttachment(Constants.GENERIC_RAW_SERIALIZATION_KEY, "2");
+                obj = genericService.$invoke("echo", new String[]{int.class.getName()},
+                                             new Object[]{rawSerialize("hessian2", Integer.MAX_VALUE)});
+                Assert.assertTrue(obj instanceof byte[]);
+                Assert.assertEquals(Integer.MAX_VALUE, rawDeserialize("hessian2", (byte[]) obj));
+
+                // 提供方默认只允许自身配置的序列化，java原生序列化需要显式开启
+                RpcContext.getContext().setAttachment(Constants.GENERIC_RAW_SERIALIZATION_KEY, "java");
+                try {
+                    genericService.$invoke("sayName", new String[]{String.class.getName()},
+                                           new Object[]{rawSerialize("java", name)});
+                    Assert.fail();
+                } catch (RpcException e) {
+                    Assert.assertTrue(e.getMessage().contains(Constants.GENERIC_RAW_SERIALIZATIONS_KEY));
+                }
+
+                try {
+                    genericService.$invoke("sayName", new String[]{String.class.getName()}, new Object[]{name});
+                    Assert.fail();
+                } catch (RpcException e) {
+                    Assert.assertTrue(e.getMessage().contains(Constants.GENERIC_SERIALIZATION_RAW));
+                }
+            } finally {
+                reference.destroy();
+            }
+        } finally {
+            service.unexport();
+        }
+    }
+
+    @Test
+    public void testGenericRawSerializationWhitelist() throws Exception {
+        ServiceConfig<DemoService> service = new ServiceConfig<DemoService>();
+        service.setApplication(new ApplicationConfig("generic-provider"));
+        service.setRegistry(new RegistryConfig("N/A"));
+        service.setProtocol(new ProtocolConfig("dubbo", 29582));
+        service.setInterface(DemoService.class.getName());
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(Constants.GENERIC_RAW_SERIALIZATIONS_KEY, "hessian2,java");
+        service.setParameters(parameters);
+        DemoServiceImpl ref = new DemoServiceImpl();
+        service.setRef(ref);
+        service.export();
+        try {
+            ReferenceConfig<GenericService> reference = new ReferenceConfig<GenericService>();
+            reference.setApplication(new ApplicationConfig("generic-consumer"));
+            reference.setInterface(DemoService.class);
+            reference.setUrl("dubbo://127.0.0.1:29582?scope=remote");
+            reference.setGeneric(Constants.GENERIC_SERIALIZATION_RAW);
+            GenericService genericService = reference.get();
+            try {
+                String name = "kimi";
+                RpcContext.getContext().setAttachment(Constants.GENERIC_RAW_SERIALIZATION_KEY, "java");
+                Object obj = genericService.$invoke("sayName", new String[]{String.class.getName()},
+                                                    new Object[]{rawSerialize("java", name)});
+                Assert.assertEquals(ref.sayName(name), rawDeserialize("java", (byte[]) obj));
+
+                RpcContext.getContext().setAttachment(Constants.GENERIC_RAW_SERIALIZATION_KEY, "compactedjava");
+                try {
+                    genericService.$invoke("sayName", new String[]{String.class.getName()},
+                                           new Object[]{rawSerialize("compactedjava", name)});
+                    Assert.fail();
+                } catch (RpcException e) {
+                    Assert.assertTrue(e.getMessage().contains(Constants.GENERIC_RAW_SERIALIZATIONS_KEY));
+                }
+            } finally {
+                reference.destroy();
+            }
+        } finally {
+            service.unexport();
+        }
+    }
+
+    private static byte[] rawSerialize(String serialization, Object value) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(512);
+        ObjectOutput out = ExtensionLoader.getExtensionLoader(Serialization.class)
+            .getExtension(serialization).serialize(null, bos);
+        out.writeObject(value);
+        out.flushBuffer();
+        return bos.toByteArray();
+    }
+
+    private static Object rawDeserialize(String serialization, byte[] bytes) throws Exception {
+        return ExtensionLoader.getExtensionLoader(Serialization.class)
+            .getExtension(serialization).deserialize(null, new ByteArrayInputStream(bytes)).readObject();
+    }
+
     @Test
     public void testGenericInvokeWithBeanSerialization() throws Exception {
         ServiceConfig<DemoService> service = new ServiceConfig<DemoService>();
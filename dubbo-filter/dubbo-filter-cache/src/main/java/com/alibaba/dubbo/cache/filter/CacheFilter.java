@@ -18,10 +18,12 @@ package com.alibaba.dubbo.cache.filter;
 import com.alibaba.dubbo.cache.Cache;
 import com.alibaba.dubbo.cache.CacheFactory;
 import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.Activate;
 import com.alibaba.dubbo.common.utils.ConfigUtils;
 import com.alibaba.dubbo.common.utils.StringUtils;
-import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
+import com.alibaba.dubbo.rpc.ConditionalFilter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
@@ -34,7 +36,7 @@ import com.alibaba.dubbo.rpc.RpcResult;
  * @author william.liangf
  */
 @Activate(group = {Constants.CONSUMER, Constants.PROVIDER}, value = Constants.CACHE_KEY)
-public class CacheFilter implements Filter {
+public class CacheFilter implements ConditionalFilter {
 
     private CacheFactory cacheFactory;
 
@@ -42,18 +44,31 @@ public class CacheFilter implements Filter {
         this.cacheFactory = cacheFactory;
     }
 
+    public boolean isEnabled(URL url, String method) {
+        return cacheFactory != null && ConfigUtils.isNotEmpty(url.getMethodProfile(method).getCache());
+    }
+
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
-        if (cacheFactory != null && ConfigUtils.isNotEmpty(invoker.getUrl().getMethodParameter(invocation.getMethodName(), Constants.CACHE_KEY))) {
-            Cache cache = cacheFactory.getCache(invoker.getUrl().addParameter(Constants.METHOD_KEY, invocation.getMethodName()));
+        if (cacheFactory != null && ConfigUtils.isNotEmpty(invoker.getUrl().getMethodProfile(invocation.getMethodName()).getCache())) {
+            final Cache cache = cacheFactory.getCache(invoker.getUrl().addParameter(Constants.METHOD_KEY, invocation.getMethodName()));
             if (cache != null) {
-                String key = StringUtils.toArgumentString(invocation.getArguments());
+                final String key = StringUtils.toArgumentString(invocation.getArguments());
                 if (cache != null && key != null) {
                     Object value = cache.get(key);
                     if (value != null) {
                         return new RpcResult(value);
                     }
                     Result result = invoker.invoke(invocation);
-                    if (! result.hasException()) {
+                    if (result instanceof AsyncRpcResult) {
+                        // 异步执行的调用在完成时缓存，不阻塞业务线程
+                        ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                            public void onComplete(Result r) {
+                                if (! r.hasException()) {
+                                    cache.put(key, r.getValue());
+                                }
+                            }
+                        });
+                    } else if (! result.hasException()) {
                         cache.put(key, result.getValue());
                     }
                     return result;
@@ -16,9 +16,10 @@
 package com.alibaba.dubbo.validation.filter;
 
 import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.Activate;
 import com.alibaba.dubbo.common.utils.ConfigUtils;
-import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.ConditionalFilter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
@@ -32,7 +33,7 @@ import com.alibaba.dubbo.validation.Validator;
  * @author william.liangf
  */
 @Activate(group = { Constants.CONSUMER, Constants.PROVIDER }, value = Constants.VALIDATION_KEY, order = 10000)
-public class ValidationFilter implements Filter {
+public class ValidationFilter implements ConditionalFilter {
 
     private Validation validation;
 
@@ -40,9 +41,14 @@ public class ValidationFilter implements Filter {
         this.validation = validation;
     }
 
+    public boolean isEnabled(URL url, String method) {
+        return validation != null && ! method.startsWith("$")
+                && ConfigUtils.isNotEmpty(url.getMethodProfile(method).getValidation());
+    }
+
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
         if (validation != null && ! invocation.getMethodName().startsWith("$") 
-                && ConfigUtils.isNotEmpty(invoker.getUrl().getMethodParameter(invocation.getMethodName(), Constants.VALIDATION_KEY))) {
+                && ConfigUtils.isNotEmpty(invoker.getUrl().getMethodProfile(invocation.getMethodName()).getValidation())) {
             try {
                 Validator validator = validation.getValidator(invoker.getUrl());
                 if (validator != null) {
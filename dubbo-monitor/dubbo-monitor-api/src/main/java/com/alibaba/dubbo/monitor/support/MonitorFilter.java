@@ -28,6 +28,7 @@ import com.alibaba.dubbo.common.utils.NetUtils;
 import com.alibaba.dubbo.monitor.Monitor;
 import com.alibaba.dubbo.monitor.MonitorFactory;
 import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
@@ -56,20 +57,37 @@ public class MonitorFilter implements Filter {
     }
     
     // 调用过程拦截
-    public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+    public Result invoke(final Invoker<?> invoker, final Invocation invocation) throws RpcException {
         if (invoker.getUrl().hasParameter(Constants.MONITOR_KEY)) {
-            RpcContext context = RpcContext.getContext(); // 提供方必须在invoke()之前获取context信息
-            long start = System.currentTimeMillis(); // 记录起始时间戮
+            final RpcContext context = RpcContext.getContext(); // 提供方必须在invoke()之前获取context信息
+            final long start = System.currentTimeMillis(); // 记录起始时间戮
             getConcurrent(invoker, invocation).incrementAndGet(); // 并发计数
+            boolean isAsync = false;
             try {
                 Result result = invoker.invoke(invocation); // 让调用链往下执行
+                if (result instanceof AsyncRpcResult) {
+                    // 提供方异步执行，写出结果时再统计
+                    isAsync = true;
+                    ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                        public void onComplete(Result r) {
+                            try {
+                                collect(invoker, invocation, r, context, start, false);
+                            } finally {
+                                getConcurrent(invoker, invocation).decrementAndGet(); // 并发计数
+                            }
+                        }
+                    });
+                    return result;
+                }
                 collect(invoker, invocation, result, context, start, false);
                 return result;
             } catch (RpcException e) {
                 collect(invoker, invocation, null, context, start, true);
                 throw e;
             } finally {
-                getConcurrent(invoker, invocation).decrementAndGet(); // 并发计数
+                if (! isAsync) {
+                    getConcurrent(invoker, invocation).decrementAndGet(); // 并发计数
+                }
             }
         } else {
             return invoker.invoke(invocation);
@@ -0,0 +1,37 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting;
+
+import java.net.InetSocketAddress;
+
+/**
+ * 请求被服务端限流拒绝，没有执行，可以重试其它服务端。
+ * 
+ * @see com.alibaba.dubbo.remoting.exchange.Response#SERVICE_THROTTLED
+ */
+public class ThrottledException extends RemotingException {
+
+    private static final long serialVersionUID = -4125330215240567946L;
+
+    public ThrottledException(Channel channel, String message) {
+        super(channel, message);
+    }
+
+    public ThrottledException(InetSocketAddress localAddress, InetSocketAddress remoteAddress, String message) {
+        super(localAddress, remoteAddress, message);
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange;
+
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.RemotingException;
+
+/**
+ * 在IO线程中直接应答的请求数据。
+ * <p>
+ * 用于协议内置的、只读取本地状态的小请求。和心跳一样由HeartbeatHandler处理，
+ * 不派发到业务线程池，所以不会和业务请求争用线程，实现不能阻塞。
+ *
+ * @see com.alibaba.dubbo.remoting.exchange.support.header.HeartbeatHandler
+ */
+public interface InlineRequest {
+
+    /**
+     * reply.
+     *
+     * @param channel 收到请求的通道
+     * @return 响应结果
+     * @throws RemotingException
+     */
+    Object reply(Channel channel) throws RemotingException;
+
+}
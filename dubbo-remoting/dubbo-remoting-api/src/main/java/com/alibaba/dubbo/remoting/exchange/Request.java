@@ -30,6 +30,8 @@ public class Request {
     public static final String HEARTBEAT_EVENT = null;
     
     public static final String READONLY_EVENT = "R";
+
+    public static final String CODEC_FEATURES_EVENT_PREFIX = "F:";
     
     private static final AtomicLong INVOKE_ID = new AtomicLong(0);
 
@@ -72,6 +72,11 @@ public class Response {
      */
     public static final byte CLIENT_ERROR      = 90;
 
+    /**
+     * request rejected by the rate limit of the provider, the consumer can retry another provider.
+     */
+    public static final byte SERVICE_THROTTLED = 100;
+
     private long             mId               = 0;
 
     private String           mVersion;
@@ -251,7 +251,7 @@ public class ExchangeCodec extends TelnetCodec {
         if (req.isEvent()) {
             encodeEventData(channel, out, req.getData());
         } else {
-            encodeRequestData(channel, out, req.getData());
+            encodeRequestData(channel, out, req.getData(), header);
         }
         out.flushBuffer();
         bos.flush();
@@ -436,6 +436,14 @@ public class ExchangeCodec extends TelnetCodec {
         encodeHeartbeatData(out, data);
     }
 
+    /**
+     * 编码请求体。请求不使用header中的status字节，子类可以在header[3]中标记请求体的格式，
+     * header在请求体编码完成后才写入buffer。
+     */
+    protected void encodeRequestData(Channel channel, ObjectOutput out, Object data, byte[] header) throws IOException {
+        encodeRequestData(channel, out, data);
+    }
+
     protected void encodeRequestData(Channel channel, ObjectOutput out, Object data) throws IOException {
         encodeRequestData(out, data);
     }
@@ -16,6 +16,8 @@
 package com.alibaba.dubbo.remoting.exchange.support;
 
 import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -29,6 +31,7 @@ import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.ThrottledException;
 import com.alibaba.dubbo.remoting.TimeoutException;
 import com.alibaba.dubbo.remoting.exchange.Request;
 import com.alibaba.dubbo.remoting.exchange.Response;
@@ -170,6 +173,12 @@ public class DefaultFuture implements ResponseFuture {
             } catch (Exception e) {
                 logger.error("callback invoke error ,url:" + channel.getUrl(), e);
             }
+        } else if (res.getStatus() == Response.SERVICE_THROTTLED) {
+            try {
+                callbackCopy.caught(new ThrottledException(channel, res.getErrorMessage()));
+            } catch (Exception e) {
+                logger.error("callback invoke error ,url:" + channel.getUrl(), e);
+            }
         } else {
             try {
                 RuntimeException re = new RuntimeException(res.getErrorMessage());
@@ -191,18 +200,21 @@ public class DefaultFuture implements ResponseFuture {
         if (res.getStatus() == Response.CLIENT_TIMEOUT || res.getStatus() == Response.SERVER_TIMEOUT) {
             throw new TimeoutException(res.getStatus() == Response.SERVER_TIMEOUT, channel, res.getErrorMessage());
         }
+        if (res.getStatus() == Response.SERVICE_THROTTLED) {
+            throw new ThrottledException(channel, res.getErrorMessage());
+        }
         throw new RemotingException(channel, res.getErrorMessage());
     }
 
-    private long getId() {
+    public long getId() {
         return id;
     }
     
-    private Channel getChannel() {
+    public Channel getChannel() {
         return channel;
     }
     
-    private boolean isSent() {
+    public boolean isSent() {
         return sent > 0;
     }
 
@@ -210,18 +222,29 @@ public class DefaultFuture implements ResponseFuture {
         return request;
     }
 
-    private int getTimeout() {
+    public int getTimeout() {
         return timeout;
     }
 
-    private long getStartTimestamp() {
+    public long getStartTimestamp() {
         return start;
     }
 
+    public long getSentTimestamp() {
+        return sent;
+    }
+
     public static DefaultFuture getFuture(long id) {
         return FUTURES.get(id);
     }
 
+    /**
+     * 所有还未收到响应的请求，只读视图，遍历时不加锁
+     */
+    public static Collection<DefaultFuture> getFutures() {
+        return Collections.unmodifiableCollection(FUTURES.values());
+    }
+
     public static boolean hasFuture(Channel channel) {
         return CHANNELS.containsValue(channel);
     }
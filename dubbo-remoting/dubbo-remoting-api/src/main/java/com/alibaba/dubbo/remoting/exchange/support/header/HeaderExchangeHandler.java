@@ -27,10 +27,13 @@ import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.ChannelHandler;
 import com.alibaba.dubbo.remoting.ExecutionException;
 import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.ThrottledException;
 import com.alibaba.dubbo.remoting.exchange.ExchangeChannel;
 import com.alibaba.dubbo.remoting.exchange.ExchangeHandler;
 import com.alibaba.dubbo.remoting.exchange.Request;
 import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
 import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
 import com.alibaba.dubbo.remoting.transport.ChannelHandlerDelegate;
 
@@ -64,8 +67,30 @@ public class HeaderExchangeHandler implements ChannelHandlerDelegate {
         }
     }
 
-    Response handleRequest(ExchangeChannel channel, Request req) throws RemotingException {
-        Response res = new Response(req.getId(), req.getVersion());
+    private static void negotiateFeatures(Channel channel) {
+        String features = channel.getUrl().getParameter(Constants.CODEC_FEATURES_KEY);
+        if (features != null && features.length() > 0 && isClientSide(channel)) {
+            Request req = new Request();
+            req.setTwoWay(false);
+            req.setEvent(Request.CODEC_FEATURES_EVENT_PREFIX + features);
+            // 紧跟一个心跳探测，协商事件和心跳都在IO线程处理，心跳响应先于协商回复到达说明对端不支持协商
+            Request probe = new Request();
+            probe.setTwoWay(true);
+            probe.setEvent(Request.HEARTBEAT_EVENT);
+            try {
+                channel.send(req);
+                channel.send(probe);
+            } catch (RemotingException e) {
+                logger.warn("Failed to negotiate codec features " + features + " with " + channel.getRemoteAddress() + ", cause: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * @return 响应，处理器返回{@link ResponseFuture}时在其完成后写出响应，此时返回null
+     */
+    Response handleRequest(final ExchangeChannel channel, Request req) throws RemotingException {
+        final Response res = new Response(req.getId(), req.getVersion());
         if (req.isBroken()) {
             Object data = req.getData();
 
@@ -83,8 +108,29 @@ public class HeaderExchangeHandler implements ChannelHandlerDelegate {
         try {
             // handle data.
             Object result = handler.reply(channel, msg);
+            if (result instanceof ResponseFuture) {
+                // 异步处理，释放当前线程
+                ((ResponseFuture) result).setCallback(new ResponseCallback() {
+                    public void done(Object response) {
+                        res.setStatus(Response.OK);
+                        res.setResult(response);
+                        sendAsyncResponse(channel, res);
+                    }
+
+                    public void caught(Throwable exception) {
+                        res.setStatus(Response.SERVICE_ERROR);
+                        res.setErrorMessage(StringUtils.toString(exception));
+                        sendAsyncResponse(channel, res);
+                    }
+                });
+                return null;
+            }
             res.setStatus(Response.OK);
             res.setResult(result);
+        } catch (ThrottledException e) {
+            // 限流拒绝的请求没有执行，使用单独的状态以便消费方重试其它服务端
+            res.setStatus(Response.SERVICE_THROTTLED);
+            res.setErrorMessage(e.getMessage());
         } catch (Throwable e) {
             res.setStatus(Response.SERVICE_ERROR);
             res.setErrorMessage(StringUtils.toString(e));
@@ -92,6 +138,14 @@ public class HeaderExchangeHandler implements ChannelHandlerDelegate {
         return res;
     }
 
+    private static void sendAsyncResponse(Channel channel, Response response) {
+        try {
+            channel.send(response);
+        } catch (RemotingException e) {
+            logger.warn("Failed to send async response " + response + " to " + channel.getRemoteAddress() + ", cause: " + e.getMessage(), e);
+        }
+    }
+
     static void handleResponse(Channel channel, Response response) throws RemotingException {
         if (response != null && !response.isHeartbeat()) {
             DefaultFuture.received(channel, response);
@@ -103,6 +157,7 @@ public class HeaderExchangeHandler implements ChannelHandlerDelegate {
         channel.setAttribute(KEY_WRITE_TIMESTAMP, System.currentTimeMillis());
         ExchangeChannel exchangeChannel = HeaderExchangeChannel.getOrAddChannel(channel);
         try {
+            negotiateFeatures(channel);
             handler.connected(exchangeChannel);
         } finally {
             HeaderExchangeChannel.removeChannelIfDisconnected(channel);
@@ -149,7 +204,7 @@ public class HeaderExchangeHandler implements ChannelHandlerDelegate {
         }
     }
 
-    private static boolean isClientSide(Channel channel) {
+    static boolean isClientSide(Channel channel) {
         InetSocketAddress address = channel.getRemoteAddress();
         URL url = channel.getUrl();
         return url.getPort() == address.getPort() && 
@@ -172,7 +227,9 @@ public class HeaderExchangeHandler implements ChannelHandlerDelegate {
                     // 普通请求
                     if (request.isTwoWay()) {
                         Response response = handleRequest(exchangeChannel, request);
-                        channel.send(response);
+                        if (response != null) {
+                            channel.send(response);
+                        }
                     } else {
                         handler.received(exchangeChannel, request.getData());
                     }
@@ -16,15 +16,21 @@
 
 package com.alibaba.dubbo.remoting.exchange.support.header;
 
+import java.util.Collections;
+import java.util.Set;
+
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.StringUtils;
 import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.ChannelHandler;
 import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.InlineRequest;
 import com.alibaba.dubbo.remoting.exchange.Request;
 import com.alibaba.dubbo.remoting.exchange.Response;
 import com.alibaba.dubbo.remoting.transport.AbstractChannelHandlerDelegate;
+import com.alibaba.dubbo.remoting.transport.CodecSupport;
 
 /**
  * @author <a href="mailto:gang.lvg@alibaba-inc.com">kimi</a>
@@ -50,6 +56,7 @@ public class HeartbeatHandler extends AbstractChannelHandlerDelegate {
     public void disconnected(Channel channel) throws RemotingException {
         clearReadTimestamp(channel);
         clearWriteTimestamp(channel);
+        CodecSupport.releaseFeatures(channel);
         handler.disconnected(channel);
     }
 
@@ -77,7 +84,20 @@ public class HeartbeatHandler extends AbstractChannelHandlerDelegate {
             }
             return;
         }
+        if (isFeaturesEvent(message)) {
+            handleFeatures(channel, (String) ((Request) message).getData());
+            return;
+        }
+        if (isInlineRequest(message)) {
+            handleInlineRequest(channel, (Request) message);
+            return;
+        }
         if (isHeartbeatResponse(message)) {
+            // 协商事件之后的心跳响应先到，说明对端是不支持协商的老版本
+            if (channel.getAttribute(Constants.CHANNEL_ATTRIBUTE_CODEC_FEATURES_KEY) == null
+                    && HeaderExchangeHandler.isClientSide(channel)) {
+                CodecSupport.setFeatures(channel, Collections.<String>emptySet());
+            }
             if (logger.isDebugEnabled()) {
             	logger.debug(
                     new StringBuilder(32)
@@ -90,6 +110,37 @@ public class HeartbeatHandler extends AbstractChannelHandlerDelegate {
         handler.received(channel, message);
     }
 
+    /**
+     * 编码特性协商放在IO线程处理，保证和心跳探测的先后顺序：服务端取交集后回复，客户端收到回复后启用
+     */
+    private void handleFeatures(Channel channel, String data) throws RemotingException {
+        String remoteFeatures = data.substring(Request.CODEC_FEATURES_EVENT_PREFIX.length());
+        Set<String> features = CodecSupport.negotiateFeatures(channel.getUrl(), remoteFeatures);
+        if (! HeaderExchangeHandler.isClientSide(channel)) {
+            Request ack = new Request();
+            ack.setTwoWay(false);
+            ack.setEvent(Request.CODEC_FEATURES_EVENT_PREFIX + StringUtils.join(features, ","));
+            channel.send(ack);
+        }
+        CodecSupport.setFeatures(channel, features);
+    }
+
+    /**
+     * 协议内置的小请求在IO线程中直接应答，不占用业务线程
+     */
+    private void handleInlineRequest(Channel channel, Request req) throws RemotingException {
+        Response res = new Response(req.getId(), req.getVersion());
+        try {
+            res.setResult(((InlineRequest) req.getData()).reply(channel));
+        } catch (Throwable t) {
+            res.setStatus(Response.SERVICE_ERROR);
+            res.setErrorMessage(StringUtils.toString(t));
+        }
+        if (req.isTwoWay()) {
+            channel.send(res);
+        }
+    }
+
     private void setReadTimestamp(Channel channel) {
         channel.setAttribute(KEY_READ_TIMESTAMP, System.currentTimeMillis());
     }
@@ -110,6 +161,17 @@ public class HeartbeatHandler extends AbstractChannelHandlerDelegate {
         return message instanceof Request && ((Request) message).isHeartbeat();
     }
 
+    private boolean isFeaturesEvent(Object message) {
+        return message instanceof Request && ((Request) message).isEvent()
+                && ((Request) message).getData() instanceof String
+                && ((String) ((Request) message).getData()).startsWith(Request.CODEC_FEATURES_EVENT_PREFIX);
+    }
+
+    private boolean isInlineRequest(Object message) {
+        return message instanceof Request && ! ((Request) message).isBroken()
+                && ((Request) message).getData() instanceof InlineRequest;
+    }
+
     private boolean isHeartbeatResponse(Object message) {
         return message instanceof Response && ((Response)message).isHeartbeat();
     }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.status;
+
+import java.util.Collection;
+
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.status.Status;
+import com.alibaba.dubbo.common.status.StatusChecker;
+import com.alibaba.dubbo.remoting.transport.metrics.ChannelMetrics;
+import com.alibaba.dubbo.remoting.transport.metrics.EventLoopStallDetector;
+import com.alibaba.dubbo.remoting.transport.metrics.RemotingMetrics;
+
+/**
+ * TransportStatusChecker
+ * 
+ * 汇总各端点的传输层统计，IO线程正在卡顿时返回WARN。
+ */
+@Activate
+public class TransportStatusChecker implements StatusChecker {
+
+    public Status check() {
+        Collection<ChannelMetrics> endpoints = RemotingMetrics.getEndpointMetrics();
+        if (endpoints.isEmpty()) {
+            return new Status(Status.Level.UNKNOWN);
+        }
+        EventLoopStallDetector detector = EventLoopStallDetector.getInstance();
+        int stalling = detector.getStalling();
+        StringBuilder msg = new StringBuilder();
+        for (ChannelMetrics metrics : endpoints) {
+            if (msg.length() > 0) {
+                msg.append(";");
+            }
+            msg.append(metrics.toString());
+        }
+        msg.append(";stalls:").append(detector.getStallCount());
+        msg.append(", stalling:").append(stalling);
+        return new Status(stalling > 0 ? Status.Level.WARN : Status.Level.OK, msg.toString());
+    }
+
+}
@@ -15,7 +15,9 @@
  */
 package com.alibaba.dubbo.remoting.telnet.support.command;
 
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +32,9 @@ import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.telnet.TelnetHandler;
 import com.alibaba.dubbo.remoting.telnet.support.Help;
 import com.alibaba.dubbo.remoting.telnet.support.TelnetUtils;
+import com.alibaba.dubbo.remoting.transport.metrics.ChannelMetrics;
+import com.alibaba.dubbo.remoting.transport.metrics.EventLoopStallDetector;
+import com.alibaba.dubbo.remoting.transport.metrics.RemotingMetrics;
 
 /**
  * StatusTelnetHandler
@@ -37,7 +42,7 @@ import com.alibaba.dubbo.remoting.telnet.support.TelnetUtils;
  * @author william.liangf
  */
 @Activate
-@Help(parameter = "[-l]", summary = "Show status.", detail = "Show status.")
+@Help(parameter = "[-l|-m|-s]", summary = "Show status.", detail = "Show status. -l: status checkers, -m: transport metrics per channel, -s: recent io thread stalls.")
 public class StatusTelnetHandler implements TelnetHandler {
 
     private final ExtensionLoader<StatusChecker> extensionLoader = ExtensionLoader.getExtensionLoader(StatusChecker.class);
@@ -74,6 +79,10 @@ public class StatusTelnetHandler implements TelnetHandler {
             row.add(stat.getMessage());
             table.add(row);
             return TelnetUtils.toTable(header, table);
+        } else if (message.equals("-m")) {
+            return metrics();
+        } else if (message.equals("-s")) {
+            return stalls();
         } else if (message.length() > 0) {
             return "Unsupported parameter " + message + " for status.";
         }
@@ -96,4 +105,44 @@ public class StatusTelnetHandler implements TelnetHandler {
         return String.valueOf(stat.getLevel());
     }
 
+    private String metrics() {
+        String[] header = new String[] {"channel", "bytes in", "bytes out", "msgs in", "msgs out", "decode(us)", "encode(us)", "queue", "max queue", "flush(us)", "max flush(us)"};
+        List<List<String>> table = new ArrayList<List<String>>();
+        for (ChannelMetrics metrics : RemotingMetrics.getEndpointMetrics()) {
+            table.add(toRow("[" + metrics.getKey() + "]", metrics));
+        }
+        for (ChannelMetrics metrics : RemotingMetrics.getChannelMetrics()) {
+            table.add(toRow(metrics.getKey(), metrics));
+        }
+        return TelnetUtils.toTable(header, table);
+    }
+
+    private List<String> toRow(String name, ChannelMetrics metrics) {
+        List<String> row = new ArrayList<String>();
+        row.add(name);
+        row.add(String.valueOf(metrics.getBytesIn()));
+        row.add(String.valueOf(metrics.getBytesOut()));
+        row.add(String.valueOf(metrics.getMessagesIn()));
+        row.add(String.valueOf(metrics.getMessagesOut()));
+        row.add(String.valueOf(metrics.getAverageDecodeMicros()));
+        row.add(String.valueOf(metrics.getAverageEncodeMicros()));
+        row.add(String.valueOf(metrics.getPendingWrites()));
+        row.add(String.valueOf(metrics.getMaxPendingWrites()));
+        row.add(String.valueOf(metrics.getAverageFlushMicros()));
+        row.add(String.valueOf(metrics.getMaxFlushNanos() / 1000));
+        return row;
+    }
+
+    private String stalls() {
+        EventLoopStallDetector detector = EventLoopStallDetector.getInstance();
+        StringBuilder buf = new StringBuilder();
+        buf.append("threshold: ").append(detector.getThreshold()).append("ms, stalls: ").append(detector.getStallCount())
+            .append(", stalling: ").append(detector.getStalling());
+        for (EventLoopStallDetector.Stall stall : detector.getStalls()) {
+            buf.append("\r\n\r\n").append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(stall.getStart())))
+                .append(" ").append(stall.toString());
+        }
+        return buf.toString();
+    }
+
 }
\ No newline at end of file
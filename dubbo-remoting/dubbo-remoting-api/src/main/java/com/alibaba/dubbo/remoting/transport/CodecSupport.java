@@ -16,9 +16,13 @@
 
 package com.alibaba.dubbo.remoting.transport;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
@@ -26,6 +30,8 @@ import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.serialize.Serialization;
+import com.alibaba.dubbo.common.utils.StringUtils;
+import com.alibaba.dubbo.remoting.Channel;
 
 /**
  * @author <a href="mailto:gang.lvg@alibaba-inc.com">kimi</a>
@@ -34,6 +40,11 @@ public class CodecSupport {
 
     private static final Logger logger = LoggerFactory.getLogger(CodecSupport.class);
 
+    private static final String FEATURES_LATCH_KEY = "channel.codec.features.latch";
+
+    // 客户端拿到的通道可能是不同的包装对象，属性最终落在同一个底层通道上，所以用全局锁
+    private static final Object FEATURES_LOCK = new Object();
+
     private CodecSupport() {
     }
 
@@ -72,4 +83,80 @@ public class CodecSupport {
         return result;
     }
 
+    /**
+     * 通道上是否已经和对端协商启用了某个编码特性，未协商的通道只使用兼容格式
+     */
+    public static boolean isFeatureEnabled(Channel channel, String feature) {
+        Object features = channel.getAttribute(Constants.CHANNEL_ATTRIBUTE_CODEC_FEATURES_KEY);
+        return features instanceof Set && ((Set<?>) features).contains(feature);
+    }
+
+    /**
+     * 等待通道完成特性协商，协商在连接建立后异步进行，新连接上依赖某个特性的调用需要先等待。
+     * 老版本对端不回复协商事件，客户端在协商事件后紧跟一个心跳探测，收到心跳响应即认为对端不支持，不会等满超时。
+     *
+     * @return 是否在超时前完成协商
+     */
+    public static boolean awaitFeatures(Channel channel, long timeout) {
+        if (channel.getAttribute(Constants.CHANNEL_ATTRIBUTE_CODEC_FEATURES_KEY) != null) {
+            return true;
+        }
+        if (! channel.isConnected() || StringUtils.isEmpty(channel.getUrl().getParameter(Constants.CODEC_FEATURES_KEY))) {
+            return false;
+        }
+        try {
+            getFeaturesLatch(channel).await(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return channel.getAttribute(Constants.CHANNEL_ATTRIBUTE_CODEC_FEATURES_KEY) != null;
+    }
+
+    /**
+     * 记录协商结果并唤醒等待协商的调用
+     */
+    public static void setFeatures(Channel channel, Set<String> features) {
+        channel.setAttribute(Constants.CHANNEL_ATTRIBUTE_CODEC_FEATURES_KEY, features);
+        getFeaturesLatch(channel).countDown();
+    }
+
+    /**
+     * 通道断开时唤醒等待协商的调用，协商结果保持为空
+     */
+    public static void releaseFeatures(Channel channel) {
+        getFeaturesLatch(channel).countDown();
+    }
+
+    private static CountDownLatch getFeaturesLatch(Channel channel) {
+        synchronized (FEATURES_LOCK) {
+            CountDownLatch latch = (CountDownLatch) channel.getAttribute(FEATURES_LATCH_KEY);
+            if (latch == null) {
+                latch = new CountDownLatch(1);
+                channel.setAttribute(FEATURES_LATCH_KEY, latch);
+            }
+            return latch;
+        }
+    }
+
+    /**
+     * 本端支持的特性（url中的codec.features）和对端声明的特性取交集
+     */
+    public static Set<String> negotiateFeatures(URL url, String remoteFeatures) {
+        String localFeatures = url.getParameter(Constants.CODEC_FEATURES_KEY);
+        if (StringUtils.isEmpty(localFeatures) || StringUtils.isEmpty(remoteFeatures)) {
+            return Collections.emptySet();
+        }
+        Set<String> local = new HashSet<String>();
+        for (String feature : Constants.COMMA_SPLIT_PATTERN.split(localFeatures)) {
+            local.add(feature);
+        }
+        Set<String> features = new HashSet<String>();
+        for (String feature : Constants.COMMA_SPLIT_PATTERN.split(remoteFeatures)) {
+            if (local.contains(feature)) {
+                features.add(feature);
+            }
+        }
+        return Collections.unmodifiableSet(features);
+    }
+
 }
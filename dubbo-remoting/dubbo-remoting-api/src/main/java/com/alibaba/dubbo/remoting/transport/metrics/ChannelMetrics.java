@@ -0,0 +1,210 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ChannelMetrics
+ * 
+ * 单个通道（或一个端点的汇总）的传输层统计：收发字节数、消息数、编解码耗时、写队列深度以及send到flush的耗时。
+ * 所有计数器都是无锁的，在IO线程上累加。
+ */
+public class ChannelMetrics {
+
+    private final String     key;
+
+    private final ChannelMetrics parent;
+
+    private final AtomicLong bytesIn         = new AtomicLong();
+
+    private final AtomicLong bytesOut        = new AtomicLong();
+
+    private final AtomicLong messagesIn      = new AtomicLong();
+
+    private final AtomicLong messagesOut     = new AtomicLong();
+
+    private final AtomicLong decodeNanos     = new AtomicLong();
+
+    private final AtomicLong encodeNanos     = new AtomicLong();
+
+    private final AtomicLong pendingWrites   = new AtomicLong();
+
+    private final AtomicLong maxPendingWrites = new AtomicLong();
+
+    private final AtomicLong flushes         = new AtomicLong();
+
+    private final AtomicLong flushNanos      = new AtomicLong();
+
+    private final AtomicLong maxFlushNanos   = new AtomicLong();
+
+    private final long       created         = System.currentTimeMillis();
+
+    public ChannelMetrics(String key, ChannelMetrics parent) {
+        this.key = key;
+        this.parent = parent;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public ChannelMetrics getParent() {
+        return parent;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * 读到了一段网络数据
+     */
+    public void onRead(int bytes) {
+        bytesIn.addAndGet(bytes);
+        if (parent != null) {
+            parent.onRead(bytes);
+        }
+    }
+
+    /**
+     * 解码出若干条消息
+     */
+    public void onDecoded(int messages, long nanos) {
+        messagesIn.addAndGet(messages);
+        decodeNanos.addAndGet(nanos);
+        if (parent != null) {
+            parent.onDecoded(messages, nanos);
+        }
+    }
+
+    /**
+     * 编码了一条消息
+     */
+    public void onEncoded(int bytes, long nanos) {
+        messagesOut.incrementAndGet();
+        bytesOut.addAndGet(bytes);
+        encodeNanos.addAndGet(nanos);
+        if (parent != null) {
+            parent.onEncoded(bytes, nanos);
+        }
+    }
+
+    /**
+     * 消息进入写队列，返回入队时间，flush完成时回传给{@link #onFlushed(long)}
+     */
+    public long onWriteQueued() {
+        long depth = pendingWrites.incrementAndGet();
+        updateMax(maxPendingWrites, depth);
+        if (parent != null) {
+            parent.onWriteQueued();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * 消息已经写到socket（或者写失败），queued为{@link #onWriteQueued()}的返回值
+     */
+    public void onFlushed(long queued) {
+        long nanos = System.nanoTime() - queued;
+        pendingWrites.decrementAndGet();
+        flushes.incrementAndGet();
+        flushNanos.addAndGet(nanos);
+        updateMax(maxFlushNanos, nanos);
+        if (parent != null) {
+            parent.onFlushed(queued);
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    public long getMessagesIn() {
+        return messagesIn.get();
+    }
+
+    public long getMessagesOut() {
+        return messagesOut.get();
+    }
+
+    public long getDecodeNanos() {
+        return decodeNanos.get();
+    }
+
+    public long getEncodeNanos() {
+        return encodeNanos.get();
+    }
+
+    public long getPendingWrites() {
+        return pendingWrites.get();
+    }
+
+    public long getMaxPendingWrites() {
+        return maxPendingWrites.get();
+    }
+
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    public long getFlushNanos() {
+        return flushNanos.get();
+    }
+
+    public long getMaxFlushNanos() {
+        return maxFlushNanos.get();
+    }
+
+    public long getAverageDecodeMicros() {
+        long messages = messagesIn.get();
+        return messages == 0 ? 0 : decodeNanos.get() / messages / 1000;
+    }
+
+    public long getAverageEncodeMicros() {
+        long messages = messagesOut.get();
+        return messages == 0 ? 0 : encodeNanos.get() / messages / 1000;
+    }
+
+    public long getAverageFlushMicros() {
+        long count = flushes.get();
+        return count == 0 ? 0 : flushNanos.get() / count / 1000;
+    }
+
+    @Override
+    public String toString() {
+        return key + " in:" + bytesIn.get() + "B/" + messagesIn.get() + "msg"
+                + ", out:" + bytesOut.get() + "B/" + messagesOut.get() + "msg"
+                + ", decode:" + getAverageDecodeMicros() + "us"
+                + ", encode:" + getAverageEncodeMicros() + "us"
+                + ", queue:" + pendingWrites.get() + "(max " + maxPendingWrites.get() + ")"
+                + ", flush:" + getAverageFlushMicros() + "us(max " + maxFlushNanos.get() / 1000 + "us)";
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.ConfigUtils;
+
+/**
+ * EventLoopStallDetector
+ * 
+ * IO线程卡顿检测。IO线程进入handler前调用{@link #enter()}，退出后调用{@link #exit(Object)}，
+ * 后台守护线程周期性扫描，发现某个handler占用IO线程超过阈值（dubbo.remoting.stall.threshold，毫秒）时，
+ * 抓取该线程的堆栈并记录下来，每次卡顿只记录一次。
+ */
+public class EventLoopStallDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventLoopStallDetector.class);
+
+    private static final EventLoopStallDetector INSTANCE = new EventLoopStallDetector();
+
+    private final Map<Thread, Entry> running = new ConcurrentHashMap<Thread, Entry>();
+
+    private final LinkedList<Stall> stalls = new LinkedList<Stall>();
+
+    private final AtomicLong stallCount = new AtomicLong();
+
+    private final long threshold;
+
+    private final int history;
+
+    private volatile Thread watcher;
+
+    public static EventLoopStallDetector getInstance() {
+        return INSTANCE;
+    }
+
+    EventLoopStallDetector() {
+        this(Long.parseLong(ConfigUtils.getProperty(Constants.STALL_THRESHOLD_KEY, String.valueOf(Constants.DEFAULT_STALL_THRESHOLD))),
+             Integer.parseInt(ConfigUtils.getProperty(Constants.STALL_HISTORY_KEY, String.valueOf(Constants.DEFAULT_STALL_HISTORY))));
+    }
+
+    EventLoopStallDetector(long threshold, int history) {
+        this.threshold = threshold;
+        this.history = history;
+    }
+
+    /**
+     * 当前线程开始执行handler
+     * 
+     * @return 传给{@link #exit(Object)}的标记，阈值小于等于0时检测关闭，返回null
+     */
+    public Object enter() {
+        if (threshold <= 0) {
+            return null;
+        }
+        if (watcher == null) {
+            startWatcher();
+        }
+        Thread thread = Thread.currentThread();
+        Entry entry = new Entry(thread);
+        running.put(thread, entry);
+        return entry;
+    }
+
+    public void exit(Object token) {
+        if (token != null) {
+            running.remove(((Entry) token).thread);
+        }
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    public long getStallCount() {
+        return stallCount.get();
+    }
+
+    /**
+     * 当前正在卡顿中的IO线程数
+     */
+    public int getStalling() {
+        int count = 0;
+        long now = System.currentTimeMillis();
+        for (Entry entry : running.values()) {
+            if (now - entry.start >= threshold) {
+                count ++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 最近的卡顿记录，按发生时间倒序
+     */
+    public List<Stall> getStalls() {
+        synchronized (stalls) {
+            return new ArrayList<Stall>(stalls);
+        }
+    }
+
+    void check() {
+        long now = System.currentTimeMillis();
+        for (Entry entry : running.values()) {
+            if (! entry.reported && now - entry.start >= threshold) {
+                entry.reported = true;
+                StackTraceElement[] stack = entry.thread.getStackTrace();
+                // 抓堆栈期间handler已经返回，不是卡顿
+                if (running.get(entry.thread) != entry) {
+                    continue;
+                }
+                Stall stall = new Stall(entry.thread.getName(), entry.start, now - entry.start, stack);
+                stallCount.incrementAndGet();
+                synchronized (stalls) {
+                    stalls.addFirst(stall);
+                    while (stalls.size() > history) {
+                        stalls.removeLast();
+                    }
+                }
+                if (logger.isWarnEnabled()) {
+                    logger.warn(stall.toString());
+                }
+            }
+        }
+    }
+
+    private synchronized void startWatcher() {
+        if (watcher != null) {
+            return;
+        }
+        final long interval = Math.max(threshold / 2, 10);
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                while (true) {
+                    try {
+                        Thread.sleep(interval);
+                        check();
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (Throwable t) {
+                        logger.warn("Unexpected error occur at stall check, cause: " + t.getMessage(), t);
+                    }
+                }
+            }
+        }, "DubboStallDetector");
+        thread.setDaemon(true);
+        thread.start();
+        watcher = thread;
+    }
+
+    private static class Entry {
+
+        private final Thread thread;
+
+        private final long start = System.currentTimeMillis();
+
+        private volatile boolean reported;
+
+        private Entry(Thread thread) {
+            this.thread = thread;
+        }
+
+    }
+
+    public static class Stall {
+
+        private final String thread;
+
+        private final long start;
+
+        private final long elapsed;
+
+        private final StackTraceElement[] stackTrace;
+
+        public Stall(String thread, long start, long elapsed, StackTraceElement[] stackTrace) {
+            this.thread = thread;
+            this.start = start;
+            this.elapsed = elapsed;
+            this.stackTrace = stackTrace;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        public StackTraceElement[] getStackTrace() {
+            return stackTrace;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buf = new StringBuilder();
+            buf.append("IO thread ").append(thread).append(" blocked ").append(elapsed).append("ms by handler");
+            for (StackTraceElement element : stackTrace) {
+                buf.append("\r\n\tat ").append(element);
+            }
+            return buf.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.metrics;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.NetUtils;
+
+/**
+ * RemotingMetrics
+ * 
+ * 传输层统计的注册表。每个通道一份{@link ChannelMetrics}，同时累加到所属端点（服务端绑定地址或客户端目标地址）的汇总统计上。
+ * 通道断开后移除通道统计，端点汇总保留。
+ */
+public class RemotingMetrics {
+
+    private static final ConcurrentMap<String, ChannelMetrics> ENDPOINTS = new ConcurrentHashMap<String, ChannelMetrics>();
+
+    private static final ConcurrentMap<String, ChannelMetrics> CHANNELS = new ConcurrentHashMap<String, ChannelMetrics>();
+
+    private RemotingMetrics() {
+    }
+
+    public static ChannelMetrics getEndpointMetrics(URL url) {
+        String key = url.getAddress();
+        ChannelMetrics metrics = ENDPOINTS.get(key);
+        if (metrics == null) {
+            ENDPOINTS.putIfAbsent(key, new ChannelMetrics(key, null));
+            metrics = ENDPOINTS.get(key);
+        }
+        return metrics;
+    }
+
+    public static ChannelMetrics getChannelMetrics(URL url, InetSocketAddress localAddress, InetSocketAddress remoteAddress) {
+        String key = getChannelKey(localAddress, remoteAddress);
+        ChannelMetrics metrics = CHANNELS.get(key);
+        if (metrics == null) {
+            CHANNELS.putIfAbsent(key, new ChannelMetrics(key, getEndpointMetrics(url)));
+            metrics = CHANNELS.get(key);
+        }
+        return metrics;
+    }
+
+    public static void removeChannelMetrics(ChannelMetrics metrics) {
+        if (metrics != null) {
+            CHANNELS.remove(metrics.getKey(), metrics);
+        }
+    }
+
+    public static Collection<ChannelMetrics> getEndpointMetrics() {
+        return Collections.unmodifiableCollection(ENDPOINTS.values());
+    }
+
+    public static Collection<ChannelMetrics> getChannelMetrics() {
+        return Collections.unmodifiableCollection(CHANNELS.values());
+    }
+
+    private static String getChannelKey(InetSocketAddress localAddress, InetSocketAddress remoteAddress) {
+        return NetUtils.toAddressString(localAddress) + "->" + NetUtils.toAddressString(remoteAddress);
+    }
+
+}
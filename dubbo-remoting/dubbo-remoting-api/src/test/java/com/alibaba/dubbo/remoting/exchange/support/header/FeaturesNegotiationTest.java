@@ -0,0 +1,129 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.support.header;
+
+import java.net.InetSocketAddress;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.transport.ChannelHandlerAdapter;
+import com.alibaba.dubbo.remoting.transport.CodecSupport;
+
+public class FeaturesNegotiationTest {
+
+    private static final URL FEATURES_URL = URL.valueOf("dubbo://127.0.0.1:20880?" + Constants.CODEC_FEATURES_KEY + "=stream,batch");
+
+    private final HeartbeatHandler handler = new HeartbeatHandler(new ChannelHandlerAdapter());
+
+    @Test
+    public void testFeaturesAck() throws Exception {
+        Channel channel = newClientChannel();
+        handler.received(channel, featuresEvent("stream"));
+        Assert.assertTrue(CodecSupport.awaitFeatures(channel, 1000));
+        Assert.assertTrue(CodecSupport.isFeatureEnabled(channel, "stream"));
+        Assert.assertFalse(CodecSupport.isFeatureEnabled(channel, "batch"));
+    }
+
+    @Test
+    public void testOldPeerFailFast() throws Exception {
+        final Channel channel = newClientChannel();
+        // 老版本对端只回复心跳探测
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                    Response res = new Response(1);
+                    res.setEvent(Response.HEARTBEAT_EVENT);
+                    handler.received(channel, res);
+                } catch (Exception e) {
+                }
+            }
+        }.start();
+        long start = System.currentTimeMillis();
+        Assert.assertTrue(CodecSupport.awaitFeatures(channel, 10000));
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        Assert.assertFalse(CodecSupport.isFeatureEnabled(channel, "stream"));
+    }
+
+    @Test
+    public void testDisconnectReleasesWaiter() throws Exception {
+        final Channel channel = newClientChannel();
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                    handler.disconnected(channel);
+                } catch (Exception e) {
+                }
+            }
+        }.start();
+        long start = System.currentTimeMillis();
+        Assert.assertFalse(CodecSupport.awaitFeatures(channel, 10000));
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void testServerAck() throws Exception {
+        MockChannel channel = new MockChannel() {
+            @Override
+            public URL getUrl() {
+                return FEATURES_URL;
+            }
+
+            @Override
+            public InetSocketAddress getRemoteAddress() {
+                return new InetSocketAddress("127.0.0.1", 30000);
+            }
+        };
+        handler.received(channel, featuresEvent("stream,dictionary"));
+        Assert.assertTrue(CodecSupport.isFeatureEnabled(channel, "stream"));
+        Assert.assertEquals(1, channel.getSentObjects().size());
+        Assert.assertEquals(Request.CODEC_FEATURES_EVENT_PREFIX + "stream", ((Request) channel.getSentObjects().get(0)).getData());
+    }
+
+    private static Channel newClientChannel() {
+        return new MockChannel() {
+            @Override
+            public URL getUrl() {
+                return FEATURES_URL;
+            }
+
+            @Override
+            public InetSocketAddress getRemoteAddress() {
+                return new InetSocketAddress("127.0.0.1", 20880);
+            }
+
+            @Override
+            public boolean isConnected() {
+                return true;
+            }
+        };
+    }
+
+    private static Request featuresEvent(String features) {
+        Request req = new Request();
+        req.setTwoWay(false);
+        req.setEvent(Request.CODEC_FEATURES_EVENT_PREFIX + features);
+        return req;
+    }
+
+}
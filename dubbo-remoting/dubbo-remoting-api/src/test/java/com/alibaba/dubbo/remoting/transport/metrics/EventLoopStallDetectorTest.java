@@ -0,0 +1,84 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.metrics;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+
+public class EventLoopStallDetectorTest {
+
+    @Test
+    public void testStallCaptured() throws Exception {
+        EventLoopStallDetector detector = new EventLoopStallDetector(50, 2);
+        Object token = detector.enter();
+        Thread.sleep(80);
+        detector.check();
+        Assert.assertEquals(1, detector.getStalling());
+        detector.check();
+        detector.exit(token);
+        Assert.assertEquals(0, detector.getStalling());
+        Assert.assertEquals(1, detector.getStallCount());
+        List<EventLoopStallDetector.Stall> stalls = detector.getStalls();
+        Assert.assertEquals(1, stalls.size());
+        Assert.assertEquals(Thread.currentThread().getName(), stalls.get(0).getThread());
+        Assert.assertTrue(stalls.get(0).getStackTrace().length > 0);
+    }
+
+    @Test
+    public void testFastHandlerIgnored() throws Exception {
+        EventLoopStallDetector detector = new EventLoopStallDetector(1000, 2);
+        Object token = detector.enter();
+        detector.check();
+        detector.exit(token);
+        Assert.assertEquals(0, detector.getStallCount());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        EventLoopStallDetector detector = new EventLoopStallDetector(0, 2);
+        Assert.assertNull(detector.enter());
+        detector.exit(null);
+    }
+
+    @Test
+    public void testChannelMetricsAggregated() throws Exception {
+        URL url = URL.valueOf("dubbo://127.0.0.1:20990");
+        ChannelMetrics metrics = RemotingMetrics.getChannelMetrics(url,
+                new InetSocketAddress("127.0.0.1", 20990), new InetSocketAddress("127.0.0.1", 56789));
+        ChannelMetrics endpoint = RemotingMetrics.getEndpointMetrics(url);
+        Assert.assertSame(endpoint, metrics.getParent());
+        metrics.onRead(100);
+        metrics.onDecoded(2, 1000);
+        metrics.onEncoded(50, 1000);
+        long queued = metrics.onWriteQueued();
+        Assert.assertEquals(1, metrics.getPendingWrites());
+        metrics.onFlushed(queued);
+        Assert.assertEquals(0, metrics.getPendingWrites());
+        Assert.assertEquals(100, endpoint.getBytesIn());
+        Assert.assertEquals(2, endpoint.getMessagesIn());
+        Assert.assertEquals(50, endpoint.getBytesOut());
+        Assert.assertEquals(1, endpoint.getFlushes());
+        RemotingMetrics.removeChannelMetrics(metrics);
+        Assert.assertFalse(RemotingMetrics.getChannelMetrics().contains(metrics));
+        Assert.assertEquals(100, RemotingMetrics.getEndpointMetrics(url).getBytesIn());
+    }
+
+}
@@ -21,6 +21,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
@@ -29,6 +30,8 @@ import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.remoting.ChannelHandler;
 import com.alibaba.dubbo.remoting.RemotingException;
 import com.alibaba.dubbo.remoting.transport.AbstractChannel;
+import com.alibaba.dubbo.remoting.transport.metrics.ChannelMetrics;
+import com.alibaba.dubbo.remoting.transport.metrics.RemotingMetrics;
 
 /**
  * NettyChannel.
@@ -46,6 +49,8 @@ final class NettyChannel extends AbstractChannel {
 
     private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
 
+    private volatile ChannelMetrics metrics;
+
     private NettyChannel(org.jboss.netty.channel.Channel channel, URL url, ChannelHandler handler){
         super(url, handler);
         if (channel == null) {
@@ -77,6 +82,27 @@ final class NettyChannel extends AbstractChannel {
         }
     }
 
+    static void removeMetrics(org.jboss.netty.channel.Channel ch) {
+        NettyChannel ret = channelMap.get(ch);
+        if (ret != null) {
+            RemotingMetrics.removeChannelMetrics(ret.metrics);
+        }
+    }
+
+    ChannelMetrics getMetrics() {
+        ChannelMetrics m = metrics;
+        if (m == null) {
+            InetSocketAddress localAddress = getLocalAddress();
+            InetSocketAddress remoteAddress = getRemoteAddress();
+            if (localAddress == null || remoteAddress == null) {
+                return null;
+            }
+            m = RemotingMetrics.getChannelMetrics(getUrl(), localAddress, remoteAddress);
+            metrics = m;
+        }
+        return m;
+    }
+
     public InetSocketAddress getLocalAddress() {
         return (InetSocketAddress) channel.getLocalAddress();
     }
@@ -95,7 +121,17 @@ final class NettyChannel extends AbstractChannel {
         boolean success = true;
         int timeout = 0;
         try {
+            final ChannelMetrics m = getMetrics();
+            final long queued = m == null ? 0 : m.onWriteQueued();
             ChannelFuture future = channel.write(message);
+            if (m != null) {
+                // 写到socket后回调，统计写队列深度和send到flush的耗时
+                future.addListener(new ChannelFutureListener() {
+                    public void operationComplete(ChannelFuture f) {
+                        m.onFlushed(queued);
+                    }
+                });
+            }
             if (sent) {
                 timeout = getUrl().getPositiveParameter(Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
                 success = future.await(timeout);
@@ -125,6 +161,11 @@ final class NettyChannel extends AbstractChannel {
         } catch (Exception e) {
             logger.warn(e.getMessage(), e);
         }
+        try {
+            RemotingMetrics.removeChannelMetrics(metrics);
+        } catch (Exception e) {
+            logger.warn(e.getMessage(), e);
+        }
         try {
             attributes.clear();
         } catch (Exception e) {
@@ -33,6 +33,8 @@ import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.remoting.Codec2;
 import com.alibaba.dubbo.remoting.buffer.DynamicChannelBuffer;
+import com.alibaba.dubbo.remoting.exchange.support.MultiMessage;
+import com.alibaba.dubbo.remoting.transport.metrics.ChannelMetrics;
 
 /**
  * NettyCodecAdapter.
@@ -78,7 +80,12 @@ final class NettyCodecAdapter {
                 com.alibaba.dubbo.remoting.buffer.ChannelBuffers.dynamicBuffer(1024);
             NettyChannel channel = NettyChannel.getOrAddChannel(ch, url, handler);
             try {
+                long start = System.nanoTime();
             	codec.encode(channel, buffer, msg);
+                ChannelMetrics metrics = channel.getMetrics();
+                if (metrics != null) {
+                    metrics.onEncoded(buffer.readableBytes(), System.nanoTime() - start);
+                }
             } finally {
                 NettyChannel.removeChannelIfDisconnected(ch);
             }
@@ -123,6 +130,10 @@ final class NettyCodecAdapter {
             }
 
             NettyChannel channel = NettyChannel.getOrAddChannel(ctx.getChannel(), url, handler);
+            ChannelMetrics metrics = channel.getMetrics();
+            if (metrics != null) {
+                metrics.onRead(readable);
+            }
             Object msg;
             int saveReaderIndex;
 
@@ -130,12 +141,16 @@ final class NettyCodecAdapter {
                 // decode object.
                 do {
                     saveReaderIndex = message.readerIndex();
+                    long start = System.nanoTime();
                     try {
                         msg = codec.decode(channel, message);
                     } catch (IOException e) {
                         buffer = com.alibaba.dubbo.remoting.buffer.ChannelBuffers.EMPTY_BUFFER;
                         throw e;
                     }
+                    if (metrics != null && msg != null && msg != Codec2.DecodeResult.NEED_MORE_INPUT) {
+                        metrics.onDecoded(msg instanceof MultiMessage ? ((MultiMessage) msg).size() : 1, System.nanoTime() - start);
+                    }
                     if (msg == Codec2.DecodeResult.NEED_MORE_INPUT) {
                         message.readerIndex(saveReaderIndex);
                         break;
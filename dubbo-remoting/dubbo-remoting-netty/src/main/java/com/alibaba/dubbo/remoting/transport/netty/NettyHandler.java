@@ -30,6 +30,7 @@ import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.utils.NetUtils;
 import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.transport.metrics.EventLoopStallDetector;
 
 /**
  * NettyHandler
@@ -63,12 +64,14 @@ public class NettyHandler extends SimpleChannelHandler {
     @Override
     public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
         NettyChannel channel = NettyChannel.getOrAddChannel(ctx.getChannel(), url, handler);
+        Object stall = EventLoopStallDetector.getInstance().enter();
         try {
             if (channel != null) {
                 channels.put(NetUtils.toAddressString((InetSocketAddress) ctx.getChannel().getRemoteAddress()), channel);
             }
             handler.connected(channel);
         } finally {
+            EventLoopStallDetector.getInstance().exit(stall);
             NettyChannel.removeChannelIfDisconnected(ctx.getChannel());
         }
     }
@@ -76,10 +79,13 @@ public class NettyHandler extends SimpleChannelHandler {
     @Override
     public void channelDisconnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
         NettyChannel channel = NettyChannel.getOrAddChannel(ctx.getChannel(), url, handler);
+        Object stall = EventLoopStallDetector.getInstance().enter();
         try {
             channels.remove(NetUtils.toAddressString((InetSocketAddress) ctx.getChannel().getRemoteAddress()));
+            NettyChannel.removeMetrics(ctx.getChannel());
             handler.disconnected(channel);
         } finally {
+            EventLoopStallDetector.getInstance().exit(stall);
             NettyChannel.removeChannelIfDisconnected(ctx.getChannel());
         }
     }
@@ -87,9 +93,11 @@ public class NettyHandler extends SimpleChannelHandler {
     @Override
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
         NettyChannel channel = NettyChannel.getOrAddChannel(ctx.getChannel(), url, handler);
+        Object stall = EventLoopStallDetector.getInstance().enter();
         try {
             handler.received(channel, e.getMessage());
         } finally {
+            EventLoopStallDetector.getInstance().exit(stall);
             NettyChannel.removeChannelIfDisconnected(ctx.getChannel());
         }
     }
@@ -108,9 +116,11 @@ public class NettyHandler extends SimpleChannelHandler {
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
         NettyChannel channel = NettyChannel.getOrAddChannel(ctx.getChannel(), url, handler);
+        Object stall = EventLoopStallDetector.getInstance().enter();
         try {
             handler.caught(channel, e.getCause());
         } finally {
+            EventLoopStallDetector.getInstance().exit(stall);
             NettyChannel.removeChannelIfDisconnected(ctx.getChannel());
         }
     }
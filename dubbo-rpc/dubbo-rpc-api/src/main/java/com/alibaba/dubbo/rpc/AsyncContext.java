@@ -0,0 +1,63 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+/**
+ * 服务提供方的异步上下文。
+ * <p>
+ * 服务方法中调用{@link RpcContext#startAsync()}后，方法的返回值被忽略，业务线程立即释放，
+ * 之后在任意线程中通过{@link #write(Object)}或{@link #writeException(Throwable)}写出结果：
+ * <pre>
+ * public String sayHello(final String name) {
+ *     final AsyncContext asyncContext = RpcContext.getContext().startAsync();
+ *     executor.execute(new Runnable() {
+ *         public void run() {
+ *             asyncContext.write("Hello " + name);
+ *         }
+ *     });
+ *     return null;
+ * }
+ * </pre>
+ *
+ * @see AsyncRpcResult
+ */
+public class AsyncContext {
+
+    private final AsyncRpcResult result = new AsyncRpcResult();
+
+    /**
+     * 写出返回值，已经写出过时返回false
+     */
+    public boolean write(Object value) {
+        return result.complete(new RpcResult(value));
+    }
+
+    /**
+     * 写出异常，已经写出过时返回false
+     */
+    public boolean writeException(Throwable exception) {
+        return result.complete(new RpcResult(exception));
+    }
+
+    public boolean isWritten() {
+        return result.isDone();
+    }
+
+    public AsyncRpcResult getResult() {
+        return result;
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+
+/**
+ * 异步完成的调用结果。
+ * <p>
+ * 服务方法通过{@link AsyncContext}开启异步后，调用链返回的是这个对象，结果在{@link #complete(Result)}时才确定。
+ * Filter需要在完成时处理的逻辑通过{@link #addListener(Listener)}注册，
+ * 直接访问结果的方法会阻塞到完成为止，以兼容不支持异步响应的协议。
+ *
+ * @see AsyncContext
+ */
+public class AsyncRpcResult implements Result {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncRpcResult.class);
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private final List<Listener> listeners = new ArrayList<Listener>();
+
+    private volatile Result result;
+
+    /**
+     * 结果完成时的回调，在调用{@link AsyncRpcResult#complete(Result)}的线程中执行
+     */
+    public interface Listener {
+
+        void onComplete(Result result);
+
+    }
+
+    public boolean isDone() {
+        return result != null;
+    }
+
+    /**
+     * 完成结果并按注册顺序通知监听器，重复完成时返回false
+     */
+    public boolean complete(Result result) {
+        if (result == null) {
+            throw new IllegalArgumentException("result == null");
+        }
+        List<Listener> notify;
+        synchronized (listeners) {
+            if (this.result != null) {
+                return false;
+            }
+            this.result = result;
+            notify = new ArrayList<Listener>(listeners);
+            listeners.clear();
+        }
+        done.countDown();
+        for (Listener listener : notify) {
+            fire(listener, result);
+        }
+        return true;
+    }
+
+    /**
+     * 注册完成监听器，已完成时在当前线程立即执行
+     */
+    public void addListener(Listener listener) {
+        synchronized (listeners) {
+            if (result == null) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        fire(listener, result);
+    }
+
+    private static void fire(Listener listener, Result result) {
+        try {
+            listener.onComplete(result);
+        } catch (Throwable t) {
+            logger.warn("Failed to notify async result listener " + listener + ", cause: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * 阻塞等待结果
+     */
+    public Result await() {
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException("Interrupted while waiting for async result", e);
+        }
+        return result;
+    }
+
+    /**
+     * 阻塞等待结果，超时返回null
+     */
+    public Result await(long timeout, TimeUnit unit) throws InterruptedException {
+        done.await(timeout, unit);
+        return result;
+    }
+
+    public Object getValue() {
+        return await().getValue();
+    }
+
+    public Throwable getException() {
+        return await().getException();
+    }
+
+    public boolean hasException() {
+        return await().hasException();
+    }
+
+    public Object recreate() throws Throwable {
+        return await().recreate();
+    }
+
+    @Deprecated
+    public Object getResult() {
+        return getValue();
+    }
+
+    public Map<String, String> getAttachments() {
+        return await().getAttachments();
+    }
+
+    public String getAttachment(String key) {
+        return await().getAttachment(key);
+    }
+
+    public String getAttachment(String key, String defaultValue) {
+        return await().getAttachment(key, defaultValue);
+    }
+
+    @Override
+    public String toString() {
+        Result r = result;
+        return r == null ? "AsyncRpcResult [pending]" : "AsyncRpcResult [" + r + "]";
+    }
+
+}
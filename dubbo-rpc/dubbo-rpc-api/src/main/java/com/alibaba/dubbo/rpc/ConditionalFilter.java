@@ -0,0 +1,37 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+import com.alibaba.dubbo.common.URL;
+
+/**
+ * 只对部分方法生效的Filter。
+ * <p>
+ * 构建调用链时按方法询问，不生效的方法的调用链中直接去掉该Filter，调用时不再逐个判断URL参数。
+ * 对未知的方法（如泛化调用）仍使用完整的调用链，所以 {@link #invoke(Invoker, Invocation)} 中的判断仍需保留。
+ */
+public interface ConditionalFilter extends Filter {
+
+    /**
+     * 该Filter对指定的方法是否需要执行。
+     *
+     * @param url 调用链所属Invoker的URL
+     * @param method 方法名
+     * @return 返回false时，该方法的调用链中不包含此Filter
+     */
+    boolean isEnabled(URL url, String method);
+
+}
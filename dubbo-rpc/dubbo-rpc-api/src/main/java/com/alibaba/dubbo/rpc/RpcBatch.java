@@ -0,0 +1,119 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量调用。
+ * <p>
+ * 通过{@link RpcContext#startBatch()}开启后，当前线程发起的调用不会立即发送，而是按目标连接暂存，
+ * 调用方法返回空值，每个调用的结果通过{@link RpcContext#getFuture()}获取；
+ * {@link RpcContext#flushBatch()}时同一连接上的调用合并为一个请求发送。
+ * 协议不支持批量时调用按原方式执行。
+ */
+public class RpcBatch {
+
+    /**
+     * 把同一目标上暂存的调用发送出去，并在结果返回时完成对应的Future
+     */
+    public interface Sender {
+
+        void send(List<Invocation> invocations, List<RpcFuture<Object>> futures);
+
+    }
+
+    private static class Group {
+
+        final Sender sender;
+
+        final List<Invocation> invocations = new ArrayList<Invocation>();
+
+        final List<RpcFuture<Object>> futures = new ArrayList<RpcFuture<Object>>();
+
+        Group(Sender sender) {
+            this.sender = sender;
+        }
+    }
+
+    private final Map<Object, Group> groups = new LinkedHashMap<Object, Group>();
+
+    private final List<RpcFuture<Object>> futures = new ArrayList<RpcFuture<Object>>();
+
+    /**
+     * 暂存一个调用
+     *
+     * @param target 合并发送的目标，相同目标的调用合并到一个请求
+     * @param sender 目标上第一个调用的sender负责发送整组调用
+     * @param invocation 调用
+     * @param future 该调用结果的Future，由sender完成
+     */
+    public void add(Object target, Sender sender, Invocation invocation, RpcFuture<Object> future) {
+        Group group = groups.get(target);
+        if (group == null) {
+            group = new Group(sender);
+            groups.put(target, group);
+        }
+        group.invocations.add(invocation);
+        group.futures.add(future);
+        futures.add(future);
+    }
+
+    /**
+     * 调用结果在暂存的调用之外确定时（如集群重试），用新的Future替换汇总结果中的原Future
+     *
+     * @param future 暂存调用时的Future
+     * @param replacement 实际的调用结果
+     */
+    public void replace(RpcFuture<Object> future, RpcFuture<Object> replacement) {
+        for (int i = 0; i < futures.size(); i ++) {
+            if (futures.get(i) == future) {
+                futures.set(i, replacement);
+                return;
+            }
+        }
+    }
+
+    public int size() {
+        return futures.size();
+    }
+
+    /**
+     * 发送所有暂存的调用
+     *
+     * @return 按调用顺序排列的全部结果
+     */
+    public RpcFuture<List<Object>> flush() {
+        List<RpcFuture<Object>> all = new ArrayList<RpcFuture<Object>>(futures);
+        List<Group> pending = new ArrayList<Group>(groups.values());
+        groups.clear();
+        futures.clear();
+        for (Group group : pending) {
+            try {
+                group.sender.send(group.invocations, group.futures);
+            } catch (Throwable t) {
+                for (RpcFuture<Object> future : group.futures) {
+                    future.completeExceptionally(t);
+                }
+            }
+        }
+        return RpcFuture.allOf(all);
+    }
+
+}
@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -30,6 +31,7 @@ import java.util.concurrent.TimeoutException;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.threadlocal.InternalThreadLocal;
 import com.alibaba.dubbo.common.utils.NetUtils;
 
 /**
@@ -45,7 +47,7 @@ import com.alibaba.dubbo.common.utils.NetUtils;
  */
 public class RpcContext {
 	
-	private static final ThreadLocal<RpcContext> LOCAL = new ThreadLocal<RpcContext>() {
+	private static final InternalThreadLocal<RpcContext> LOCAL = new InternalThreadLocal<RpcContext>() {
 		@Override
 		protected RpcContext initialValue() {
 			return new RpcContext();
@@ -70,8 +72,29 @@ public class RpcContext {
 	    LOCAL.remove();
 	}
 
+	/**
+	 * reset context.
+	 * 
+	 * 清空当前线程的context并留给下一次调用复用，之前通过{@link #getContext()}拿到的引用会看到下一次调用的内容，
+	 * 调用结束后仍持有context引用的（如异步回调、保存context的业务代码）应使用{@link #removeContext()}.
+	 * 服务提供方只在配置了context.reuse=true时复用.
+	 * 
+	 * @see com.alibaba.dubbo.rpc.filter.ContextFilter
+	 */
+	public static void resetContext() {
+	    LOCAL.get().reset();
+	}
+
     private Future<?> future;
 
+    private AsyncContext asyncContext;
+
+    private RpcBatch batch;
+
+    private RpcStream stream;
+
+    private long deadline;
+
     private List<URL> urls;
 
     private URL url;
@@ -88,6 +111,11 @@ public class RpcContext {
 
     private final Map<String, String> attachments = new HashMap<String, String>();
 
+    // 借用的调用方attachments，写入或取出整个Map前不复制
+    private Map<String, String> borrowedAttachments;
+
+    private Set<String> hiddenAttachmentKeys;
+
     private final Map<String, Object> values = new HashMap<String, Object>();
     
 	@Deprecated
@@ -102,6 +130,45 @@ public class RpcContext {
 	protected RpcContext() {
 	}
 
+	private void reset() {
+	    future = null;
+	    asyncContext = null;
+	    batch = null;
+	    stream = null;
+	    deadline = 0;
+	    urls = null;
+	    url = null;
+	    methodName = null;
+	    parameterTypes = null;
+	    arguments = null;
+	    localAddress = null;
+	    remoteAddress = null;
+	    attachments.clear();
+	    borrowedAttachments = null;
+	    hiddenAttachmentKeys = null;
+	    values.clear();
+	    invokers = null;
+	    invoker = null;
+	    invocation = null;
+	}
+
+	// 第一次写入时把借用的attachments复制为自己的
+	private Map<String, String> ownAttachments() {
+	    Map<String, String> borrowed = borrowedAttachments;
+	    if (borrowed != null) {
+	        Set<String> hidden = hiddenAttachmentKeys;
+	        borrowedAttachments = null;
+	        hiddenAttachmentKeys = null;
+	        attachments.clear();
+	        for (Map.Entry<String, String> entry : borrowed.entrySet()) {
+	            if (hidden == null || ! hidden.contains(entry.getKey())) {
+	                attachments.put(entry.getKey(), entry.getValue());
+	            }
+	        }
+	    }
+	    return attachments;
+	}
+
     /**
      * is provider side.
      * 
@@ -170,6 +237,90 @@ public class RpcContext {
         this.future = future;
     }
 
+    /**
+     * 在服务方法中开启异步，方法返回后业务线程立即释放，结果通过返回的AsyncContext写出.
+     * 
+     * @return async context
+     */
+    public AsyncContext startAsync() {
+        if (asyncContext == null) {
+            asyncContext = new AsyncContext();
+        }
+        return asyncContext;
+    }
+
+    public boolean isAsyncStarted() {
+        return asyncContext != null;
+    }
+
+    public AsyncContext getAsyncContext() {
+        return asyncContext;
+    }
+
+    public void setAsyncContext(AsyncContext asyncContext) {
+        this.asyncContext = asyncContext;
+    }
+
+    /**
+     * get deadline.
+     * 
+     * @return 当前调用的截止时间（本地时钟的毫秒数），0表示没有截止时间，级联调用的超时时间不会超过它
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * get stream.
+     * 
+     * @return 最近一次流式调用的控制句柄
+     */
+    public RpcStream getStream() {
+        return stream;
+    }
+
+    public void setStream(RpcStream stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * 开启批量调用，之后当前线程的调用暂存到flushBatch时合并发送.
+     * 
+     * @return batch
+     */
+    public RpcBatch startBatch() {
+        if (batch == null) {
+            batch = new RpcBatch();
+        }
+        return batch;
+    }
+
+    public boolean isBatchStarted() {
+        return batch != null;
+    }
+
+    public RpcBatch getBatch() {
+        return batch;
+    }
+
+    /**
+     * 结束批量调用并发送暂存的调用.
+     * 
+     * @return 按调用顺序排列的全部结果
+     */
+    public RpcFuture<List<Object>> flushBatch() {
+        RpcBatch current = batch;
+        batch = null;
+        if (current == null) {
+            return RpcFuture.completedFuture((List<Object>) new ArrayList<Object>());
+        }
+        return current.flush();
+    }
+
     public List<URL> getUrls() {
         return urls == null && url != null ? (List<URL>) Arrays.asList(url) : urls;
     }
@@ -218,6 +369,10 @@ public class RpcContext {
      * @return arguments.
      */
     public Object[] getArguments() {
+        // 提供者端的方法参数可能延迟解码，第一次访问时才从Invocation中获取
+        if (arguments == null && invocation != null) {
+            arguments = invocation.getArguments();
+        }
         return arguments;
     }
 
@@ -381,6 +536,11 @@ public class RpcContext {
      * @return attachment
      */
     public String getAttachment(String key) {
+        Map<String, String> borrowed = borrowedAttachments;
+        if (borrowed != null) {
+            Set<String> hidden = hiddenAttachmentKeys;
+            return hidden != null && hidden.contains(key) ? null : borrowed.get(key);
+        }
         return attachments.get(key);
     }
 
@@ -393,9 +553,9 @@ public class RpcContext {
      */
     public RpcContext setAttachment(String key, String value) {
         if (value == null) {
-            attachments.remove(key);
+            ownAttachments().remove(key);
         } else {
-            attachments.put(key, value);
+            ownAttachments().put(key, value);
         }
         return this;
     }
@@ -407,7 +567,7 @@ public class RpcContext {
      * @return context
      */
     public RpcContext removeAttachment(String key) {
-        attachments.remove(key);
+        ownAttachments().remove(key);
         return this;
     }
 
@@ -417,7 +577,7 @@ public class RpcContext {
      * @return attachments
      */
     public Map<String, String> getAttachments() {
-        return attachments;
+        return ownAttachments();
     }
 
     /**
@@ -427,14 +587,37 @@ public class RpcContext {
      * @return context
      */
     public RpcContext setAttachments(Map<String, String> attachment) {
+        this.borrowedAttachments = null;
+        this.hiddenAttachmentKeys = null;
         this.attachments.clear();
         if (attachment != null && attachment.size() > 0) {
             this.attachments.putAll(attachment);
         }
         return this;
     }
+
+    /**
+     * 借用调用方的attachments，只读访问时不复制，第一次修改或getAttachments()时才复制.
+     * 
+     * @param attachment 调用期间不能被修改
+     * @param hiddenKeys 不对业务可见的key，可为null
+     * @return context
+     */
+    public RpcContext borrowAttachments(Map<String, String> attachment, Set<String> hiddenKeys) {
+        this.attachments.clear();
+        if (attachment != null && attachment.size() > 0) {
+            this.borrowedAttachments = attachment;
+            this.hiddenAttachmentKeys = hiddenKeys;
+        } else {
+            this.borrowedAttachments = null;
+            this.hiddenAttachmentKeys = null;
+        }
+        return this;
+    }
     
     public void clearAttachments() {
+        this.borrowedAttachments = null;
+        this.hiddenAttachmentKeys = null;
         this.attachments.clear();
     }
 
@@ -509,7 +692,7 @@ public class RpcContext {
         if (invocation != null) {
             setMethodName(invocation.getMethodName());
             setParameterTypes(invocation.getParameterTypes());
-            setArguments(invocation.getArguments());
+            setArguments(null);
         }
         return this;
     }
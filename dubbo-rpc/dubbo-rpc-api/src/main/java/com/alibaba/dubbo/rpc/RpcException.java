@@ -41,6 +41,8 @@ public final class RpcException extends RuntimeException {
     
     public static final int SERIALIZATION_EXCEPTION = 5;
     
+    public static final int THROTTLED_EXCEPTION = 6;
+    
     private int code; // RpcException不能有子类，异常类型用ErrorCode表示，以便保持兼容。
 
     public RpcException() {
@@ -103,6 +105,10 @@ public final class RpcException extends RuntimeException {
         return code == NETWORK_EXCEPTION;
     }
 
+    public boolean isThrottled() {
+        return code == THROTTLED_EXCEPTION;
+    }
+
     public boolean isSerialization() {
         return code == SERIALIZATION_EXCEPTION;
     }
@@ -0,0 +1,261 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+
+/**
+ * 可以注册完成监听器的Future。
+ * <p>
+ * 服务接口方法声明返回<code>RpcFuture&lt;T&gt;</code>时，消费方不阻塞调用线程，直接返回该Future，
+ * 提供方可以返回一个稍后完成的RpcFuture，业务线程立即释放。
+ * 监听器在指定的Executor中执行，Executor为null时在完成Future的线程中直接执行，
+ * 多个调用的组合使用{@link #allOf(RpcFuture...)}，无需为每个调用占用一个线程。
+ *
+ * @param <V> 结果类型
+ */
+public class RpcFuture<V> implements Future<V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RpcFuture.class);
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private final List<Object[]> listeners = new ArrayList<Object[]>();
+
+    private final Executor defaultExecutor;
+
+    private volatile boolean completed;
+
+    private V value;
+
+    private Throwable exception;
+
+    /**
+     * 完成监听器
+     */
+    public interface Listener<V> {
+
+        void onSuccess(V value);
+
+        void onFailure(Throwable exception);
+
+    }
+
+    private static class SharedExecutorHolder {
+
+        static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new NamedThreadFactory("DubboFutureListener", true));
+
+    }
+
+    /**
+     * 消费方配置future.executor=shared时执行监听器的共享线程池
+     */
+    public static Executor sharedExecutor() {
+        return SharedExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * 监听器默认在完成Future的线程中执行
+     */
+    public RpcFuture() {
+        this(null);
+    }
+
+    /**
+     * @param defaultExecutor 未指定Executor的监听器的执行者，null表示在完成Future的线程中执行
+     */
+    public RpcFuture(Executor defaultExecutor) {
+        this.defaultExecutor = defaultExecutor;
+    }
+
+    /**
+     * 未指定Executor的监听器的执行者，null表示在完成Future的线程中执行
+     */
+    public Executor getDefaultExecutor() {
+        return defaultExecutor;
+    }
+
+    public static <V> RpcFuture<V> completedFuture(V value) {
+        RpcFuture<V> future = new RpcFuture<V>();
+        future.complete(value);
+        return future;
+    }
+
+    public boolean complete(V value) {
+        return doComplete(value, null);
+    }
+
+    public boolean completeExceptionally(Throwable exception) {
+        if (exception == null) {
+            throw new IllegalArgumentException("exception == null");
+        }
+        return doComplete(null, exception);
+    }
+
+    private boolean doComplete(V value, Throwable exception) {
+        List<Object[]> notify;
+        synchronized (listeners) {
+            if (completed) {
+                return false;
+            }
+            this.value = value;
+            this.exception = exception;
+            completed = true;
+            notify = new ArrayList<Object[]>(listeners);
+            listeners.clear();
+        }
+        done.countDown();
+        for (Object[] listener : notify) {
+            fire(listener);
+        }
+        return true;
+    }
+
+    public void addListener(Listener<? super V> listener) {
+        addListener(listener, defaultExecutor);
+    }
+
+    /**
+     * @param executor 执行监听器的Executor，null表示在完成Future的线程中执行，已完成时在当前线程中执行
+     */
+    public void addListener(Listener<? super V> listener, Executor executor) {
+        Object[] entry = new Object[] {listener, executor};
+        synchronized (listeners) {
+            if (! completed) {
+                listeners.add(entry);
+                return;
+            }
+        }
+        fire(entry);
+    }
+
+    private void fire(Object[] entry) {
+        @SuppressWarnings("unchecked")
+        final Listener<? super V> listener = (Listener<? super V>) entry[0];
+        Executor executor = (Executor) entry[1];
+        if (executor == null) {
+            notifyListener(listener);
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    notifyListener(listener);
+                }
+            });
+        } catch (Throwable t) {
+            // 线程池拒绝时在当前线程执行，监听器不能丢失
+            logger.warn("Failed to execute future listener in " + executor + ", run it in current thread, cause: " + t.getMessage(), t);
+            notifyListener(listener);
+        }
+    }
+
+    private void notifyListener(Listener<? super V> listener) {
+        try {
+            if (exception == null) {
+                listener.onSuccess(value);
+            } else {
+                listener.onFailure(exception);
+            }
+        } catch (Throwable t) {
+            logger.warn("Failed to notify future listener " + listener + ", cause: " + t.getMessage(), t);
+        }
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return completeExceptionally(new CancellationException());
+    }
+
+    public boolean isCancelled() {
+        return completed && exception instanceof CancellationException;
+    }
+
+    public boolean isDone() {
+        return completed;
+    }
+
+    public V get() throws InterruptedException, ExecutionException {
+        done.await();
+        return report();
+    }
+
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (! done.await(timeout, unit)) {
+            throw new TimeoutException("Waiting for rpc future timeout in " + unit.toMillis(timeout) + "ms");
+        }
+        return report();
+    }
+
+    private V report() throws ExecutionException {
+        if (exception instanceof CancellationException) {
+            throw (CancellationException) exception;
+        }
+        if (exception != null) {
+            throw new ExecutionException(exception);
+        }
+        return value;
+    }
+
+    /**
+     * 全部完成时按顺序得到结果，任意一个失败时以该异常失败
+     */
+    public static RpcFuture<List<Object>> allOf(RpcFuture<?>... futures) {
+        return allOf(Arrays.asList(futures));
+    }
+
+    public static RpcFuture<List<Object>> allOf(List<? extends RpcFuture<?>> futures) {
+        final RpcFuture<List<Object>> all = new RpcFuture<List<Object>>();
+        final Object[] values = new Object[futures.size()];
+        if (values.length == 0) {
+            all.complete(new ArrayList<Object>(0));
+            return all;
+        }
+        final AtomicInteger remaining = new AtomicInteger(values.length);
+        for (int i = 0; i < values.length; i++) {
+            final int index = i;
+            futures.get(i).addListener(new Listener<Object>() {
+                public void onSuccess(Object value) {
+                    values[index] = value;
+                    if (remaining.decrementAndGet() == 0) {
+                        all.complete(Arrays.asList(values));
+                    }
+                }
+
+                public void onFailure(Throwable exception) {
+                    all.completeExceptionally(exception);
+                }
+            }, null);
+        }
+        return all;
+    }
+
+}
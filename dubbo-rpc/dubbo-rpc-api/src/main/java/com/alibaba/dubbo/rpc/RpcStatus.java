@@ -21,9 +21,14 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.LatencyHistogram;
+import com.alibaba.dubbo.common.utils.StripedCounter;
 
 /**
  * URL statistics. (API, Cached, ThreadSafe)
+ * <p>
+ * 方法的统计挂在所属服务的统计下，调用方取得一次方法统计后在其上开始和结束计数，
+ * 服务的统计随之更新；相同标识的Invoker共享同一份统计，按引用计数，最后一个Invoker销毁时整个服务的统计被移除。
  * 
  * @see com.alibaba.dubbo.rpc.filter.ActiveLimitFilter
  * @see com.alibaba.dubbo.rpc.filter.ExecuteLimitFilter
@@ -34,8 +39,6 @@ public class RpcStatus {
 
     private static final ConcurrentMap<String, RpcStatus> SERVICE_STATISTICS = new ConcurrentHashMap<String, RpcStatus>();
 
-    private static final ConcurrentMap<String, ConcurrentMap<String, RpcStatus>> METHOD_STATISTICS = new ConcurrentHashMap<String, ConcurrentMap<String, RpcStatus>>();
-
     /**
      * 
      * @param url
@@ -45,13 +48,14 @@ public class RpcStatus {
         String uri = url.toIdentityString();
         RpcStatus status = SERVICE_STATISTICS.get(uri);
         if (status == null) {
-            SERVICE_STATISTICS.putIfAbsent(uri, new RpcStatus());
+            SERVICE_STATISTICS.putIfAbsent(uri, new RpcStatus(null));
             status = SERVICE_STATISTICS.get(uri);
         }
         return status;
     }
     
     /**
+     * 移除服务及其所有方法的统计
      * 
      * @param url
      */
@@ -60,6 +64,32 @@ public class RpcStatus {
         SERVICE_STATISTICS.remove(uri);
     }
     
+    /**
+     * Invoker创建时登记对服务统计的引用，注册中心刷新后新旧Invoker并存或多个引用指向同一提供者时共享统计
+     * 
+     * @param url
+     */
+    public static void retainStatus(URL url) {
+        synchronized (SERVICE_STATISTICS) {
+            getStatus(url).references ++;
+        }
+    }
+
+    /**
+     * Invoker销毁时释放引用，没有存活的Invoker时才移除服务的统计
+     * 
+     * @param url
+     */
+    public static void releaseStatus(URL url) {
+        String uri = url.toIdentityString();
+        synchronized (SERVICE_STATISTICS) {
+            RpcStatus status = SERVICE_STATISTICS.get(uri);
+            if (status != null && -- status.references <= 0) {
+                SERVICE_STATISTICS.remove(uri);
+            }
+        }
+    }
+    
     /**
      * 
      * @param url
@@ -67,18 +97,20 @@ public class RpcStatus {
      * @return status
      */
     public static RpcStatus getStatus(URL url, String methodName) {
-        String uri = url.toIdentityString();
-        ConcurrentMap<String, RpcStatus> map = METHOD_STATISTICS.get(uri);
-        if (map == null) {
-            METHOD_STATISTICS.putIfAbsent(uri, new ConcurrentHashMap<String, RpcStatus>());
-            map = METHOD_STATISTICS.get(uri);
-        }
-        RpcStatus status = map.get(methodName);
-        if (status == null) {
-            map.putIfAbsent(methodName, new RpcStatus());
-            status = map.get(methodName);
-        }
-        return status;
+        return getStatus(url).getMethodStatus(methodName);
+    }
+
+    /**
+     * 只查询已有的方法统计，不存在时返回null。
+     * 所属Invoker可能已经销毁时（如负载均衡遍历的旧列表）用它读取，getStatus会重新创建出没有引用、不再被移除的统计
+     * 
+     * @param url
+     * @param methodName
+     * @return status or null
+     */
+    public static RpcStatus peekStatus(URL url, String methodName) {
+        RpcStatus status = SERVICE_STATISTICS.get(url.toIdentityString());
+        return status == null ? null : status.methods.get(methodName);
     }
 
     /**
@@ -87,9 +119,9 @@ public class RpcStatus {
      */
     public static void removeStatus(URL url, String methodName) {
         String uri = url.toIdentityString();
-        ConcurrentMap<String, RpcStatus> map = METHOD_STATISTICS.get(uri);
-        if (map != null) {
-            map.remove(methodName);
+        RpcStatus status = SERVICE_STATISTICS.get(uri);
+        if (status != null) {
+            status.methods.remove(methodName);
         }
     }
 
@@ -98,12 +130,7 @@ public class RpcStatus {
      * @param url
      */
     public static void beginCount(URL url, String methodName) {
-        beginCount(getStatus(url));
-        beginCount(getStatus(url, methodName));
-    }
-    
-    private static void beginCount(RpcStatus status) {
-        status.active.incrementAndGet();
+        getStatus(url, methodName).beginCount();
     }
 
     /**
@@ -113,49 +140,100 @@ public class RpcStatus {
      * @param succeeded
      */
     public static void endCount(URL url, String methodName, long elapsed, boolean succeeded) {
-        endCount(getStatus(url), elapsed, succeeded);
-        endCount(getStatus(url, methodName), elapsed, succeeded);
+        getStatus(url, methodName).endCount(elapsed, succeeded);
     }
     
-    private static void endCount(RpcStatus status, long elapsed, boolean succeeded) {
-        status.active.decrementAndGet();
-        status.total.incrementAndGet();
-        status.totalElapsed.addAndGet(elapsed);
-        if (status.maxElapsed.get() < elapsed) {
-            status.maxElapsed.set(elapsed);
-        }
-        if (succeeded) {
-            if (status.succeededMaxElapsed.get() < elapsed) {
-                status.succeededMaxElapsed.set(elapsed);
-            }
-        } else {
-            status.failed.incrementAndGet();
-            status.failedElapsed.addAndGet(elapsed);
-            if (status.failedMaxElapsed.get() < elapsed) {
-                status.failedMaxElapsed.set(elapsed);
-            }
+    private static void updateMax(AtomicLong max, long elapsed) {
+        long current;
+        while ((current = max.get()) < elapsed && ! max.compareAndSet(current, elapsed)) {
         }
     }
 
     private final ConcurrentMap<String, Object> values = new ConcurrentHashMap<String, Object>();
 
+    // 所属服务的统计，服务的统计本身为null
+    private final RpcStatus parent;
+
+    // 引用服务统计的存活Invoker数，由SERVICE_STATISTICS的锁保护
+    private int references;
+
+    private final ConcurrentMap<String, RpcStatus> methods = new ConcurrentHashMap<String, RpcStatus>();
+
+    // 限流判断需要准确的瞬时值，活跃数仍使用AtomicInteger
     private final AtomicInteger active = new AtomicInteger();
 
-    private final AtomicLong total = new AtomicLong();
+    private final StripedCounter total = new StripedCounter();
 
-    private final AtomicInteger failed = new AtomicInteger();
+    private final StripedCounter failed = new StripedCounter();
 
-    private final AtomicLong totalElapsed = new AtomicLong();
+    private final StripedCounter totalElapsed = new StripedCounter();
 
-    private final AtomicLong failedElapsed = new AtomicLong();
+    private final StripedCounter failedElapsed = new StripedCounter();
 
     private final AtomicLong maxElapsed = new AtomicLong();
 
     private final AtomicLong failedMaxElapsed = new AtomicLong();
 
     private final AtomicLong succeededMaxElapsed = new AtomicLong();
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
     
-    private RpcStatus() {}
+    private RpcStatus(RpcStatus parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * get method status.
+     * 
+     * @param methodName
+     * @return method status
+     */
+    public RpcStatus getMethodStatus(String methodName) {
+        RpcStatus status = methods.get(methodName);
+        if (status == null) {
+            methods.putIfAbsent(methodName, new RpcStatus(this));
+            status = methods.get(methodName);
+        }
+        return status;
+    }
+
+    /**
+     * 开始一次调用，同时计入所属服务
+     */
+    public void beginCount() {
+        active.incrementAndGet();
+        if (parent != null) {
+            parent.active.incrementAndGet();
+        }
+    }
+
+    /**
+     * 结束一次调用，必须和beginCount在同一个统计对象上成对调用
+     * 
+     * @param elapsed
+     * @param succeeded
+     */
+    public void endCount(long elapsed, boolean succeeded) {
+        count(elapsed, succeeded);
+        histogram.record(elapsed);
+        if (parent != null) {
+            parent.count(elapsed, succeeded);
+        }
+    }
+
+    private void count(long elapsed, boolean succeeded) {
+        active.decrementAndGet();
+        total.increment();
+        totalElapsed.add(elapsed);
+        updateMax(maxElapsed, elapsed);
+        if (succeeded) {
+            updateMax(succeededMaxElapsed, elapsed);
+        } else {
+            failed.increment();
+            failedElapsed.add(elapsed);
+            updateMax(failedMaxElapsed, elapsed);
+        }
+    }
 
     /**
      * set value.
@@ -192,7 +270,7 @@ public class RpcStatus {
      * @return total
      */
     public long getTotal() {
-        return total.longValue();
+        return total.sum();
     }
     
     /**
@@ -201,7 +279,7 @@ public class RpcStatus {
      * @return total elapsed
      */
     public long getTotalElapsed() {
-        return totalElapsed.get();
+        return totalElapsed.sum();
     }
 
     /**
@@ -232,7 +310,7 @@ public class RpcStatus {
      * @return failed
      */
     public int getFailed() {
-        return failed.get();
+        return failed.intValue();
     }
 
     /**
@@ -241,7 +319,7 @@ public class RpcStatus {
      * @return failed elapsed
      */
     public long getFailedElapsed() {
-        return failedElapsed.get();
+        return failedElapsed.sum();
     }
 
     /**
@@ -306,6 +384,33 @@ public class RpcStatus {
         return succeededMaxElapsed.get();
     }
 
+    /**
+     * get elapsed percentile, a service status merges the histograms of its methods.
+     * 
+     * @param percentile such as 0.99
+     * @return elapsed percentile
+     */
+    public long getPercentileElapsed(double percentile) {
+        return getHistogram().getPercentile(percentile);
+    }
+
+    /**
+     * get elapsed histogram.
+     * 
+     * @return elapsed histogram
+     */
+    public LatencyHistogram getHistogram() {
+        if (methods.isEmpty()) {
+            return histogram;
+        }
+        LatencyHistogram merged = new LatencyHistogram();
+        merged.merge(histogram);
+        for (RpcStatus status : methods.values()) {
+            merged.merge(status.histogram);
+        }
+        return merged;
+    }
+
     /**
      * Calculate average TPS (Transaction per second).
      *
@@ -0,0 +1,33 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+/**
+ * 流式调用的控制句柄，消费方在调用后通过{@link RpcContext#getStream()}获得，
+ * 提供方在方法执行时通过{@link RpcContext#getStream()}获得，传给提供方的StreamObserver也实现了该接口。
+ */
+public interface RpcStream {
+
+    long getId();
+
+    /**
+     * 取消流，通知对端停止发送，本端未结束的接收者收到onError
+     */
+    void cancel();
+
+    boolean isCancelled();
+
+}
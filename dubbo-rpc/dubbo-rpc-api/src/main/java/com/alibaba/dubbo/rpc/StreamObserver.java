@@ -0,0 +1,37 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+/**
+ * 流式调用中消息的接收者。
+ * <p>
+ * 服务端流式方法的最后一个参数为StreamObserver，提供方通过它逐个发送结果：
+ * <code>void list(Query query, StreamObserver&lt;Item&gt; responses)</code>；
+ * 双向流式方法同时返回一个StreamObserver用于接收消费方发送的消息：
+ * <code>StreamObserver&lt;Request&gt; chat(StreamObserver&lt;Reply&gt; replies)</code>。
+ * 同一个流上的消息按发送顺序依次到达，不会并发调用。
+ *
+ * @param <T> 消息类型
+ */
+public interface StreamObserver<T> {
+
+    void onNext(T value);
+
+    void onError(Throwable t);
+
+    void onCompleted();
+
+}
@@ -16,12 +16,9 @@
 package com.alibaba.dubbo.rpc.filter;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
+import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
@@ -30,11 +27,11 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.Activate;
 import com.alibaba.dubbo.common.json.JSON;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
-import com.alibaba.dubbo.common.utils.ConcurrentHashSet;
 import com.alibaba.dubbo.common.utils.ConfigUtils;
 import com.alibaba.dubbo.common.utils.NamedThreadFactory;
 import com.alibaba.dubbo.rpc.Filter;
@@ -43,6 +40,7 @@ import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.filter.accesslog.AccessLogWriter;
 
 /**
  * 记录Service的Access Log。
@@ -56,6 +54,8 @@ import com.alibaba.dubbo.rpc.RpcException;
  *    &lt;appender-ref ref="foo" /&gt;
  * &lt;/logger&gt;
  * </pre></code>
+ * 配置为文件路径时，日志先放入有界的环形队列，由单个后台线程批量写入文件，按天和 <code>accesslog.max.size</code> 字节数归档；
+ * 队列容量由 <code>accesslog.buffer</code> 指定，队列满时丢弃并计数；<code>accesslog.sample=N</code> 表示每 N 次调用只记录一次。
  * 
  * @author ding.lid
  */
@@ -66,63 +66,30 @@ public class AccessLogFilter implements Filter {
 
     private static final String  ACCESS_LOG_KEY   = "dubbo.accesslog";
     
-    private static final String  FILE_DATE_FORMAT   = "yyyyMMdd";
-
     private static final String  MESSAGE_DATE_FORMAT   = "yyyy-MM-dd HH:mm:ss";
 
-    private static final int LOG_MAX_BUFFER = 5000;
-
-    private static final long LOG_OUTPUT_INTERVAL = 5000;
+    private static final long LOG_OUTPUT_INTERVAL = 100;
 
-    private final ConcurrentMap<String, Set<String>> logQueue = new ConcurrentHashMap<String, Set<String>>();
+    private final ConcurrentMap<String, AccessLogWriter> logWriters = new ConcurrentHashMap<String, AccessLogWriter>();
 
-    private final ScheduledExecutorService logScheduled = Executors.newScheduledThreadPool(2, new NamedThreadFactory("Dubbo-Access-Log", true));
+    private final ScheduledExecutorService logScheduled = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Dubbo-Access-Log", true));
 
     private volatile ScheduledFuture<?> logFuture = null;
 
+    private final ThreadLocal<Random> sampleRandom = new ThreadLocal<Random>() {
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
     private class LogTask implements Runnable {
         public void run() {
-            try {
-                if (logQueue != null && logQueue.size() > 0) {
-                    for (Map.Entry<String, Set<String>> entry : logQueue.entrySet()) {
-                        try {
-                            String accesslog = entry.getKey();
-                            Set<String> logSet = entry.getValue();
-                            File file = new File(accesslog);
-                            File dir = file.getParentFile();
-                            if (null!=dir&&! dir.exists()) {
-                                dir.mkdirs();
-                            }
-                            if (logger.isDebugEnabled()) {
-                                logger.debug("Append log to " + accesslog);
-                            }
-                            if (file.exists()) {
-                                String now = new SimpleDateFormat(FILE_DATE_FORMAT).format(new Date());
-                                String last = new SimpleDateFormat(FILE_DATE_FORMAT).format(new Date(file.lastModified()));
-                                if (! now.equals(last)) {
-                                    File archive = new File(file.getAbsolutePath() + "." + last);
-                                    file.renameTo(archive);
-                                }
-                            }
-                            FileWriter writer = new FileWriter(file, true);
-                            try {
-                                for(Iterator<String> iterator = logSet.iterator();
-                                    iterator.hasNext();
-                                    iterator.remove()) {
-                                    writer.write(iterator.next());
-                                    writer.write("\r\n");
-                                }
-                                writer.flush();
-                            } finally {
-                                writer.close();
-                            }
-                        } catch (Exception e) {
-                            logger.error(e.getMessage(), e);
-                        }
-                    }
+            for (AccessLogWriter writer : logWriters.values()) {
+                try {
+                    writer.drain();
+                } catch (Throwable t) {
+                    logger.error(t.getMessage(), t);
                 }
-            } catch (Exception e) {
-                logger.error(e.getMessage(), e);
             }
         }
     }
@@ -137,22 +104,28 @@ public class AccessLogFilter implements Filter {
         }
     }
     
-    private void log(String accesslog, String logmessage) {
+    private void log(URL url, String accesslog, String logmessage) {
         init();
-        Set<String> logSet = logQueue.get(accesslog);
-        if (logSet == null) {
-            logQueue.putIfAbsent(accesslog, new ConcurrentHashSet<String>());
-            logSet = logQueue.get(accesslog);
-        }
-        if (logSet.size() < LOG_MAX_BUFFER) {
-            logSet.add(logmessage);
+        AccessLogWriter writer = logWriters.get(accesslog);
+        if (writer == null) {
+            logWriters.putIfAbsent(accesslog, new AccessLogWriter(new File(accesslog),
+                    url.getParameter(Constants.ACCESS_LOG_BUFFER_KEY, Constants.DEFAULT_ACCESS_LOG_BUFFER),
+                    url.getParameter(Constants.ACCESS_LOG_MAX_SIZE_KEY, 0L)));
+            writer = logWriters.get(accesslog);
         }
+        writer.offer(logmessage);
+    }
+
+    private boolean isSampled(URL url) {
+        int sample = url.getParameter(Constants.ACCESS_LOG_SAMPLE_KEY, 1);
+        return sample <= 1 || sampleRandom.get().nextInt(sample) == 0;
     }
 
     public Result invoke(Invoker<?> invoker, Invocation inv) throws RpcException {
         try {
-            String accesslog = invoker.getUrl().getParameter(Constants.ACCESS_LOG_KEY);
-            if (ConfigUtils.isNotEmpty(accesslog)) {
+            URL url = invoker.getUrl();
+            String accesslog = url.getParameter(Constants.ACCESS_LOG_KEY);
+            if (ConfigUtils.isNotEmpty(accesslog) && isSampled(url)) {
                 RpcContext context = RpcContext.getContext();
                 String serviceName = invoker.getInterface().getName();
                 String version = invoker.getUrl().getParameter(Constants.VERSION_KEY);
@@ -192,7 +165,7 @@ public class AccessLogFilter implements Filter {
                 if (ConfigUtils.isDefault(accesslog)) {
                     LoggerFactory.getLogger(ACCESS_LOG_KEY + "." + invoker.getInterface().getName()).info(msg);
                 } else {
-                    log(accesslog, msg);
+                    log(url, accesslog, msg);
                 }
             }
         } catch (Throwable t) {
@@ -15,15 +15,22 @@
  */
 package com.alibaba.dubbo.rpc.filter;
 
+import java.util.concurrent.Future;
+
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.Activate;
-import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
+import com.alibaba.dubbo.rpc.ConditionalFilter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcFuture;
 import com.alibaba.dubbo.rpc.RpcStatus;
+import com.alibaba.dubbo.rpc.filter.limit.ActiveLimiter;
+import com.alibaba.dubbo.rpc.support.RpcUtils;
 
 /**
  * LimitInvokerFilter
@@ -31,54 +38,86 @@ import com.alibaba.dubbo.rpc.RpcStatus;
  * @author william.liangf
  */
 @Activate(group = Constants.CONSUMER, value = Constants.ACTIVES_KEY)
-public class ActiveLimitFilter implements Filter {
+public class ActiveLimitFilter implements ConditionalFilter {
+
+    private static final String LEAST_ACTIVE_LOADBALANCE = "leastactive";
+
+    /**
+     * 未限制并发数时只有最少活跃数负载均衡需要这里记录的活跃数
+     */
+    public boolean isEnabled(URL url, String method) {
+        return url.getMethodParameter(method, Constants.ACTIVES_KEY, 0) > 0
+                || LEAST_ACTIVE_LOADBALANCE.equals(url.getMethodProfile(method).getLoadbalance());
+    }
 
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
         URL url = invoker.getUrl();
         String methodName = invocation.getMethodName();
-        int max = invoker.getUrl().getMethodParameter(methodName, Constants.ACTIVES_KEY, 0);
-        RpcStatus count = RpcStatus.getStatus(invoker.getUrl(), invocation.getMethodName());
+        int max = url.getMethodParameter(methodName, Constants.ACTIVES_KEY, 0);
+        final RpcStatus count = RpcStatus.getStatus(url, methodName);
+        ActiveLimiter limiter = null;
         if (max > 0) {
-            long timeout = invoker.getUrl().getMethodParameter(invocation.getMethodName(), Constants.TIMEOUT_KEY, 0);
+            // 批量调用暂存的调用在flushBatch前不会完成，等待名额只会等到超时
+            long timeout = RpcContext.getContext().isBatchStarted() ? 0
+                    : url.getMethodParameter(methodName, Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
             long start = System.currentTimeMillis();
-            long remain = timeout;
-            int active = count.getActive();
-            if (active >= max) {
-                synchronized (count) {
-                    while ((active = count.getActive()) >= max) {
-                        try {
-                            count.wait(remain);
-                        } catch (InterruptedException e) {
-                        }
-                        long elapsed = System.currentTimeMillis() - start;
-                        remain = timeout - elapsed;
-                        if (remain <= 0) {
-                            throw new RpcException("Waiting concurrent invoke timeout in client-side for service:  "
-                                                   + invoker.getInterface().getName() + ", method: "
-                                                   + invocation.getMethodName() + ", elapsed: " + elapsed
-                                                   + ", timeout: " + timeout + ". concurrent invokes: " + active
-                                                   + ". max concurrent invoke limit: " + max);
-                        }
-                    }
-                }
+            limiter = ActiveLimiter.getLimiter(count);
+            if (! limiter.acquire(max, timeout)) {
+                long elapsed = System.currentTimeMillis() - start;
+                throw new RpcException("Waiting concurrent invoke timeout in client-side for service:  "
+                                       + invoker.getInterface().getName() + ", method: "
+                                       + methodName + ", elapsed: " + elapsed
+                                       + ", timeout: " + timeout + ". concurrent invokes: " + count.getActive()
+                                       + ", queued invokes: " + limiter.getQueueLength()
+                                       + ". max concurrent invoke limit: " + max);
             }
         }
+        boolean released = limiter == null;
         try {
-            long begin = System.currentTimeMillis();
-            RpcStatus.beginCount(url, methodName);
+            final long begin = System.currentTimeMillis();
+            count.beginCount();
             try {
                 Result result = invoker.invoke(invocation);
-                RpcStatus.endCount(url, methodName, System.currentTimeMillis() - begin, true);
+                if (result instanceof AsyncRpcResult) {
+                    // 批量调用等异步结果在完成时才结束计数、归还名额
+                    final ActiveLimiter asyncLimiter = released ? null : limiter;
+                    released = true;
+                    ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                        public void onComplete(Result r) {
+                            count.endCount(System.currentTimeMillis() - begin, ! (r.getException() instanceof RpcException));
+                            if (asyncLimiter != null) {
+                                asyncLimiter.release();
+                            }
+                        }
+                    });
+                    return result;
+                }
+                count.endCount(System.currentTimeMillis() - begin, true);
+                if (! released && RpcUtils.isAsync(url, invocation)) {
+                    // 异步调用在响应到达时才归还名额
+                    Future<?> future = RpcContext.getContext().getFuture();
+                    if (future instanceof RpcFuture) {
+                        released = true;
+                        final ActiveLimiter asyncLimiter = limiter;
+                        ((RpcFuture<?>) future).addListener(new RpcFuture.Listener<Object>() {
+                            public void onSuccess(Object value) {
+                                asyncLimiter.release();
+                            }
+
+                            public void onFailure(Throwable exception) {
+                                asyncLimiter.release();
+                            }
+                        }, null);
+                    }
+                }
                 return result;
             } catch (RuntimeException t) {
-                RpcStatus.endCount(url, methodName, System.currentTimeMillis() - begin, false);
+                count.endCount(System.currentTimeMillis() - begin, false);
                 throw t;
             }
         } finally {
-            if(max>0){
-                synchronized (count) {
-                    count.notify();
-                } 
+            if (! released) {
+                limiter.release();
             }
         }
     }
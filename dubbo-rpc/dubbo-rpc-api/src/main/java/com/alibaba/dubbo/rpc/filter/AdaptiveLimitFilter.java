@@ -0,0 +1,159 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter;
+
+import java.util.concurrent.Future;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.utils.ConfigUtils;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
+import com.alibaba.dubbo.rpc.ConditionalFilter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcFuture;
+import com.alibaba.dubbo.rpc.RpcStatus;
+import com.alibaba.dubbo.rpc.filter.limit.AdaptiveLimiter;
+import com.alibaba.dubbo.rpc.support.RpcUtils;
+
+/**
+ * 按服务方法自适应调整并发上限，超出上限的调用立即拒绝。
+ * <p>
+ * 配置 adaptive.limit=gradient 或 vegas 启用，消费方和提供方均可使用。
+ *
+ * @see AdaptiveLimiter
+ */
+@Activate(group = {Constants.CONSUMER, Constants.PROVIDER}, value = Constants.ADAPTIVE_LIMIT_KEY)
+public class AdaptiveLimitFilter implements ConditionalFilter {
+
+    private static final String LIMITER_KEY = "adaptive.limiter.";
+
+    /**
+     * 上限挂在方法的统计上，随Invoker销毁时移除的统计一起释放；记住创建时的URL，重新配置后按新参数重建
+     */
+    private static final class LimiterHolder {
+
+        final URL url;
+
+        final AdaptiveLimiter limiter;
+
+        LimiterHolder(URL url, AdaptiveLimiter limiter) {
+            this.url = url;
+            this.limiter = limiter;
+        }
+
+    }
+
+    public boolean isEnabled(URL url, String method) {
+        return ConfigUtils.isNotEmpty(url.getMethodParameter(method, Constants.ADAPTIVE_LIMIT_KEY));
+    }
+
+    public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+        URL url = invoker.getUrl();
+        String methodName = invocation.getMethodName();
+        String algorithm = url.getMethodParameter(methodName, Constants.ADAPTIVE_LIMIT_KEY);
+        if (ConfigUtils.isEmpty(algorithm)) {
+            return invoker.invoke(invocation);
+        }
+        final AdaptiveLimiter limiter = getLimiter(url, methodName, algorithm);
+        if (! limiter.tryAcquire()) {
+            throw new RpcException("Failed to invoke method " + methodName + " of service " + invoker.getInterface().getName()
+                                   + ", cause: concurrent invokes exceed the adaptive limit " + limiter.getLimit()
+                                   + " in " + url.getParameter(Constants.SIDE_KEY) + " side " + url.getAddress());
+        }
+        final long begin = System.nanoTime();
+        boolean released = false;
+        try {
+            Result result = invoker.invoke(invocation);
+            if (result instanceof AsyncRpcResult) {
+                // 提供方异步执行的调用在结果写出时才释放
+                released = true;
+                ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                    public void onComplete(Result r) {
+                        limiter.release(System.nanoTime() - begin, isDropped(r.getException()));
+                    }
+                });
+            } else if (RpcUtils.isAsync(url, invocation) && ! RpcUtils.isOneway(url, invocation)) {
+                // 消费方异步调用在响应到达时才释放，监听器很轻，直接在完成线程中执行
+                Future<?> future = RpcContext.getContext().getFuture();
+                if (future instanceof RpcFuture) {
+                    released = true;
+                    ((RpcFuture<?>) future).addListener(new RpcFuture.Listener<Object>() {
+                        public void onSuccess(Object value) {
+                            limiter.release(System.nanoTime() - begin, false);
+                        }
+
+                        public void onFailure(Throwable exception) {
+                            limiter.release(System.nanoTime() - begin, isDropped(exception));
+                        }
+                    }, null);
+                }
+            } else if (result.hasException()) {
+                released = true;
+                limiter.release(System.nanoTime() - begin, isDropped(result.getException()));
+            }
+            return result;
+        } catch (RpcException e) {
+            released = true;
+            limiter.release(System.nanoTime() - begin, isDropped(e));
+            throw e;
+        } finally {
+            if (! released) {
+                limiter.release(System.nanoTime() - begin, false);
+            }
+        }
+    }
+
+    private AdaptiveLimiter getLimiter(URL url, String methodName, String algorithm) {
+        RpcStatus status = RpcStatus.getStatus(url, methodName);
+        // 同一服务的消费方和提供方可能在同一进程中共享统计，分别限制
+        String key = LIMITER_KEY + url.getParameter(Constants.SIDE_KEY);
+        LimiterHolder holder = (LimiterHolder) status.get(key);
+        if (holder != null && (holder.url == url || holder.url.equals(url))) {
+            return holder.limiter;
+        }
+        synchronized (status) {
+            holder = (LimiterHolder) status.get(key);
+            if (holder == null || ! holder.url.equals(url)) {
+                int initial = url.getMethodParameter(methodName, Constants.ADAPTIVE_LIMIT_INITIAL_KEY, Constants.DEFAULT_ADAPTIVE_LIMIT_INITIAL);
+                int min = url.getMethodParameter(methodName, Constants.ADAPTIVE_LIMIT_MIN_KEY, Constants.DEFAULT_ADAPTIVE_LIMIT_MIN);
+                int max = url.getMethodParameter(methodName, Constants.ADAPTIVE_LIMIT_MAX_KEY, Constants.DEFAULT_ADAPTIVE_LIMIT_MAX);
+                // 只是其它参数变化时保留已经学到的上限
+                AdaptiveLimiter limiter = holder != null && holder.limiter.isSameConfig(algorithm, initial, min, max)
+                    ? holder.limiter : new AdaptiveLimiter(algorithm, initial, min, max);
+                holder = new LimiterHolder(url, limiter);
+                status.set(key, holder);
+            }
+            return holder.limiter;
+        }
+    }
+
+    AdaptiveLimiter getLimiter(URL url, String methodName) {
+        RpcStatus status = RpcStatus.peekStatus(url, methodName);
+        LimiterHolder holder = status == null ? null : (LimiterHolder) status.get(LIMITER_KEY + url.getParameter(Constants.SIDE_KEY));
+        return holder == null ? null : holder.limiter;
+    }
+
+    // 只有超时说明下游已经过载，业务异常不影响上限
+    private static boolean isDropped(Throwable exception) {
+        return exception instanceof RpcException && ((RpcException) exception).isTimeout();
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.filter.capture.CaptureRecord;
+import com.alibaba.dubbo.rpc.filter.capture.CaptureWriter;
+
+/**
+ * 把提供方收到的调用录制到文件，用{@link com.alibaba.dubbo.rpc.filter.capture.CaptureReplayer}回放压测。
+ * <p>
+ * 配置<code>capture=文件路径</code>开启，<code>capture.sample=N</code>表示每N次调用录制一次，
+ * 队列容量由<code>capture.buffer</code>指定，文件大小由<code>capture.max.size</code>限制。
+ * 泛化调用在GenericFilter之后录制，记录的是实际调用的方法。
+ */
+@Activate(group = Constants.PROVIDER, value = Constants.CAPTURE_KEY)
+public class CaptureFilter implements Filter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CaptureFilter.class);
+
+    private static final long WRITE_INTERVAL = 100;
+
+    // 回放时由消费方重新生成的附加参数
+    private static final Set<String> SKIP_ATTACHMENTS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            Constants.PATH_KEY, Constants.INTERFACE_KEY, Constants.GROUP_KEY, Constants.VERSION_KEY,
+            Constants.DUBBO_VERSION_KEY, Constants.TOKEN_KEY, Constants.TIMEOUT_KEY, Constants.ASYNC_KEY,
+            Constants.GENERIC_KEY, Constants.IDEMPOTENT_REQUEST_KEY)));
+
+    private final ConcurrentMap<String, CaptureWriter> writers = new ConcurrentHashMap<String, CaptureWriter>();
+
+    private final ScheduledExecutorService writeScheduled = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Dubbo-Capture", true));
+
+    private volatile ScheduledFuture<?> writeFuture = null;
+
+    private final ThreadLocal<Random> sampleRandom = new ThreadLocal<Random>() {
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    private class WriteTask implements Runnable {
+        public void run() {
+            for (CaptureWriter writer : writers.values()) {
+                try {
+                    writer.drain();
+                } catch (Throwable t) {
+                    logger.error(t.getMessage(), t);
+                }
+            }
+        }
+    }
+
+    private void init() {
+        if (writeFuture == null) {
+            synchronized (writeScheduled) {
+                if (writeFuture == null) {
+                    writeFuture = writeScheduled.scheduleWithFixedDelay(new WriteTask(), WRITE_INTERVAL, WRITE_INTERVAL, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    private CaptureWriter getWriter(URL url, String capture) {
+        init();
+        CaptureWriter writer = writers.get(capture);
+        if (writer == null) {
+            writers.putIfAbsent(capture, new CaptureWriter(new File(capture),
+                    url.getParameter(Constants.CAPTURE_BUFFER_KEY, Constants.DEFAULT_CAPTURE_BUFFER),
+                    url.getParameter(Constants.CAPTURE_MAX_SIZE_KEY, 0L)));
+            writer = writers.get(capture);
+        }
+        return writer;
+    }
+
+    private boolean isSampled(URL url) {
+        int sample = url.getParameter(Constants.CAPTURE_SAMPLE_KEY, 1);
+        return sample <= 1 || sampleRandom.get().nextInt(sample) == 0;
+    }
+
+    public Result invoke(Invoker<?> invoker, Invocation inv) throws RpcException {
+        URL url = invoker.getUrl();
+        String capture = url.getParameter(Constants.CAPTURE_KEY);
+        if (capture == null || capture.length() == 0 || ! isSampled(url)) {
+            return invoker.invoke(inv);
+        }
+        CaptureRecord record = null;
+        try {
+            // 参数在调用前序列化，避免被业务代码修改
+            record = new CaptureRecord();
+            record.setTimestamp(System.currentTimeMillis());
+            record.setService(invoker.getInterface().getName());
+            record.setGroup(url.getParameter(Constants.GROUP_KEY));
+            record.setVersion(url.getParameter(Constants.VERSION_KEY));
+            record.setMethod(inv.getMethodName());
+            record.setParameterTypes(inv.getParameterTypes());
+            record.setArguments(inv.getArguments());
+            Map<String, String> attachments = new HashMap<String, String>();
+            if (inv.getAttachments() != null) {
+                for (Map.Entry<String, String> entry : inv.getAttachments().entrySet()) {
+                    if (! SKIP_ATTACHMENTS.contains(entry.getKey())) {
+                        attachments.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            record.setAttachments(attachments);
+        } catch (Throwable t) {
+            logger.warn("Failed to capture invocation " + inv.getMethodName() + " of service " + invoker.getInterface().getName()
+                    + ", cause: " + t.getMessage(), t);
+            return invoker.invoke(inv);
+        }
+        final long start = System.nanoTime();
+        Result result = invoker.invoke(inv);
+        final CaptureWriter writer = getWriter(url, capture);
+        final CaptureRecord captured = record;
+        if (result instanceof AsyncRpcResult && ! ((AsyncRpcResult) result).isDone()) {
+            ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                public void onComplete(Result r) {
+                    write(writer, captured, start);
+                }
+            });
+        } else {
+            write(writer, captured, start);
+        }
+        return result;
+    }
+
+    private static void write(CaptureWriter writer, CaptureRecord record, long start) {
+        record.setElapsed((int) Math.min(Integer.MAX_VALUE, (System.nanoTime() - start) / 1000));
+        try {
+            writer.offer(record);
+        } catch (Throwable t) {
+            logger.warn("Failed to capture invocation " + record + ", cause: " + t.getMessage(), t);
+        }
+    }
+
+}
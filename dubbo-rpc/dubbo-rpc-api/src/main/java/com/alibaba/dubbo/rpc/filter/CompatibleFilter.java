@@ -23,6 +23,7 @@ import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.utils.CompatibleTypeUtils;
 import com.alibaba.dubbo.common.utils.PojoUtils;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
@@ -41,6 +42,9 @@ public class CompatibleFilter implements Filter {
 
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
         Result result = invoker.invoke(invocation);
+        if (result instanceof AsyncRpcResult && ! ((AsyncRpcResult) result).isDone()) {
+            return result;
+        }
         if (! invocation.getMethodName().startsWith("$") && ! result.hasException()) {
             Object value = result.getValue();
             if (value != null) {
@@ -15,11 +15,14 @@
  */
 package com.alibaba.dubbo.rpc.filter;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
@@ -36,30 +39,36 @@ import com.alibaba.dubbo.rpc.RpcInvocation;
 @Activate(group = Constants.PROVIDER, order = -10000)
 public class ContextFilter implements Filter {
 
+    // 框架内部使用，不传给业务及下游的attachment
+    private static final Set<String> HIDDEN_KEYS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            Constants.PATH_KEY, Constants.GROUP_KEY, Constants.VERSION_KEY,
+            Constants.DUBBO_VERSION_KEY, Constants.TOKEN_KEY, Constants.TIMEOUT_KEY,
+            Constants.DEADLINE_BUDGET_KEY)));
+
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
-        Map<String, String> attachments = invocation.getAttachments();
-        if (attachments != null) {
-            attachments = new HashMap<String, String>(attachments);
-            attachments.remove(Constants.PATH_KEY);
-            attachments.remove(Constants.GROUP_KEY);
-            attachments.remove(Constants.VERSION_KEY);
-            attachments.remove(Constants.DUBBO_VERSION_KEY);
-            attachments.remove(Constants.TOKEN_KEY);
-            attachments.remove(Constants.TIMEOUT_KEY);
-        }
         RpcContext.getContext()
                 .setInvoker(invoker)
                 .setInvocation(invocation)
-                .setAttachments(attachments)
+                .borrowAttachments(invocation.getAttachments(), HIDDEN_KEYS)
                 .setLocalAddress(invoker.getUrl().getHost(), 
                                  invoker.getUrl().getPort());
         if (invocation instanceof RpcInvocation) {
             ((RpcInvocation)invocation).setInvoker(invoker);
         }
+        // 默认每次调用后丢弃context，业务代码可以在调用结束后继续持有它；
+        // 配置context.reuse=true时清空复用，调用结束后不能再持有context
+        boolean reuse = invoker.getUrl().getParameter(Constants.CONTEXT_REUSE_KEY, false);
         try {
-            return invoker.invoke(invocation);
+            Result result = invoker.invoke(invocation);
+            // 异步完成时的回调可能还引用着当前context，不能复用
+            reuse = reuse && ! (result instanceof AsyncRpcResult);
+            return result;
         } finally {
-            RpcContext.removeContext();
+            if (reuse) {
+                RpcContext.resetContext();
+            } else {
+                RpcContext.removeContext();
+            }
         }
     }
 }
\ No newline at end of file
@@ -16,13 +16,19 @@
 package com.alibaba.dubbo.rpc.filter;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.Activate;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.utils.ReflectUtils;
 import com.alibaba.dubbo.common.utils.StringUtils;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
@@ -41,6 +47,8 @@ import com.alibaba.dubbo.rpc.service.GenericService;
  *     不期望的日志即是，没有的接口上声明的Unchecked异常。
  * <li>异常不在API包中，则Wrap一层RuntimeException。<br>
  *     RPC对于第一层异常会直接序列化传输(Cause异常会String化)，避免异常在Client出不能反序列化问题。
+ * <li>exception.stack=trim时异常及其cause只保留exception.stack.depth层堆栈，none时不传堆栈；
+ *     截短的是异常的副本，业务抛出的异常对象保持原样；两者包装异常时都只保留类型和消息。
  * </ol>
  * 
  * @author william.liangf
@@ -49,6 +57,15 @@ import com.alibaba.dubbo.rpc.service.GenericService;
 @Activate(group = Constants.PROVIDER)
 public class ExceptionFilter implements Filter {
 
+    private static final StackTraceElement[] EMPTY_STACK_TRACE = new StackTraceElement[0];
+
+    // 防止cause成环
+    private static final int MAX_CAUSE_DEPTH = 16;
+
+    // 接口 -> 异常类 -> 是否可以直接抛给客户端（JDK、Dubbo或与接口同一jar包的异常），
+    // 弱引用类，应用卸载后不会留住它的ClassLoader
+    private static final Map<Class<?>, Map<Class<?>, Boolean>> PASS_THROUGH = Collections.synchronizedMap(new WeakHashMap<Class<?>, Map<Class<?>, Boolean>>());
+
     private final Logger logger;
     
     public ExceptionFilter() {
@@ -59,61 +76,21 @@ public class ExceptionFilter implements Filter {
         this.logger = logger;
     }
     
-    public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+    public Result invoke(final Invoker<?> invoker, final Invocation invocation) throws RpcException {
         try {
             Result result = invoker.invoke(invocation);
-            if (result.hasException() && GenericService.class != invoker.getInterface()) {
-                try {
-                    Throwable exception = result.getException();
-
-                    // 如果是checked异常，直接抛出
-                    if (! (exception instanceof RuntimeException) && (exception instanceof Exception)) {
-                        return result;
-                    }
-                    // 在方法签名上有声明，直接抛出
-                    try {
-                        Method method = invoker.getInterface().getMethod(invocation.getMethodName(), invocation.getParameterTypes());
-                        Class<?>[] exceptionClassses = method.getExceptionTypes();
-                        for (Class<?> exceptionClass : exceptionClassses) {
-                            if (exception.getClass().equals(exceptionClass)) {
-                                return result;
-                            }
-                        }
-                    } catch (NoSuchMethodException e) {
-                        return result;
+            if (result instanceof AsyncRpcResult) {
+                // 异步执行的调用在写出结果后再处理异常，完成线程中没有调用上下文，先取出调用方地址
+                final String remoteHost = RpcContext.getContext().getRemoteHost();
+                final AsyncRpcResult handled = new AsyncRpcResult();
+                ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                    public void onComplete(Result r) {
+                        handled.complete(handleException(invoker, invocation, r, remoteHost));
                     }
-
-                    // 未在方法签名上定义的异常，在服务器端打印ERROR日志
-                    logger.error("Got unchecked and undeclared exception which called by " + RpcContext.getContext().getRemoteHost()
-                            + ". service: " + invoker.getInterface().getName() + ", method: " + invocation.getMethodName()
-                            + ", exception: " + exception.getClass().getName() + ": " + exception.getMessage(), exception);
-
-                    // 异常类和接口类在同一jar包里，直接抛出
-                    String serviceFile = ReflectUtils.getCodeBase(invoker.getInterface());
-                    String exceptionFile = ReflectUtils.getCodeBase(exception.getClass());
-                    if (serviceFile == null || exceptionFile == null || serviceFile.equals(exceptionFile)){
-                        return result;
-                    }
-                    // 是JDK自带的异常，直接抛出
-                    String className = exception.getClass().getName();
-                    if (className.startsWith("java.") || className.startsWith("javax.")) {
-                        return result;
-                    }
-                    // 是Dubbo本身的异常，直接抛出
-                    if (exception instanceof RpcException) {
-                        return result;
-                    }
-
-                    // 否则，包装成RuntimeException抛给客户端
-                    return new RpcResult(new RuntimeException(StringUtils.toString(exception)));
-                } catch (Throwable e) {
-                    logger.warn("Fail to ExceptionFilter when called by " + RpcContext.getContext().getRemoteHost()
-                            + ". service: " + invoker.getInterface().getName() + ", method: " + invocation.getMethodName()
-                            + ", exception: " + e.getClass().getName() + ": " + e.getMessage(), e);
-                    return result;
-                }
+                });
+                return handled;
             }
-            return result;
+            return handleException(invoker, invocation, result, null);
         } catch (RuntimeException e) {
             logger.error("Got unchecked and undeclared exception which called by " + RpcContext.getContext().getRemoteHost()
                     + ". service: " + invoker.getInterface().getName() + ", method: " + invocation.getMethodName()
@@ -122,4 +99,144 @@ public class ExceptionFilter implements Filter {
         }
     }
 
+    private Result handleException(Invoker<?> invoker, Invocation invocation, Result result, String remoteHost) {
+        if (! result.hasException()) {
+            return result;
+        }
+        URL url = invoker.getUrl();
+        // injvm调用不经过序列化，保留原样
+        String stack = url == null || Constants.LOCAL_PROTOCOL.equals(url.getProtocol()) ? Constants.EXCEPTION_STACK_FULL
+                : url.getMethodParameter(invocation.getMethodName(), Constants.EXCEPTION_STACK_KEY, Constants.EXCEPTION_STACK_FULL);
+        boolean full = Constants.EXCEPTION_STACK_FULL.equals(stack);
+        result = wrapException(invoker, invocation, result, remoteHost, full);
+        if (! full && result.hasException()) {
+            int depth = Constants.EXCEPTION_STACK_NONE.equals(stack) ? 0
+                    : url.getMethodParameter(invocation.getMethodName(), Constants.EXCEPTION_STACK_DEPTH_KEY, Constants.DEFAULT_EXCEPTION_STACK_DEPTH);
+            RpcResult copy = new RpcResult(copyException(result.getException(), depth));
+            copy.setAttachments(result.getAttachments());
+            return copy;
+        }
+        return result;
+    }
+
+    private Result wrapException(Invoker<?> invoker, Invocation invocation, Result result, String remoteHost, boolean full) {
+        if (GenericService.class != invoker.getInterface()) {
+            if (remoteHost == null) {
+                remoteHost = RpcContext.getContext().getRemoteHost();
+            }
+            try {
+                Throwable exception = result.getException();
+
+                // 如果是checked异常，直接抛出
+                if (! (exception instanceof RuntimeException) && (exception instanceof Exception)) {
+                    return result;
+                }
+                // 在方法签名上有声明，直接抛出
+                try {
+                    Method method = invoker.getInterface().getMethod(invocation.getMethodName(), invocation.getParameterTypes());
+                    Class<?>[] exceptionClassses = method.getExceptionTypes();
+                    for (Class<?> exceptionClass : exceptionClassses) {
+                        if (exception.getClass().equals(exceptionClass)) {
+                            return result;
+                        }
+                    }
+                } catch (NoSuchMethodException e) {
+                    return result;
+                }
+
+                // 未在方法签名上定义的异常，在服务器端打印ERROR日志
+                logger.error("Got unchecked and undeclared exception which called by " + remoteHost
+                        + ". service: " + invoker.getInterface().getName() + ", method: " + invocation.getMethodName()
+                        + ", exception: " + exception.getClass().getName() + ": " + exception.getMessage(), exception);
+
+                if (isPassThrough(invoker.getInterface(), exception.getClass())) {
+                    return result;
+                }
+
+                // 否则，包装成RuntimeException抛给客户端
+                if (! full) {
+                    // 只保留类型和消息，不把整个堆栈拼进消息
+                    return new RpcResult(new RuntimeException(exception.getClass().getName() + ": " + exception.getMessage()));
+                }
+                return new RpcResult(new RuntimeException(StringUtils.toString(exception)));
+            } catch (Throwable e) {
+                logger.warn("Fail to ExceptionFilter when called by " + remoteHost
+                        + ". service: " + invoker.getInterface().getName() + ", method: " + invocation.getMethodName()
+                        + ", exception: " + e.getClass().getName() + ": " + e.getMessage(), e);
+                return result;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isPassThrough(Class<?> serviceType, Class<?> exceptionType) {
+        Map<Class<?>, Boolean> types;
+        synchronized (PASS_THROUGH) {
+            types = PASS_THROUGH.get(serviceType);
+            if (types == null) {
+                types = Collections.synchronizedMap(new WeakHashMap<Class<?>, Boolean>());
+                PASS_THROUGH.put(serviceType, types);
+            }
+        }
+        Boolean passThrough = types.get(exceptionType);
+        if (passThrough == null) {
+            passThrough = Boolean.valueOf(checkPassThrough(serviceType, exceptionType));
+            types.put(exceptionType, passThrough);
+        }
+        return passThrough.booleanValue();
+    }
+
+    private static boolean checkPassThrough(Class<?> serviceType, Class<?> exceptionType) {
+        // 异常类和接口类在同一jar包里，直接抛出
+        String serviceFile = ReflectUtils.getCodeBase(serviceType);
+        String exceptionFile = ReflectUtils.getCodeBase(exceptionType);
+        if (serviceFile == null || exceptionFile == null || serviceFile.equals(exceptionFile)){
+            return true;
+        }
+        // 是JDK自带的异常，直接抛出
+        String className = exceptionType.getName();
+        if (className.startsWith("java.") || className.startsWith("javax.")) {
+            return true;
+        }
+        // 是Dubbo本身的异常，直接抛出
+        return RpcException.class.isAssignableFrom(exceptionType);
+    }
+
+    // 复制异常及其cause并截短堆栈，业务代码可能还持有或复用原来的异常对象，不能直接修改它的堆栈；
+    // 异常会被序列化传给客户端，堆栈通常占了大部分字节
+    static Throwable copyException(Throwable exception, int depth) {
+        return copyException(exception, depth, 0);
+    }
+
+    private static Throwable copyException(Throwable exception, int depth, int level) {
+        Throwable cause = exception.getCause();
+        Throwable copy = newException(exception, cause == null || cause == exception || level + 1 >= MAX_CAUSE_DEPTH
+                ? null : copyException(cause, depth, level + 1));
+        StackTraceElement[] trace = exception.getStackTrace();
+        copy.setStackTrace(trace.length <= depth ? trace : depth == 0 ? EMPTY_STACK_TRACE : Arrays.copyOf(trace, depth));
+        return copy;
+    }
+
+    // 同类型的新实例，只带消息和cause；没有公开的(String, Throwable)或(String)构造函数的，只保留类型和消息
+    private static Throwable newException(Throwable exception, Throwable cause) {
+        Class<? extends Throwable> type = exception.getClass();
+        String message = exception.getMessage();
+        if (type == RpcException.class) {
+            return new RpcException(((RpcException) exception).getCode(), message, cause);
+        }
+        try {
+            return type.getConstructor(String.class, Throwable.class).newInstance(message, cause);
+        } catch (Throwable t) {
+        }
+        try {
+            Throwable copy = type.getConstructor(String.class).newInstance(message);
+            if (cause != null) {
+                copy.initCause(cause);
+            }
+            return copy;
+        } catch (Throwable t) {
+        }
+        return new RuntimeException(type.getName() + ": " + message, cause);
+    }
+
 }
\ No newline at end of file
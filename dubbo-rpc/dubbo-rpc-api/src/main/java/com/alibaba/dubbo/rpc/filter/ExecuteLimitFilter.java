@@ -18,6 +18,7 @@ package com.alibaba.dubbo.rpc.filter;
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
@@ -37,17 +38,27 @@ public class ExecuteLimitFilter implements Filter {
         URL url = invoker.getUrl();
         String methodName = invocation.getMethodName();
         int max = url.getMethodParameter(methodName, Constants.EXECUTES_KEY, 0);
+        final RpcStatus count = RpcStatus.getStatus(url, methodName);
         if (max > 0) {
-            RpcStatus count = RpcStatus.getStatus(url, invocation.getMethodName());
             if (count.getActive() >= max) {
                 throw new RpcException("Failed to invoke method " + invocation.getMethodName() + " in provider " + url + ", cause: The service using threads greater than <dubbo:service executes=\"" + max + "\" /> limited.");
             }
         }
-        long begin = System.currentTimeMillis();
+        final long begin = System.currentTimeMillis();
         boolean isException = false;
-        RpcStatus.beginCount(url, methodName);
+        boolean isAsync = false;
+        count.beginCount();
         try {
             Result result = invoker.invoke(invocation);
+            if (result instanceof AsyncRpcResult) {
+                // 异步执行的调用在写出结果时才结束计数
+                isAsync = true;
+                ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                    public void onComplete(Result r) {
+                        count.endCount(System.currentTimeMillis() - begin, ! r.hasException());
+                    }
+                });
+            }
             return result;
         } catch (Throwable t) {
             isException = true;
@@ -59,7 +70,9 @@ public class ExecuteLimitFilter implements Filter {
             }
         }
         finally {
-            RpcStatus.endCount(url, methodName, System.currentTimeMillis() - begin, isException);
+            if (! isAsync) {
+                count.endCount(System.currentTimeMillis() - begin, ! isException);
+            }
         }
     }
 
@@ -17,8 +17,13 @@ package com.alibaba.dubbo.rpc.filter;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.beanutil.JavaBeanAccessor;
 import com.alibaba.dubbo.common.beanutil.JavaBeanDescriptor;
 import com.alibaba.dubbo.common.beanutil.JavaBeanSerializeUtil;
@@ -26,10 +31,12 @@ import com.alibaba.dubbo.common.extension.Activate;
 import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.common.io.UnsafeByteArrayInputStream;
 import com.alibaba.dubbo.common.io.UnsafeByteArrayOutputStream;
+import com.alibaba.dubbo.common.serialize.ObjectOutput;
 import com.alibaba.dubbo.common.serialize.Serialization;
 import com.alibaba.dubbo.common.utils.PojoUtils;
 import com.alibaba.dubbo.common.utils.ReflectUtils;
 import com.alibaba.dubbo.common.utils.StringUtils;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
@@ -48,6 +55,9 @@ import com.alibaba.dubbo.rpc.support.ProtocolUtils;
 @Activate(group = Constants.PROVIDER, order = -20000)
 public class GenericFilter implements Filter {
 
+    // raw泛化调用按序列化id查找扩展名的缓存
+    private static final ConcurrentMap<String, String> RAW_SERIALIZATIONS = new ConcurrentHashMap<String, String>();
+
     public Result invoke(Invoker<?> invoker, Invocation inv) throws RpcException {
         // 泛化引用的调用
         if (inv.getMethodName().equals(Constants.$INVOKE) 
@@ -94,6 +104,30 @@ public class GenericFilter implements Filter {
                                     .append(args[i].getClass()).toString());
                         }
                     }
+                } else if (ProtocolUtils.isRawGenericSerialization(generic)) {
+                    // 字节直接反序列化为方法参数类型，不经过Map
+                    Serialization serialization = getRawSerialization(invoker.getUrl(), inv.getAttachment(Constants.GENERIC_RAW_SERIALIZATION_KEY));
+                    Type[] genericTypes = method.getGenericParameterTypes();
+                    for (int i = 0; i < args.length; i++) {
+                        if (args[i] == null) {
+                            continue;
+                        }
+                        if (byte[].class != args[i].getClass()) {
+                            throw new RpcException(
+                                new StringBuilder(32).append("Generic serialization [")
+                                    .append(Constants.GENERIC_SERIALIZATION_RAW)
+                                    .append("] only support message type ")
+                                    .append(byte[].class)
+                                    .append(" and your message type is ")
+                                    .append(args[i].getClass()).toString());
+                        }
+                        try {
+                            args[i] = serialization.deserialize(null, new UnsafeByteArrayInputStream((byte[]) args[i]))
+                                .readObject(params[i], genericTypes[i]);
+                        } catch (Exception e) {
+                            throw new RpcException("Deserialize argument [" + (i + 1) + "] failed.", e);
+                        }
+                    }
                 } else if (ProtocolUtils.isBeanGenericSerialization(generic)) {
                     // JavaBeanDescriptor转换成方法参数
                     for(int i = 0; i < args.length; i++) {
@@ -113,27 +147,26 @@ public class GenericFilter implements Filter {
                 }
                 // 方法调用
                 Result result = invoker.invoke(new RpcInvocation(method, args, inv.getAttachments()));
-                // 异常结果
-                if (result.hasException()
-                        && ! (result.getException() instanceof GenericException)) {
-                    return new RpcResult(new GenericException(result.getException()));
-                }
-                // 结果序列化
-                if (ProtocolUtils.isJavaGenericSerialization(generic)) {
-                    try {
-                        UnsafeByteArrayOutputStream os = new UnsafeByteArrayOutputStream(512);
-                        ExtensionLoader.getExtensionLoader(Serialization.class)
-                            .getExtension(Constants.GENERIC_SERIALIZATION_NATIVE_JAVA)
-                            .serialize(null, os).writeObject(result.getValue());
-                        return new RpcResult(os.toByteArray());
-                    } catch (IOException e) {
-                        throw new RpcException("Serialize result failed.", e);
-                    }
-                } else if (ProtocolUtils.isBeanGenericSerialization(generic)) {
-                    return new RpcResult(JavaBeanSerializeUtil.serialize(result.getValue(), JavaBeanAccessor.METHOD));
-                } else {
-                    return new RpcResult(PojoUtils.generalize(result.getValue()));
+                if (result instanceof AsyncRpcResult) {
+                    // 异步执行的调用在完成时转换结果，不阻塞业务线程
+                    final String g = generic;
+                    final Invocation i = inv;
+                    final URL u = invoker.getUrl();
+                    final AsyncRpcResult converted = new AsyncRpcResult();
+                    ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                        public void onComplete(Result r) {
+                            Result c;
+                            try {
+                                c = toGenericResult(u, i, g, r);
+                            } catch (RpcException e) {
+                                c = new RpcResult(e);
+                            }
+                            converted.complete(c);
+                        }
+                    });
+                    return converted;
                 }
+                return toGenericResult(invoker.getUrl(), inv, generic, result);
             } catch (NoSuchMethodException e) {
                 throw new RpcException(e.getMessage(), e);
             } catch (ClassNotFoundException e) {
@@ -143,4 +176,77 @@ public class GenericFilter implements Filter {
         return invoker.invoke(inv);
     }
 
+    private static Result toGenericResult(URL url, Invocation inv, String generic, Result result) throws RpcException {
+        // 异常结果
+        if (result.hasException()
+                && ! (result.getException() instanceof GenericException)) {
+            return new RpcResult(new GenericException(result.getException()));
+        }
+        // 结果序列化
+        if (ProtocolUtils.isJavaGenericSerialization(generic)) {
+            try {
+                UnsafeByteArrayOutputStream os = new UnsafeByteArrayOutputStream(512);
+                ExtensionLoader.getExtensionLoader(Serialization.class)
+                    .getExtension(Constants.GENERIC_SERIALIZATION_NATIVE_JAVA)
+                    .serialize(null, os).writeObject(result.getValue());
+                return new RpcResult(os.toByteArray());
+            } catch (IOException e) {
+                throw new RpcException("Serialize result failed.", e);
+            }
+        } else if (ProtocolUtils.isRawGenericSerialization(generic)) {
+            // 结果以同样的序列化方式返回字节，调用方无需反序列化
+            try {
+                UnsafeByteArrayOutputStream os = new UnsafeByteArrayOutputStream(512);
+                ObjectOutput out = getRawSerialization(url, inv.getAttachment(Constants.GENERIC_RAW_SERIALIZATION_KEY))
+                    .serialize(null, os);
+                out.writeObject(result.getValue());
+                out.flushBuffer();
+                return new RpcResult(os.toByteArray());
+            } catch (IOException e) {
+                throw new RpcException("Serialize result failed.", e);
+            }
+        } else if (ProtocolUtils.isBeanGenericSerialization(generic)) {
+            return new RpcResult(JavaBeanSerializeUtil.serialize(result.getValue(), JavaBeanAccessor.METHOD));
+        } else {
+            return new RpcResult(PojoUtils.generalize(result.getValue()));
+        }
+    }
+
+    /**
+     * 调用方只能从提供方允许的序列化中选择，java等原生序列化反序列化任意类型有安全风险，需要提供方显式开启
+     *
+     * @param name 序列化扩展名或者序列化id，为空时使用提供方配置的序列化
+     */
+    private static Serialization getRawSerialization(URL url, String name) {
+        ExtensionLoader<Serialization> loader = ExtensionLoader.getExtensionLoader(Serialization.class);
+        String serialization = url.getParameter(Constants.SERIALIZATION_KEY, Constants.DEFAULT_REMOTING_SERIALIZATION);
+        String extension;
+        if (StringUtils.isEmpty(name)) {
+            extension = serialization;
+        } else if (loader.hasExtension(name)) {
+            extension = name;
+        } else {
+            extension = RAW_SERIALIZATIONS.get(name);
+            if (extension == null && StringUtils.isInteger(name)) {
+                byte id = (byte) Integer.parseInt(name);
+                for (String e : loader.getSupportedExtensions()) {
+                    if (loader.getExtension(e).getContentTypeId() == id) {
+                        RAW_SERIALIZATIONS.putIfAbsent(name, e);
+                        extension = e;
+                        break;
+                    }
+                }
+            }
+            if (extension == null) {
+                throw new RpcException("Unsupported generic serialization " + name);
+            }
+        }
+        String allowed = url.getParameter(Constants.GENERIC_RAW_SERIALIZATIONS_KEY, serialization);
+        if (! Arrays.asList(Constants.COMMA_SPLIT_PATTERN.split(allowed)).contains(extension)) {
+            throw new RpcException("Generic serialization " + name + " is not allowed by provider " + url.getAddress()
+                    + ", allowed " + Constants.GENERIC_RAW_SERIALIZATIONS_KEY + ": " + allowed);
+        }
+        return loader.getExtension(extension);
+    }
+
 }
\ No newline at end of file
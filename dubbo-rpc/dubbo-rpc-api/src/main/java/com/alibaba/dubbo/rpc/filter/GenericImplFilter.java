@@ -28,6 +28,7 @@ import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.utils.PojoUtils;
 import com.alibaba.dubbo.common.utils.ReflectUtils;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
@@ -87,6 +88,10 @@ public class GenericImplFilter implements Filter {
             invocation2.setArguments(new Object[] {methodName, types, args});
             // 调用
             Result result = invoker.invoke(invocation2);
+            if (result instanceof AsyncRpcResult && ! ((AsyncRpcResult) result).isDone()) {
+                // 批量调用暂存后在flushBatch时才有结果，和异步调用一样不做转换
+                return result;
+            }
             
             if (! result.hasException()) {
                 Object value = result.getValue();
@@ -165,15 +170,27 @@ public class GenericImplFilter implements Filter {
 
                 for (Object arg : args) {
                     if (!(byte[].class == arg.getClass())) {
-                        error(byte[].class.getName(), arg.getClass().getName());
+                        error(generic, byte[].class.getName(), arg.getClass().getName());
                     }
                 }
             } else if (ProtocolUtils.isBeanGenericSerialization(generic)) {
                 for(Object arg : args) {
                     if (!(arg instanceof JavaBeanDescriptor)) {
-                        error(JavaBeanDescriptor.class.getName(), arg.getClass().getName());
+                        error(generic, JavaBeanDescriptor.class.getName(), arg.getClass().getName());
                     }
                 }
+            } else if (ProtocolUtils.isRawGenericSerialization(generic)) {
+                // null表示参数为null
+                for (Object arg : args) {
+                    if (arg != null && byte[].class != arg.getClass()) {
+                        error(generic, byte[].class.getName(), arg.getClass().getName());
+                    }
+                }
+                // 调用时未指定序列化方式则使用引用上配置的
+                String serialization = invoker.getUrl().getParameter(Constants.GENERIC_RAW_SERIALIZATION_KEY);
+                if (serialization != null && invocation.getAttachment(Constants.GENERIC_RAW_SERIALIZATION_KEY) == null) {
+                    ((RpcInvocation) invocation).setAttachment(Constants.GENERIC_RAW_SERIALIZATION_KEY, serialization);
+                }
             }
 
             ((RpcInvocation)invocation).setAttachment(
@@ -182,11 +199,11 @@ public class GenericImplFilter implements Filter {
         return invoker.invoke(invocation);
     }
 
-    private void error(String expected, String actual) throws RpcException {
+    private void error(String generic, String expected, String actual) throws RpcException {
         throw new RpcException(
             new StringBuilder(32)
                 .append("Generic serialization [")
-                .append(Constants.GENERIC_SERIALIZATION_NATIVE_JAVA)
+                .append(generic)
                 .append("] only support message type ")
                 .append(expected)
                 .append(" and your message type is ")
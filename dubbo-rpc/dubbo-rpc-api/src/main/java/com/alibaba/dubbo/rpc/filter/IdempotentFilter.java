@@ -0,0 +1,123 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.utils.ConfigUtils;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.common.utils.ReflectUtils;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
+import com.alibaba.dubbo.rpc.ConditionalFilter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.filter.idempotent.IdempotentStore;
+
+/**
+ * 幂等调用去重，配置idempotent=true的方法生效。
+ * <p>
+ * 消费方为每次调用附加请求键（可通过RpcContext的idempotent.key指定），失败重试时请求键不变；
+ * 提供方按请求键保存结果，重复的请求直接返回保存的结果，原请求仍在执行时等待同一个结果而不再执行一次。
+ *
+ * @see IdempotentStore
+ */
+@Activate(group = {Constants.CONSUMER, Constants.PROVIDER}, value = Constants.IDEMPOTENT_KEY)
+public class IdempotentFilter implements ConditionalFilter {
+
+    // 加上序号后在所有消费方之间唯一
+    private static final String KEY_PREFIX = NetUtils.getLocalHost() + ":" + ConfigUtils.getPid() + ":" + System.currentTimeMillis() + ":";
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    public boolean isEnabled(URL url, String method) {
+        return url.getMethodParameter(method, Constants.IDEMPOTENT_KEY, false);
+    }
+
+    public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+        URL url = invoker.getUrl();
+        if (! isEnabled(url, invocation.getMethodName())) {
+            return invoker.invoke(invocation);
+        }
+        if (Constants.CONSUMER_SIDE.equals(url.getParameter(Constants.SIDE_KEY))) {
+            // 重试使用同一个Invocation，第一次调用时附加的请求键保持不变
+            if (invocation.getAttachment(Constants.IDEMPOTENT_REQUEST_KEY) == null && invocation instanceof RpcInvocation) {
+                String key = RpcContext.getContext().getAttachment(Constants.IDEMPOTENT_REQUEST_KEY);
+                ((RpcInvocation) invocation).setAttachment(Constants.IDEMPOTENT_REQUEST_KEY,
+                        key == null || key.length() == 0 ? KEY_PREFIX + SEQUENCE.incrementAndGet() : key);
+            }
+            return invoker.invoke(invocation);
+        }
+        String requestKey = invocation.getAttachment(Constants.IDEMPOTENT_REQUEST_KEY);
+        if (requestKey == null || requestKey.length() == 0) {
+            return invoker.invoke(invocation);
+        }
+        // 消费方指定的请求键可能在不同方法间重复，按方法签名区分
+        final String key = invocation.getMethodName() + "(" + ReflectUtils.getDesc(invocation.getParameterTypes()) + ")" + requestKey;
+        final IdempotentStore store = IdempotentStore.getStore(url);
+        final IdempotentStore.Entry entry = new IdempotentStore.Entry();
+        IdempotentStore.Entry existing = store.putIfAbsent(key, entry);
+        if (existing != null) {
+            return duplicate(existing);
+        }
+        Result result;
+        try {
+            result = invoker.invoke(invocation);
+        } catch (RuntimeException e) {
+            store.complete(key, entry, new RpcResult(e));
+            throw e;
+        }
+        if (result instanceof AsyncRpcResult) {
+            ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                public void onComplete(Result r) {
+                    store.complete(key, entry, r);
+                }
+            });
+        } else {
+            store.complete(key, entry, result);
+        }
+        return result;
+    }
+
+    private static Result duplicate(IdempotentStore.Entry entry) {
+        if (entry.isDone()) {
+            return copy(entry.getResult().await());
+        }
+        // 原请求仍在执行，异步等待它的结果，不占用业务线程
+        final AsyncRpcResult result = new AsyncRpcResult();
+        entry.getResult().addListener(new AsyncRpcResult.Listener() {
+            public void onComplete(Result r) {
+                result.complete(copy(r));
+            }
+        });
+        return result;
+    }
+
+    // 每个请求各用一份结果，外层Filter修改attachments时互不影响
+    private static Result copy(Result result) {
+        RpcResult copy = result.hasException() ? new RpcResult(result.getException()) : new RpcResult(result.getValue());
+        copy.setAttachments(result.getAttachments());
+        return copy;
+    }
+
+}
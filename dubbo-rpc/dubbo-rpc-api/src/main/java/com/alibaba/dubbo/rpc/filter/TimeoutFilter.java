@@ -21,6 +21,7 @@ import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.extension.Activate;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
@@ -37,10 +38,23 @@ public class TimeoutFilter implements Filter {
 
     private static final Logger logger = LoggerFactory.getLogger(TimeoutFilter.class);
 
-    public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
-        long start = System.currentTimeMillis();
+    public Result invoke(final Invoker<?> invoker, final Invocation invocation) throws RpcException {
+        final long start = System.currentTimeMillis();
         Result result = invoker.invoke(invocation);
-        long elapsed = System.currentTimeMillis() - start;
+        if (result instanceof AsyncRpcResult) {
+            // 异步执行的调用在写出结果时计算耗时
+            ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                public void onComplete(Result r) {
+                    checkElapsed(invoker, invocation, System.currentTimeMillis() - start);
+                }
+            });
+        } else {
+            checkElapsed(invoker, invocation, System.currentTimeMillis() - start);
+        }
+        return result;
+    }
+
+    private void checkElapsed(Invoker<?> invoker, Invocation invocation, long elapsed) {
         if (invoker.getUrl() != null
                 && elapsed > invoker.getUrl().getMethodParameter(invocation.getMethodName(),
                         "timeout", Integer.MAX_VALUE)) {
@@ -50,7 +64,6 @@ public class TimeoutFilter implements Filter {
                         + invoker.getUrl() + ", invoke elapsed " + elapsed + " ms.");
             }
         }
-        return result;
     }
     
 }
\ No newline at end of file
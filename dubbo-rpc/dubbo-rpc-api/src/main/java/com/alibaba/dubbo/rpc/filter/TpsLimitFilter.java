@@ -17,8 +17,9 @@
 package com.alibaba.dubbo.rpc.filter;
 
 import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.Activate;
-import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.ConditionalFilter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
@@ -28,18 +29,24 @@ import com.alibaba.dubbo.rpc.filter.tps.TPSLimiter;
 
 /**
  * 限制 service 或方法的 tps.
+ * <p>
+ * 被拒绝的调用以 {@link RpcException#THROTTLED_EXCEPTION} 返回，dubbo 协议下消费方收到单独的限流状态，可以重试其它提供者.
  *
  * @author <a href="mailto:gang.lvg@alibaba-inc.com">kimi</a>
  */
 @Activate(group = Constants.PROVIDER, value = Constants.TPS_LIMIT_RATE_KEY)
-public class TpsLimitFilter implements Filter {
+public class TpsLimitFilter implements ConditionalFilter {
 
     private final TPSLimiter tpsLimiter = new DefaultTPSLimiter();
 
+    public boolean isEnabled(URL url, String method) {
+        return url.getMethodParameter(method, Constants.TPS_LIMIT_RATE_KEY, -1) > 0;
+    }
+
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
 
         if (!tpsLimiter.isAllowable(invoker.getUrl(), invocation)) {
-            throw new RpcException(
+            throw new RpcException(RpcException.THROTTLED_EXCEPTION,
                     new StringBuilder(64)
                             .append("Failed to invoke service ")
                             .append(invoker.getInterface().getName())
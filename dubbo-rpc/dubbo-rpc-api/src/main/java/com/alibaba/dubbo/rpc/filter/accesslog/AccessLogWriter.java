@@ -0,0 +1,297 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.accesslog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+
+/**
+ * 访问日志文件的写入器。
+ * <p>
+ * 业务线程通过 {@link #offer(String)} 把日志放入有界的无锁环形队列，队列满时直接丢弃并计数，不阻塞调用；
+ * 唯一的写线程通过 {@link #drain()} 取出日志，经缓冲区批量写入一直打开的文件通道，
+ * 按天以及按文件大小滚动归档。
+ */
+public class AccessLogWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessLogWriter.class);
+
+    private static final String FILE_DATE_FORMAT = "yyyyMMdd";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte[] LINE_SEPARATOR = new byte[] {'\r', '\n'};
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private static final long DROP_REPORT_INTERVAL = 60 * 1000;
+
+    private final File file;
+
+    private final long maxFileSize;
+
+    private final int mask;
+
+    private final AtomicReferenceArray<String> slots;
+
+    // 生产者通过CAS占位
+    private final AtomicLong tail = new AtomicLong();
+
+    // 只由写线程推进
+    private volatile long head;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    // 以下字段只由写线程访问
+    private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+    private FileChannel channel;
+
+    private long fileSize;
+
+    private String fileDate;
+
+    private long nextRollTime;
+
+    private long reportedDropped;
+
+    private long lastReportTime;
+
+    /**
+     * @param file 日志文件
+     * @param capacity 队列容量，向上取整为2的幂
+     * @param maxFileSize 单个文件的最大字节数，超过后归档，小于等于0表示只按天归档
+     */
+    public AccessLogWriter(File file, int capacity, long maxFileSize) {
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        int size = 1;
+        while (size < capacity && size < (1 << 30)) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<String>(size);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public int getSize() {
+        return (int) (tail.get() - head);
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * 放入一行日志，队列已满时丢弃。
+     *
+     * @return 是否放入成功
+     */
+    public boolean offer(String line) {
+        for (;;) {
+            long t = tail.get();
+            if (t - head > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.lazySet((int) t & mask, line);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 写出队列中已有的日志，只能由写线程调用。
+     *
+     * @return 写出的行数
+     */
+    public int drain() {
+        int count = 0;
+        long h = head;
+        int index = (int) h & mask;
+        String line = slots.get(index);
+        if (line != null) {
+            try {
+                ensureOpen();
+                if (System.currentTimeMillis() >= nextRollTime) {
+                    roll();
+                }
+                do {
+                    slots.lazySet(index, null);
+                    head = ++ h;
+                    write(line);
+                    count ++;
+                    index = (int) h & mask;
+                    line = slots.get(index);
+                } while (line != null);
+                flush();
+            } catch (IOException e) {
+                logger.error("Failed to write access log " + file.getAbsolutePath() + ", cause: " + e.getMessage(), e);
+                close();
+            }
+        }
+        reportDropped();
+        return count;
+    }
+
+    /**
+     * 写出剩余日志并关闭文件，之后再写入会重新打开。
+     */
+    public void close() {
+        FileChannel c = channel;
+        if (c == null) {
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            logger.warn(e.getMessage(), e);
+        }
+        channel = null;
+        buffer.clear();
+        try {
+            c.close();
+        } catch (IOException e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
+
+    private void write(String line) throws IOException {
+        byte[] bytes = line.getBytes(UTF_8);
+        int length = bytes.length + LINE_SEPARATOR.length;
+        long written = fileSize + buffer.position();
+        if (maxFileSize > 0 && written > 0 && written + length > maxFileSize) {
+            roll();
+        }
+        if (buffer.remaining() < length) {
+            flush();
+        }
+        if (length > buffer.capacity()) {
+            writeFully(ByteBuffer.wrap(bytes));
+            writeFully(ByteBuffer.wrap(LINE_SEPARATOR));
+            fileSize += length;
+        } else {
+            buffer.put(bytes).put(LINE_SEPARATOR);
+        }
+    }
+
+    private void flush() throws IOException {
+        if (buffer.position() > 0) {
+            buffer.flip();
+            fileSize += buffer.remaining();
+            writeFully(buffer);
+            buffer.clear();
+        }
+    }
+
+    private void writeFully(ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            channel.write(b);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        String today = formatDate(now);
+        if (file.exists() && file.length() > 0) {
+            String last = formatDate(file.lastModified());
+            if (! today.equals(last)) {
+                archive(last);
+            }
+        } else {
+            File dir = file.getParentFile();
+            if (dir != null && ! dir.exists()) {
+                dir.mkdirs();
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Open access log " + file.getAbsolutePath());
+        }
+        channel = new FileOutputStream(file, true).getChannel();
+        fileSize = channel.size();
+        fileDate = today;
+        nextRollTime = nextDay(now);
+    }
+
+    private void roll() throws IOException {
+        close();
+        archive(fileDate);
+        ensureOpen();
+    }
+
+    private void archive(String date) {
+        File archive = new File(file.getAbsolutePath() + "." + date);
+        for (int i = 1; archive.exists(); i ++) {
+            archive = new File(file.getAbsolutePath() + "." + date + "." + i);
+        }
+        if (! file.renameTo(archive)) {
+            logger.warn("Failed to archive access log " + file.getAbsolutePath() + " to " + archive.getName());
+        }
+    }
+
+    private void reportDropped() {
+        long total = dropped.get();
+        if (total > reportedDropped) {
+            long now = System.currentTimeMillis();
+            if (now - lastReportTime >= DROP_REPORT_INTERVAL) {
+                logger.warn("Access log queue of " + file.getAbsolutePath() + " is full, dropped " + (total - reportedDropped)
+                        + " entries, total dropped " + total + ", capacity " + getCapacity()
+                        + ". Increase accesslog.buffer or use accesslog.sample to reduce the log volume.");
+                reportedDropped = total;
+                lastReportTime = now;
+            }
+        }
+    }
+
+    private static String formatDate(long time) {
+        return new SimpleDateFormat(FILE_DATE_FORMAT).format(new Date(time));
+    }
+
+    private static long nextDay(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+
+}
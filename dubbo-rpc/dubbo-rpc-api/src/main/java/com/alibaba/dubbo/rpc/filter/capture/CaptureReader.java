@@ -0,0 +1,85 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.capture;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * 顺序读取{@link CaptureWriter}写出的录制文件。
+ * <p>
+ * 只读到打开时的文件末尾，回放的目标仍在录制到同一文件时不会读到回放产生的记录。
+ */
+public class CaptureReader {
+
+    private final DataInputStream input;
+
+    private final long limit;
+
+    private long position;
+
+    public CaptureReader(File file) throws IOException {
+        limit = file.length();
+        input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        try {
+            int magic = input.readInt();
+            int version = input.readInt();
+            if (magic != CaptureWriter.MAGIC || version != CaptureWriter.VERSION) {
+                throw new IOException("Not a dubbo capture file: " + file.getAbsolutePath());
+            }
+            position = 8;
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return 下一条记录，读完或者末尾的记录不完整时返回null
+     */
+    public CaptureRecord next() throws IOException {
+        if (position + 4 > limit) {
+            return null;
+        }
+        int length;
+        try {
+            length = input.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (position + 4 + length > limit) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        try {
+            input.readFully(bytes);
+        } catch (EOFException e) {
+            // 写入方未刷完的最后一条
+            return null;
+        }
+        position += 4 + length;
+        return CaptureRecord.decode(bytes);
+    }
+
+    public void close() throws IOException {
+        input.close();
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.capture;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.io.UnsafeByteArrayInputStream;
+import com.alibaba.dubbo.common.io.UnsafeByteArrayOutputStream;
+import com.alibaba.dubbo.common.serialize.ObjectInput;
+import com.alibaba.dubbo.common.serialize.ObjectOutput;
+import com.alibaba.dubbo.common.serialize.Serialization;
+import com.alibaba.dubbo.common.utils.PojoUtils;
+
+/**
+ * 一次录制的调用。
+ * <p>
+ * 参数先转换为{@link PojoUtils#generalize(Object[])}的通用形式再以hessian2序列化，
+ * 回放时不需要业务类，可以直接作为{@link com.alibaba.dubbo.rpc.service.GenericService}的参数。
+ */
+public class CaptureRecord {
+
+    private static final String SERIALIZATION = "hessian2";
+
+    private static final String[] EMPTY_TYPES = new String[0];
+
+    // 调用开始时间，毫秒
+    private long timestamp;
+
+    // 提供方执行耗时，微秒
+    private int elapsed;
+
+    private String service;
+
+    private String group;
+
+    private String version;
+
+    private String method;
+
+    private String[] parameterTypes = EMPTY_TYPES;
+
+    private byte[] arguments;
+
+    private Map<String, String> attachments = new HashMap<String, String>();
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public int getElapsed() {
+        return elapsed;
+    }
+
+    public void setElapsed(int elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public void setService(String service) {
+        this.service = service;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public void setGroup(String group) {
+        this.group = group;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String[] getParameterTypes() {
+        return parameterTypes;
+    }
+
+    public void setParameterTypes(Class<?>[] types) {
+        String[] names = new String[types == null ? 0 : types.length];
+        for (int i = 0; i < names.length; i ++) {
+            names[i] = types[i].getName();
+        }
+        this.parameterTypes = names;
+    }
+
+    public byte[] getArguments() {
+        return arguments;
+    }
+
+    /**
+     * 序列化参数
+     */
+    public void setArguments(Object[] args) throws IOException {
+        Object[] generalized = PojoUtils.generalize(args == null ? new Object[0] : args);
+        UnsafeByteArrayOutputStream bos = new UnsafeByteArrayOutputStream(256);
+        ObjectOutput out = serialization().serialize(null, bos);
+        out.writeInt(generalized.length);
+        for (Object arg : generalized) {
+            out.writeObject(arg);
+        }
+        out.flushBuffer();
+        this.arguments = bos.toByteArray();
+    }
+
+    /**
+     * 反序列化为通用形式的参数
+     */
+    public Object[] decodeArguments() throws IOException {
+        if (arguments == null) {
+            return new Object[0];
+        }
+        ObjectInput in = serialization().deserialize(null, new UnsafeByteArrayInputStream(arguments));
+        Object[] args = new Object[in.readInt()];
+        try {
+            for (int i = 0; i < args.length; i ++) {
+                args[i] = in.readObject();
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e.getMessage());
+        }
+        return args;
+    }
+
+    public Map<String, String> getAttachments() {
+        return attachments;
+    }
+
+    public void setAttachments(Map<String, String> attachments) {
+        this.attachments = attachments == null ? new HashMap<String, String>() : attachments;
+    }
+
+    byte[] encode() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(128 + (arguments == null ? 0 : arguments.length));
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeLong(timestamp);
+        out.writeInt(elapsed);
+        out.writeUTF(service);
+        out.writeUTF(group == null ? "" : group);
+        out.writeUTF(version == null ? "" : version);
+        out.writeUTF(method);
+        out.writeShort(parameterTypes.length);
+        for (String type : parameterTypes) {
+            out.writeUTF(type);
+        }
+        out.writeInt(arguments == null ? 0 : arguments.length);
+        if (arguments != null) {
+            out.write(arguments);
+        }
+        out.writeShort(attachments.size());
+        for (Map.Entry<String, String> entry : attachments.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeUTF(entry.getValue() == null ? "" : entry.getValue());
+        }
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    static CaptureRecord decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        CaptureRecord record = new CaptureRecord();
+        record.timestamp = in.readLong();
+        record.elapsed = in.readInt();
+        record.service = in.readUTF();
+        record.group = emptyToNull(in.readUTF());
+        record.version = emptyToNull(in.readUTF());
+        record.method = in.readUTF();
+        String[] types = new String[in.readShort()];
+        for (int i = 0; i < types.length; i ++) {
+            types[i] = in.readUTF();
+        }
+        record.parameterTypes = types;
+        byte[] arguments = new byte[in.readInt()];
+        in.readFully(arguments);
+        record.arguments = arguments;
+        int size = in.readShort();
+        for (int i = 0; i < size; i ++) {
+            record.attachments.put(in.readUTF(), in.readUTF());
+        }
+        return record;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.length() == 0 ? null : value;
+    }
+
+    private static Serialization serialization() {
+        return ExtensionLoader.getExtensionLoader(Serialization.class).getExtension(SERIALIZATION);
+    }
+
+    @Override
+    public String toString() {
+        return service + "." + method + " at " + timestamp + " (" + elapsed + "us)";
+    }
+
+}
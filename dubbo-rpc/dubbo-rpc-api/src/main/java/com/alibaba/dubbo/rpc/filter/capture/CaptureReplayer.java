@@ -0,0 +1,282 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.capture;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.LatencyHistogram;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Protocol;
+import com.alibaba.dubbo.rpc.ProxyFactory;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.service.GenericService;
+import com.alibaba.dubbo.rpc.support.ProtocolUtils;
+
+/**
+ * 通过{@link GenericService}把录制文件中的调用重放到指定的提供方，统计吞吐量和耗时分布。
+ * <p>
+ * speed为1时按录制时的间隔发出，为2时两倍速，为0时不等待，由并发线程数限制在途调用数。
+ * 按间隔发出时耗时从计划发出的时间算起，包含排队等待线程的时间，线程不够时不会低估耗时。
+ * <p>
+ * 运行: java com.alibaba.dubbo.rpc.filter.capture.CaptureReplayer file dubbo://127.0.0.1:20880 [speed] [threads] [timeout]
+ */
+public class CaptureReplayer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CaptureReplayer.class);
+
+    private static final Protocol PROTOCOL = ExtensionLoader.getExtensionLoader(Protocol.class).getAdaptiveExtension();
+
+    private static final ProxyFactory PROXY_FACTORY = ExtensionLoader.getExtensionLoader(ProxyFactory.class).getAdaptiveExtension();
+
+    // 耗时分布的区间上界，毫秒
+    private static final long[] RANGES = {1, 5, 10, 50, 100, 500, 1000};
+
+    private final File file;
+
+    private final URL address;
+
+    private double speed = 1;
+
+    private int threads = 20;
+
+    private int timeout = Constants.DEFAULT_TIMEOUT;
+
+    private final Map<String, Invoker<GenericService>> invokers = new HashMap<String, Invoker<GenericService>>();
+
+    private final Map<String, GenericService> services = new HashMap<String, GenericService>();
+
+    /**
+     * @param file 录制文件
+     * @param address 提供方地址，如dubbo://127.0.0.1:20880
+     */
+    public CaptureReplayer(File file, String address) {
+        this.file = file;
+        this.address = URL.valueOf(address.indexOf("://") < 0 ? "dubbo://" + address : address);
+    }
+
+    public CaptureReplayer setSpeed(double speed) {
+        this.speed = speed;
+        return this;
+    }
+
+    public CaptureReplayer setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public CaptureReplayer setTimeout(int timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * 回放统计
+     */
+    public static class Report {
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong errors = new AtomicLong();
+
+        // 微秒
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private long elapsed;
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        /**
+         * 回放耗时，毫秒
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        public double getThroughput() {
+            return elapsed <= 0 ? 0 : count.get() * 1000.0 / elapsed;
+        }
+
+        /**
+         * 单次调用耗时的分布，微秒
+         */
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buf = new StringBuilder();
+            buf.append("Replayed ").append(count.get()).append(" invocations, errors: ").append(errors.get())
+                    .append(", elapsed: ").append(elapsed).append(" ms, throughput: ")
+                    .append(String.format("%.1f", getThroughput())).append(" /s\n");
+            buf.append("Latency(us) p50: ").append(histogram.getPercentile(0.5))
+                    .append(", p90: ").append(histogram.getPercentile(0.9))
+                    .append(", p99: ").append(histogram.getPercentile(0.99))
+                    .append(", p999: ").append(histogram.getPercentile(0.999))
+                    .append(", max: ").append(histogram.getPercentile(1.0)).append("\n");
+            long total = count.get();
+            long below = 0;
+            long from = 0;
+            for (long to : RANGES) {
+                long c = histogram.getCountBelow(to * 1000) - below;
+                below += c;
+                appendRange(buf, "(" + from + "," + to + "] ms", c, total);
+                from = to;
+            }
+            appendRange(buf, "> " + from + " ms", total - below, total);
+            return buf.toString();
+        }
+
+        private static void appendRange(StringBuilder buf, String name, long c, long total) {
+            buf.append(String.format("%-16s%10d%8.2f%%\n", name, c, total == 0 ? 0.0 : c * 100.0 / total));
+        }
+
+    }
+
+    public Report replay() throws IOException, InterruptedException {
+        final Report report = new Report();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("DubboCaptureReplayer", true));
+        // 不等待间隔时限制在途调用数
+        final Semaphore permits = speed > 0 ? null : new Semaphore(threads);
+        CaptureReader reader = new CaptureReader(file);
+        long begin = System.nanoTime();
+        try {
+            long first = -1;
+            CaptureRecord record;
+            while ((record = reader.next()) != null) {
+                final GenericService service = getService(record);
+                final String method = record.getMethod();
+                final String[] types = record.getParameterTypes();
+                final Object[] args = record.decodeArguments();
+                final Map<String, String> attachments = record.getAttachments();
+                long due = 0;
+                if (permits == null) {
+                    if (first < 0) {
+                        first = record.getTimestamp();
+                    }
+                    due = begin + (long) ((record.getTimestamp() - first) * 1000000L / speed);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                } else {
+                    permits.acquire();
+                }
+                final long scheduled = due;
+                executor.execute(new Runnable() {
+                    public void run() {
+                        long start = scheduled > 0 ? scheduled : System.nanoTime();
+                        RpcContext context = RpcContext.getContext();
+                        try {
+                            context.setAttachments(attachments);
+                            service.$invoke(method, types, args);
+                        } catch (Throwable t) {
+                            report.errors.incrementAndGet();
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("Failed to replay " + method + ", cause: " + t.getMessage(), t);
+                            }
+                        } finally {
+                            context.clearAttachments();
+                            report.histogram.record((System.nanoTime() - start) / 1000);
+                            report.count.incrementAndGet();
+                            if (permits != null) {
+                                permits.release();
+                            }
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            report.elapsed = (System.nanoTime() - begin) / 1000000;
+        } finally {
+            executor.shutdownNow();
+            reader.close();
+            destroy();
+        }
+        return report;
+    }
+
+    private GenericService getService(CaptureRecord record) {
+        String key = ProtocolUtils.serviceKey(address.getPort(), record.getService(), record.getVersion(), record.getGroup());
+        GenericService service = services.get(key);
+        if (service == null) {
+            URL url = address.setPath(record.getService())
+                    .addParameter(Constants.INTERFACE_KEY, record.getService())
+                    .addParameter(Constants.GENERIC_KEY, true)
+                    .addParameter(Constants.SIDE_KEY, Constants.CONSUMER_SIDE)
+                    .addParameter(Constants.TIMEOUT_KEY, timeout)
+                    .addParameterIfAbsent(Constants.GROUP_KEY, record.getGroup())
+                    .addParameterIfAbsent(Constants.VERSION_KEY, record.getVersion());
+            Invoker<GenericService> invoker = PROTOCOL.refer(GenericService.class, url);
+            service = PROXY_FACTORY.getProxy(invoker);
+            invokers.put(key, invoker);
+            services.put(key, service);
+        }
+        return service;
+    }
+
+    private void destroy() {
+        for (Invoker<GenericService> invoker : invokers.values()) {
+            try {
+                invoker.destroy();
+            } catch (Throwable t) {
+                logger.warn(t.getMessage(), t);
+            }
+        }
+        invokers.clear();
+        services.clear();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: CaptureReplayer file address [speed] [threads] [timeout]");
+            return;
+        }
+        CaptureReplayer replayer = new CaptureReplayer(new File(args[0]), args[1]);
+        if (args.length > 2) {
+            replayer.setSpeed(Double.parseDouble(args[2]));
+        }
+        if (args.length > 3) {
+            replayer.setThreads(Integer.parseInt(args[3]));
+        }
+        if (args.length > 4) {
+            replayer.setTimeout(Integer.parseInt(args[4]));
+        }
+        System.out.println(replayer.replay());
+    }
+
+}
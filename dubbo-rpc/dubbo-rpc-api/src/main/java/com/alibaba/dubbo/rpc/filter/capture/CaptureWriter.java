@@ -0,0 +1,167 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.capture;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+
+/**
+ * 录制文件的写入器。
+ * <p>
+ * 文件以魔数和版本号开头，之后每条记录是4字节长度加{@link CaptureRecord}的编码，只追加不改写。
+ * 业务线程通过{@link #offer(CaptureRecord)}放入有界队列，队列满时丢弃并计数；
+ * 唯一的写线程通过{@link #drain()}批量写入文件，文件超过最大字节数后不再写入。
+ */
+public class CaptureWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CaptureWriter.class);
+
+    static final int MAGIC = 0xDABBCA9E;
+
+    static final int VERSION = 1;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+
+    private final long maxFileSize;
+
+    private final BlockingQueue<byte[]> queue;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    // 以下字段只由写线程访问
+    private DataOutputStream output;
+
+    private long fileSize;
+
+    private boolean full;
+
+    /**
+     * @param file 录制文件
+     * @param capacity 队列容量
+     * @param maxFileSize 文件的最大字节数，小于等于0表示不限制
+     */
+    public CaptureWriter(File file, int capacity, long maxFileSize) {
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.queue = new ArrayBlockingQueue<byte[]>(Math.max(1, capacity));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * 放入一条记录，队列已满时丢弃。
+     *
+     * @return 是否放入成功
+     */
+    public boolean offer(CaptureRecord record) throws IOException {
+        if (! queue.offer(record.encode())) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 写出队列中已有的记录，只能由写线程调用。
+     *
+     * @return 写出的记录数
+     */
+    public int drain() {
+        int count = 0;
+        byte[] bytes = queue.poll();
+        if (bytes == null) {
+            return 0;
+        }
+        try {
+            ensureOpen();
+            do {
+                long size = 4 + bytes.length;
+                if (maxFileSize > 0 && fileSize + size > maxFileSize) {
+                    if (! full) {
+                        full = true;
+                        logger.warn("Capture file " + file.getAbsolutePath() + " reached capture.max.size " + maxFileSize
+                                + " bytes, stop capturing.");
+                    }
+                    dropped.incrementAndGet();
+                } else {
+                    output.writeInt(bytes.length);
+                    output.write(bytes);
+                    fileSize += size;
+                    count ++;
+                }
+                bytes = queue.poll();
+            } while (bytes != null);
+            output.flush();
+        } catch (IOException e) {
+            logger.error("Failed to write capture file " + file.getAbsolutePath() + ", cause: " + e.getMessage(), e);
+            close();
+        }
+        return count;
+    }
+
+    /**
+     * 写出剩余记录并关闭文件，之后再写入会重新打开。
+     */
+    public void close() {
+        OutputStream o = output;
+        if (o == null) {
+            return;
+        }
+        output = null;
+        try {
+            o.close();
+        } catch (IOException e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (output != null) {
+            return;
+        }
+        File dir = file.getParentFile();
+        if (dir != null && ! dir.exists()) {
+            dir.mkdirs();
+        }
+        boolean empty = ! file.exists() || file.length() == 0;
+        fileSize = empty ? 0 : file.length();
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), WRITE_BUFFER_SIZE));
+        if (empty) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            fileSize = 8;
+        }
+    }
+
+}
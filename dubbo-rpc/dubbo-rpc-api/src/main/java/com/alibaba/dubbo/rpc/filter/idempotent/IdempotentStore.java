@@ -0,0 +1,166 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.idempotent;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcStatus;
+
+/**
+ * 提供方按请求键记录执行中和已完成的调用结果。
+ * <p>
+ * 条目按加入顺序排列，超过容量时淘汰最早的已完成条目；已完成的条目在ttl后过期，执行中的条目不淘汰，一直保留到完成，
+ * 所以执行中的调用较多时条目数会暂时超过容量。
+ * 执行失败（框架异常）的条目在完成时移除，重试会重新执行。
+ *
+ * @see com.alibaba.dubbo.rpc.filter.IdempotentFilter
+ */
+public class IdempotentStore {
+
+    private static final String STORE_KEY = "idempotent.store.";
+
+    /**
+     * 存储挂在服务的统计上，随提供者Invoker销毁时释放的统计一起移除；重新配置容量或ttl时就地更新，保留已有条目
+     */
+    public static IdempotentStore getStore(URL url) {
+        int capacity = url.getParameter(Constants.IDEMPOTENT_CAPACITY_KEY, Constants.DEFAULT_IDEMPOTENT_CAPACITY);
+        long ttl = url.getParameter(Constants.IDEMPOTENT_TTL_KEY, Constants.DEFAULT_IDEMPOTENT_TTL);
+        RpcStatus status = RpcStatus.getStatus(url);
+        // 同一路径不同分组或版本的服务共享统计，分别存储
+        String key = STORE_KEY + url.getServiceKey();
+        IdempotentStore store = (IdempotentStore) status.get(key);
+        if (store == null) {
+            synchronized (status) {
+                store = (IdempotentStore) status.get(key);
+                if (store == null) {
+                    store = new IdempotentStore(capacity, ttl);
+                    status.set(key, store);
+                }
+            }
+        }
+        if (store.capacity != capacity || store.ttl != ttl) {
+            store.configure(capacity, ttl);
+        }
+        return store;
+    }
+
+    /**
+     * 一次调用的结果，完成前重复的请求都等待同一个结果
+     */
+    public static class Entry {
+
+        private final AsyncRpcResult result = new AsyncRpcResult();
+
+        private volatile long expireAt = Long.MAX_VALUE;
+
+        public AsyncRpcResult getResult() {
+            return result;
+        }
+
+        public boolean isDone() {
+            return result.isDone();
+        }
+
+    }
+
+    private volatile int capacity;
+
+    private volatile long ttl;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    public IdempotentStore(int capacity, long ttl) {
+        this.capacity = capacity;
+        this.ttl = ttl;
+    }
+
+    /**
+     * 登记一次调用。
+     *
+     * @return 已有同一请求键的未过期条目时返回该条目，否则登记entry并返回null，由调用方执行后{@link #complete}
+     */
+    public Entry putIfAbsent(String key, Entry entry) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry existing = entries.get(key);
+            if (existing != null && existing.expireAt > now) {
+                return existing;
+            }
+            entries.remove(key);
+            evict(now);
+            entries.put(key, entry);
+            return null;
+        }
+    }
+
+    /**
+     * 完成调用并唤醒等待同一结果的重复请求，框架异常不保存。
+     */
+    public void complete(String key, Entry entry, Result result) {
+        boolean cacheable = ! (result.getException() instanceof RpcException);
+        entry.expireAt = cacheable ? System.currentTimeMillis() + ttl : 0;
+        if (! cacheable) {
+            synchronized (entries) {
+                if (entries.get(key) == entry) {
+                    entries.remove(key);
+                }
+            }
+        }
+        entry.result.complete(result);
+    }
+
+    /**
+     * 更新容量和ttl，超出新容量的已完成条目在下次登记时淘汰，已完成条目的过期时间不变
+     */
+    public void configure(int capacity, long ttl) {
+        synchronized (entries) {
+            this.capacity = capacity;
+            this.ttl = ttl;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    // 过期时间不按加入顺序，排在后面的过期条目到了队首或被再次查询时才清除；
+    // 淘汰执行中的条目会让重复请求再执行一次，所以超过容量时跳过它们
+    private void evict(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry head = iterator.next();
+            if (head.expireAt > now) {
+                if (entries.size() < capacity) {
+                    break;
+                }
+                if (head.expireAt == Long.MAX_VALUE) {
+                    continue;
+                }
+            }
+            iterator.remove();
+        }
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.limit;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.RpcStatus;
+
+/**
+ * 消费方并发调用的准入队列。
+ * <p>
+ * 基于公平信号量，超过并发上限的调用按到达顺序排队，每个等待者有自己的截止时间，
+ * 名额释放时只唤醒队首的一个等待者，避免 wait/notify 方式的锁竞争和乱序唤醒。
+ *
+ * @see com.alibaba.dubbo.rpc.filter.ActiveLimitFilter
+ */
+public class ActiveLimiter {
+
+    private static final String LIMITER_KEY = "active.limiter";
+
+    public static ActiveLimiter getLimiter(URL url, String methodName) {
+        return getLimiter(RpcStatus.getStatus(url, methodName));
+    }
+
+    public static ActiveLimiter getLimiter(RpcStatus status) {
+        ActiveLimiter limiter = (ActiveLimiter) status.get(LIMITER_KEY);
+        if (limiter == null) {
+            synchronized (status) {
+                limiter = (ActiveLimiter) status.get(LIMITER_KEY);
+                if (limiter == null) {
+                    limiter = new ActiveLimiter();
+                    status.set(LIMITER_KEY, limiter);
+                }
+            }
+        }
+        return limiter;
+    }
+
+    private final Permits permits = new Permits();
+
+    private volatile int max;
+
+    private final AtomicLong waited = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private final AtomicLong totalWaitTime = new AtomicLong();
+
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    /**
+     * 在超时时间内按到达顺序获取一个并发名额。
+     *
+     * @param max 并发上限，配置变化时调整名额总数
+     * @param timeout 最长等待时间，毫秒
+     * @return 是否获取成功，超时或线程被中断时返回 false
+     */
+    public boolean acquire(int max, long timeout) {
+        if (max != this.max) {
+            resize(max);
+        }
+        try {
+            // 带超时的 tryAcquire 遵守公平顺序，有人排队时不会插队
+            if (permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+            long begin = System.nanoTime();
+            boolean acquired = false;
+            try {
+                acquired = permits.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+            } finally {
+                long elapsed = System.nanoTime() - begin;
+                waited.incrementAndGet();
+                totalWaitTime.addAndGet(elapsed);
+                long current;
+                while ((current = maxWaitTime.get()) < elapsed && ! maxWaitTime.compareAndSet(current, elapsed)) {
+                }
+                if (! acquired) {
+                    timeouts.incrementAndGet();
+                }
+            }
+            return acquired;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    private synchronized void resize(int max) {
+        int delta = max - this.max;
+        if (delta > 0) {
+            permits.release(delta);
+        } else if (delta < 0) {
+            // 名额可以减为负数，正在执行的调用归还后才允许新的调用进入
+            permits.reducePermits(- delta);
+        }
+        this.max = max;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * 当前排队等待的调用数
+     */
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * 累计排队过的调用数
+     */
+    public long getWaited() {
+        return waited.get();
+    }
+
+    /**
+     * 累计排队超时的调用数
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * 累计排队时间，毫秒
+     */
+    public long getTotalWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitTime.get());
+    }
+
+    /**
+     * 平均排队时间，毫秒
+     */
+    public long getAverageWaitTime() {
+        long count = getWaited();
+        if (count == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitTime.get() / count);
+    }
+
+    /**
+     * 最长排队时间，毫秒
+     */
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get());
+    }
+
+    public String toString() {
+        return new StringBuilder(64).append("ActiveLimiter ")
+            .append("[max=").append(max)
+            .append(", queue=").append(getQueueLength())
+            .append(", waited=").append(getWaited())
+            .append(", timeouts=").append(getTimeouts())
+            .append(", maxWaitTime=").append(getMaxWaitTime()).append("]")
+            .toString();
+    }
+
+    private static class Permits extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        Permits() {
+            super(0, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alibaba.dubbo.common.Constants;
+
+/**
+ * 根据响应时间自适应调整的并发上限。
+ * <p>
+ * 以窗口内的最小 RTT 作为无排队时的基线，实测 RTT 相对基线变长说明请求开始排队，
+ * 收缩上限；RTT 贴近基线且并发接近上限时放大上限，使并发维持在延迟曲线的拐点附近。
+ * 支持 gradient 与 vegas 两种算法。
+ */
+public class AdaptiveLimiter {
+
+    // 最小 RTT 基线的有效期，过期后重新探测以跟随服务能力的变化
+    static final long MIN_RTT_WINDOW = TimeUnit.SECONDS.toNanos(30);
+
+    // gradient 算法新旧上限的平滑系数
+    private static final double SMOOTHING = 0.2;
+
+    // 超时等丢弃信号出现时的乘性收缩比例
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final boolean vegas;
+
+    private final int initialLimit;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private volatile double limit;
+
+    private long minRtt;
+
+    private long minRttTime;
+
+    public AdaptiveLimiter(String algorithm, int initialLimit, int minLimit, int maxLimit) {
+        this.vegas = Constants.VEGAS_ADAPTIVE_LIMIT.equals(algorithm);
+        this.initialLimit = initialLimit;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * 占用一个并发名额，超过当前上限时立即返回 false。
+     */
+    public boolean tryAcquire() {
+        for (;;) {
+            int current = inflight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放名额并用本次调用的结果更新上限。
+     *
+     * @param rtt 调用耗时，纳秒
+     * @param dropped 调用是否因超时等过载信号失败
+     */
+    public void release(long rtt, boolean dropped) {
+        int current = inflight.getAndDecrement();
+        synchronized (this) {
+            if (dropped) {
+                setLimit(limit * BACKOFF_RATIO);
+                return;
+            }
+            if (rtt <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            // 并发打满时的 RTT 包含排队时间，用它重新探测会抬高基线后又被当作排队一路收缩上限，等未打满时再探测
+            boolean saturated = current >= (int) limit;
+            if (minRtt == 0 || rtt < minRtt || (now - minRttTime > MIN_RTT_WINDOW && ! saturated)) {
+                minRtt = rtt;
+                minRttTime = now;
+            }
+            double newLimit = vegas ? vegas(rtt) : gradient(rtt);
+            // 并发远未用满时 RTT 无法反映容量，不放大上限
+            if (newLimit > limit && current * 2 < limit) {
+                return;
+            }
+            setLimit(newLimit);
+        }
+    }
+
+    private double gradient(long rtt) {
+        double gradient = Math.max(0.5, Math.min(1.0, (double) minRtt / rtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        return limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+    }
+
+    private double vegas(long rtt) {
+        // 估算排队中的请求数，介于 alpha 与 beta 之间时保持不变
+        double queue = limit * (1 - (double) minRtt / rtt);
+        double log = Math.max(1, Math.log10(limit));
+        if (queue < 3 * log) {
+            return limit + log;
+        } else if (queue > 6 * log) {
+            return limit - log;
+        }
+        return limit;
+    }
+
+    /**
+     * 配置是否相同，配置变化时需要重建
+     */
+    public boolean isSameConfig(String algorithm, int initialLimit, int minLimit, int maxLimit) {
+        return vegas == Constants.VEGAS_ADAPTIVE_LIMIT.equals(algorithm) && this.initialLimit == initialLimit
+                && this.minLimit == Math.max(1, minLimit) && this.maxLimit == Math.max(this.minLimit, maxLimit);
+    }
+
+    private void setLimit(double newLimit) {
+        limit = Math.min(maxLimit, Math.max(minLimit, newLimit));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public synchronized long getMinRtt() {
+        return minRtt;
+    }
+
+    public String toString() {
+        return new StringBuilder(64).append("AdaptiveLimiter ")
+            .append("[algorithm=").append(vegas ? Constants.VEGAS_ADAPTIVE_LIMIT : Constants.GRADIENT_ADAPTIVE_LIMIT)
+            .append(", limit=").append(getLimit())
+            .append(", inflight=").append(getInflight()).append("]")
+            .toString();
+    }
+
+}
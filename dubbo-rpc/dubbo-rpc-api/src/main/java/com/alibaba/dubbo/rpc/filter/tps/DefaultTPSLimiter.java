@@ -24,6 +24,8 @@ import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.rpc.Invocation;
 
 /**
+ * 默认按服务限流，tps.keys 可以加上 method 和 application，分别按方法和消费方应用单独限流。
+ *
  * @author <a href="mailto:gang.lvg@alibaba-inc.com">kimi</a>
  */
 public class DefaultTPSLimiter implements TPSLimiter {
@@ -32,26 +34,49 @@ public class DefaultTPSLimiter implements TPSLimiter {
         = new ConcurrentHashMap<String, StatItem>();
     
     public boolean isAllowable(URL url, Invocation invocation) {
-        int rate = url.getParameter(Constants.TPS_LIMIT_RATE_KEY, -1);
-        long interval = url.getParameter(Constants.TPS_LIMIT_INTERVAL_KEY,
-                                         Constants.DEFAULT_TPS_LIMIT_INTERVAL);
-        String serviceKey = url.getServiceKey();
+        String methodName = invocation.getMethodName();
+        int rate = url.getMethodParameter(methodName, Constants.TPS_LIMIT_RATE_KEY, -1);
+        long interval = url.getMethodParameter(methodName, Constants.TPS_LIMIT_INTERVAL_KEY,
+                                               Constants.DEFAULT_TPS_LIMIT_INTERVAL);
+        String key = getKey(url, invocation);
         if (rate > 0) {
-            StatItem statItem = stats.get(serviceKey);
-            if (statItem == null) {
-                stats.putIfAbsent(serviceKey,
-                                  new StatItem(serviceKey, rate, interval));
-                statItem = stats.get(serviceKey);
+            int burst = url.getMethodParameter(methodName, Constants.TPS_LIMIT_BURST_KEY, rate);
+            StatItem statItem = stats.get(key);
+            if (statItem == null || ! statItem.isSameConfig(rate, interval, burst)) {
+                // 限流配置变化时重建令牌桶
+                StatItem newItem = new StatItem(key, rate, interval, burst);
+                if (statItem == null) {
+                    stats.putIfAbsent(key, newItem);
+                } else {
+                    stats.replace(key, statItem, newItem);
+                }
+                statItem = stats.get(key);
             }
             return statItem.isAllowable(url, invocation);
         } else {
-            StatItem statItem = stats.get(serviceKey);
+            StatItem statItem = stats.get(key);
             if (statItem != null) {
-                stats.remove(serviceKey);
+                stats.remove(key);
             }
         }
 
         return true;
     }
 
+    private static String getKey(URL url, Invocation invocation) {
+        String keys = url.getMethodParameter(invocation.getMethodName(), Constants.TPS_LIMIT_KEYS_KEY, "");
+        if (keys.length() == 0) {
+            return url.getServiceKey();
+        }
+        StringBuilder key = new StringBuilder(url.getServiceKey());
+        for (String k : Constants.COMMA_SPLIT_PATTERN.split(keys)) {
+            if (Constants.METHOD_KEY.equals(k)) {
+                key.append('#').append(invocation.getMethodName());
+            } else if (Constants.APPLICATION_KEY.equals(k)) {
+                key.append('@').append(invocation.getAttachment(Constants.APPLICATION_KEY, ""));
+            }
+        }
+        return key.toString();
+    }
+
 }
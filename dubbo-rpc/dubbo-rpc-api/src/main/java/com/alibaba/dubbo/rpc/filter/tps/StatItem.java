@@ -16,64 +16,81 @@
 
 package com.alibaba.dubbo.rpc.filter.tps;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.rpc.Invocation;
 
 /**
+ * 令牌桶，按 GCRA 算法实现：只记录理论到达时间，令牌随时间平滑补充，
+ * 桶满时最多允许 burst 个请求的突发，判断只需一次 CAS，没有固定窗口重置时的竞争。
+ *
  * @author <a href="mailto:gang.lvg@alibaba-inc.com">kimi</a>
  */
 class StatItem {
 
-    private String name;
+    private final String name;
 
-    private long lastResetTime;
+    private final int rate;
 
-    private long interval;
+    private final long interval;
 
-    private AtomicInteger token;
+    private final int burst;
 
-    private int rate;
+    // 补充一个令牌的时间，纳秒
+    private final long emission;
+
+    // 桶容量对应的时间
+    private final long tolerance;
+
+    // 理论到达时间，领先当前时间的部分就是已经透支的令牌
+    private final AtomicLong tat;
 
     StatItem(String name, int rate, long interval) {
+        this(name, rate, interval, rate);
+    }
+
+    StatItem(String name, int rate, long interval, int burst) {
         this.name = name;
         this.rate = rate;
         this.interval = interval;
-        this.lastResetTime = System.currentTimeMillis();
-        this.token = new AtomicInteger(rate);
+        this.burst = Math.max(1, burst);
+        this.emission = Math.max(1L, TimeUnit.MILLISECONDS.toNanos(interval) / rate);
+        this.tolerance = emission * this.burst;
+        this.tat = new AtomicLong(System.nanoTime());
     }
 
     public boolean isAllowable(URL url, Invocation invocation) {
-        long now = System.currentTimeMillis();
-        if (now > lastResetTime + interval) {
-            token.set(rate);
-            lastResetTime = now;
+        long now = System.nanoTime();
+        for (;;) {
+            long current = tat.get();
+            long next = Math.max(current, now) + emission;
+            if (next - now > tolerance) {
+                return false;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return true;
+            }
         }
-
-        int value = token.get();
-        boolean flag = false;
-        while (value > 0 && !flag) {
-            flag = token.compareAndSet(value, value - 1);
-            value = token.get();
-        }
-
-        return flag;
     }
 
-    long getLastResetTime() {
-        return lastResetTime;
+    boolean isSameConfig(int rate, long interval, int burst) {
+        return this.rate == rate && this.interval == interval && this.burst == Math.max(1, burst);
     }
-    
+
     int getToken() {
-        return token.get();
+        long now = System.nanoTime();
+        long debt = Math.max(0L, tat.get() - now);
+        return (int) ((tolerance - debt) / emission);
     }
-    
+
     public String toString() {
         return new StringBuilder(32).append("StatItem ")
             .append("[name=").append(name).append(", ")
             .append("rate = ").append(rate).append(", ")
-            .append("interval = ").append(interval).append("]")
+            .append("interval = ").append(interval).append(", ")
+            .append("burst = ").append(burst).append("]")
             .toString();
     }
 
@@ -33,6 +33,7 @@ import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcInvocation;
 import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.RpcStatus;
 import com.alibaba.dubbo.rpc.support.RpcUtils;
 
 /**
@@ -71,6 +72,7 @@ public abstract class AbstractInvoker<T> implements Invoker<T> {
         this.type = type;
         this.url = url;
         this.attachment = attachment == null ? null : Collections.unmodifiableMap(attachment);
+        RpcStatus.retainStatus(url);
     }
     
     private static Map<String, String> convertAttachment(URL url, String[] keys) {
@@ -109,6 +111,7 @@ public abstract class AbstractInvoker<T> implements Invoker<T> {
         }
         destroyed = true;
         setAvailable(false);
+        RpcStatus.releaseStatus(getUrl());
     }
     
     public boolean isDestroyed() {
@@ -15,11 +15,16 @@
  */
 package com.alibaba.dubbo.rpc.protocol;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.rpc.ConditionalFilter;
 import com.alibaba.dubbo.rpc.Exporter;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
@@ -61,14 +66,22 @@ public class ProtocolFilterWrapper implements Protocol {
          * 也就是根据url中配置的参数来进行获取。
          * 我们也可以实现自己的Filter添加进来，导出服务的时候就会经过Filter的过滤操作
          */
-        return protocol.export(buildInvokerChain(invoker, Constants.SERVICE_FILTER_KEY, Constants.PROVIDER));
+        return protocol.export(buildInvokerChain(invoker, filterKey(invoker.getUrl(), Constants.SERVICE_FILTER_KEY), Constants.PROVIDER));
     }
 
     public <T> Invoker<T> refer(Class<T> type, URL url) throws RpcException {
         if (Constants.REGISTRY_PROTOCOL.equals(url.getProtocol())) {
             return protocol.refer(type, url);
         }
-        return buildInvokerChain(protocol.refer(type, url), Constants.REFERENCE_FILTER_KEY, Constants.CONSUMER);
+        return buildInvokerChain(protocol.refer(type, url), filterKey(url, Constants.REFERENCE_FILTER_KEY), Constants.CONSUMER);
+    }
+
+    // injvm调用可以用injvm.filter单独配置更精简的Filter，如"-default"去掉全部默认Filter
+    private static String filterKey(URL url, String key) {
+        if (Constants.LOCAL_PROTOCOL.equals(url.getProtocol()) && url.hasParameter(Constants.INJVM_FILTER_KEY)) {
+            return Constants.INJVM_FILTER_KEY;
+        }
+        return key;
     }
 
     public void destroy() {
@@ -76,9 +89,19 @@ public class ProtocolFilterWrapper implements Protocol {
     }
 
     private static <T> Invoker<T> buildInvokerChain(final Invoker<T> invoker, String key, String group) {
-        Invoker<T> last = invoker;
         // 获取可激活的过滤链数组
         List<Filter> filters = ExtensionLoader.getExtensionLoader(Filter.class).getActivateExtension(invoker.getUrl(), key, group);
+        for (Filter filter : filters) {
+            if (filter instanceof ConditionalFilter) {
+                // 有只对部分方法生效的Filter时，为每个方法构建去掉无效Filter的调用链
+                return new MethodChainInvoker<T>(invoker, key, group, filters);
+            }
+        }
+        return buildChain(invoker, filters);
+    }
+
+    private static <T> Invoker<T> buildChain(final Invoker<T> invoker, List<Filter> filters) {
+        Invoker<T> last = invoker;
         if (filters.size() > 0) {
             for (int i = filters.size() - 1; i >= 0; i --) {
                 final Filter filter = filters.get(i);
@@ -114,5 +137,98 @@ public class ProtocolFilterWrapper implements Protocol {
         }
         return last;
     }
-    
+
+    /**
+     * 按方法名分派到各自的调用链，URL变化（重新配置）时重新构建。
+     */
+    private static class MethodChainInvoker<T> implements Invoker<T> {
+
+        private final Invoker<T> invoker;
+
+        private final String key;
+
+        private final String group;
+
+        private volatile MethodChains<T> chains;
+
+        MethodChainInvoker(Invoker<T> invoker, String key, String group, List<Filter> filters) {
+            this.invoker = invoker;
+            this.key = key;
+            this.group = group;
+            this.chains = new MethodChains<T>(invoker, invoker.getUrl(), filters);
+        }
+
+        public Class<T> getInterface() {
+            return invoker.getInterface();
+        }
+
+        public URL getUrl() {
+            return invoker.getUrl();
+        }
+
+        public boolean isAvailable() {
+            return invoker.isAvailable();
+        }
+
+        public Result invoke(Invocation invocation) throws RpcException {
+            MethodChains<T> c = chains;
+            URL url = invoker.getUrl();
+            if (c.url != url) {
+                c = new MethodChains<T>(invoker, url, ExtensionLoader.getExtensionLoader(Filter.class).getActivateExtension(url, key, group));
+                chains = c;
+            }
+            Invoker<T> chain = c.methods.get(invocation.getMethodName());
+            if (chain == null) {
+                chain = c.all;
+            }
+            return chain.invoke(invocation);
+        }
+
+        public void destroy() {
+            invoker.destroy();
+        }
+
+        @Override
+        public String toString() {
+            return invoker.toString();
+        }
+    }
+
+    private static class MethodChains<T> {
+
+        final URL url;
+
+        // 未知方法（如泛化调用）使用的完整调用链
+        final Invoker<T> all;
+
+        final Map<String, Invoker<T>> methods = new HashMap<String, Invoker<T>>();
+
+        MethodChains(Invoker<T> invoker, URL url, List<Filter> filters) {
+            this.url = url;
+            this.all = buildChain(invoker, filters);
+            // 过滤后相同的调用链共用
+            Map<List<Filter>, Invoker<T>> built = new HashMap<List<Filter>, Invoker<T>>();
+            built.put(filters, all);
+            Method[] ms = invoker.getInterface() == null ? new Method[0] : invoker.getInterface().getMethods();
+            for (Method method : ms) {
+                String name = method.getName();
+                if (methods.containsKey(name)) {
+                    continue;
+                }
+                List<Filter> enabled = new ArrayList<Filter>(filters.size());
+                for (Filter filter : filters) {
+                    if (! (filter instanceof ConditionalFilter) || ((ConditionalFilter) filter).isEnabled(url, name)) {
+                        enabled.add(filter);
+                    }
+                }
+                Invoker<T> chain = built.get(enabled);
+                if (chain == null) {
+                    chain = buildChain(invoker, enabled);
+                    built.put(enabled, chain);
+                }
+                methods.put(name, chain);
+            }
+        }
+    }
+
 }
\ No newline at end of file
@@ -16,13 +16,20 @@
 package com.alibaba.dubbo.rpc.proxy;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.AsyncContext;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcFuture;
 import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.RpcStatus;
 
 /**
  * InvokerWrapper
@@ -37,6 +44,11 @@ public abstract class AbstractProxyInvoker<T> implements Invoker<T> {
     
     private final URL url;
 
+    // 过滤器统计时使用的URL
+    private final URL statusUrl;
+
+    private final AtomicBoolean destroyed = new AtomicBoolean();
+
     public AbstractProxyInvoker(T proxy, Class<T> type, URL url){
         if (proxy == null) {
             throw new IllegalArgumentException("proxy == null");
@@ -50,6 +62,23 @@ public abstract class AbstractProxyInvoker<T> implements Invoker<T> {
         this.proxy = proxy;
         this.type = type;
         this.url = url;
+        this.statusUrl = getStatusUrl(url);
+        if (statusUrl != null) {
+            RpcStatus.retainStatus(statusUrl);
+        }
+    }
+
+    /**
+     * 通过注册中心暴露时URL是registry://...?export=，过滤器链建立在其中的提供者URL上，统计也按提供者URL登记
+     */
+    private static URL getStatusUrl(URL url) {
+        if (url != null && Constants.REGISTRY_PROTOCOL.equals(url.getProtocol())) {
+            String export = url.getParameterAndDecoded(Constants.EXPORT_KEY);
+            if (export != null && export.length() > 0) {
+                return URL.valueOf(export);
+            }
+        }
+        return url;
     }
 
     public Class<T> getInterface() {
@@ -65,15 +94,44 @@ public abstract class AbstractProxyInvoker<T> implements Invoker<T> {
     }
 
     public void destroy() {
+        if (statusUrl != null && destroyed.compareAndSet(false, true)) {
+            RpcStatus.releaseStatus(statusUrl);
+        }
     }
 
     public Result invoke(Invocation invocation) throws RpcException {
+        RpcContext context = RpcContext.getContext();
+        // 同一线程中嵌套的本地调用不能取走外层调用开启的异步上下文
+        AsyncContext outer = context.getAsyncContext();
+        context.setAsyncContext(null);
         try {
-            return new RpcResult(doInvoke(proxy, invocation.getMethodName(), invocation.getParameterTypes(), invocation.getArguments()));
+            Object value = doInvoke(proxy, invocation.getMethodName(), invocation.getParameterTypes(), invocation.getArguments());
+            AsyncContext asyncContext = context.getAsyncContext();
+            if (asyncContext != null) {
+                // 服务方法开启了异步，返回值被忽略，结果由AsyncContext写出
+                return asyncContext.getResult();
+            }
+            if (value instanceof RpcFuture) {
+                // 服务方法返回RpcFuture，完成时再写出结果
+                final AsyncRpcResult result = new AsyncRpcResult();
+                ((RpcFuture<?>) value).addListener(new RpcFuture.Listener<Object>() {
+                    public void onSuccess(Object v) {
+                        result.complete(new RpcResult(v));
+                    }
+
+                    public void onFailure(Throwable exception) {
+                        result.complete(new RpcResult(exception));
+                    }
+                }, null);
+                return result;
+            }
+            return new RpcResult(value);
         } catch (InvocationTargetException e) {
             return new RpcResult(e.getTargetException());
         } catch (Throwable e) {
             throw new RpcException("Failed to invoke remote proxy method " + invocation.getMethodName() + " to " + getUrl() + ", cause: " + e.getMessage(), e);
+        } finally {
+            context.setAsyncContext(outer);
         }
     }
     
@@ -17,8 +17,21 @@ package com.alibaba.dubbo.rpc.proxy;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 
 import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcFuture;
 import com.alibaba.dubbo.rpc.RpcInvocation;
 
 /**
@@ -28,7 +41,28 @@ import com.alibaba.dubbo.rpc.RpcInvocation;
  */
 public class InvokerInvocationHandler implements InvocationHandler {
 
+    private static final Logger logger = LoggerFactory.getLogger(InvokerInvocationHandler.class);
+
+    // 方法不合并调用时的占位
+    private static final Object NONE = new Object();
+
     private final Invoker<?> invoker;
+
+    private final ConcurrentMap<Method, CollapserHolder> collapsers = new ConcurrentHashMap<Method, CollapserHolder>();
+
+    // 合并器按创建时的URL缓存，配置变更后invoker的URL随之变化，再次调用时按新配置重新创建
+    private static class CollapserHolder {
+
+        final URL url;
+
+        final Object collapser;
+
+        CollapserHolder(URL url, Object collapser) {
+            this.url = url;
+            this.collapser = collapser;
+        }
+
+    }
     
     public InvokerInvocationHandler(Invoker<?> handler){
         this.invoker = handler;
@@ -59,7 +93,135 @@ public class InvokerInvocationHandler implements InvocationHandler {
          * invoker是MockClusterInvoker，
          * MockClusterInvoker内部封装了服务降级逻辑
          */
-        return invoker.invoke(new RpcInvocation(method, args)).recreate();
+        if (parameterTypes.length == 1) {
+            RequestCollapser collapser = getCollapser(method);
+            if (collapser != null) {
+                RpcFuture<Object> future = collapser.submit(args[0]);
+                if (method.getReturnType() == RpcFuture.class) {
+                    return future;
+                }
+                try {
+                    return future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+        if (method.getReturnType() == RpcFuture.class) {
+            return invokeAsync(new RpcInvocation(method, args));
+        }
+        Result result = invoker.invoke(new RpcInvocation(method, args));
+        if (result instanceof AsyncRpcResult && ! ((AsyncRpcResult) result).isDone()
+                && RpcContext.getContext().isBatchStarted()) {
+            // 批量调用在flushBatch之后才有结果，通过RpcContext中的Future获取
+            return null;
+        }
+        return result.recreate();
+    }
+
+    /**
+     * 配置了collapse的单参数方法，并发调用合并为对批量方法的一次调用
+     */
+    private RequestCollapser getCollapser(Method method) {
+        URL url = invoker.getUrl();
+        CollapserHolder holder = collapsers.get(method);
+        if (holder == null || (holder.url != url && (url == null || ! url.equals(holder.url)))) {
+            CollapserHolder created = new CollapserHolder(url, createCollapser(url, method));
+            boolean stored = holder == null ? collapsers.putIfAbsent(method, created) == null
+                    : collapsers.replace(method, holder, created);
+            holder = stored ? created : collapsers.get(method);
+        }
+        return holder.collapser == NONE ? null : (RequestCollapser) holder.collapser;
+    }
+
+    private Object createCollapser(URL url, Method method) {
+        String name = method.getName();
+        String batchName = url == null ? null : url.getMethodParameter(name, Constants.COLLAPSE_KEY);
+        if (batchName == null || batchName.length() == 0) {
+            return NONE;
+        }
+        Method batchMethod = RequestCollapser.findBatchMethod(invoker.getInterface(), batchName);
+        if (batchMethod == null) {
+            logger.warn("Ignore collapse=" + batchName + " of method " + name + " in " + invoker.getInterface().getName()
+                    + ", batch method must take a single List, Set, Collection or array parameter.");
+            return NONE;
+        }
+        long window = url.getMethodParameter(name, Constants.COLLAPSE_WINDOW_KEY, Constants.DEFAULT_COLLAPSE_WINDOW);
+        int size = url.getMethodParameter(name, Constants.COLLAPSE_SIZE_KEY, Constants.DEFAULT_COLLAPSE_SIZE);
+        return new RequestCollapser(batchMethod, window, size) {
+            @Override
+            @SuppressWarnings("unchecked")
+            protected RpcFuture<Object> invokeBatch(Method batchMethod, Object argument) {
+                return (RpcFuture<Object>) invokeAsync(new RpcInvocation(batchMethod, new Object[] {argument}));
+            }
+        };
+    }
+
+    /**
+     * 返回RpcFuture的方法按异步调用，不阻塞调用线程
+     */
+    private Object invokeAsync(RpcInvocation invocation) {
+        invocation.setAttachment(Constants.ASYNC_KEY, Boolean.TRUE.toString());
+        RpcContext context = RpcContext.getContext();
+        context.setFuture(null);
+        final RpcFuture<Object> future = new RpcFuture<Object>();
+        Result result;
+        try {
+            result = invoker.invoke(invocation);
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            return future;
+        }
+        Future<?> f = context.getFuture();
+        if (f instanceof RpcFuture) {
+            // 协议返回的Future可能保留了旧的get()语义，转接到标准语义的RpcFuture
+            @SuppressWarnings("unchecked")
+            RpcFuture<Object> inner = (RpcFuture<Object>) f;
+            chain(inner, future);
+            return future;
+        }
+        if (result instanceof AsyncRpcResult) {
+            // 本地调用的提供方异步执行
+            ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                public void onComplete(Result r) {
+                    complete(future, r);
+                }
+            });
+        } else {
+            // 协议不支持异步时已经得到结果
+            complete(future, result);
+        }
+        return future;
+    }
+
+    private static void complete(RpcFuture<Object> future, Result result) {
+        Object value;
+        try {
+            value = result.recreate();
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            return;
+        }
+        // 本地调用的提供方直接返回RpcFuture
+        if (value instanceof RpcFuture) {
+            @SuppressWarnings("unchecked")
+            RpcFuture<Object> inner = (RpcFuture<Object>) value;
+            chain(inner, future);
+        } else {
+            future.complete(value);
+        }
+    }
+
+    private static void chain(RpcFuture<Object> from, final RpcFuture<Object> to) {
+        from.addListener(new RpcFuture.Listener<Object>() {
+            public void onSuccess(Object value) {
+                to.complete(value);
+            }
+
+            public void onFailure(Throwable exception) {
+                to.completeExceptionally(exception);
+            }
+        }, null);
     }
 
 }
\ No newline at end of file
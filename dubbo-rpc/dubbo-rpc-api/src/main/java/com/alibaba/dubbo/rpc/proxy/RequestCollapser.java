@@ -0,0 +1,219 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.proxy;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.rpc.RpcFuture;
+
+/**
+ * 把并发的单个调用合并为一次批量调用。
+ * <p>
+ * 第一个调用开始一个窗口，窗口到期或攒够批量大小时以收集到的参数调用批量方法，
+ * 批量方法返回Map时按参数取各自的结果，返回List或数组时按顺序取结果。
+ *
+ * @see InvokerInvocationHandler
+ */
+abstract class RequestCollapser {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestCollapser.class);
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory("DubboRequestCollapser", true));
+
+    // 发起批量调用可能阻塞（建立连接、同步执行的Filter等），窗口到期的批量交给这里执行，唯一的定时线程只负责计时；
+    // 线程按需创建，排队会让阻塞的批量拖住后面的批量，所以不排队，线程用满时退回定时线程执行
+    private static final ExecutorService EXECUTOR = new ThreadPoolExecutor(0, Constants.DEFAULT_THREADS,
+            60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+            new NamedThreadFactory("DubboRequestCollapserExecutor", true), new ThreadPoolExecutor.CallerRunsPolicy());
+
+    private final Method batchMethod;
+
+    private final Class<?> batchType;
+
+    private final long window;
+
+    private final int maxSize;
+
+    private final Object lock = new Object();
+
+    private Batch current;
+
+    private class Batch implements Runnable {
+
+        final List<Object> keys = new ArrayList<Object>();
+
+        final List<RpcFuture<Object>> futures = new ArrayList<RpcFuture<Object>>();
+
+        // 窗口到期
+        public void run() {
+            EXECUTOR.execute(new Runnable() {
+                public void run() {
+                    flush(Batch.this);
+                }
+            });
+        }
+
+    }
+
+    RequestCollapser(Method batchMethod, long window, int maxSize) {
+        this.batchMethod = batchMethod;
+        this.batchType = batchMethod.getParameterTypes()[0];
+        this.window = window;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 查找可以合并单个调用的批量方法：只有一个List、Set、Collection或数组参数
+     *
+     * @return 不符合时返回null
+     */
+    static Method findBatchMethod(Class<?> type, String name) {
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterTypes().length == 1) {
+                Class<?> p = method.getParameterTypes()[0];
+                if (p.isArray() || p == List.class || p == Set.class || p == Collection.class) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 以批量方法的参数异步发起调用
+     */
+    protected abstract RpcFuture<Object> invokeBatch(Method batchMethod, Object argument);
+
+    RpcFuture<Object> submit(Object key) {
+        RpcFuture<Object> future = new RpcFuture<Object>();
+        Batch full = null;
+        synchronized (lock) {
+            Batch batch = current;
+            if (batch == null) {
+                batch = new Batch();
+                current = batch;
+                TIMER.schedule(batch, window, TimeUnit.MILLISECONDS);
+            }
+            batch.keys.add(key);
+            batch.futures.add(future);
+            if (batch.keys.size() >= maxSize) {
+                current = null;
+                full = batch;
+            }
+        }
+        if (full != null) {
+            execute(full);
+        }
+        return future;
+    }
+
+    private void flush(Batch batch) {
+        synchronized (lock) {
+            if (current != batch) {
+                // 已经因为攒满而发出
+                return;
+            }
+            current = null;
+        }
+        execute(batch);
+    }
+
+    private void execute(final Batch batch) {
+        RpcFuture<Object> result;
+        try {
+            result = invokeBatch(batchMethod, toArgument(batch.keys));
+        } catch (Throwable t) {
+            fail(batch, t);
+            return;
+        }
+        result.addListener(new RpcFuture.Listener<Object>() {
+            public void onSuccess(Object value) {
+                distribute(batch, value);
+            }
+
+            public void onFailure(Throwable exception) {
+                fail(batch, exception);
+            }
+        }, null);
+    }
+
+    private Object toArgument(List<Object> keys) {
+        if (batchType.isArray()) {
+            Object array = Array.newInstance(batchType.getComponentType(), keys.size());
+            for (int i = 0; i < keys.size(); i ++) {
+                Array.set(array, i, keys.get(i));
+            }
+            return array;
+        }
+        if (batchType == Set.class) {
+            return new LinkedHashSet<Object>(keys);
+        }
+        return new ArrayList<Object>(keys);
+    }
+
+    private void distribute(Batch batch, Object value) {
+        int size = batch.keys.size();
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            for (int i = 0; i < size; i ++) {
+                batch.futures.get(i).complete(map.get(batch.keys.get(i)));
+            }
+        } else if (value instanceof List && batchType != Set.class) {
+            List<?> list = (List<?>) value;
+            for (int i = 0; i < size; i ++) {
+                batch.futures.get(i).complete(i < list.size() ? list.get(i) : null);
+            }
+        } else if (value != null && value.getClass().isArray() && batchType != Set.class) {
+            int length = Array.getLength(value);
+            for (int i = 0; i < size; i ++) {
+                batch.futures.get(i).complete(i < length ? Array.get(value, i) : null);
+            }
+        } else {
+            fail(batch, new IllegalStateException("Batch method " + batchMethod.getName()
+                    + " must return a Map keyed by argument, or a List or array in argument order, but returned "
+                    + (value == null ? "null" : value.getClass().getName())));
+        }
+    }
+
+    private void fail(Batch batch, Throwable exception) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Failed to invoke batch method " + batchMethod.getName() + " for " + batch.keys.size()
+                    + " collapsed calls, cause: " + exception.getMessage(), exception);
+        }
+        for (RpcFuture<Object> future : batch.futures) {
+            future.completeExceptionally(exception);
+        }
+    }
+
+}
@@ -15,6 +15,12 @@
  */
 package com.alibaba.dubbo.rpc.proxy.javassist;
 
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.bytecode.Proxy;
 import com.alibaba.dubbo.common.bytecode.Wrapper;
@@ -53,14 +59,44 @@ public class JavassistProxyFactory extends AbstractProxyFactory {
          * 如果类是以$开头，就使用接口类型获取，其他的使用实现类获取
          */
         final Wrapper wrapper = Wrapper.getWrapper(proxy.getClass().getName().indexOf('$') < 0 ? proxy.getClass() : type);
+        final Map<String, int[]> indexes = getMethodIndexes(wrapper, type);
         return new AbstractProxyInvoker<T>(proxy, type, url) {
             @Override
             protected Object doInvoke(T proxy, String methodName, 
                                       Class<?>[] parameterTypes, 
                                       Object[] arguments) throws Throwable {
+                int[] index = indexes.get(methodName);
+                if (index != null && (parameterTypes == null || parameterTypes.length == index[1])) {
+                    return wrapper.invokeMethod(proxy, index[0], arguments);
+                }
                 return wrapper.invokeMethod(proxy, methodName, parameterTypes, arguments);
             }
         };
     }
 
+    /**
+     * 预先解析接口中没有重载的方法在Wrapper中的编号和参数个数，调用时直接按编号分派，
+     * 不用每次按方法名查找再比较参数类型；重载的方法仍按参数类型查找
+     */
+    private static Map<String, int[]> getMethodIndexes(Wrapper wrapper, Class<?> type) {
+        Map<String, Method> methods = new HashMap<String, Method>();
+        Set<String> overloaded = new HashSet<String>();
+        for (Method method : type.getMethods()) {
+            if (methods.put(method.getName(), method) != null) {
+                overloaded.add(method.getName());
+            }
+        }
+        Map<String, int[]> indexes = new HashMap<String, int[]>();
+        for (Method method : methods.values()) {
+            if (overloaded.contains(method.getName())) {
+                continue;
+            }
+            int index = wrapper.getMethodIndex(method.getName(), method.getParameterTypes());
+            if (index >= 0) {
+                indexes.put(method.getName(), new int[] {index, method.getParameterTypes().length});
+            }
+        }
+        return indexes;
+    }
+
 }
\ No newline at end of file
@@ -37,7 +37,8 @@ public class ProtocolUtils {
             && !"".equals(generic)
             && (Constants.GENERIC_SERIALIZATION_DEFAULT.equalsIgnoreCase(generic)  /* 正常的泛化调用 */
             || Constants.GENERIC_SERIALIZATION_NATIVE_JAVA.equalsIgnoreCase(generic) /* 支持java序列化的流式泛化调用 */
-            || Constants.GENERIC_SERIALIZATION_BEAN.equalsIgnoreCase(generic));
+            || Constants.GENERIC_SERIALIZATION_BEAN.equalsIgnoreCase(generic)
+            || Constants.GENERIC_SERIALIZATION_RAW.equalsIgnoreCase(generic)); /* 透传序列化字节的泛化调用 */
     }
 
     public static boolean isDefaultGenericSerialization(String generic) {
@@ -53,4 +54,8 @@ public class ProtocolUtils {
     public static boolean isBeanGenericSerialization(String generic) {
         return isGeneric(generic) && Constants.GENERIC_SERIALIZATION_BEAN.equals(generic);
     }
+
+    public static boolean isRawGenericSerialization(String generic) {
+        return isGeneric(generic) && Constants.GENERIC_SERIALIZATION_RAW.equalsIgnoreCase(generic);
+    }
 }
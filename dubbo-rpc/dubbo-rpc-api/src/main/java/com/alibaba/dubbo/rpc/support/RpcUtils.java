@@ -16,6 +16,7 @@
 package com.alibaba.dubbo.rpc.support;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -25,6 +26,7 @@ import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.utils.ReflectUtils;
 import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.RpcFuture;
 import com.alibaba.dubbo.rpc.RpcInvocation;
 
 /**
@@ -58,6 +60,19 @@ public class RpcUtils {
         return null;
     }
 
+    private static Type[] getFutureValueTypes(Type futureType) {
+        if (futureType instanceof ParameterizedType) {
+            Type valueType = ((ParameterizedType) futureType).getActualTypeArguments()[0];
+            if (valueType instanceof Class) {
+                return new Type[]{valueType, valueType};
+            }
+            if (valueType instanceof ParameterizedType && ((ParameterizedType) valueType).getRawType() instanceof Class) {
+                return new Type[]{((ParameterizedType) valueType).getRawType(), valueType};
+            }
+        }
+        return new Type[]{Object.class, Object.class};
+    }
+
     public static Type[] getReturnTypes(Invocation invocation) {
         try {
             if (invocation != null && invocation.getInvoker() != null
@@ -70,6 +85,10 @@ public class RpcUtils {
                     if (method.getReturnType() == void.class) {
                         return null;
                     }
+                    if (method.getReturnType() == RpcFuture.class) {
+                        // 异步方法按RpcFuture的类型参数解码返回值
+                        return getFutureValueTypes(method.getGenericReturnType());
+                    }
                     return new Type[]{method.getReturnType(), method.getGenericReturnType()};
                 }
             }
@@ -157,7 +176,7 @@ public class RpcUtils {
     	if (Boolean.TRUE.toString().equals(inv.getAttachment(Constants.ASYNC_KEY))) {
     		isAsync = true;
     	} else {
-	    	isAsync = url.getMethodParameter(getMethodName(inv), Constants.ASYNC_KEY, false);
+	    	isAsync = url.getMethodProfile(getMethodName(inv)).isAsync();
     	}
     	return isAsync;
     }
@@ -168,7 +187,7 @@ public class RpcUtils {
     	if (Boolean.FALSE.toString().equals(inv.getAttachment(Constants.RETURN_KEY))) {
     		isOneway = true;
     	} else {
-    		isOneway = ! url.getMethodParameter(getMethodName(inv), Constants.RETURN_KEY, true);
+    		isOneway = url.getMethodProfile(getMethodName(inv)).isOneway();
     	}
     	return isOneway;
     }
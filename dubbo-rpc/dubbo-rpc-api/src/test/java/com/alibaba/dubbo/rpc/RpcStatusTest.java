@@ -0,0 +1,162 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.LatencyHistogram;
+import com.alibaba.dubbo.rpc.protocol.AbstractInvoker;
+import com.alibaba.dubbo.rpc.proxy.AbstractProxyInvoker;
+
+public class RpcStatusTest {
+
+    @Test
+    public void testCount() throws Exception {
+        final URL url = URL.valueOf("test://test:21/test");
+        final RpcStatus status = RpcStatus.getStatus(url, "echo");
+        assertSame(status, RpcStatus.getStatus(url).getMethodStatus("echo"));
+        final CountDownLatch latch = new CountDownLatch(8);
+        for (int i = 0; i < 8; i ++) {
+            new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < 1000; j ++) {
+                        status.beginCount();
+                        status.endCount(j % 100, j % 10 != 0);
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+        assertEquals(0, status.getActive());
+        assertEquals(8000, status.getTotal());
+        assertEquals(800, status.getFailed());
+        assertEquals(99, status.getMaxElapsed());
+        RpcStatus service = RpcStatus.getStatus(url);
+        assertEquals(8000, service.getTotal());
+        assertEquals(800, service.getFailed());
+        assertEquals(8 * 10 * 4950, service.getTotalElapsed());
+    }
+
+    @Test
+    public void testPercentile() {
+        URL url = URL.valueOf("test://test:22/test");
+        RpcStatus echo = RpcStatus.getStatus(url, "echo");
+        RpcStatus hello = RpcStatus.getStatus(url, "hello");
+        for (int i = 1; i <= 1000; i ++) {
+            echo.beginCount();
+            echo.endCount(i, true);
+            hello.beginCount();
+            hello.endCount(1000 + i, true);
+        }
+        assertWithin(500, echo.getPercentileElapsed(0.5));
+        assertWithin(990, echo.getPercentileElapsed(0.99));
+        assertWithin(999, echo.getPercentileElapsed(0.999));
+        // 服务的分布由各方法的直方图合并而来
+        RpcStatus service = RpcStatus.getStatus(url);
+        assertEquals(2000, service.getHistogram().getCount());
+        assertWithin(1000, service.getPercentileElapsed(0.5));
+        assertWithin(1980, service.getPercentileElapsed(0.99));
+        assertEquals(0, new LatencyHistogram().getPercentile(0.99));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                   actual >= expected && actual <= expected * 1.125);
+    }
+
+    @Test
+    public void testRemoveOnDestroy() {
+        URL url = URL.valueOf("test://test:23/test");
+        AbstractInvoker<RpcStatusTest> invoker = new AbstractInvoker<RpcStatusTest>(RpcStatusTest.class, url) {
+            @Override
+            protected Result doInvoke(Invocation invocation) throws Throwable {
+                return new RpcResult();
+            }
+        };
+        RpcStatus status = RpcStatus.getStatus(url, "echo");
+        status.beginCount();
+        invoker.destroy();
+        assertNull(RpcStatus.peekStatus(url, "echo"));
+        assertNotSame(status, RpcStatus.getStatus(url, "echo"));
+        assertNotSame(status, RpcStatus.getStatus(url).getMethodStatus("echo"));
+        // 销毁前开始的调用仍在原来的统计上结束
+        status.endCount(1, true);
+        assertEquals(0, status.getActive());
+        assertEquals(0, RpcStatus.getStatus(url, "echo").getActive());
+    }
+
+    @Test
+    public void testKeepWhileSharedInvokerAlive() {
+        URL url = URL.valueOf("test://test:24/test");
+        AbstractInvoker<RpcStatusTest> stale = newInvoker(url);
+        AbstractInvoker<RpcStatusTest> live = newInvoker(url);
+        RpcStatus status = RpcStatus.getStatus(url, "echo");
+        status.beginCount();
+        // 注册中心刷新后销毁旧的Invoker，相同标识的新Invoker仍在使用统计
+        stale.destroy();
+        stale.destroy();
+        assertSame(status, RpcStatus.getStatus(url, "echo"));
+        assertEquals(1, RpcStatus.getStatus(url).getActive());
+        live.destroy();
+        assertNotSame(status, RpcStatus.getStatus(url, "echo"));
+        status.endCount(1, true);
+    }
+
+    @Test
+    public void testProxyInvokerRetainsProviderUrl() {
+        URL provider = URL.valueOf("dubbo://127.0.0.1:25/test?timeout=100");
+        URL registry = URL.valueOf("registry://127.0.0.1:2181/com.alibaba.dubbo.registry.RegistryService")
+            .addParameterAndEncoded(Constants.EXPORT_KEY, provider.toFullString());
+        Runnable impl = new Runnable() {
+            public void run() {
+            }
+        };
+        AbstractProxyInvoker<Runnable> invoker = new AbstractProxyInvoker<Runnable>(impl, Runnable.class, registry) {
+            @Override
+            protected Object doInvoke(Runnable proxy, String methodName, Class<?>[] parameterTypes, Object[] arguments) {
+                proxy.run();
+                return null;
+            }
+        };
+        // 提供方的过滤器按提供者URL统计
+        RpcStatus status = RpcStatus.getStatus(provider, "run");
+        assertSame(status, RpcStatus.peekStatus(provider, "run"));
+        invoker.destroy();
+        assertNull(RpcStatus.peekStatus(provider, "run"));
+        assertNull(RpcStatus.peekStatus(registry, "run"));
+    }
+
+    private static AbstractInvoker<RpcStatusTest> newInvoker(URL url) {
+        return new AbstractInvoker<RpcStatusTest>(RpcStatusTest.class, url) {
+            @Override
+            protected Result doInvoke(Invocation invocation) throws Throwable {
+                return new RpcResult();
+            }
+        };
+    }
+
+}
@@ -17,6 +17,8 @@ package com.alibaba.dubbo.rpc.filter;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.File;
+
 import org.junit.Test;
 
 import com.alibaba.dubbo.common.URL;
@@ -57,8 +59,10 @@ public class AccessLogFilterTest {
     }
 
     @Test
-    public void testCustom() {
-        URL url = URL.valueOf("test://test:11/test?accesslog=alibaba");
+    public void testCustom() throws Exception {
+        File file = File.createTempFile("accesslog", ".log");
+        file.deleteOnExit();
+        URL url = URL.valueOf("test://test:11/test?accesslog=" + file.getAbsolutePath());
         Invoker<AccessLogFilterTest> invoker = new MyInvoker<AccessLogFilterTest>(url);
         Invocation invocation = new MockInvocation();
         accessLogFilter.invoke(invoker, invocation);
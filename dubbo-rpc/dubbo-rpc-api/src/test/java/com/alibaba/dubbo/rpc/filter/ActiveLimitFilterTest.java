@@ -15,7 +15,14 @@
  */
 package com.alibaba.dubbo.rpc.filter;
 
-import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Test;
 
@@ -23,7 +30,9 @@ import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.filter.limit.ActiveLimiter;
 import com.alibaba.dubbo.rpc.support.MockInvocation;
 import com.alibaba.dubbo.rpc.support.MyInvoker;
 
@@ -35,7 +44,6 @@ import com.alibaba.dubbo.rpc.support.MyInvoker;
 public class ActiveLimitFilterTest {
 
     Filter                      activeLimitFilter = new ActiveLimitFilter();
-    private static volatile int count             = 0;
 
     @Test
     public void testInvokeNoActives() {
@@ -54,30 +62,104 @@ public class ActiveLimitFilterTest {
     }
 
     @Test
-    public void testInvokeGreaterActives() {
-        URL url = URL.valueOf("test://test:11/test?accesslog=true&group=dubbo&version=1.1&actives=1&timeout=1");
-        final Invoker<ActiveLimitFilterTest> invoker = new MyInvoker<ActiveLimitFilterTest>(url);
+    public void testInvokeGreaterActives() throws Exception {
+        URL url = URL.valueOf("test://test:12/test?accesslog=true&group=dubbo&version=1.1&actives=1&timeout=50");
+        HoldingInvoker invoker = new HoldingInvoker(url);
+        Invocation invocation = new MockInvocation();
+        Thread holder = invoker.hold(activeLimitFilter, invocation);
+        long start = System.currentTimeMillis();
+        try {
+            activeLimitFilter.invoke(invoker, invocation);
+            fail();
+        } catch (RpcException expected) {
+        }
+        assertTrue(System.currentTimeMillis() - start >= 50);
+        invoker.unhold();
+        holder.join();
+        activeLimitFilter.invoke(invoker, invocation);
+        ActiveLimiter limiter = ActiveLimiter.getLimiter(url, invocation.getMethodName());
+        assertEquals(1, limiter.getWaited());
+        assertEquals(1, limiter.getTimeouts());
+        assertTrue(limiter.getMaxWaitTime() >= 50);
+    }
+
+    @Test
+    public void testFairQueue() throws Exception {
+        URL url = URL.valueOf("test://test:13/test?actives=1&timeout=5000");
+        final HoldingInvoker invoker = new HoldingInvoker(url);
         final Invocation invocation = new MockInvocation();
-        for (int i = 0; i < 100; i++) {
-            Thread thread = new Thread(new Runnable() {
+        ActiveLimiter limiter = ActiveLimiter.getLimiter(url, invocation.getMethodName());
+        Thread holder = invoker.hold(activeLimitFilter, invocation);
+        List<Thread> waiters = new ArrayList<Thread>();
+        for (int i = 0; i < 5; i ++) {
+            Thread waiter = new Thread(new Runnable() {
+                public void run() {
+                    activeLimitFilter.invoke(invoker, invocation);
+                }
+            }, "waiter-" + i);
+            waiter.start();
+            waiters.add(waiter);
+            // 等前一个进入队列再启动下一个，保证到达顺序
+            while (limiter.getQueueLength() < i + 1) {
+                Thread.sleep(1);
+            }
+        }
+        invoker.unhold();
+        holder.join();
+        for (Thread waiter : waiters) {
+            waiter.join();
+        }
+        assertEquals(6, invoker.entered.size());
+        for (int i = 0; i < 5; i ++) {
+            assertEquals("waiter-" + i, invoker.entered.get(i + 1));
+        }
+        assertEquals(0, limiter.getTimeouts());
+    }
+
+    /**
+     * holder 线程的调用一直占用名额，直到 unhold
+     */
+    private static class HoldingInvoker extends MyInvoker<ActiveLimitFilterTest> {
+
+        final List<String> entered = Collections.synchronizedList(new ArrayList<String>());
+
+        private final CountDownLatch holding = new CountDownLatch(1);
+
+        private final CountDownLatch unholding = new CountDownLatch(1);
+
+        HoldingInvoker(URL url) {
+            super(url);
+        }
 
+        Thread hold(final Filter filter, final Invocation invocation) throws InterruptedException {
+            Thread holder = new Thread(new Runnable() {
                 public void run() {
-                    for (int i = 0; i < 100; i++) {
-                        try {
-                            activeLimitFilter.invoke(invoker, invocation);
-                        } catch (RpcException expected) {
-                            count++;
-                        }
-                    }
+                    filter.invoke(HoldingInvoker.this, invocation);
                 }
-            });
-            thread.start();
+            }, "holder");
+            holder.start();
+            holding.await();
+            return holder;
         }
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+
+        void unhold() {
+            unholding.countDown();
+        }
+
+        @Override
+        public Result invoke(Invocation invocation) throws RpcException {
+            entered.add(Thread.currentThread().getName());
+            if ("holder".equals(Thread.currentThread().getName())) {
+                holding.countDown();
+                try {
+                    unholding.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.invoke(invocation);
         }
-        assertNotSame(0, count);
+
     }
+
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcStatus;
+import com.alibaba.dubbo.rpc.filter.limit.AdaptiveLimiter;
+import com.alibaba.dubbo.rpc.support.MockInvocation;
+import com.alibaba.dubbo.rpc.support.MyInvoker;
+
+public class AdaptiveLimitFilterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testGradient() {
+        assertConverge(new AdaptiveLimiter(Constants.GRADIENT_ADAPTIVE_LIMIT, 20, 1, 100));
+    }
+
+    @Test
+    public void testVegas() {
+        assertConverge(new AdaptiveLimiter(Constants.VEGAS_ADAPTIVE_LIMIT, 20, 1, 100));
+    }
+
+    private void assertConverge(AdaptiveLimiter limiter) {
+        assertEquals(20, limiter.getLimit());
+        // RTT 保持在基线，并发打满时上限放大
+        for (int i = 0; i < 10; i ++) {
+            round(limiter, MS);
+        }
+        int grown = limiter.getLimit();
+        assertTrue(grown > 20);
+        assertEquals(MS, limiter.getMinRtt());
+        // RTT 变为基线的 4 倍，说明在排队，上限收缩
+        for (int i = 0; i < 10; i ++) {
+            round(limiter, 4 * MS);
+        }
+        assertTrue(limiter.getLimit() < grown);
+        assertEquals(0, limiter.getInflight());
+    }
+
+    private void round(AdaptiveLimiter limiter, long rtt) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired ++;
+        }
+        assertEquals(limiter.getLimit(), acquired);
+        for (int i = 0; i < acquired; i ++) {
+            limiter.release(rtt, false);
+        }
+    }
+
+    @Test
+    public void testIdleAndDropped() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(Constants.GRADIENT_ADAPTIVE_LIMIT, 20, 10, 100);
+        // 并发远未用满时不放大上限
+        for (int i = 0; i < 100; i ++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(MS, false);
+        }
+        assertEquals(20, limiter.getLimit());
+        assertTrue(limiter.tryAcquire());
+        limiter.release(MS, true);
+        assertEquals(18, limiter.getLimit());
+        for (int i = 0; i < 100; i ++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(MS, true);
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void testReject() {
+        final AdaptiveLimitFilter filter = new AdaptiveLimitFilter();
+        final URL url = URL.valueOf("test://test:11/test?side=provider&adaptive.limit=true&adaptive.limit.initial=1");
+        final Invocation invocation = new MockInvocation();
+        Invoker<AdaptiveLimitFilterTest> invoker = new MyInvoker<AdaptiveLimitFilterTest>(url) {
+            @Override
+            public Result invoke(Invocation invocation) throws RpcException {
+                // 名额被当前调用占用，嵌套调用立即被拒绝
+                try {
+                    filter.invoke(new MyInvoker<AdaptiveLimitFilterTest>(url), invocation);
+                    fail();
+                } catch (RpcException expected) {
+                    assertFalse(expected.isTimeout());
+                }
+                return super.invoke(invocation);
+            }
+        };
+        assertEquals("alibaba", filter.invoke(invoker, invocation).getValue());
+        assertEquals(0, filter.getLimiter(url, invocation.getMethodName()).getInflight());
+    }
+
+    @Test
+    public void testReconfigureAndDestroy() {
+        AdaptiveLimitFilter filter = new AdaptiveLimitFilter();
+        URL url = URL.valueOf("test://test:12/test?side=provider&adaptive.limit=true&adaptive.limit.initial=1");
+        Invocation invocation = new MockInvocation();
+        RpcStatus.retainStatus(url);
+        filter.invoke(new MyInvoker<AdaptiveLimitFilterTest>(url), invocation);
+        AdaptiveLimiter limiter = filter.getLimiter(url, invocation.getMethodName());
+        assertEquals(1, limiter.getLimit());
+        // 其它参数变化时保留原来的上限
+        URL timeout = url.addParameter(Constants.TIMEOUT_KEY, 100);
+        filter.invoke(new MyInvoker<AdaptiveLimitFilterTest>(timeout), invocation);
+        assertSame(limiter, filter.getLimiter(timeout, invocation.getMethodName()));
+        // 上限参数变化时按新配置重建
+        URL reconfigured = timeout.addParameter(Constants.ADAPTIVE_LIMIT_INITIAL_KEY, 5);
+        filter.invoke(new MyInvoker<AdaptiveLimitFilterTest>(reconfigured), invocation);
+        assertEquals(5, filter.getLimiter(reconfigured, invocation.getMethodName()).getLimit());
+        // Invoker销毁后随统计一起移除
+        RpcStatus.releaseStatus(url);
+        assertNull(filter.getLimiter(reconfigured, invocation.getMethodName()));
+    }
+
+}
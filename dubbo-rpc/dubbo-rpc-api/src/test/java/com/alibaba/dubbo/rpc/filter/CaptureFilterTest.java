@@ -0,0 +1,112 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.filter.capture.CaptureReader;
+import com.alibaba.dubbo.rpc.filter.capture.CaptureRecord;
+import com.alibaba.dubbo.rpc.support.DemoService;
+import com.alibaba.dubbo.rpc.support.MyInvoker;
+import com.alibaba.dubbo.rpc.support.Person;
+
+public class CaptureFilterTest {
+
+    @Test
+    public void testCapture() throws Exception {
+        File file = File.createTempFile("capture", ".bin");
+        file.delete();
+        file.deleteOnExit();
+        URL url = URL.valueOf("test://test:11/test?group=g1&version=1.0&capture=" + file.getAbsolutePath());
+        Invoker<DemoService> invoker = new MyInvoker<DemoService>(url);
+        CaptureFilter filter = new CaptureFilter();
+        for (int i = 0; i < 3; i ++) {
+            Person person = new Person();
+            person.setName("name" + i);
+            person.setAge(i);
+            RpcInvocation invocation = new RpcInvocation("save", new Class<?>[] {Person.class, int.class},
+                    new Object[] {person, i});
+            invocation.setAttachment("trace", "t" + i);
+            invocation.setAttachment("path", "test");
+            filter.invoke(invoker, invocation);
+        }
+        List<CaptureRecord> records = read(file, 3);
+        assertEquals(3, records.size());
+        for (int i = 0; i < 3; i ++) {
+            CaptureRecord record = records.get(i);
+            assertEquals(DemoService.class.getName(), record.getService());
+            assertEquals("g1", record.getGroup());
+            assertEquals("1.0", record.getVersion());
+            assertEquals("save", record.getMethod());
+            assertArrayEquals(new String[] {Person.class.getName(), "int"}, record.getParameterTypes());
+            assertEquals("t" + i, record.getAttachments().get("trace"));
+            assertFalse(record.getAttachments().containsKey("path"));
+            Object[] args = record.decodeArguments();
+            // 参数是通用形式
+            Map<?, ?> person = (Map<?, ?>) args[0];
+            assertEquals("name" + i, person.get("name"));
+            assertEquals(Person.class.getName(), person.get("class"));
+            assertEquals(i, ((Number) args[1]).intValue());
+        }
+    }
+
+    @Test
+    public void testNoCapture() throws Exception {
+        File file = File.createTempFile("capture", ".bin");
+        file.delete();
+        file.deleteOnExit();
+        URL url = URL.valueOf("test://test:11/test?capture=" + file.getAbsolutePath() + "&capture.sample=1000000000");
+        Invoker<DemoService> invoker = new MyInvoker<DemoService>(url);
+        CaptureFilter filter = new CaptureFilter();
+        filter.invoke(invoker, new RpcInvocation("echo", new Class<?>[] {String.class}, new Object[] {"a"}));
+        Thread.sleep(300);
+        assertFalse(file.exists() && file.length() > 8);
+    }
+
+    private static List<CaptureRecord> read(File file, int expected) throws Exception {
+        List<CaptureRecord> records = new ArrayList<CaptureRecord>();
+        // 等待写线程写出
+        for (int i = 0; i < 50 && records.size() < expected; i ++) {
+            Thread.sleep(100);
+            if (file.exists() && file.length() >= 8) {
+                records.clear();
+                CaptureReader reader = new CaptureReader(file);
+                try {
+                    CaptureRecord record;
+                    while ((record = reader.next()) != null) {
+                        records.add(record);
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        }
+        return records;
+    }
+
+}
@@ -15,17 +15,27 @@
  */
 package com.alibaba.dubbo.rpc.filter;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
 
 import org.easymock.EasyMock;
 import org.junit.Test;
 
+import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
 import com.alibaba.dubbo.rpc.RpcResult;
 import com.alibaba.dubbo.rpc.support.DemoService;
 import com.alibaba.dubbo.rpc.support.MockInvocation;
@@ -72,4 +82,57 @@ public class ContextFilterTest {
         Result result = contextFilter.invoke(invoker, invocation);
         assertNull(RpcContext.getContext().getInvoker());
     }
+
+    @Test
+    public void testAttachmentsCopyOnWrite() {
+        URL url = URL.valueOf("test://test:11/test?group=dubbo&version=1.1&context.reuse=true");
+        final Map<String, String> attachments = new HashMap<String, String>();
+        attachments.put(Constants.PATH_KEY, "test");
+        attachments.put(Constants.TOKEN_KEY, "secret");
+        attachments.put(Constants.DEADLINE_BUDGET_KEY, "1000");
+        attachments.put("trace", "1");
+        Invocation invocation = new RpcInvocation("echo", new Class<?>[0], new Object[0], attachments);
+        final Map<String, String> seen = new HashMap<String, String>();
+        Invoker<DemoService> invoker = new MyInvoker<DemoService>(url) {
+            @Override
+            public Result invoke(Invocation invocation) throws RpcException {
+                RpcContext context = RpcContext.getContext();
+                seen.put("path", context.getAttachment(Constants.PATH_KEY));
+                seen.put("trace", context.getAttachment("trace"));
+                context.setAttachment("trace", "2");
+                seen.put("size", String.valueOf(context.getAttachments().size()));
+                return super.invoke(invocation);
+            }
+        };
+        RpcContext before = RpcContext.getContext();
+        contextFilter.invoke(invoker, invocation);
+        assertNull(seen.get("path"));
+        assertEquals("1", seen.get("trace"));
+        assertEquals("1", seen.get("size"));
+        // 修改context不影响调用方的attachments
+        assertEquals("1", attachments.get("trace"));
+        assertEquals(4, attachments.size());
+        // 同步调用结束后context被清空复用
+        assertSame(before, RpcContext.getContext());
+        assertNull(RpcContext.getContext().getAttachment("trace"));
+        assertTrue(RpcContext.getContext().getAttachments().isEmpty());
+    }
+
+    @Test
+    public void testContextNotReusedByDefault() {
+        URL url = URL.valueOf("test://test:11/test?group=dubbo&version=1.1");
+        final RpcContext[] held = new RpcContext[1];
+        Invoker<DemoService> invoker = new MyInvoker<DemoService>(url) {
+            @Override
+            public Result invoke(Invocation invocation) throws RpcException {
+                held[0] = RpcContext.getContext();
+                held[0].setAttachment("trace", "1");
+                return super.invoke(invocation);
+            }
+        };
+        contextFilter.invoke(invoker, new RpcInvocation("echo", new Class<?>[0], new Object[0]));
+        // 调用结束后业务代码持有的context不会被下一次调用清空或改写
+        assertNotSame(held[0], RpcContext.getContext());
+        assertEquals("1", held[0].getAttachment("trace"));
+    }
 }
\ No newline at end of file
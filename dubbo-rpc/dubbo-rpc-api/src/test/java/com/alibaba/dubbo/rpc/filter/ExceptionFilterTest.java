@@ -16,16 +16,26 @@
 package com.alibaba.dubbo.rpc.filter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.easymock.EasyMock;
 import org.junit.Test;
 
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.bytecode.NoSuchMethodException;
 import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
 import com.alibaba.dubbo.rpc.support.DemoService;
+import com.alibaba.dubbo.rpc.support.MyInvoker;
 
 /**
  * ExceptionFilterTest
@@ -57,5 +67,68 @@ public class ExceptionFilterTest {
         EasyMock.verify(logger, invoker);
         RpcContext.removeContext();
     }
+
+    @Test
+    public void testTrimStackTrace() {
+        Exception cause = new Exception("cause");
+        IllegalStateException exception = new IllegalStateException("outer", cause);
+        int depth = exception.getStackTrace().length;
+        Result result = invoke("test://127.0.0.1:20880/test?exception.stack=trim&exception.stack.depth=1", exception);
+        // 截短的是副本，业务异常保持原样
+        assertNotSame(exception, result.getException());
+        assertEquals(IllegalStateException.class, result.getException().getClass());
+        assertEquals("outer", result.getException().getMessage());
+        assertEquals(1, result.getException().getStackTrace().length);
+        assertEquals("cause", result.getException().getCause().getMessage());
+        assertEquals(1, result.getException().getCause().getStackTrace().length);
+        assertEquals(depth, exception.getStackTrace().length);
+        assertTrue(cause.getStackTrace().length > 1);
+
+        result = invoke("test://127.0.0.1:20880/test?exception.stack=none", exception);
+        assertEquals(0, result.getException().getStackTrace().length);
+        assertEquals(depth, exception.getStackTrace().length);
+
+        // 默认保留完整堆栈，injvm调用不截短
+        result = invoke("test://127.0.0.1:20880/test", exception);
+        assertSame(exception, result.getException());
+        result = invoke(Constants.LOCAL_PROTOCOL + "://127.0.0.1/test?exception.stack=none", exception);
+        assertSame(exception, result.getException());
+        assertEquals(depth, exception.getStackTrace().length);
+    }
+
+    @Test
+    public void testTrimRpcException() {
+        RpcException exception = new RpcException(RpcException.TIMEOUT_EXCEPTION, "timeout", new IllegalStateException("cause"));
+        Result result = invoke("test://127.0.0.1:20880/test?exception.stack=none", exception);
+        assertNotSame(exception, result.getException());
+        assertEquals(RpcException.TIMEOUT_EXCEPTION, ((RpcException) result.getException()).getCode());
+        assertEquals("timeout", result.getException().getMessage());
+        assertEquals(IllegalStateException.class, result.getException().getCause().getClass());
+        assertEquals(0, result.getException().getCause().getStackTrace().length);
+    }
+
+    @Test
+    public void testCompactWrappedException() {
+        NoSuchMethodException exception = new NoSuchMethodException("no method");
+        Result result = invoke("test://127.0.0.1:20880/test?exception.stack=none", exception);
+        assertEquals(RuntimeException.class, result.getException().getClass());
+        assertEquals(NoSuchMethodException.class.getName() + ": no method", result.getException().getMessage());
+        assertEquals(0, result.getException().getStackTrace().length);
+
+        result = invoke("test://127.0.0.1:20880/test", new NoSuchMethodException("no method"));
+        assertEquals(RuntimeException.class, result.getException().getClass());
+        assertTrue(result.getException().getMessage().contains("\tat "));
+    }
+
+    private static Result invoke(String url, final Throwable exception) {
+        Invoker<DemoService> invoker = new MyInvoker<DemoService>(URL.valueOf(url)) {
+            @Override
+            public Result invoke(Invocation invocation) throws RpcException {
+                return new RpcResult(exception);
+            }
+        };
+        RpcInvocation invocation = new RpcInvocation("sayHello", new Class<?>[]{String.class}, new Object[]{"world"});
+        return new ExceptionFilter().invoke(invoker, invocation);
+    }
     
 }
\ No newline at end of file
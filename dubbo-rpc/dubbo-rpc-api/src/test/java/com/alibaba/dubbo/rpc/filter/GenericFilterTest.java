@@ -0,0 +1,70 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.service.GenericException;
+import com.alibaba.dubbo.rpc.support.DemoService;
+import com.alibaba.dubbo.rpc.support.MyInvoker;
+
+public class GenericFilterTest {
+
+    private final GenericFilter filter = new GenericFilter();
+
+    private static RpcInvocation generic(String method, String[] types, Object[] args) {
+        return new RpcInvocation(Constants.$INVOKE, new Class<?>[] {String.class, String[].class, Object[].class},
+                new Object[] {method, types, args});
+    }
+
+    @Test
+    public void testAsyncResultNotBlocked() {
+        final AsyncRpcResult async = new AsyncRpcResult();
+        Invoker<DemoService> invoker = new MyInvoker<DemoService>(URL.valueOf("test://test:11/test")) {
+            @Override
+            public Result invoke(Invocation invocation) throws RpcException {
+                return async;
+            }
+        };
+        Result result = filter.invoke(invoker, generic("echo", new String[] {String.class.getName()}, new Object[] {"hello"}));
+        assertTrue(result instanceof AsyncRpcResult);
+        assertFalse(((AsyncRpcResult) result).isDone());
+        async.complete(new RpcResult(new IllegalStateException("failed")));
+        assertTrue(((AsyncRpcResult) result).isDone());
+        assertTrue(result.getException() instanceof GenericException);
+    }
+
+    @Test
+    public void testSyncResult() {
+        Invoker<DemoService> invoker = new MyInvoker<DemoService>(URL.valueOf("test://test:11/test"));
+        Result result = filter.invoke(invoker, generic("echo", new String[] {String.class.getName()}, new Object[] {"hello"}));
+        assertEquals("alibaba", result.getValue());
+    }
+
+}
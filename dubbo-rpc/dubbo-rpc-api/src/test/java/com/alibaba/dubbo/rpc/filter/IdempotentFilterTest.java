@@ -0,0 +1,207 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.RpcStatus;
+import com.alibaba.dubbo.rpc.filter.idempotent.IdempotentStore;
+import com.alibaba.dubbo.rpc.support.DemoService;
+import com.alibaba.dubbo.rpc.support.MyInvoker;
+
+public class IdempotentFilterTest {
+
+    private final Filter filter = new IdempotentFilter();
+
+    @Test
+    public void testConsumerAttachStableKey() {
+        URL url = URL.valueOf("test://127.0.0.1:20880/consumer?side=consumer&idempotent=true");
+        Invoker<DemoService> invoker = new MyInvoker<DemoService>(url);
+        RpcInvocation invocation = new RpcInvocation("echo", new Class<?>[0], new Object[0]);
+        filter.invoke(invoker, invocation);
+        String key = invocation.getAttachment(Constants.IDEMPOTENT_REQUEST_KEY);
+        assertNotNull(key);
+        // 重试时请求键不变
+        filter.invoke(invoker, invocation);
+        assertEquals(key, invocation.getAttachment(Constants.IDEMPOTENT_REQUEST_KEY));
+        RpcInvocation other = new RpcInvocation("echo", new Class<?>[0], new Object[0]);
+        filter.invoke(invoker, other);
+        assertFalse(key.equals(other.getAttachment(Constants.IDEMPOTENT_REQUEST_KEY)));
+    }
+
+    @Test
+    public void testProviderReturnStoredResult() {
+        final AtomicInteger count = new AtomicInteger();
+        URL url = URL.valueOf("test://127.0.0.1:20880/stored?side=provider&idempotent=true");
+        Invoker<DemoService> invoker = new MyInvoker<DemoService>(url) {
+            @Override
+            public Result invoke(Invocation invocation) throws RpcException {
+                return new RpcResult("result-" + count.incrementAndGet());
+            }
+        };
+        assertEquals("result-1", filter.invoke(invoker, invocation("a")).getValue());
+        assertEquals("result-1", filter.invoke(invoker, invocation("a")).getValue());
+        assertEquals("result-2", filter.invoke(invoker, invocation("b")).getValue());
+        // 没有请求键的调用不去重
+        assertEquals("result-3", filter.invoke(invoker, new RpcInvocation("echo", new Class<?>[0], new Object[0])).getValue());
+        assertEquals(3, count.get());
+    }
+
+    @Test
+    public void testProviderSeparateMethods() {
+        final AtomicInteger count = new AtomicInteger();
+        URL url = URL.valueOf("test://127.0.0.1:20880/methods?side=provider&idempotent=true");
+        Invoker<DemoService> invoker = new MyInvoker<DemoService>(url) {
+            @Override
+            public Result invoke(Invocation invocation) throws RpcException {
+                return new RpcResult(invocation.getMethodName() + "-" + count.incrementAndGet());
+            }
+        };
+        assertEquals("echo-1", filter.invoke(invoker, invocation("a")).getValue());
+        RpcInvocation other = new RpcInvocation("echo", new Class<?>[] {String.class}, new Object[] {"x"});
+        other.setAttachment(Constants.IDEMPOTENT_REQUEST_KEY, "a");
+        // 同一请求键调用不同的方法或重载不共用结果
+        assertEquals("echo-2", filter.invoke(invoker, other).getValue());
+        other = new RpcInvocation("sayHello", new Class<?>[0], new Object[0]);
+        other.setAttachment(Constants.IDEMPOTENT_REQUEST_KEY, "a");
+        assertEquals("sayHello-3", filter.invoke(invoker, other).getValue());
+        assertEquals("echo-1", filter.invoke(invoker, invocation("a")).getValue());
+    }
+
+    @Test
+    public void testStoreFollowsStatus() {
+        URL url = URL.valueOf("test://127.0.0.1:20880/released?side=provider&idempotent=true&idempotent.capacity=5");
+        RpcStatus.retainStatus(url);
+        IdempotentStore store = IdempotentStore.getStore(url);
+        assertSame(store, IdempotentStore.getStore(url));
+        // 重新配置后沿用同一个存储，按新容量淘汰
+        for (int i = 0; i < 3; i ++) {
+            IdempotentStore.Entry entry = new IdempotentStore.Entry();
+            store.putIfAbsent("k" + i, entry);
+            store.complete("k" + i, entry, new RpcResult("v"));
+        }
+        assertSame(store, IdempotentStore.getStore(url.addParameter(Constants.IDEMPOTENT_CAPACITY_KEY, 1)));
+        store.putIfAbsent("k3", new IdempotentStore.Entry());
+        assertEquals(1, store.size());
+        // 提供者Invoker销毁后存储随统计一起移除
+        RpcStatus.releaseStatus(url);
+        assertNotSame(store, IdempotentStore.getStore(url));
+        RpcStatus.removeStatus(url);
+    }
+
+    @Test
+    public void testProviderCoalesceInProgress() {
+        final AsyncRpcResult pending = new AsyncRpcResult();
+        final AtomicInteger count = new AtomicInteger();
+        URL url = URL.valueOf("test://127.0.0.1:20880/pending?side=provider&idempotent=true");
+        Invoker<DemoService> invoker = new MyInvoker<DemoService>(url) {
+            @Override
+            public Result invoke(Invocation invocation) throws RpcException {
+                count.incrementAndGet();
+                return pending;
+            }
+        };
+        filter.invoke(invoker, invocation("a"));
+        Result duplicate = filter.invoke(invoker, invocation("a"));
+        assertTrue(duplicate instanceof AsyncRpcResult);
+        assertFalse(((AsyncRpcResult) duplicate).isDone());
+        pending.complete(new RpcResult("done"));
+        assertTrue(((AsyncRpcResult) duplicate).isDone());
+        assertEquals("done", duplicate.getValue());
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    public void testProviderNotStoreRpcException() {
+        final AtomicInteger count = new AtomicInteger();
+        URL url = URL.valueOf("test://127.0.0.1:20880/failed?side=provider&idempotent=true");
+        Invoker<DemoService> invoker = new MyInvoker<DemoService>(url) {
+            @Override
+            public Result invoke(Invocation invocation) throws RpcException {
+                if (count.incrementAndGet() == 1) {
+                    throw new RpcException(RpcException.THROTTLED_EXCEPTION, "throttled");
+                }
+                return new RpcResult("ok");
+            }
+        };
+        try {
+            filter.invoke(invoker, invocation("a"));
+        } catch (RpcException expected) {
+        }
+        assertEquals("ok", filter.invoke(invoker, invocation("a")).getValue());
+        assertEquals(2, count.get());
+    }
+
+    @Test
+    public void testStoreCapacityAndTtl() throws Exception {
+        IdempotentStore store = new IdempotentStore(2, 50);
+        for (String key : new String[] {"a", "b", "c"}) {
+            IdempotentStore.Entry entry = new IdempotentStore.Entry();
+            store.putIfAbsent(key, entry);
+            store.complete(key, entry, new RpcResult(key));
+        }
+        assertEquals(2, store.size());
+        IdempotentStore.Entry existing = store.putIfAbsent("c", new IdempotentStore.Entry());
+        assertEquals("c", existing.getResult().getValue());
+        Thread.sleep(100);
+        assertEquals(null, store.putIfAbsent("c", new IdempotentStore.Entry()));
+    }
+
+    @Test
+    public void testStoreKeepInProgress() throws Exception {
+        IdempotentStore store = new IdempotentStore(2, 10000);
+        IdempotentStore.Entry running = new IdempotentStore.Entry();
+        store.putIfAbsent("a", running);
+        IdempotentStore.Entry done = new IdempotentStore.Entry();
+        store.putIfAbsent("b", done);
+        store.complete("b", done, new RpcResult("b"));
+        // 达到容量时淘汰已完成的b，执行中的a保留
+        store.putIfAbsent("c", new IdempotentStore.Entry());
+        assertEquals(2, store.size());
+        assertSame(running, store.putIfAbsent("a", new IdempotentStore.Entry()));
+        assertEquals(null, store.putIfAbsent("b", new IdempotentStore.Entry()));
+        // 全部在执行中时暂时超过容量
+        assertEquals(3, store.size());
+        store.complete("a", running, new RpcResult("a"));
+        assertEquals("a", store.putIfAbsent("a", new IdempotentStore.Entry()).getResult().getValue());
+    }
+
+    private static RpcInvocation invocation(String key) {
+        RpcInvocation invocation = new RpcInvocation("echo", new Class<?>[0], new Object[0]);
+        invocation.setAttachment(Constants.IDEMPOTENT_REQUEST_KEY, key);
+        return invocation;
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.filter.limit.ActiveLimiter;
+import com.alibaba.dubbo.rpc.support.MockInvocation;
+import com.alibaba.dubbo.rpc.support.MyInvoker;
+
+/**
+ * ActiveLimitFilter 高并发争用下的吞吐与排队时间，
+ * 运行: mvn test -Dtest=PerformanceActiveLimitFilterTest -Dconcurrent=200 -Dactives=10 -Druns=1000 -Dsleep=1
+ */
+public class PerformanceActiveLimitFilterTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PerformanceActiveLimitFilterTest.class);
+
+    @Test
+    public void testContention() throws Exception {
+        if (System.getProperty("concurrent") == null) {
+            logger.warn("Please set -Dconcurrent=200 to run the active limit benchmark");
+            return;
+        }
+        final int concurrent = Integer.getInteger("concurrent", 200);
+        final int actives = Integer.getInteger("actives", 10);
+        final int runs = Integer.getInteger("runs", 1000);
+        final long sleep = Integer.getInteger("sleep", 1);
+        URL url = URL.valueOf("test://test:14/test?actives=" + actives + "&timeout=" + Integer.getInteger("timeout", 1000));
+        final Filter filter = new ActiveLimitFilter();
+        final Invoker<PerformanceActiveLimitFilterTest> invoker = new MyInvoker<PerformanceActiveLimitFilterTest>(url) {
+            @Override
+            public Result invoke(Invocation invocation) throws RpcException {
+                // 模拟调用耗时，使并发数能够达到上限
+                if (sleep > 0) {
+                    try {
+                        Thread.sleep(sleep);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.invoke(invocation);
+            }
+        };
+        final Invocation invocation = new MockInvocation();
+        final AtomicLong rejected = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(concurrent);
+        for (int i = 0; i < concurrent; i ++) {
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < runs; j ++) {
+                            try {
+                                filter.invoke(invoker, invocation);
+                            } catch (RpcException e) {
+                                rejected.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        finish.countDown();
+                    }
+                }
+            }).start();
+        }
+        long begin = System.currentTimeMillis();
+        start.countDown();
+        finish.await();
+        long elapsed = Math.max(1, System.currentTimeMillis() - begin);
+        long total = (long) concurrent * runs;
+        ActiveLimiter limiter = ActiveLimiter.getLimiter(url, invocation.getMethodName());
+        logger.info("concurrent: " + concurrent + ", actives: " + actives + ", invokes: " + total
+                    + ", elapsed: " + elapsed + "ms, tps: " + total * 1000 / elapsed
+                    + ", rejected: " + rejected.get() + ", " + limiter
+                    + ", averageWaitTime: " + limiter.getAverageWaitTime() + "ms");
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.support.DemoService;
+import com.alibaba.dubbo.rpc.support.MyInvoker;
+
+/**
+ * ContextFilter、ConsumerContextFilter 每次调用分配的字节数及耗时，分别在Dubbo线程池线程和普通线程上运行，
+ * 运行: mvn test -Dtest=PerformanceContextFilterTest -Dcontext -Druns=2000000
+ */
+public class PerformanceContextFilterTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PerformanceContextFilterTest.class);
+
+    @Test
+    public void testAllocation() throws Exception {
+        if (System.getProperty("context") == null) {
+            logger.warn("Please set -Dcontext to run the context filter benchmark");
+            return;
+        }
+        final int runs = Integer.getInteger("runs", 2000000);
+        ExecutorService internal = Executors.newSingleThreadExecutor(new NamedThreadFactory("PerformanceContextFilterTest"));
+        ExecutorService plain = Executors.newSingleThreadExecutor();
+        try {
+            for (final String side : new String[] {Constants.PROVIDER, Constants.CONSUMER}) {
+                logger.info(internal.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return benchmark(side, runs);
+                    }
+                }).get());
+                logger.info(plain.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return benchmark(side, runs);
+                    }
+                }).get());
+            }
+        } finally {
+            internal.shutdown();
+            plain.shutdown();
+        }
+    }
+
+    private static String benchmark(String side, int runs) {
+        URL url = URL.valueOf("test://127.0.0.1:20880/" + DemoService.class.getName() + "?side=" + side + "&context.reuse=true");
+        final Result result = new RpcResult("ok");
+        Invoker<DemoService> invoker = new MyInvoker<DemoService>(url) {
+            @Override
+            public Result invoke(Invocation invocation) throws RpcException {
+                // 业务代码通常只读取attachment
+                RpcContext.getContext().getAttachment("trace");
+                return result;
+            }
+        };
+        Filter filter = Constants.PROVIDER.equals(side) ? new ContextFilter() : new ConsumerContextFilter();
+        Map<String, String> attachments = new HashMap<String, String>();
+        attachments.put(Constants.PATH_KEY, DemoService.class.getName());
+        attachments.put(Constants.VERSION_KEY, "1.0.0");
+        attachments.put(Constants.TIMEOUT_KEY, "1000");
+        attachments.put("trace", "0a0b0c0d");
+        Invocation invocation = new RpcInvocation("sayHello", new Class<?>[] {String.class}, new Object[] {"dubbo"}, attachments);
+        for (int i = 0; i < runs / 10; i ++) {
+            filter.invoke(invoker, invocation);
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long bytes = bean.getThreadAllocatedBytes(id);
+        long begin = System.nanoTime();
+        for (int i = 0; i < runs; i ++) {
+            filter.invoke(invoker, invocation);
+        }
+        long elapsed = System.nanoTime() - begin;
+        bytes = bean.getThreadAllocatedBytes(id) - bytes;
+        return side + " on " + Thread.currentThread().getClass().getSimpleName() + ", runs: " + runs
+                + ", " + bytes / runs + " bytes/op, " + elapsed / runs + "ns/op";
+    }
+
+}
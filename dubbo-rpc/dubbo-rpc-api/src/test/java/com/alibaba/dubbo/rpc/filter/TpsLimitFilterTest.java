@@ -21,6 +21,7 @@ import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
 import com.alibaba.dubbo.rpc.RpcStatus;
 import com.alibaba.dubbo.rpc.support.MockInvocation;
 import com.alibaba.dubbo.rpc.support.MyInvoker;
@@ -28,6 +29,7 @@ import com.alibaba.dubbo.rpc.support.MyInvoker;
 import org.junit.Test;
 
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author <a href="mailto:gang.lvg@alibaba-inc.com">kimi</a>
@@ -65,4 +67,28 @@ public class TpsLimitFilterTest {
         }
     }
 
+    @Test
+    public void testKeys() throws Exception {
+        URL url = URL.valueOf("test://test");
+        url = url.addParameter(Constants.INTERFACE_KEY,
+                               "com.alibaba.dubbo.rpc.file.TpsKeysService");
+        url = url.addParameter(Constants.TPS_LIMIT_RATE_KEY, 2);
+        url = url.addParameter(Constants.TPS_LIMIT_KEYS_KEY, "method,application");
+        Invoker<TpsLimitFilterTest> invoker = new MyInvoker<TpsLimitFilterTest>(url);
+        for (String application : new String[] {"app1", "app2"}) {
+            for (String method : new String[] {"echo", "hello"}) {
+                RpcInvocation invocation = new RpcInvocation(method, new Class<?>[0], new Object[0]);
+                invocation.setAttachment(Constants.APPLICATION_KEY, application);
+                filter.invoke(invoker, invocation);
+                filter.invoke(invoker, invocation);
+                try {
+                    filter.invoke(invoker, invocation);
+                    fail();
+                } catch (RpcException e) {
+                    assertTrue(e.isThrottled());
+                }
+            }
+        }
+    }
+
 }
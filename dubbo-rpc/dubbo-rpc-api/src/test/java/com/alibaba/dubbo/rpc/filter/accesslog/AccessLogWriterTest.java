@@ -0,0 +1,157 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.accesslog;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class AccessLogWriterTest {
+
+    private File dir;
+
+    private AccessLogWriter writer;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("accesslog", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (writer != null) {
+            writer.close();
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testDrain() throws Exception {
+        writer = new AccessLogWriter(new File(dir, "access.log"), 16, 0);
+        assertTrue(writer.offer("a"));
+        assertTrue(writer.offer("b"));
+        // 相同内容的日志不会被合并
+        assertTrue(writer.offer("b"));
+        assertEquals(3, writer.drain());
+        assertEquals(0, writer.drain());
+        assertTrue(writer.offer("c"));
+        assertEquals(1, writer.drain());
+        List<String> lines = readLines(writer.getFile());
+        assertEquals(4, lines.size());
+        assertEquals("a", lines.get(0));
+        assertEquals("b", lines.get(1));
+        assertEquals("b", lines.get(2));
+        assertEquals("c", lines.get(3));
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        writer = new AccessLogWriter(new File(dir, "access.log"), 5, 0);
+        assertEquals(8, writer.getCapacity());
+        for (int i = 0; i < 8; i ++) {
+            assertTrue(writer.offer("line" + i));
+        }
+        assertFalse(writer.offer("line8"));
+        assertEquals(1, writer.getDroppedCount());
+        assertEquals(8, writer.drain());
+        assertEquals(0, writer.getSize());
+        assertTrue(writer.offer("line9"));
+        assertEquals(1, writer.drain());
+        assertEquals(9, readLines(writer.getFile()).size());
+    }
+
+    @Test
+    public void testRollBySize() throws Exception {
+        // 每行 "0123456789\r\n" 12字节，每个文件最多放下2行
+        writer = new AccessLogWriter(new File(dir, "access.log"), 16, 30);
+        for (int i = 0; i < 5; i ++) {
+            writer.offer("0123456789");
+        }
+        assertEquals(5, writer.drain());
+        File[] files = dir.listFiles();
+        assertEquals(3, files.length);
+        int total = 0;
+        for (File file : files) {
+            assertTrue(file.length() <= 30);
+            total += readLines(file).size();
+        }
+        assertEquals(5, total);
+        assertEquals(1, readLines(writer.getFile()).size());
+    }
+
+    @Test
+    public void testConcurrentOffer() throws Exception {
+        writer = new AccessLogWriter(new File(dir, "access.log"), 1024, 0);
+        final int threads = 4;
+        final int lines = 200;
+        Thread[] producers = new Thread[threads];
+        for (int i = 0; i < threads; i ++) {
+            final int id = i;
+            producers[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < lines; j ++) {
+                        writer.offer(id + "-" + j);
+                    }
+                }
+            };
+            producers[i].start();
+        }
+        int drained = 0;
+        for (Thread producer : producers) {
+            while (producer.isAlive()) {
+                drained += writer.drain();
+            }
+        }
+        drained += writer.drain();
+        assertEquals(0, writer.getDroppedCount());
+        assertEquals(threads * lines, drained);
+        assertEquals(threads * lines, readLines(writer.getFile()).size());
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+}
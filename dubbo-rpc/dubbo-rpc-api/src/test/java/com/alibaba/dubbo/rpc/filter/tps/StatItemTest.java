@@ -25,6 +25,7 @@ import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.RpcInvocation;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 
 /**
@@ -46,12 +47,26 @@ public class StatItemTest {
     @Test
     public void testIsAllowable() throws Exception {
         statItem = new StatItem("test", 5, 1000L);
-        long lastResetTime = statItem.getLastResetTime();
         assertEquals(true, statItem.isAllowable(url, invocation));
+        assertEquals(4, statItem.getToken());
         Thread.sleep(1100L);
+        assertEquals(5, statItem.getToken());
         assertEquals(true, statItem.isAllowable(url, invocation));
-        assertTrue(lastResetTime != statItem.getLastResetTime());
         assertEquals(4, statItem.getToken());
     }
 
+    @Test
+    public void testBurst() throws Exception {
+        // 每100ms一个令牌，最多突发3个
+        statItem = new StatItem("test", 10, 1000L, 3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(statItem.isAllowable(url, invocation));
+        }
+        assertFalse(statItem.isAllowable(url, invocation));
+        Thread.sleep(150L);
+        // 令牌平滑补充，不会在窗口边界一次补满
+        assertTrue(statItem.isAllowable(url, invocation));
+        assertFalse(statItem.isAllowable(url, invocation));
+    }
+
 }
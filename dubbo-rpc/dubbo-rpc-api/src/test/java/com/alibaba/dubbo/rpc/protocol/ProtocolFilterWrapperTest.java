@@ -0,0 +1,67 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Exporter;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Protocol;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcStatus;
+import com.alibaba.dubbo.rpc.support.DemoService;
+import com.alibaba.dubbo.rpc.support.MyInvoker;
+
+public class ProtocolFilterWrapperTest {
+
+    private final Protocol protocol = new ProtocolFilterWrapper(new Protocol() {
+        public int getDefaultPort() {
+            return 0;
+        }
+
+        public <T> Exporter<T> export(Invoker<T> invoker) throws RpcException {
+            throw new UnsupportedOperationException();
+        }
+
+        public <T> Invoker<T> refer(Class<T> type, URL url) throws RpcException {
+            return new MyInvoker<T>(url);
+        }
+
+        public void destroy() {
+        }
+    });
+
+    // 只对部分方法生效的Filter不出现在其他方法的调用链中
+    @Test
+    public void testSkipDisabledFilter() throws Exception {
+        URL url = URL.valueOf("test://127.0.0.1:22/" + DemoService.class.getName() + "?sayHello.actives=10");
+        Invoker<DemoService> invoker = protocol.refer(DemoService.class, url);
+        invoker.invoke(new RpcInvocation("sayHello", new Class<?>[] {String.class}, new Object[] {"dubbo"}));
+        invoker.invoke(new RpcInvocation("echo", new Class<?>[] {String.class}, new Object[] {"dubbo"}));
+        // 未知方法使用完整的调用链
+        invoker.invoke(new RpcInvocation("$invoke", new Class<?>[] {String.class, String[].class, Object[].class},
+                new Object[] {"sayHello", new String[0], new Object[0]}));
+        assertEquals(1, RpcStatus.getStatus(url, "sayHello").getTotal());
+        assertEquals(0, RpcStatus.getStatus(url, "echo").getTotal());
+        assertEquals(1, RpcStatus.getStatus(url, "$invoke").getTotal());
+        RpcStatus.removeStatus(url);
+    }
+
+}
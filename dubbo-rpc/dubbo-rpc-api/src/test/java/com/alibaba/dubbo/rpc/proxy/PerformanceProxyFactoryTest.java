@@ -0,0 +1,112 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.proxy;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.bytecode.ClassGenerator;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.ProxyFactory;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+
+/**
+ * 比较各 ProxyFactory 在不同方法数量的接口上的服务端分派耗时，
+ * 运行: mvn test -Dtest=PerformanceProxyFactoryTest -Dproxies=javassist,jdk -Dmethods=5,50,200 -Druns=2000000，
+ * 对比 methodhandle 需要把 dubbo-rpc-methodhandle 加入 classpath
+ */
+public class PerformanceProxyFactoryTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PerformanceProxyFactoryTest.class);
+
+    private static final AtomicLong SERVICE_COUNTER = new AtomicLong();
+
+    @Test
+    public void testDispatch() throws Exception {
+        if (System.getProperty("proxies") == null) {
+            logger.warn("Please set -Dproxies=javassist,jdk to run the proxy factory benchmark");
+            return;
+        }
+        String[] proxies = System.getProperty("proxies").split(",");
+        String[] methods = System.getProperty("methods", "5,50,200").split(",");
+        int runs = Integer.getInteger("runs", 2000000);
+        for (String m : methods) {
+            int count = Integer.parseInt(m.trim());
+            Class<?>[] service = makeService(count);
+            for (String p : proxies) {
+                benchmark(p.trim(), service, count, runs);
+            }
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void benchmark(String name, Class<?>[] service, int count, int runs) throws Exception {
+        ProxyFactory factory = ExtensionLoader.getExtensionLoader(ProxyFactory.class).getExtension(name);
+        URL url = URL.valueOf("test://127.0.0.1:21/" + service[0].getName());
+        Invoker invoker = factory.getInvoker(service[1].newInstance(), (Class) service[0], url);
+        Invocation[] invocations = new Invocation[count];
+        for (int i = 0; i < count; i ++) {
+            invocations[i] = new RpcInvocation("m" + i, new Class<?>[] {int.class}, new Object[] {Integer.valueOf(i)});
+        }
+        // 预热
+        long sum = 0;
+        for (int i = 0; i < runs / 10; i ++) {
+            sum += ((Integer) invoker.invoke(invocations[i % count]).getValue()).longValue();
+        }
+        // 最后声明的方法，以及轮流调用所有方法
+        Invocation last = invocations[count - 1];
+        long begin = System.nanoTime();
+        for (int i = 0; i < runs; i ++) {
+            sum += ((Integer) invoker.invoke(last).getValue()).longValue();
+        }
+        long lastElapsed = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        for (int i = 0; i < runs; i ++) {
+            sum += ((Integer) invoker.invoke(invocations[i % count]).getValue()).longValue();
+        }
+        long allElapsed = System.nanoTime() - begin;
+        logger.info("proxy: " + name + ", methods: " + count + ", runs: " + runs
+                    + ", last method: " + lastElapsed / runs + "ns/op"
+                    + ", all methods: " + allElapsed / runs + "ns/op (" + sum + ")");
+    }
+
+    private static Class<?>[] makeService(int count) throws Exception {
+        ClassLoader loader = PerformanceProxyFactoryTest.class.getClassLoader();
+        ClassPool pool = ClassGenerator.getClassPool(loader);
+        long id = SERVICE_COUNTER.getAndIncrement();
+        CtClass itf = pool.makeInterface(PerformanceProxyFactoryTest.class.getName() + "$Service" + id);
+        CtClass impl = pool.makeClass(PerformanceProxyFactoryTest.class.getName() + "$ServiceImpl" + id);
+        impl.addInterface(itf);
+        for (int i = 0; i < count; i ++) {
+            itf.addMethod(CtMethod.make("public abstract int m" + i + "(int v);", itf));
+            impl.addMethod(CtMethod.make("public int m" + i + "(int v){ return v + " + i + "; }", impl));
+        }
+        Class<?> itfClass = itf.toClass(loader, PerformanceProxyFactoryTest.class.getProtectionDomain());
+        Class<?> implClass = impl.toClass(loader, PerformanceProxyFactoryTest.class.getProtectionDomain());
+        return new Class<?>[] {itfClass, implClass};
+    }
+
+}
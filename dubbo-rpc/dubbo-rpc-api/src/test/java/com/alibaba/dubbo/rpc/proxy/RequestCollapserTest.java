@@ -0,0 +1,247 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.proxy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcFuture;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.proxy.jdk.JdkProxyFactory;
+
+public class RequestCollapserTest {
+
+    public interface UserService {
+
+        String get(Integer id);
+
+        RpcFuture<String> getAsync(Integer id);
+
+        Map<Integer, String> getAll(List<Integer> ids);
+
+        String[] getArray(Integer[] ids);
+
+        String find(Integer id);
+
+    }
+
+    private static class UserInvoker implements Invoker<UserService> {
+
+        volatile URL url;
+
+        volatile CountDownLatch blockBatch;
+
+        final AtomicInteger batches = new AtomicInteger();
+
+        final AtomicInteger singles = new AtomicInteger();
+
+        final List<Integer> sizes = new ArrayList<Integer>();
+
+        volatile boolean fail;
+
+        UserInvoker(URL url) {
+            this.url = url;
+        }
+
+        public Class<UserService> getInterface() {
+            return UserService.class;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Result invoke(Invocation invocation) throws RpcException {
+            String method = invocation.getMethodName();
+            if ("getAll".equals(method)) {
+                batches.incrementAndGet();
+                CountDownLatch block = blockBatch;
+                if (block != null) {
+                    try {
+                        block.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (fail) {
+                    return new RpcResult(new IllegalStateException("batch failed"));
+                }
+                List<Integer> ids = (List<Integer>) invocation.getArguments()[0];
+                synchronized (sizes) {
+                    sizes.add(ids.size());
+                }
+                Map<Integer, String> map = new HashMap<Integer, String>();
+                for (Integer id : ids) {
+                    map.put(id, "user" + id);
+                }
+                return new RpcResult(map);
+            }
+            if ("getArray".equals(method)) {
+                batches.incrementAndGet();
+                Integer[] ids = (Integer[]) invocation.getArguments()[0];
+                String[] names = new String[ids.length];
+                for (int i = 0; i < ids.length; i ++) {
+                    names[i] = "user" + ids[i];
+                }
+                return new RpcResult(names);
+            }
+            singles.incrementAndGet();
+            return new RpcResult("user" + invocation.getArguments()[0]);
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public boolean isAvailable() {
+            return true;
+        }
+
+        public void destroy() {
+        }
+
+    }
+
+    private static UserService refer(UserInvoker invoker) {
+        return new JdkProxyFactory().getProxy(invoker);
+    }
+
+    @Test
+    public void testCollapseConcurrentCalls() throws Exception {
+        final UserInvoker invoker = new UserInvoker(URL.valueOf("dubbo://127.0.0.1:20880/" + UserService.class.getName()
+                + "?get.collapse=getAll&get.collapse.window=50&get.collapse.size=1000"));
+        final UserService service = refer(invoker);
+        int threads = 20;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger correct = new AtomicInteger();
+        for (int i = 0; i < threads; i ++) {
+            final int id = i;
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        if (("user" + id).equals(service.get(id))) {
+                            correct.incrementAndGet();
+                        }
+                    } catch (Throwable t) {
+                        t.printStackTrace();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        Assert.assertEquals(threads, correct.get());
+        Assert.assertTrue(invoker.batches.get() < threads);
+        Assert.assertEquals(0, invoker.singles.get());
+    }
+
+    @Test
+    public void testFlushWhenBatchFull() throws Exception {
+        UserInvoker invoker = new UserInvoker(URL.valueOf("dubbo://127.0.0.1:20880/" + UserService.class.getName()
+                + "?getAsync.collapse=getAll&getAsync.collapse.window=60000&getAsync.collapse.size=3"));
+        UserService service = refer(invoker);
+        List<RpcFuture<String>> futures = new ArrayList<RpcFuture<String>>();
+        for (int i = 0; i < 6; i ++) {
+            futures.add(service.getAsync(i));
+        }
+        for (int i = 0; i < 6; i ++) {
+            Assert.assertEquals("user" + i, futures.get(i).get());
+        }
+        Assert.assertEquals(2, invoker.batches.get());
+        Assert.assertEquals(3, invoker.sizes.get(0).intValue());
+        Assert.assertEquals(3, invoker.sizes.get(1).intValue());
+    }
+
+    @Test
+    public void testArrayBatch() throws Exception {
+        UserInvoker invoker = new UserInvoker(URL.valueOf("dubbo://127.0.0.1:20880/" + UserService.class.getName()
+                + "?get.collapse=getArray&get.collapse.window=1"));
+        UserService service = refer(invoker);
+        Assert.assertEquals("user7", service.get(7));
+        Assert.assertEquals(1, invoker.batches.get());
+    }
+
+    @Test
+    public void testBatchFailure() throws Exception {
+        UserInvoker invoker = new UserInvoker(URL.valueOf("dubbo://127.0.0.1:20880/" + UserService.class.getName()
+                + "?get.collapse=getAll&get.collapse.window=1"));
+        invoker.fail = true;
+        UserService service = refer(invoker);
+        try {
+            service.get(1);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("batch failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testBlockingBatchNotBlockTimer() throws Exception {
+        UserInvoker invoker = new UserInvoker(URL.valueOf("dubbo://127.0.0.1:20880/" + UserService.class.getName()
+                + "?getAsync.collapse=getAll&getAsync.collapse.window=1&get.collapse=getArray&get.collapse.window=1"));
+        invoker.blockBatch = new CountDownLatch(1);
+        UserService service = refer(invoker);
+        RpcFuture<String> blocked = service.getAsync(1);
+        Thread.sleep(50);
+        // 阻塞的批量调用不占用定时线程，其他方法的窗口照常到期
+        RpcFuture<String> other = service.getAsync(2);
+        Assert.assertEquals("user3", service.get(3));
+        Assert.assertFalse(blocked.isDone());
+        invoker.blockBatch.countDown();
+        Assert.assertEquals("user1", blocked.get(5000, TimeUnit.MILLISECONDS));
+        Assert.assertEquals("user2", other.get(5000, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testReloadOnUrlChange() throws Exception {
+        UserInvoker invoker = new UserInvoker(URL.valueOf("dubbo://127.0.0.1:20880/" + UserService.class.getName()));
+        UserService service = refer(invoker);
+        Assert.assertEquals("user1", service.get(1));
+        Assert.assertEquals(1, invoker.singles.get());
+        // 动态配置开启合并后按新的URL重新创建合并器
+        invoker.url = invoker.url.addParameter("get.collapse", "getAll").addParameter("get.collapse.window", 1);
+        Assert.assertEquals("user2", service.get(2));
+        Assert.assertEquals(1, invoker.singles.get());
+        Assert.assertEquals(1, invoker.batches.get());
+    }
+
+    @Test
+    public void testNotCollapsed() throws Exception {
+        UserInvoker invoker = new UserInvoker(URL.valueOf("dubbo://127.0.0.1:20880/" + UserService.class.getName()
+                + "?get.collapse=getAll&find.collapse=get"));
+        UserService service = refer(invoker);
+        // find的批量方法不是集合参数
+        Assert.assertEquals("user1", service.find(1));
+        Assert.assertEquals(1, invoker.singles.get());
+        Assert.assertEquals(0, invoker.batches.get());
+    }
+
+}
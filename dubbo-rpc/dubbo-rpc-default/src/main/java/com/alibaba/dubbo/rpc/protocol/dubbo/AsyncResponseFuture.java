@@ -0,0 +1,68 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
+import com.alibaba.dubbo.rpc.Result;
+
+/**
+ * 提供者异步执行时交给HeaderExchangeHandler的响应，结果完成时写出Response。
+ */
+class AsyncResponseFuture implements ResponseFuture {
+
+    private final AsyncRpcResult result;
+
+    AsyncResponseFuture(AsyncRpcResult result) {
+        this.result = result;
+    }
+
+    public Object get() throws RemotingException {
+        return result.await();
+    }
+
+    public Object get(int timeoutInMillis) throws RemotingException {
+        Result r;
+        try {
+            r = result.await(timeoutInMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemotingException((InetSocketAddress) null, null, "Interrupted while waiting for async result");
+        }
+        if (r == null) {
+            throw new RemotingException((InetSocketAddress) null, null, "Waiting for async result timeout in " + timeoutInMillis + "ms");
+        }
+        return r;
+    }
+
+    public void setCallback(final ResponseCallback callback) {
+        result.addListener(new AsyncRpcResult.Listener() {
+            public void onComplete(Result r) {
+                callback.done(r);
+            }
+        });
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+}
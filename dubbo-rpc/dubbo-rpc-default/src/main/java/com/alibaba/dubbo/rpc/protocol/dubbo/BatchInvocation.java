@@ -0,0 +1,103 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.dubbo.common.io.UnsafeByteArrayInputStream;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.serialize.ObjectInput;
+import com.alibaba.dubbo.common.utils.Assert;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.Decodeable;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.transport.CodecSupport;
+import com.alibaba.dubbo.rpc.Invocation;
+
+/**
+ * 批量调用请求，同一连接上的多个调用合并在一个请求帧中发送。
+ * <p>
+ * 请求体为调用个数，之后每个调用按普通格式单独编码为一个字节块，提供者解码后并行执行。
+ */
+public class BatchInvocation implements Decodeable {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchInvocation.class);
+
+    private final List<Invocation> invocations;
+
+    private Channel     channel;
+
+    private Request     request;
+
+    private InputStream inputStream;
+
+    private byte        serializationType;
+
+    private volatile boolean hasDecoded;
+
+    public BatchInvocation(List<Invocation> invocations) {
+        Assert.notNull(invocations, "invocations == null");
+        this.invocations = invocations;
+    }
+
+    BatchInvocation(Channel channel, Request request, InputStream is, byte id) {
+        Assert.notNull(channel, "channel == null");
+        Assert.notNull(request, "request == null");
+        Assert.notNull(is, "inputStream == null");
+        this.invocations = new ArrayList<Invocation>();
+        this.channel = channel;
+        this.request = request;
+        this.inputStream = is;
+        this.serializationType = id;
+    }
+
+    public List<Invocation> getInvocations() {
+        return invocations;
+    }
+
+    public void decode() throws Exception {
+        if (!hasDecoded && channel != null && inputStream != null) {
+            try {
+                ObjectInput in = CodecSupport.getSerialization(channel.getUrl(), serializationType)
+                    .deserialize(channel.getUrl(), inputStream);
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    InputStream is = new UnsafeByteArrayInputStream(in.readBytes());
+                    DecodeableRpcInvocation inv = new DecodeableRpcInvocation(channel, request, is, serializationType);
+                    inv.decode(channel, is);
+                    invocations.add(inv);
+                }
+            } catch (Throwable e) {
+                if (log.isWarnEnabled()) {
+                    log.warn("Decode batch invocation failed: " + e.getMessage(), e);
+                }
+                request.setBroken(true);
+                request.setData(e);
+            } finally {
+                hasDecoded = true;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BatchInvocation [size=" + invocations.size() + ", invocations=" + invocations + "]";
+    }
+
+}
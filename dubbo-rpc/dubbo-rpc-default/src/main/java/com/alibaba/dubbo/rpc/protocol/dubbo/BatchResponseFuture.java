@@ -0,0 +1,107 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.rpc.Result;
+
+/**
+ * 提供者并行执行批量调用时交给HeaderExchangeHandler的响应，全部调用完成时写出BatchResult。
+ */
+class BatchResponseFuture implements ResponseFuture {
+
+    private final Result[] results;
+
+    private final AtomicInteger remaining;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private ResponseCallback callback;
+
+    BatchResponseFuture(int size) {
+        this.results = new Result[size];
+        this.remaining = new AtomicInteger(size);
+        if (size == 0) {
+            done.countDown();
+        }
+    }
+
+    /**
+     * 设置第index个调用的结果，每个位置只能设置一次
+     */
+    void set(int index, Result result) {
+        results[index] = result;
+        if (remaining.decrementAndGet() == 0) {
+            ResponseCallback c;
+            synchronized (this) {
+                done.countDown();
+                c = callback;
+            }
+            if (c != null) {
+                c.done(getResult());
+            }
+        }
+    }
+
+    private BatchResult getResult() {
+        return new BatchResult(Arrays.asList(results));
+    }
+
+    public Object get() throws RemotingException {
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemotingException((InetSocketAddress) null, null, "Interrupted while waiting for batch result");
+        }
+        return getResult();
+    }
+
+    public Object get(int timeoutInMillis) throws RemotingException {
+        try {
+            if (! done.await(timeoutInMillis, TimeUnit.MILLISECONDS)) {
+                throw new RemotingException((InetSocketAddress) null, null, "Waiting for batch result timeout in " + timeoutInMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemotingException((InetSocketAddress) null, null, "Interrupted while waiting for batch result");
+        }
+        return getResult();
+    }
+
+    public void setCallback(ResponseCallback callback) {
+        synchronized (this) {
+            if (done.getCount() > 0) {
+                this.callback = callback;
+                return;
+            }
+        }
+        callback.done(getResult());
+    }
+
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+}
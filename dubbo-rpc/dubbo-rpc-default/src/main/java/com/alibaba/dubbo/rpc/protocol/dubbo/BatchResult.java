@@ -0,0 +1,109 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.dubbo.common.io.UnsafeByteArrayInputStream;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.serialize.ObjectInput;
+import com.alibaba.dubbo.common.utils.Assert;
+import com.alibaba.dubbo.common.utils.StringUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.Decodeable;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.transport.CodecSupport;
+import com.alibaba.dubbo.rpc.Result;
+
+/**
+ * 批量调用响应，按请求中的调用顺序包含每个调用的结果或异常。
+ */
+public class BatchResult implements Decodeable {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchResult.class);
+
+    private final List<Result> results;
+
+    private Channel         channel;
+
+    private Response        response;
+
+    private InputStream     inputStream;
+
+    private BatchInvocation batch;
+
+    private byte            serializationType;
+
+    private volatile boolean hasDecoded;
+
+    public BatchResult(List<Result> results) {
+        Assert.notNull(results, "results == null");
+        this.results = results;
+    }
+
+    BatchResult(Channel channel, Response response, InputStream is, BatchInvocation batch, byte id) {
+        Assert.notNull(channel, "channel == null");
+        Assert.notNull(response, "response == null");
+        Assert.notNull(is, "inputStream == null");
+        Assert.notNull(batch, "batch == null");
+        this.results = new ArrayList<Result>();
+        this.channel = channel;
+        this.response = response;
+        this.inputStream = is;
+        this.batch = batch;
+        this.serializationType = id;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    public void decode() throws Exception {
+        if (!hasDecoded && channel != null && inputStream != null) {
+            try {
+                ObjectInput in = CodecSupport.getSerialization(channel.getUrl(), serializationType)
+                    .deserialize(channel.getUrl(), inputStream);
+                int size = in.readInt();
+                if (size != batch.getInvocations().size()) {
+                    throw new IllegalStateException("Batch result size " + size + " mismatch, expect " + batch.getInvocations().size());
+                }
+                for (int i = 0; i < size; i++) {
+                    InputStream is = new UnsafeByteArrayInputStream(in.readBytes());
+                    DecodeableRpcResult result = new DecodeableRpcResult(channel, response, is, batch.getInvocations().get(i), serializationType);
+                    result.decode(channel, is);
+                    results.add(result);
+                }
+            } catch (Throwable e) {
+                if (log.isWarnEnabled()) {
+                    log.warn("Decode batch result failed: " + e.getMessage(), e);
+                }
+                response.setStatus(Response.CLIENT_ERROR);
+                response.setErrorMessage(StringUtils.toString(e));
+            } finally {
+                hasDecoded = true;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult [size=" + results.size() + ", results=" + results + "]";
+    }
+
+}
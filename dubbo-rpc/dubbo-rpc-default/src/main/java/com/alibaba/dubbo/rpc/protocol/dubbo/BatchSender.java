@@ -0,0 +1,116 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.util.List;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.TimeoutException;
+import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.remoting.transport.CodecSupport;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcBatch;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcFuture;
+
+/**
+ * 把一个连接上暂存的调用合并为一个{@link BatchInvocation}请求发送，
+ * 连接未协商批量特性时逐个发送。
+ */
+class BatchSender implements RpcBatch.Sender {
+
+    private final ExchangeClient client;
+
+    BatchSender(ExchangeClient client) {
+        this.client = client;
+    }
+
+    public void send(List<Invocation> invocations, final List<RpcFuture<Object>> futures) {
+        if (invocations.size() == 1 || ! CodecSupport.isFeatureEnabled(client, DubboCodec.FEATURE_BATCH)) {
+            for (int i = 0; i < invocations.size(); i++) {
+                sendOne(invocations.get(i), futures.get(i));
+            }
+            return;
+        }
+        // 整个批量请求的超时时间取各调用超时时间的最大值
+        int timeout = 0;
+        for (Invocation invocation : invocations) {
+            timeout = Math.max(timeout, getTimeout(invocation));
+        }
+        try {
+            client.request(new BatchInvocation(invocations), timeout).setCallback(new ResponseCallback() {
+                public void done(Object response) {
+                    List<Result> results = ((BatchResult) response).getResults();
+                    for (int i = 0; i < futures.size(); i++) {
+                        complete(futures.get(i), results.get(i));
+                    }
+                }
+
+                public void caught(Throwable exception) {
+                    RpcException e = toRpcException(exception);
+                    for (RpcFuture<Object> future : futures) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RemotingException e) {
+            throw toRpcException(e);
+        }
+    }
+
+    private void sendOne(Invocation invocation, final RpcFuture<Object> future) {
+        try {
+            client.request(invocation, getTimeout(invocation)).setCallback(new ResponseCallback() {
+                public void done(Object response) {
+                    complete(future, (Result) response);
+                }
+
+                public void caught(Throwable exception) {
+                    future.completeExceptionally(toRpcException(exception));
+                }
+            });
+        } catch (RemotingException e) {
+            future.completeExceptionally(toRpcException(e));
+        }
+    }
+
+    private static int getTimeout(Invocation invocation) {
+        String timeout = invocation.getAttachment(Constants.TIMEOUT_KEY);
+        return timeout == null || timeout.length() == 0 ? Constants.DEFAULT_TIMEOUT : Integer.parseInt(timeout);
+    }
+
+    private static void complete(RpcFuture<Object> future, Result result) {
+        if (result.hasException()) {
+            future.completeExceptionally(result.getException());
+        } else {
+            future.complete(result.getValue());
+        }
+    }
+
+    private static RpcException toRpcException(Throwable exception) {
+        if (exception instanceof RpcException) {
+            return (RpcException) exception;
+        }
+        if (exception instanceof TimeoutException) {
+            return new RpcException(RpcException.TIMEOUT_EXCEPTION, "Invoke remote batch timeout, cause: " + exception.getMessage(), exception);
+        }
+        return new RpcException(RpcException.NETWORK_EXCEPTION, "Failed to invoke remote batch, cause: " + exception.getMessage(), exception);
+    }
+
+}
@@ -34,6 +34,7 @@ import com.alibaba.dubbo.remoting.Codec;
 import com.alibaba.dubbo.remoting.Decodeable;
 import com.alibaba.dubbo.remoting.exchange.Request;
 import com.alibaba.dubbo.remoting.transport.CodecSupport;
+import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.RpcInvocation;
 
 import static com.alibaba.dubbo.rpc.protocol.dubbo.CallbackServiceCodec.decodeInvocationArgument;
@@ -55,9 +56,26 @@ public class DecodeableRpcInvocation extends RpcInvocation implements Codec, Dec
 
     private Request     request;
 
+    private byte        flags;
+
     private volatile boolean hasDecoded;
 
+    // 头部优先格式下，方法参数延迟到第一次访问时再从该输入中解码
+    private ObjectInput argumentInput;
+
+    private volatile boolean argumentsPending;
+
+    // 按编号分发的请求对应的服务
+    private MethodIndex.Service indexedService;
+
+    // 在IO线程中收到请求的时间
+    private final long arrivalTime = System.currentTimeMillis();
+
     public DecodeableRpcInvocation(Channel channel, Request request, InputStream is, byte id) {
+        this(channel, request, is, id, (byte) 0);
+    }
+
+    public DecodeableRpcInvocation(Channel channel, Request request, InputStream is, byte id, byte flags) {
         Assert.notNull(channel, "channel == null");
         Assert.notNull(request, "request == null");
         Assert.notNull(is, "inputStream == null");
@@ -65,6 +83,14 @@ public class DecodeableRpcInvocation extends RpcInvocation implements Codec, Dec
         this.request = request;
         this.inputStream = is;
         this.serializationType = id;
+        this.flags = flags;
+    }
+
+    /**
+     * @return 收到请求的时间，截止时间从此时开始计算，包含在线程池中排队的时间
+     */
+    public long getArrivalTime() {
+        return arrivalTime;
     }
 
     public void decode() throws Exception {
@@ -91,45 +117,47 @@ public class DecodeableRpcInvocation extends RpcInvocation implements Codec, Dec
         ObjectInput in = CodecSupport.getSerialization(channel.getUrl(), serializationType)
             .deserialize(channel.getUrl(), input);
 
+        if ((flags & DubboCodec.FLAG_DICTIONARY) != 0) {
+            decodeDictionaryBlock(in.readBytes());
+            deferArguments(in, getParameterTypes());
+            return this;
+        }
+
         // 解码dubbo、path、version
         setAttachment(Constants.DUBBO_VERSION_KEY, in.readUTF());
+        if ((flags & DubboCodec.FLAG_METHOD_INDEX) != 0) {
+            applyMethodIndex(in.readInt(), in.readInt());
+            decodeAttachments(in);
+            deferArguments(in, getParameterTypes());
+            return this;
+        }
         setAttachment(Constants.PATH_KEY, in.readUTF());
         setAttachment(Constants.VERSION_KEY, in.readUTF());
 
         // 解码方法、方法签名、方法参数
         setMethodName(in.readUTF());
         try {
-            Object[] args;
             Class<?>[] pts;
             String desc = in.readUTF();
             if (desc.length() == 0) {
                 pts = DubboCodec.EMPTY_CLASS_ARRAY;
-                args = DubboCodec.EMPTY_OBJECT_ARRAY;
             } else {
                 pts = ReflectUtils.desc2classArray(desc);
-                args = new Object[pts.length];
-                for (int i = 0; i < args.length; i++) {
-                    try {
-                        args[i] = in.readObject(pts[i]);
-                    } catch (Exception e) {
-                        if (log.isWarnEnabled()) {
-                            log.warn("Decode argument failed: " + e.getMessage(), e);
-                        }
-                    }
-                }
             }
             setParameterTypes(pts);
 
-            // 解码隐式传参集合
-            Map<String, String> map = (Map<String, String>) in.readObject(Map.class);
-            if (map != null && map.size() > 0) {
-                Map<String, String> attachment = getAttachments();
-                if (attachment == null) {
-                    attachment = new HashMap<String, String>();
-                }
-                attachment.putAll(map);
-                setAttachments(attachment);
+            if ((flags & DubboCodec.FLAG_HEADER_FIRST) != 0) {
+                // 头部优先：先解码隐式传参，方法参数留到第一次访问时解码，
+                // 这样被限流、鉴权等filter拒绝的请求不需要反序列化参数
+                decodeAttachments(in);
+                deferArguments(in, pts);
+                return this;
             }
+
+            Object[] args = readArguments(in, pts);
+
+            // 解码隐式传参集合
+            decodeAttachments(in);
             // 进一步解码方法参数，可能会有方法回调
             //decode argument ,may be callback
             for (int i = 0; i < args.length; i++) {
@@ -144,4 +172,140 @@ public class DecodeableRpcInvocation extends RpcInvocation implements Codec, Dec
         return this;
     }
 
+    /**
+     * 解码字典格式的元数据块，块中携带的定义在此登记，所以必须在IO线程中调用
+     */
+    private void decodeDictionaryBlock(byte[] bytes) throws IOException {
+        StringDictionary.BlockReader block = new StringDictionary.BlockReader(StringDictionary.getDecoder(channel), bytes);
+        setAttachment(Constants.DUBBO_VERSION_KEY, block.readString());
+        if ((flags & DubboCodec.FLAG_METHOD_INDEX) != 0) {
+            int serviceId = block.readInt();
+            applyMethodIndex(serviceId, block.readInt());
+        } else {
+            setAttachment(Constants.PATH_KEY, block.readString());
+            setAttachment(Constants.VERSION_KEY, block.readString());
+            setMethodName(block.readString());
+            String desc = block.readString();
+            try {
+                setParameterTypes(desc == null || desc.length() == 0
+                    ? DubboCodec.EMPTY_CLASS_ARRAY : ReflectUtils.desc2classArray(desc));
+            } catch (ClassNotFoundException e) {
+                throw new IOException(StringUtils.toString("Read invocation data failed.", e));
+            }
+        }
+        int size = block.readInt();
+        if (size > 0) {
+            Map<String, String> attachment = getAttachments();
+            if (attachment == null) {
+                attachment = new HashMap<String, String>();
+            }
+            for (int i = 0; i < size; i++) {
+                String key = block.readString();
+                attachment.put(key, block.readString());
+            }
+            setAttachments(attachment);
+        }
+    }
+
+    /**
+     * 按编号取得服务的path、version以及缓存的方法名和参数类型
+     */
+    private void applyMethodIndex(int serviceId, int methodId) throws IOException {
+        MethodIndex.Service service = MethodIndex.getService(serviceId);
+        MethodTable.Entry method = service == null ? null : service.methodTable.get(methodId);
+        if (method == null) {
+            throw new IOException("Unknown method index " + serviceId + "#" + methodId);
+        }
+        indexedService = service;
+        setAttachment(Constants.PATH_KEY, service.path);
+        setAttachment(Constants.VERSION_KEY, service.version);
+        setMethodName(method.name);
+        setParameterTypes(method.parameterTypes);
+    }
+
+    MethodIndex.Service getIndexedService() {
+        return indexedService;
+    }
+
+    private void deferArguments(ObjectInput in, Class<?>[] pts) {
+        if (pts.length == 0) {
+            setArguments(DubboCodec.EMPTY_OBJECT_ARRAY);
+        } else {
+            argumentInput = in;
+            argumentsPending = true;
+        }
+    }
+
+    private Object[] readArguments(ObjectInput in, Class<?>[] pts) {
+        if (pts.length == 0) {
+            return DubboCodec.EMPTY_OBJECT_ARRAY;
+        }
+        Object[] args = new Object[pts.length];
+        for (int i = 0; i < args.length; i++) {
+            try {
+                args[i] = in.readObject(pts[i]);
+            } catch (Exception e) {
+                if (log.isWarnEnabled()) {
+                    log.warn("Decode argument failed: " + e.getMessage(), e);
+                }
+            }
+        }
+        return args;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void decodeAttachments(ObjectInput in) throws IOException {
+        Map<String, String> map;
+        try {
+            map = (Map<String, String>) in.readObject(Map.class);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(StringUtils.toString("Read invocation data failed.", e));
+        }
+        if (map != null && map.size() > 0) {
+            Map<String, String> attachment = getAttachments();
+            if (attachment == null) {
+                attachment = new HashMap<String, String>();
+            }
+            attachment.putAll(map);
+            setAttachments(attachment);
+        }
+    }
+
+    /**
+     * 解码延迟的方法参数，解码失败时抛出RpcException，由调用链返回给消费者
+     */
+    private synchronized void decodeArguments() {
+        if (! argumentsPending) {
+            return;
+        }
+        try {
+            Class<?>[] pts = getParameterTypes();
+            Object[] args = readArguments(argumentInput, pts);
+            for (int i = 0; i < args.length; i++) {
+                args[i] = decodeInvocationArgument(channel, this, pts, i, args[i]);
+            }
+            super.setArguments(args);
+        } catch (IOException e) {
+            throw new RpcException("Decode arguments of method " + getMethodName() + " failed: " + e.getMessage(), e);
+        } finally {
+            argumentInput = null;
+            argumentsPending = false;
+        }
+    }
+
+    @Override
+    public Object[] getArguments() {
+        if (argumentsPending) {
+            decodeArguments();
+        }
+        return super.getArguments();
+    }
+
+    @Override
+    public void setArguments(Object[] arguments) {
+        argumentInput = null;
+        argumentsPending = false;
+        super.setArguments(arguments);
+    }
+
 }
@@ -17,12 +17,15 @@ package com.alibaba.dubbo.rpc.protocol.dubbo;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.Version;
 import com.alibaba.dubbo.common.io.Bytes;
 import com.alibaba.dubbo.common.io.UnsafeByteArrayInputStream;
+import com.alibaba.dubbo.common.io.UnsafeByteArrayOutputStream;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.serialize.ObjectInput;
@@ -38,7 +41,9 @@ import com.alibaba.dubbo.remoting.exchange.codec.ExchangeCodec;
 import com.alibaba.dubbo.remoting.transport.CodecSupport;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
 
 import static com.alibaba.dubbo.rpc.protocol.dubbo.CallbackServiceCodec.encodeInvocationArgument;
 
@@ -87,6 +92,66 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
      */
     public static final Class<?>[] EMPTY_CLASS_ARRAY = new Class<?>[0];
 
+    /**
+     * 请求体特性：隐式传参放在方法参数之前，提供者可以只解码头部，方法参数在第一次访问时才解码
+     */
+    public static final String FEATURE_HEADER_FIRST = "headerfirst";
+
+    /**
+     * 请求header[3]中的请求体格式标记
+     */
+    public static final byte FLAG_HEADER_FIRST = 0x01;
+
+    /**
+     * 请求体特性：调用元数据通过连接级字符串字典编码，重复的字符串只发送编号
+     */
+    public static final String FEATURE_DICTIONARY = "dictionary";
+
+    /**
+     * 请求header[3]中的字典格式标记，字典格式同时也是头部优先的
+     */
+    public static final byte FLAG_DICTIONARY = 0x02;
+
+    /**
+     * 请求体特性：用服务编号和方法编号代替path、version、方法名和方法签名
+     */
+    public static final String FEATURE_METHOD_INDEX = "methodindex";
+
+    /**
+     * 请求header[3]中的按编号分发标记
+     */
+    public static final byte FLAG_METHOD_INDEX = 0x04;
+
+    /**
+     * 请求体特性：多个调用合并在一个请求中，见{@link BatchInvocation}
+     */
+    public static final String FEATURE_BATCH = "batch";
+
+    /**
+     * 请求header[3]中的批量调用标记，批量请求中的每个调用都是普通格式
+     */
+    public static final byte FLAG_BATCH = 0x08;
+
+    /**
+     * 流式调用：消息以单向的流帧发送，见{@link DubboStream}
+     */
+    public static final String FEATURE_STREAM = "stream";
+
+    /**
+     * 请求header[3]中的流帧标记
+     */
+    public static final byte FLAG_STREAM = 0x10;
+
+    /**
+     * 请求header[3]中的服务编号查询标记，见{@link MethodIndex.Query}，属于方法编号特性
+     */
+    public static final byte FLAG_INDEX_QUERY = 0x20;
+
+    /**
+     * DubboCodec支持的全部可选特性
+     */
+    public static final String FEATURES = FEATURE_HEADER_FIRST + "," + FEATURE_DICTIONARY + "," + FEATURE_METHOD_INDEX + "," + FEATURE_BATCH + "," + FEATURE_STREAM;
+
     protected Object decodeBody(Channel channel, InputStream is, byte[] header) throws IOException {
         // 获得Serialization对象
         byte flag = header[2], proto = (byte) (flag & SERIALIZATION_MASK);
@@ -105,6 +170,10 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
             // 设置状态
             byte status = header[3];
             res.setStatus(status);
+            // 正常响应说明提供者已经登记了该请求携带的字典定义
+            if (status == Response.OK && ! res.isEvent()) {
+                StringDictionary.confirm(channel, id);
+            }
             // 正常响应状态
             if (status == Response.OK) {
                 try {
@@ -115,6 +184,24 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
                     } else if (res.isEvent()) {
                         // 其他事件
                         data = decodeEventData(channel, deserialize(s, channel.getUrl(), is));
+                    } else if (getRequestData(id) instanceof MethodIndex.Query) {
+                        // 服务编号查询的响应只有一个编号
+                        ObjectInput in = deserialize(s, channel.getUrl(), is);
+                        data = new RpcResult(in.readByte() == RESPONSE_VALUE ? in.readObject(Integer.class) : null);
+                    } else if (getRequestData(id) instanceof BatchInvocation) {
+                        // 批量调用的响应
+                        BatchInvocation batch = (BatchInvocation) getRequestData(id);
+                        BatchResult result;
+                        if (channel.getUrl().getParameter(
+                            Constants.DECODE_IN_IO_THREAD_KEY,
+                            Constants.DEFAULT_DECODE_IN_IO_THREAD)) {
+                            result = new BatchResult(channel, res, is, batch, proto);
+                            result.decode();
+                        } else {
+                            result = new BatchResult(channel, res,
+                                                     new UnsafeByteArrayInputStream(readMessageData(is)), batch, proto);
+                        }
+                        data = result;
                     } else {
                         // 普通响应
                         DecodeableRpcResult result;
@@ -162,16 +249,42 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
                     data = decodeHeartbeatData(channel, deserialize(s, channel.getUrl(), is));
                 } else if (req.isEvent()) {
                     data = decodeEventData(channel, deserialize(s, channel.getUrl(), is));
-                } else {
-                    DecodeableRpcInvocation inv;
+                } else if ((header[3] & FLAG_STREAM) != 0) {
+                    // 流帧很小，总在IO线程中解码
+                    data = decodeStreamFrame(deserialize(s, channel.getUrl(), is));
+                } else if ((header[3] & FLAG_INDEX_QUERY) != 0) {
+                    // 服务编号查询在IO线程中解码并应答
+                    ObjectInput in = deserialize(s, channel.getUrl(), is);
+                    data = new MethodIndex.Query(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+                } else if ((header[3] & FLAG_BATCH) != 0) {
+                    BatchInvocation batch;
                     if (channel.getUrl().getParameter(
                         Constants.DECODE_IN_IO_THREAD_KEY,
                         Constants.DEFAULT_DECODE_IN_IO_THREAD)) {
-                        inv = new DecodeableRpcInvocation(channel, req, is, proto);
+                        batch = new BatchInvocation(channel, req, is, proto);
+                        batch.decode();
+                    } else {
+                        batch = new BatchInvocation(channel, req, new UnsafeByteArrayInputStream(readMessageData(is)), proto);
+                    }
+                    data = batch;
+                } else {
+                    DecodeableRpcInvocation inv;
+                    // 请求中未使用的status字节标记请求体格式
+                    byte flags = header[3];
+                    boolean decodeInIo = channel.getUrl().getParameter(
+                        Constants.DECODE_IN_IO_THREAD_KEY,
+                        Constants.DEFAULT_DECODE_IN_IO_THREAD);
+                    if (decodeInIo && (flags & (FLAG_HEADER_FIRST | FLAG_DICTIONARY)) == 0) {
+                        inv = new DecodeableRpcInvocation(channel, req, is, proto, flags);
                         inv.decode();
                     } else {
+                        // 头部优先的请求延迟解码方法参数，需要复制出请求体，IO线程返回后buffer会被回收
                         inv = new DecodeableRpcInvocation(channel, req,
-                                                          new UnsafeByteArrayInputStream(readMessageData(is)), proto);
+                                                          new UnsafeByteArrayInputStream(readMessageData(is)), proto, flags);
+                        // 字典定义必须按请求到达顺序登记，所以字典格式的头部总在IO线程中解码
+                        if (decodeInIo || (flags & FLAG_DICTIONARY) != 0) {
+                            inv.decode();
+                        }
                     }
                     data = inv;
                 }
@@ -188,6 +301,25 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
         }
     }
 
+    private StreamFrame decodeStreamFrame(ObjectInput in) throws IOException {
+        long streamId = in.readLong();
+        byte type = in.readByte();
+        int value = in.readInt();
+        Object payload = null;
+        if (type == StreamFrame.DATA || type == StreamFrame.ERROR) {
+            try {
+                payload = in.readObject();
+            } catch (Throwable t) {
+                // 消息无法解码时以错误结束该流，而不是丢弃这一帧
+                return new StreamFrame(streamId, StreamFrame.ERROR, value, new RpcException("Decode stream message failed: " + StringUtils.toString(t)));
+            }
+            if (type == StreamFrame.ERROR && ! (payload instanceof Throwable)) {
+                payload = new RpcException("Stream error: " + payload);
+            }
+        }
+        return new StreamFrame(streamId, type, value, payload);
+    }
+
     private ObjectInput deserialize(Serialization serialization, URL url, InputStream is)
         throws IOException {
         return serialization.deserialize(url, is);
@@ -202,6 +334,122 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
         return new byte[]{};
     }
 
+    @Override
+    protected void encodeRequestData(Channel channel, ObjectOutput out, Object data, byte[] header) throws IOException {
+        if (data instanceof StreamFrame) {
+            header[3] |= FLAG_STREAM;
+            StreamFrame frame = (StreamFrame) data;
+            out.writeLong(frame.getStreamId());
+            out.writeByte(frame.getType());
+            out.writeInt(frame.getValue());
+            if (frame.hasPayload()) {
+                out.writeObject(frame.getPayload());
+            }
+            return;
+        }
+        if (data instanceof MethodIndex.Query) {
+            header[3] |= FLAG_INDEX_QUERY;
+            MethodIndex.Query query = (MethodIndex.Query) data;
+            out.writeUTF(query.path);
+            out.writeUTF(query.version);
+            out.writeUTF(query.group);
+            out.writeUTF(query.fingerprint);
+            return;
+        }
+        if (data instanceof BatchInvocation) {
+            header[3] |= FLAG_BATCH;
+            List<Invocation> invocations = ((BatchInvocation) data).getInvocations();
+            out.writeInt(invocations.size());
+            for (Invocation invocation : invocations) {
+                out.writeBytes(encodeBatchItem(channel, invocation, true));
+            }
+            return;
+        }
+        RpcInvocation inv = (RpcInvocation) data;
+        // 服务编号和方法编号，未协商或者还没有查询到时为null
+        int[] index = MethodIndex.lookup(channel, inv);
+        if (index != null) {
+            header[3] |= FLAG_METHOD_INDEX;
+        }
+        if (CodecSupport.isFeatureEnabled(channel, FEATURE_DICTIONARY)) {
+            header[3] |= FLAG_DICTIONARY;
+            encodeRequestDataWithDictionary(channel, out, inv, header, index);
+        } else if (index != null || CodecSupport.isFeatureEnabled(channel, FEATURE_HEADER_FIRST)) {
+            header[3] |= FLAG_HEADER_FIRST;
+            encodeRequestDataHeaderFirst(channel, out, inv, index);
+        } else {
+            encodeRequestData(channel, out, data);
+        }
+    }
+
+    /**
+     * 头部优先格式：dubbo、path、version、方法、方法签名（按编号分发时为服务编号和方法编号）、隐式传参，最后是方法参数
+     */
+    private void encodeRequestDataHeaderFirst(Channel channel, ObjectOutput out, RpcInvocation inv, int[] index) throws IOException {
+        out.writeUTF(inv.getAttachment(Constants.DUBBO_VERSION_KEY, DUBBO_VERSION));
+        if (index != null) {
+            out.writeInt(index[0]);
+            out.writeInt(index[1]);
+        } else {
+            out.writeUTF(inv.getAttachment(Constants.PATH_KEY));
+            out.writeUTF(inv.getAttachment(Constants.VERSION_KEY));
+
+            out.writeUTF(inv.getMethodName());
+            out.writeUTF(ReflectUtils.getDesc(inv.getParameterTypes()));
+        }
+        // 回调参数编码时会写入隐式传参，所以先处理参数，再写隐式传参
+        Object[] args = inv.getArguments();
+        Object[] encoded = args == null ? EMPTY_OBJECT_ARRAY : new Object[args.length];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = encodeInvocationArgument(channel, inv, i);
+        }
+        out.writeObject(inv.getAttachments());
+        for (int i = 0; i < encoded.length; i++) {
+            out.writeObject(encoded[i]);
+        }
+    }
+
+    /**
+     * 字典格式：调用元数据编码为一个字节块（见{@link StringDictionary}），之后是方法参数
+     */
+    private void encodeRequestDataWithDictionary(Channel channel, ObjectOutput out, RpcInvocation inv, byte[] header, int[] index) throws IOException {
+        Object[] args = inv.getArguments();
+        Object[] encoded = args == null ? EMPTY_OBJECT_ARRAY : new Object[args.length];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = encodeInvocationArgument(channel, inv, i);
+        }
+        StringDictionary.Encoder encoder = StringDictionary.getEncoder(channel);
+        StringDictionary.BlockWriter block = new StringDictionary.BlockWriter(encoder);
+        block.writeString(inv.getAttachment(Constants.DUBBO_VERSION_KEY, DUBBO_VERSION), true);
+        if (index != null) {
+            block.writeInt(index[0]);
+            block.writeInt(index[1]);
+        } else {
+            block.writeString(inv.getAttachment(Constants.PATH_KEY), true);
+            block.writeString(inv.getAttachment(Constants.VERSION_KEY), true);
+            block.writeString(inv.getMethodName(), true);
+            block.writeString(ReflectUtils.getDesc(inv.getParameterTypes()), true);
+        }
+        Map<String, String> attachments = inv.getAttachments();
+        if (attachments == null) {
+            block.writeInt(0);
+        } else {
+            block.writeInt(attachments.size());
+            for (Map.Entry<String, String> entry : attachments.entrySet()) {
+                block.writeString(entry.getKey(), true);
+                block.writeString(entry.getValue(), StringDictionary.isStableValueKey(entry.getKey()));
+            }
+        }
+        out.writeBytes(block.toByteArray());
+        for (int i = 0; i < encoded.length; i++) {
+            out.writeObject(encoded[i]);
+        }
+        // 单向请求没有响应，其中的定义由后续的双向请求重发并确认
+        if ((header[2] & FLAG_TWOWAY) != 0 && ! block.getDefined().isEmpty()) {
+            encoder.await(Bytes.bytes2long(header, 4), block.getDefined());
+        }
+    }
+
     @Override
     protected void encodeRequestData(Channel channel, ObjectOutput out, Object data) throws IOException {
         RpcInvocation inv = (RpcInvocation) data;
@@ -227,8 +475,31 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
         out.writeObject(inv.getAttachments());
     }
 
+    /**
+     * 批量请求和响应中的每一项单独序列化为一个字节块
+     */
+    private byte[] encodeBatchItem(Channel channel, Object item, boolean request) throws IOException {
+        UnsafeByteArrayOutputStream bos = new UnsafeByteArrayOutputStream(256);
+        ObjectOutput out = getSerialization(channel).serialize(channel.getUrl(), bos);
+        if (request) {
+            encodeRequestData(channel, out, item);
+        } else {
+            encodeResponseData(channel, out, item);
+        }
+        out.flushBuffer();
+        return bos.toByteArray();
+    }
+
     @Override
     protected void encodeResponseData(Channel channel, ObjectOutput out, Object data) throws IOException {
+        if (data instanceof BatchResult) {
+            List<Result> results = ((BatchResult) data).getResults();
+            out.writeInt(results.size());
+            for (Result result : results) {
+                out.writeBytes(encodeBatchItem(channel, result, false));
+            }
+            return;
+        }
         Result result = (Result) data;
 
         Throwable th = result.getException();
@@ -42,6 +42,7 @@ public class DubboExporter<T> extends AbstractExporter<T> {
     public void unexport() {
         super.unexport();
         exporterMap.remove(key);
+        MethodIndex.unexport(key, this);
     }
 
 }
\ No newline at end of file
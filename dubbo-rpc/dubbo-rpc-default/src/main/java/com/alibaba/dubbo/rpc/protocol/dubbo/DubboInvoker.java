@@ -15,24 +15,35 @@
  */
 package com.alibaba.dubbo.rpc.protocol.dubbo;
 
+import java.lang.reflect.Method;
+import java.util.HashMap;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.MethodProfile;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.utils.AtomicPositiveInteger;
 import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.ThrottledException;
 import com.alibaba.dubbo.remoting.TimeoutException;
 import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
 import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.remoting.transport.CodecSupport;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcFuture;
 import com.alibaba.dubbo.rpc.RpcInvocation;
 import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.StreamObserver;
 import com.alibaba.dubbo.rpc.protocol.AbstractInvoker;
+import com.alibaba.dubbo.rpc.support.ProtocolUtils;
 import com.alibaba.dubbo.rpc.support.RpcUtils;
 
 /**
@@ -51,6 +62,12 @@ public class DubboInvoker<T> extends AbstractInvoker<T> {
     private final AtomicPositiveInteger index = new AtomicPositiveInteger();
 
     private final String                version;
+
+    /**
+     * 按编号分发时，连接上已查询到的服务编号以此为键，
+     * 共享连接的引用可能使用不同的接口，所以键中包含方法表指纹
+     */
+    private final String                methodIndexKey;
     
     private final ReentrantLock     destroyLock = new ReentrantLock();
     
@@ -65,7 +82,20 @@ public class DubboInvoker<T> extends AbstractInvoker<T> {
         this.clients = clients;
         // get version.
         this.version = url.getParameter(Constants.VERSION_KEY, "0.0.0");
+        this.methodIndexKey = ProtocolUtils.serviceKey(url) + "#" + MethodTable.getMethodTable(serviceType).getFingerprint();
         this.invokers = invokers; 
+        // 创建时预先编译各方法的调用配置
+        for (Method method : serviceType.getMethods()) {
+            url.getMethodProfile(method.getName());
+        }
+    }
+
+    private Executor getListenerExecutor(MethodProfile profile) {
+        return profile.isInlineFutureExecutor() ? null : RpcFuture.sharedExecutor();
+    }
+
+    String getMethodIndexKey() {
+        return methodIndexKey;
     }
 
     @Override
@@ -85,16 +115,46 @@ public class DubboInvoker<T> extends AbstractInvoker<T> {
         } else {
             currentClient = clients[index.getAndIncrement() % clients.length];
         }
+        // 第一次在该连接上调用时查询服务编号，之后按编号分发
+        MethodIndex.resolve(currentClient, methodIndexKey, getUrl(), getInterface());
         try {
-            // 异步配置
-            boolean isAsync = RpcUtils.isAsync(getUrl(), invocation);
-            // 单向通信配置
-            boolean isOneway = RpcUtils.isOneway(getUrl(), invocation);
+            MethodProfile profile = getUrl().getMethodProfile(methodName);
+            // 异步配置，Java代码中设置优先
+            boolean isAsync = profile.isAsync() || Boolean.TRUE.toString().equals(inv.getAttachment(Constants.ASYNC_KEY));
+            // 单向通信配置，Java代码中设置优先
+            boolean isOneway = profile.isOneway() || Boolean.FALSE.toString().equals(inv.getAttachment(Constants.RETURN_KEY));
             // 超时时间
-            int timeout = getUrl().getMethodParameter(methodName, Constants.TIMEOUT_KEY,Constants.DEFAULT_TIMEOUT);
+            int timeout = profile.getTimeout();
+            if (! isOneway) {
+                timeout = applyDeadline(inv, timeout);
+            }
+            // 流式调用，消息通过流帧传递，不受批量调用影响
+            int observerIndex = DubboStream.getObserverIndex(inv.getParameterTypes());
+            if (observerIndex >= 0 && ! isOneway) {
+                return doInvokeStream(currentClient, inv, methodName, observerIndex, timeout);
+            }
+            // 批量调用，暂存到RpcContext.flushBatch时与同一连接上的其他调用合并发送
+            if (! isOneway && RpcContext.getContext().isBatchStarted()) {
+                inv.setAttachment(Constants.TIMEOUT_KEY, String.valueOf(timeout));
+                RpcFuture<Object> future = new RpcFuture<Object>(getListenerExecutor(profile));
+                RpcContext.getContext().getBatch().add(currentClient, new BatchSender(currentClient), inv, future);
+                RpcContext.getContext().setFuture(future);
+                // 结果在flushBatch之后才确定，返回异步结果让过滤器和集群在批量项完成时再结束统计、判断重试
+                final AsyncRpcResult result = new AsyncRpcResult();
+                future.addListener(new RpcFuture.Listener<Object>() {
+                    public void onSuccess(Object value) {
+                        result.complete(new RpcResult(value));
+                    }
+
+                    public void onFailure(Throwable exception) {
+                        result.complete(new RpcResult(exception));
+                    }
+                }, null);
+                return result;
+            }
             // 单向调用
             if (isOneway) {
-            	boolean isSent = getUrl().getMethodParameter(methodName, Constants.SENT_KEY, false);
+            	boolean isSent = profile.isSent();
             	// 发送消息，不是请求
                 currentClient.send(inv, isSent);
                 // 设置future为null，无需FutureFilter异步回调
@@ -106,7 +166,7 @@ public class DubboInvoker<T> extends AbstractInvoker<T> {
                 // 发送请求，得到ResponseFuture
             	ResponseFuture future = currentClient.request(inv, timeout) ;
             	// 设置future，FutureFilter中异步回调
-                RpcContext.getContext().setFuture(new FutureAdapter<Object>(future));
+                RpcContext.getContext().setFuture(new FutureAdapter<Object>(future, getListenerExecutor(profile)));
                 // 暂时返回一个空RpcResult
                 return new RpcResult();
             } else {
@@ -117,11 +177,82 @@ public class DubboInvoker<T> extends AbstractInvoker<T> {
             }
         } catch (TimeoutException e) {
             throw new RpcException(RpcException.TIMEOUT_EXCEPTION, "Invoke remote method timeout. method: " + invocation.getMethodName() + ", provider: " + getUrl() + ", cause: " + e.getMessage(), e);
+        } catch (ThrottledException e) {
+            throw new RpcException(RpcException.THROTTLED_EXCEPTION, "Invoke remote method throttled by provider. method: " + invocation.getMethodName() + ", provider: " + getUrl() + ", cause: " + e.getMessage(), e);
         } catch (RemotingException e) {
             throw new RpcException(RpcException.NETWORK_EXCEPTION, "Failed to invoke remote method: " + invocation.getMethodName() + ", provider: " + getUrl() + ", cause: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * 提供方中的级联调用不超过上游剩余的时间，剩余的时间预算随请求发送给提供方
+     */
+    private int applyDeadline(RpcInvocation inv, int timeout) {
+        long deadline = RpcContext.getContext().getDeadline();
+        if (deadline > 0) {
+            long remain = deadline - System.currentTimeMillis();
+            if (remain <= 0) {
+                throw new RpcException(RpcException.TIMEOUT_EXCEPTION, "Invoke remote method " + inv.getMethodName() + " skipped, the deadline of the upstream request is exceeded " + (-remain) + " ms ago, provider: " + getUrl());
+            }
+            timeout = (int) Math.min(timeout, remain);
+        }
+        inv.setAttachment(Constants.DEADLINE_BUDGET_KEY, String.valueOf(timeout));
+        return timeout;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Result doInvokeStream(ExchangeClient client, RpcInvocation inv, final String methodName, int observerIndex, final int timeout) throws RemotingException {
+        if (! CodecSupport.isFeatureEnabled(client, DubboCodec.FEATURE_STREAM)
+                && ! (CodecSupport.awaitFeatures(client, timeout) && CodecSupport.isFeatureEnabled(client, DubboCodec.FEATURE_STREAM))) {
+            throw new RpcException("Failed to invoke streaming method " + methodName + ", the provider " + getUrl().getAddress() + " does not support streaming or the connection is not ready");
+        }
+        Object[] args = inv.getArguments().clone();
+        if (args[observerIndex] == null) {
+            throw new RpcException("The StreamObserver argument of streaming method " + methodName + " must not be null");
+        }
+        boolean bidirectional;
+        try {
+            bidirectional = getInterface().getMethod(methodName, inv.getParameterTypes()).getReturnType() == StreamObserver.class;
+        } catch (NoSuchMethodException e) {
+            bidirectional = false;
+        }
+        int window = getUrl().getMethodParameter(methodName, Constants.STREAM_WINDOW_KEY, Constants.DEFAULT_STREAM_WINDOW);
+        final DubboStream stream = DubboStream.open(client, (StreamObserver<Object>) args[observerIndex], bidirectional, window, timeout);
+        // StreamObserver不能序列化，提供方会替换为发送流帧的实现
+        args[observerIndex] = null;
+        RpcInvocation request = new RpcInvocation(inv.getMethodName(), inv.getParameterTypes(), args,
+                                                  new HashMap<String, String>(inv.getAttachments()), inv.getInvoker());
+        request.setAttachment(Constants.STREAM_ID_KEY, String.valueOf(stream.getId()));
+        request.setAttachment(Constants.STREAM_WINDOW_KEY, String.valueOf(window));
+        ResponseFuture future;
+        try {
+            future = client.request(request, timeout);
+        } catch (RemotingException e) {
+            stream.terminate(e);
+            throw e;
+        }
+        future.setCallback(new ResponseCallback() {
+            public void done(Object response) {
+                Result result = (Result) response;
+                if (result.hasException()) {
+                    stream.terminate(result.getException());
+                }
+            }
+
+            public void caught(Throwable exception) {
+                // 建立流的请求超时或失败时结束流，接收者收到错误，提供方停止发送
+                if (exception instanceof TimeoutException) {
+                    exception = new RpcException(RpcException.TIMEOUT_EXCEPTION, "Stream " + stream.getId()
+                            + " of method " + methodName + " is not finished in " + timeout + "ms, provider: " + getUrl(), exception);
+                }
+                stream.abort(exception);
+            }
+        });
+        RpcContext.getContext().setFuture(null);
+        RpcContext.getContext().setStream(stream);
+        return new RpcResult(bidirectional ? stream.getOutbound() : null);
+    }
+
     @Override
     public boolean isAvailable() {
         if (!super.isAvailable())
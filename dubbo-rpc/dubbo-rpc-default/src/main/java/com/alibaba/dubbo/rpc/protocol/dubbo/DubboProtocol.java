@@ -19,20 +19,25 @@ import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.Version;
 import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.store.DataStore;
 import com.alibaba.dubbo.common.utils.NetUtils;
 import com.alibaba.dubbo.common.utils.StringUtils;
 import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.ThrottledException;
 import com.alibaba.dubbo.remoting.Transporter;
 import com.alibaba.dubbo.remoting.exchange.ExchangeChannel;
 import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
@@ -40,13 +45,17 @@ import com.alibaba.dubbo.remoting.exchange.ExchangeHandler;
 import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
 import com.alibaba.dubbo.remoting.exchange.Exchangers;
 import com.alibaba.dubbo.remoting.exchange.support.ExchangeHandlerAdapter;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 import com.alibaba.dubbo.rpc.Exporter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Protocol;
+import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.StreamObserver;
 import com.alibaba.dubbo.rpc.protocol.AbstractProtocol;
 
 /**
@@ -92,36 +101,178 @@ public class DubboProtocol extends AbstractProtocol {
          * @throws RemotingException
          */
         public Object reply(ExchangeChannel channel, Object message) throws RemotingException {
+            if (message instanceof BatchInvocation) {
+                return replyBatch(channel, (BatchInvocation) message);
+            }
             if (message instanceof Invocation) {
-                Invocation inv = (Invocation) message;
-                // 获取Invoker对象
-                Invoker<?> invoker = getInvoker(channel, inv);
-                // 如果是callback 需要处理高版本调用低版本的问题
-                if (Boolean.TRUE.toString().equals(inv.getAttachments().get(IS_CALLBACK_SERVICE_INVOKE))){
-                    String methodsStr = invoker.getUrl().getParameters().get("methods");
-                    boolean hasMethod = false;
-                    if (methodsStr == null || methodsStr.indexOf(",") == -1){
-                        hasMethod = inv.getMethodName().equals(methodsStr);
-                    } else {
-                        String[] methods = methodsStr.split(",");
-                        for (String method : methods){
-                            if (inv.getMethodName().equals(method)){
-                                hasMethod = true;
-                                break;
-                            }
+                Result result;
+                try {
+                    result = doReply(channel, (Invocation) message);
+                } catch (RpcException e) {
+                    if (e.isThrottled()) {
+                        throw new ThrottledException(channel, e.getMessage());
+                    }
+                    throw e;
+                }
+                if (result instanceof AsyncRpcResult) {
+                    // 服务方法异步执行，业务线程直接返回，结果完成时再写出响应
+                    return new AsyncResponseFuture((AsyncRpcResult) result);
+                }
+                return result;
+            }
+            throw new RemotingException(channel, "Unsupported request: " + message == null ? null : (message.getClass().getName() + ": " + message) + ", channel: consumer: " + channel.getRemoteAddress() + " --> provider: " + channel.getLocalAddress());
+        }
+
+        private Result doReply(ExchangeChannel channel, Invocation inv) throws RemotingException {
+            // 获取Invoker对象
+            Invoker<?> invoker = getInvoker(channel, inv);
+            // 如果是callback 需要处理高版本调用低版本的问题
+            if (Boolean.TRUE.toString().equals(inv.getAttachments().get(IS_CALLBACK_SERVICE_INVOKE))){
+                String methodsStr = invoker.getUrl().getParameters().get("methods");
+                boolean hasMethod = false;
+                if (methodsStr == null || methodsStr.indexOf(",") == -1){
+                    hasMethod = inv.getMethodName().equals(methodsStr);
+                } else {
+                    String[] methods = methodsStr.split(",");
+                    for (String method : methods){
+                        if (inv.getMethodName().equals(method)){
+                            hasMethod = true;
+                            break;
                         }
                     }
-                    if (!hasMethod){
-                        logger.warn(new IllegalStateException("The methodName "+inv.getMethodName()+" not found in callback service interface ,invoke will be ignored. please update the api interface. url is:" + invoker.getUrl()) +" ,invocation is :"+inv );
-                        return null;
+                }
+                if (!hasMethod){
+                    logger.warn(new IllegalStateException("The methodName "+inv.getMethodName()+" not found in callback service interface ,invoke will be ignored. please update the api interface. url is:" + invoker.getUrl()) +" ,invocation is :"+inv );
+                    return null;
+                }
+            }
+            // 设置调用方的地址
+            RpcContext.getContext().setRemoteAddress(channel.getRemoteAddress());
+            // 流式调用
+            String streamId = inv.getAttachment(Constants.STREAM_ID_KEY);
+            if (streamId != null) {
+                return invokeStream(channel, invoker, inv, Long.parseLong(streamId));
+            }
+            // 执行调用
+            return invoker.invoke(inv);
+        }
+
+        /**
+         * 流式调用：把方法参数中的StreamObserver替换为发送流帧的实现，
+         * 双向流方法返回的StreamObserver登记为接收者，响应中不再返回它
+         */
+        private Result invokeStream(ExchangeChannel channel, Invoker<?> invoker, Invocation inv, long streamId) {
+            int index = DubboStream.getObserverIndex(inv.getParameterTypes());
+            if (index < 0) {
+                return new RpcResult(new RpcException("Method " + inv.getMethodName() + " of service " + invoker.getInterface().getName() + " is not a streaming method"));
+            }
+            URL url = invoker.getUrl();
+            String method = inv.getMethodName();
+            final DubboStream stream = DubboStream.accept(channel, streamId,
+                url.getMethodParameter(method, Constants.STREAM_WINDOW_KEY, Constants.DEFAULT_STREAM_WINDOW),
+                url.getMethodParameter(method, Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT),
+                Integer.parseInt(inv.getAttachment(Constants.STREAM_WINDOW_KEY, String.valueOf(Constants.DEFAULT_STREAM_WINDOW))));
+            inv.getArguments()[index] = stream.getOutbound();
+            RpcContext.getContext().setStream(stream);
+            Result result;
+            try {
+                result = invoker.invoke(inv);
+            } catch (RuntimeException e) {
+                stream.terminate(e);
+                throw e;
+            }
+            if (result instanceof AsyncRpcResult) {
+                final AsyncRpcResult async = new AsyncRpcResult();
+                ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                    public void onComplete(Result r) {
+                        async.complete(acceptStream(stream, r));
+                    }
+                });
+                return async;
+            }
+            return acceptStream(stream, result);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Result acceptStream(DubboStream stream, Result result) {
+            if (result.hasException()) {
+                stream.terminate(result.getException());
+                return result;
+            }
+            if (result.getValue() instanceof StreamObserver) {
+                stream.setInbound((StreamObserver<Object>) result.getValue());
+                return new RpcResult();
+            }
+            stream.closeInbound();
+            stream.closeOutbound();
+            return result;
+        }
+
+        /**
+         * 批量调用：除第一个外的调用提交到服务端线程池并行执行，第一个在当前线程执行，
+         * 线程池不可用或者已满时在当前线程执行，全部完成后写出响应
+         */
+        private Object replyBatch(ExchangeChannel channel, BatchInvocation batch) {
+            List<Invocation> invocations = batch.getInvocations();
+            BatchResponseFuture future = new BatchResponseFuture(invocations.size());
+            ExecutorService executor = (ExecutorService) ExtensionLoader.getExtensionLoader(DataStore.class).getDefaultExtension()
+                .get(Constants.EXECUTOR_SERVICE_COMPONENT_KEY, Integer.toString(channel.getUrl().getPort()));
+            for (int i = 1; i < invocations.size(); i++) {
+                Runnable task = new BatchItemTask(channel, invocations.get(i), future, i);
+                if (executor == null) {
+                    task.run();
+                } else {
+                    try {
+                        executor.execute(task);
+                    } catch (RejectedExecutionException e) {
+                        task.run();
                     }
                 }
-                // 设置调用方的地址
-                RpcContext.getContext().setRemoteAddress(channel.getRemoteAddress());
-                // 执行调用
-                return invoker.invoke(inv);
             }
-            throw new RemotingException(channel, "Unsupported request: " + message == null ? null : (message.getClass().getName() + ": " + message) + ", channel: consumer: " + channel.getRemoteAddress() + " --> provider: " + channel.getLocalAddress());
+            if (invocations.size() > 0) {
+                new BatchItemTask(channel, invocations.get(0), future, 0).run();
+            }
+            return future;
+        }
+
+        class BatchItemTask implements Runnable {
+
+            private final ExchangeChannel     channel;
+
+            private final Invocation          invocation;
+
+            private final BatchResponseFuture future;
+
+            private final int                 index;
+
+            BatchItemTask(ExchangeChannel channel, Invocation invocation, BatchResponseFuture future, int index) {
+                this.channel = channel;
+                this.invocation = invocation;
+                this.future = future;
+                this.index = index;
+            }
+
+            public void run() {
+                Result result;
+                try {
+                    result = doReply(channel, invocation);
+                } catch (RpcException e) {
+                    // 保留错误码，限流拒绝的调用可以在消费方重试其它提供者
+                    result = new RpcResult(e);
+                } catch (Throwable t) {
+                    result = new RpcResult(new RpcException(StringUtils.toString(t)));
+                }
+                if (result instanceof AsyncRpcResult) {
+                    ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                        public void onComplete(Result r) {
+                            future.set(index, r);
+                        }
+                    });
+                } else {
+                    // 回调方法不存在时没有结果
+                    future.set(index, result == null ? new RpcResult() : result);
+                }
+            }
         }
 
         /**
@@ -132,7 +283,9 @@ public class DubboProtocol extends AbstractProtocol {
          */
         @Override
         public void received(Channel channel, Object message) throws RemotingException {
-            if (message instanceof Invocation) {
+            if (message instanceof StreamFrame) {
+                DubboStream.received(channel, (StreamFrame) message);
+            } else if (message instanceof Invocation) {
                 reply((ExchangeChannel) channel, message);
             } else {
                 super.received(channel, message);
@@ -149,6 +302,7 @@ public class DubboProtocol extends AbstractProtocol {
             if(logger.isInfoEnabled()){
                 logger.info("disconected from "+ channel.getRemoteAddress() + ",url:" + channel.getUrl());
             }
+            DubboStream.closeAll(channel);
             invoke(channel, Constants.ON_DISCONNECT_KEY);
         }
         
@@ -225,6 +379,13 @@ public class DubboProtocol extends AbstractProtocol {
         }
         // callback
         isCallBackServiceInvoke = isClientSide(channel) && !isStubServiceInvoke;
+        // 按编号分发的请求在解码时已经找到服务，无需拼接服务键；服务已取消暴露时按path查找
+        if (! isCallBackServiceInvoke && ! isStubServiceInvoke && inv instanceof DecodeableRpcInvocation) {
+            MethodIndex.Service service = ((DecodeableRpcInvocation) inv).getIndexedService();
+            if (service != null && MethodIndex.getService(service.id) == service) {
+                return service.exporter.getInvoker();
+            }
+        }
         if(isCallBackServiceInvoke){
             path = inv.getAttachments().get(Constants.PATH_KEY)+"."+inv.getAttachments().get(Constants.CALLBACK_SERVICE_KEY);
             inv.getAttachments().put(IS_CALLBACK_SERVICE_INVOKE, Boolean.TRUE.toString());
@@ -264,6 +425,8 @@ public class DubboProtocol extends AbstractProtocol {
         String key = serviceKey(url);
         DubboExporter<T> exporter = new DubboExporter<T>(invoker, key, exporterMap);
         exporterMap.put(key, exporter);
+        // 分配服务编号，消费者可以按编号调用
+        MethodIndex.export(key, invoker.getInterface(), exporter);
         
         //export an stub service for dispaching event
         // 有关于本地存根的一些处理
@@ -316,6 +479,10 @@ public class DubboProtocol extends AbstractProtocol {
             throw new RpcException("Unsupported server type: " + str + ", url: " + url);
 
         url = url.addParameter(Constants.CODEC_KEY, Version.isCompatibleVersion() ? COMPATIBLE_CODEC_NAME : DubboCodec.NAME);
+        if (! Version.isCompatibleVersion()) {
+            // 声明DubboCodec支持的可选编码特性，连接建立后与客户端协商
+            url = url.addParameterIfAbsent(Constants.CODEC_FEATURES_KEY, DubboCodec.FEATURES);
+        }
         ExchangeServer server;
         try {
             // 创建ExchangeServer实例
@@ -411,6 +578,9 @@ public class DubboProtocol extends AbstractProtocol {
         String version = url.getParameter(Constants.DUBBO_VERSION_KEY);
         boolean compatible = (version != null && version.startsWith("1.0."));
         url = url.addParameter(Constants.CODEC_KEY, Version.isCompatibleVersion() && compatible ? COMPATIBLE_CODEC_NAME : DubboCodec.NAME);
+        if (! compatible) {
+            url = url.addParameterIfAbsent(Constants.CODEC_FEATURES_KEY, DubboCodec.FEATURES);
+        }
         //默认开启heartbeat
         url = url.addParameterIfAbsent(Constants.HEARTBEAT_KEY, String.valueOf(Constants.DEFAULT_HEARTBEAT));
         
@@ -0,0 +1,503 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcStream;
+import com.alibaba.dubbo.rpc.StreamObserver;
+
+/**
+ * 连接上的一个流式调用，消费方和提供方各持有一个。
+ * <p>
+ * 发送方每发送一个DATA帧消耗一个额度，额度用完时发送线程等待，最长等待调用的超时时间；
+ * 接收方把消息交给接收者处理完后以CREDIT帧归还额度，所以两端缓存的消息都不超过窗口大小。
+ * 帧可能在不同的线程中并发到达，接收方按序号重排后由一个线程依次交付。
+ */
+final class DubboStream implements RpcStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(DubboStream.class);
+
+    private static final String STREAMS_KEY = "dubbo.streams";
+
+    private static final String CANCELLED_KEY = "dubbo.streams.cancelled";
+
+    // 每个连接上最多记住的提前到达的取消帧
+    private static final int MAX_CANCELLED = 1024;
+
+    private static final AtomicLong ID = new AtomicLong();
+
+    private final long    id;
+
+    private final Channel channel;
+
+    private final int     window;
+
+    private final int     timeout;
+
+    private final Outbound outbound = new Outbound();
+
+    // 发送方向
+    private final Object  creditLock = new Object();
+
+    private int           credits;
+
+    private int           nextSeq;
+
+    private volatile boolean outboundClosed;
+
+    // 接收方向
+    private volatile StreamObserver<Object> inbound;
+
+    private final Map<Integer, StreamFrame> pending = new HashMap<Integer, StreamFrame>();
+
+    private int           expectedSeq;
+
+    private boolean       delivering;
+
+    private boolean       inboundClosed;
+
+    private Throwable     terminal;
+
+    private int           consumed;
+
+    private volatile boolean cancelled;
+
+    private DubboStream(Channel channel, long id, int window, int timeout, int credits) {
+        this.channel = channel;
+        this.id = id;
+        this.window = Math.max(1, window);
+        this.timeout = timeout;
+        this.credits = credits;
+    }
+
+    /**
+     * 消费方发起流式调用
+     *
+     * @param inbound 接收提供方消息的接收者
+     * @param bidirectional 是否双向，双向时消费方在提供方授予额度后可以发送消息
+     */
+    static DubboStream open(Channel channel, StreamObserver<Object> inbound, boolean bidirectional, int window, int timeout) {
+        DubboStream stream = new DubboStream(channel, ID.incrementAndGet(), window, timeout, 0);
+        stream.inbound = inbound;
+        stream.outboundClosed = ! bidirectional;
+        getStreams(channel).put(stream.id, stream);
+        return stream;
+    }
+
+    /**
+     * 提供方接受流式调用
+     *
+     * @param credits 消费方的窗口大小，即提供方的初始额度
+     */
+    static DubboStream accept(Channel channel, long id, int window, int timeout, int credits) {
+        DubboStream stream = new DubboStream(channel, id, window, timeout, credits);
+        if (getStreams(channel).putIfAbsent(id, stream) != null) {
+            throw new IllegalStateException("Duplicate stream " + id + " on channel " + channel);
+        }
+        if (removeCancelled(channel, id)) {
+            stream.terminate(new RpcException("Stream " + id + " is cancelled by " + channel.getRemoteAddress()));
+        }
+        return stream;
+    }
+
+    /**
+     * 返回方法参数中StreamObserver的位置，不是流式方法时返回-1
+     */
+    static int getObserverIndex(Class<?>[] parameterTypes) {
+        if (parameterTypes != null) {
+            for (int i = parameterTypes.length - 1; i >= 0; i--) {
+                if (parameterTypes[i] == StreamObserver.class) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    static void received(Channel channel, StreamFrame frame) {
+        DubboStream stream = getStreams(channel).get(frame.getStreamId());
+        if (stream == null) {
+            // 取消帧可能在另一个线程中先于流式调用请求被处理，记下来在接受流时结束它
+            if (frame.getType() == StreamFrame.CANCEL) {
+                addCancelled(channel, frame.getStreamId());
+                // 与接受流并发时，谁取走记录谁结束流
+                stream = getStreams(channel).get(frame.getStreamId());
+                if (stream != null && removeCancelled(channel, frame.getStreamId())) {
+                    stream.receive(frame);
+                }
+                return;
+            }
+            // 已结束或者已取消的流，丢弃迟到的帧
+            if (logger.isDebugEnabled()) {
+                logger.debug("Ignore " + frame + " of unknown stream from " + channel.getRemoteAddress());
+            }
+            return;
+        }
+        stream.receive(frame);
+    }
+
+    /**
+     * 连接断开时结束其上的所有流
+     */
+    static void closeAll(Channel channel) {
+        ConcurrentMap<Long, DubboStream> streams = getStreams(channel);
+        for (DubboStream stream : new ArrayList<DubboStream>(streams.values())) {
+            stream.terminate(new RpcException(RpcException.NETWORK_EXCEPTION, "Stream " + stream.id + " closed, channel " + channel + " is disconnected"));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrentMap<Long, DubboStream> getStreams(Channel channel) {
+        ConcurrentMap<Long, DubboStream> streams = (ConcurrentMap<Long, DubboStream>) channel.getAttribute(STREAMS_KEY);
+        if (streams == null) {
+            synchronized (channel) {
+                streams = (ConcurrentMap<Long, DubboStream>) channel.getAttribute(STREAMS_KEY);
+                if (streams == null) {
+                    streams = new ConcurrentHashMap<Long, DubboStream>();
+                    channel.setAttribute(STREAMS_KEY, streams);
+                }
+            }
+        }
+        return streams;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, Boolean> getCancelled(Channel channel) {
+        synchronized (channel) {
+            Map<Long, Boolean> cancelled = (Map<Long, Boolean>) channel.getAttribute(CANCELLED_KEY);
+            if (cancelled == null) {
+                cancelled = new LinkedHashMap<Long, Boolean>() {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                        return size() > MAX_CANCELLED;
+                    }
+                };
+                channel.setAttribute(CANCELLED_KEY, cancelled);
+            }
+            return cancelled;
+        }
+    }
+
+    private static void addCancelled(Channel channel, long id) {
+        Map<Long, Boolean> cancelled = getCancelled(channel);
+        synchronized (cancelled) {
+            cancelled.put(id, Boolean.TRUE);
+        }
+    }
+
+    private static boolean removeCancelled(Channel channel, long id) {
+        Map<Long, Boolean> cancelled = getCancelled(channel);
+        synchronized (cancelled) {
+            return cancelled.remove(id) != null;
+        }
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    StreamObserver<Object> getOutbound() {
+        return outbound;
+    }
+
+    /**
+     * 提供方的双向流方法返回后设置接收者，并授予消费方初始额度
+     */
+    void setInbound(StreamObserver<Object> observer) {
+        inbound = observer;
+        sendQuietly(new StreamFrame(id, StreamFrame.CREDIT, window, null));
+        schedule();
+    }
+
+    /**
+     * 服务端流式调用的提供方没有接收方向
+     */
+    void closeInbound() {
+        synchronized (this) {
+            inboundClosed = true;
+            pending.clear();
+        }
+        closeIfDone();
+    }
+
+    /**
+     * 服务端流式调用的提供方方法返回后不再发送消息，没有结束的发送方向以错误结束，通知消费方并从连接上移除
+     */
+    void closeOutbound() {
+        if (outbound.closeOutbound()) {
+            sendQuietly(new StreamFrame(id, StreamFrame.ERROR, nextSeq(),
+                    new RpcException("Stream " + id + " is not completed before the streaming method returned")));
+        }
+        closeIfDone();
+    }
+
+    public void cancel() {
+        abort(new RpcException("Stream " + id + " is cancelled"));
+    }
+
+    /**
+     * 在本端结束流并通知对端停止发送
+     */
+    void abort(Throwable cause) {
+        if (terminate(cause)) {
+            sendQuietly(new StreamFrame(id, StreamFrame.CANCEL, 0, null));
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 在本端结束流：唤醒等待额度的发送线程，未结束的接收者收到onError
+     *
+     * @return 是否由本次调用结束
+     */
+    boolean terminate(Throwable cause) {
+        synchronized (this) {
+            if (cancelled) {
+                return false;
+            }
+            cancelled = true;
+            terminal = cause;
+        }
+        outboundClosed = true;
+        synchronized (creditLock) {
+            creditLock.notifyAll();
+        }
+        getStreams(channel).remove(id);
+        schedule();
+        return true;
+    }
+
+    private void receive(StreamFrame frame) {
+        switch (frame.getType()) {
+            case StreamFrame.CREDIT:
+                synchronized (creditLock) {
+                    credits += frame.getValue();
+                    creditLock.notifyAll();
+                }
+                return;
+            case StreamFrame.CANCEL:
+                terminate(new RpcException("Stream " + id + " is cancelled by " + channel.getRemoteAddress()));
+                return;
+            default:
+                synchronized (this) {
+                    if (inboundClosed) {
+                        return;
+                    }
+                    pending.put(frame.getValue(), frame);
+                }
+                schedule();
+        }
+    }
+
+    private void schedule() {
+        synchronized (this) {
+            if (delivering) {
+                return;
+            }
+            delivering = true;
+        }
+        drain();
+    }
+
+    private void drain() {
+        while (true) {
+            StreamFrame frame;
+            Throwable failure;
+            StreamObserver<Object> observer;
+            synchronized (this) {
+                observer = inbound;
+                failure = terminal;
+                frame = failure == null ? pending.get(expectedSeq) : null;
+                if (inboundClosed || observer == null || (failure == null && frame == null)) {
+                    delivering = false;
+                    return;
+                }
+                if (failure != null || frame.getType() != StreamFrame.DATA) {
+                    inboundClosed = true;
+                    delivering = false;
+                    pending.clear();
+                } else {
+                    pending.remove(expectedSeq);
+                    expectedSeq++;
+                }
+            }
+            if (failure != null) {
+                deliverError(observer, failure);
+                return;
+            }
+            if (frame.getType() == StreamFrame.COMPLETE) {
+                try {
+                    observer.onCompleted();
+                } catch (Throwable t) {
+                    logger.warn("Stream " + id + " observer failed on completion: " + t.getMessage(), t);
+                }
+                closeIfDone();
+                return;
+            }
+            if (frame.getType() == StreamFrame.ERROR) {
+                deliverError(observer, (Throwable) frame.getPayload());
+                closeIfDone();
+                return;
+            }
+            try {
+                observer.onNext(frame.getPayload());
+            } catch (Throwable t) {
+                logger.warn("Stream " + id + " observer failed, cancel the stream: " + t.getMessage(), t);
+                cancel();
+                continue;
+            }
+            // 处理完一半窗口时归还额度，避免每条消息都回一个帧
+            if (++ consumed >= (window + 1) / 2) {
+                sendQuietly(new StreamFrame(id, StreamFrame.CREDIT, consumed, null));
+                consumed = 0;
+            }
+        }
+    }
+
+    private void deliverError(StreamObserver<Object> observer, Throwable error) {
+        try {
+            observer.onError(error);
+        } catch (Throwable t) {
+            logger.warn("Stream " + id + " observer failed on error: " + t.getMessage(), t);
+        }
+    }
+
+    private void closeIfDone() {
+        boolean done;
+        synchronized (this) {
+            done = inboundClosed && outboundClosed;
+        }
+        if (done) {
+            getStreams(channel).remove(id);
+        }
+    }
+
+    private void acquireCredit() {
+        synchronized (creditLock) {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (credits <= 0 && ! cancelled) {
+                long remain = deadline - System.currentTimeMillis();
+                if (remain <= 0) {
+                    throw new RpcException(RpcException.TIMEOUT_EXCEPTION, "Waiting for credit of stream " + id + " timeout in " + timeout + "ms, the receiver " + channel.getRemoteAddress() + " is too slow");
+                }
+                try {
+                    creditLock.wait(remain);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RpcException("Interrupted while waiting for credit of stream " + id);
+                }
+            }
+            if (cancelled) {
+                throw new RpcException("Stream " + id + " is cancelled");
+            }
+            credits --;
+        }
+    }
+
+    private int nextSeq() {
+        synchronized (creditLock) {
+            return nextSeq++;
+        }
+    }
+
+    private void send(StreamFrame frame) {
+        try {
+            channel.send(frame);
+        } catch (RemotingException e) {
+            terminate(e);
+            throw new RpcException(RpcException.NETWORK_EXCEPTION, "Failed to send stream " + id + " to " + channel.getRemoteAddress() + ", cause: " + e.getMessage(), e);
+        }
+    }
+
+    private void sendQuietly(StreamFrame frame) {
+        try {
+            channel.send(frame);
+        } catch (RemotingException e) {
+            logger.warn("Failed to send " + frame + " to " + channel.getRemoteAddress() + ", cause: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 本端的发送方向
+     */
+    private class Outbound implements StreamObserver<Object>, RpcStream {
+
+        public void onNext(Object value) {
+            if (outboundClosed) {
+                if (cancelled) {
+                    throw new RpcException("Stream " + id + " is cancelled");
+                }
+                throw new IllegalStateException("Stream " + id + " is already completed");
+            }
+            acquireCredit();
+            send(new StreamFrame(id, StreamFrame.DATA, nextSeq(), value));
+        }
+
+        public void onError(Throwable t) {
+            if (closeOutbound()) {
+                send(new StreamFrame(id, StreamFrame.ERROR, nextSeq(), t));
+                closeIfDone();
+            }
+        }
+
+        public void onCompleted() {
+            if (closeOutbound()) {
+                send(new StreamFrame(id, StreamFrame.COMPLETE, nextSeq(), null));
+                closeIfDone();
+            }
+        }
+
+        private boolean closeOutbound() {
+            synchronized (DubboStream.this) {
+                if (outboundClosed) {
+                    return false;
+                }
+                outboundClosed = true;
+                return true;
+            }
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public void cancel() {
+            DubboStream.this.cancel();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+}
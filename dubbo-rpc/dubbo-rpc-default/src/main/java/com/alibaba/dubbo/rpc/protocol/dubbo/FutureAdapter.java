@@ -16,27 +16,61 @@
 package com.alibaba.dubbo.rpc.protocol.dubbo;
 
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import com.alibaba.dubbo.common.utils.StringUtils;
 import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.ThrottledException;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
 import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
 import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcFuture;
 
 /**
  * FutureAdapter
  * 
  * @author william.liangf
  */
-public class FutureAdapter<V> implements Future<V> {
+public class FutureAdapter<V> extends RpcFuture<V> {
     
     private final ResponseFuture future;
 
     public FutureAdapter(ResponseFuture future){
+        this(future, null);
+    }
+
+    /**
+     * @param listenerExecutor 未指定Executor的监听器的执行者，null表示在完成响应的线程中执行
+     */
+    public FutureAdapter(ResponseFuture future, Executor listenerExecutor){
+        super(listenerExecutor);
         this.future = future;
+        future.setCallback(new ResponseCallback() {
+            @SuppressWarnings("unchecked")
+            public void done(Object response) {
+                Result result = (Result) response;
+                if (result.hasException()) {
+                    completeExceptionally(result.getException());
+                } else {
+                    complete((V) result.getValue());
+                }
+            }
+
+            public void caught(Throwable exception) {
+                if (exception instanceof com.alibaba.dubbo.remoting.TimeoutException) {
+                    completeExceptionally(new RpcException(RpcException.TIMEOUT_EXCEPTION, exception.getMessage(), exception));
+                } else if (exception instanceof ThrottledException) {
+                    completeExceptionally(new RpcException(RpcException.THROTTLED_EXCEPTION, exception.getMessage(), exception));
+                } else if (exception instanceof RemotingException) {
+                    completeExceptionally(new RpcException(RpcException.NETWORK_EXCEPTION, exception.getMessage(), exception));
+                } else {
+                    completeExceptionally(exception);
+                }
+            }
+        });
     }
 
     public ResponseFuture getFuture() {
@@ -55,6 +89,7 @@ public class FutureAdapter<V> implements Future<V> {
         return future.isDone();
     }
 
+    // get()保持原有语义：直接等待ResponseFuture，超时和业务异常的抛出方式不变
     @SuppressWarnings("unchecked")
     public V get() throws InterruptedException, ExecutionException {
         try {
@@ -0,0 +1,254 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
+import com.alibaba.dubbo.rpc.Invocation;
+
+/**
+ * InflightSnapshot
+ * 
+ * 消费端在途请求快照。只遍历一次DefaultFuture中等待响应的请求，不加锁，
+ * 按服务、方法、提供者地址分组统计请求数和等待时间分位数，并保留等待最久的若干个请求。
+ */
+public class InflightSnapshot {
+
+    private final long        timestamp;
+
+    private final int         total;
+
+    private final List<Group> groups;
+
+    private final List<Entry> oldest;
+
+    private InflightSnapshot(long timestamp, int total, List<Group> groups, List<Entry> oldest) {
+        this.timestamp = timestamp;
+        this.total = total;
+        this.groups = groups;
+        this.oldest = oldest;
+    }
+
+    public static InflightSnapshot take(int limit) {
+        return take(DefaultFuture.getFutures(), limit);
+    }
+
+    static InflightSnapshot take(Collection<DefaultFuture> futures, int limit) {
+        long now = System.currentTimeMillis();
+        Map<String, List<Entry>> grouped = new LinkedHashMap<String, List<Entry>>();
+        List<Entry> all = new ArrayList<Entry>();
+        for (DefaultFuture future : futures) {
+            if (future == null || future.isDone()) {
+                continue;
+            }
+            Entry entry = new Entry(future, now);
+            all.add(entry);
+            String key = entry.getService() + "#" + entry.getMethod() + "@" + entry.getAddress();
+            List<Entry> list = grouped.get(key);
+            if (list == null) {
+                list = new ArrayList<Entry>();
+                grouped.put(key, list);
+            }
+            list.add(entry);
+        }
+        List<Group> groups = new ArrayList<Group>(grouped.size());
+        for (List<Entry> list : grouped.values()) {
+            groups.add(new Group(list));
+        }
+        Collections.sort(groups, new Comparator<Group>() {
+            public int compare(Group g1, Group g2) {
+                return g1.getMaxAge() > g2.getMaxAge() ? -1 : (g1.getMaxAge() == g2.getMaxAge() ? 0 : 1);
+            }
+        });
+        Collections.sort(all, new Comparator<Entry>() {
+            public int compare(Entry e1, Entry e2) {
+                return e1.getAge() > e2.getAge() ? -1 : (e1.getAge() == e2.getAge() ? 0 : 1);
+            }
+        });
+        limit = Math.max(0, limit);
+        List<Entry> oldest = all.size() > limit ? new ArrayList<Entry>(all.subList(0, limit)) : all;
+        return new InflightSnapshot(now, all.size(), groups, oldest);
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    public List<Entry> getOldest() {
+        return oldest;
+    }
+
+    public static class Group {
+
+        private final String service;
+
+        private final String method;
+
+        private final String address;
+
+        private final int    count;
+
+        private final long   p50;
+
+        private final long   p90;
+
+        private final long   p99;
+
+        private final long   maxAge;
+
+        Group(List<Entry> entries) {
+            Entry first = entries.get(0);
+            this.service = first.getService();
+            this.method = first.getMethod();
+            this.address = first.getAddress();
+            this.count = entries.size();
+            long[] ages = new long[count];
+            for (int i = 0; i < count; i ++) {
+                ages[i] = entries.get(i).getAge();
+            }
+            Arrays.sort(ages);
+            this.p50 = percentile(ages, 0.50);
+            this.p90 = percentile(ages, 0.90);
+            this.p99 = percentile(ages, 0.99);
+            this.maxAge = ages[count - 1];
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+
+        public String getService() {
+            return service;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMaxAge() {
+            return maxAge;
+        }
+
+    }
+
+    public static class Entry {
+
+        private final long    id;
+
+        private final String  service;
+
+        private final String  method;
+
+        private final String  address;
+
+        private final long    age;
+
+        private final boolean sent;
+
+        private final int     timeout;
+
+        Entry(DefaultFuture future, long now) {
+            this.id = future.getId();
+            this.age = now - future.getStartTimestamp();
+            this.sent = future.isSent();
+            this.timeout = future.getTimeout();
+            Channel channel = future.getChannel();
+            this.address = channel == null || channel.getRemoteAddress() == null ? "" : NetUtils.toAddressString(channel.getRemoteAddress());
+            Request request = future.getRequest();
+            Object data = request == null ? null : request.getData();
+            if (data instanceof Invocation) {
+                Invocation inv = (Invocation) data;
+                String path = inv.getAttachment(Constants.PATH_KEY);
+                this.service = path == null ? "" : path;
+                this.method = inv.getMethodName();
+            } else {
+                this.service = "";
+                this.method = data == null ? "" : data.getClass().getSimpleName();
+            }
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getService() {
+            return service;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public long getAge() {
+            return age;
+        }
+
+        public boolean isSent() {
+            return sent;
+        }
+
+        public int getTimeout() {
+            return timeout;
+        }
+
+    }
+
+}
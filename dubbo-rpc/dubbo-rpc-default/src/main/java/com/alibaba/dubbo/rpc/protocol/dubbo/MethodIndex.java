@@ -0,0 +1,230 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.InlineRequest;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.remoting.transport.CodecSupport;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.support.ProtocolUtils;
+
+/**
+ * 按编号分发调用。
+ * <p>
+ * 提供者暴露服务时为服务分配进程内稳定的编号，方法编号来自{@link MethodTable}。
+ * 消费者在每个连接上第一次调用某个服务时，异步发送{@link Query}查询服务编号，
+ * 查询返回前以及接口不一致时仍按path、方法名和签名调用。
+ */
+final class MethodIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(MethodIndex.class);
+
+    private static final String CHANNEL_KEY = "dubbo.method.index";
+
+    private static final Integer PENDING = Integer.valueOf(-1);
+
+    private static final Integer UNSUPPORTED = Integer.valueOf(-2);
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    // 服务键和方法表指纹对应的编号，同一服务重新暴露时沿用原来的编号，消费者已查询到的编号继续有效。
+    // 这里只保留字符串，服务本身在取消暴露时移除
+    private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<String, Integer>();
+
+    private static final ConcurrentMap<String, Service> SERVICES_BY_KEY = new ConcurrentHashMap<String, Service>();
+
+    private static final ConcurrentMap<Integer, Service> SERVICES = new ConcurrentHashMap<Integer, Service>();
+
+    private MethodIndex() {
+    }
+
+    static final class Service {
+
+        final int id;
+
+        final String path;
+
+        final String version;
+
+        final MethodTable methodTable;
+
+        final DubboExporter<?> exporter;
+
+        Service(int id, URL url, MethodTable methodTable, DubboExporter<?> exporter) {
+            this.id = id;
+            this.path = url.getPath();
+            this.version = url.getParameter(Constants.VERSION_KEY, "0.0.0");
+            this.methodTable = methodTable;
+            this.exporter = exporter;
+        }
+    }
+
+    /**
+     * 服务编号查询，以单独的请求帧发送（见{@link DubboCodec#FLAG_INDEX_QUERY}），
+     * 提供者在IO线程中直接应答，不占用业务线程，接口不一致时返回-1
+     */
+    static final class Query implements InlineRequest {
+
+        final String path;
+
+        final String version;
+
+        final String group;
+
+        final String fingerprint;
+
+        Query(String path, String version, String group, String fingerprint) {
+            this.path = path;
+            this.version = version;
+            this.group = group;
+            this.fingerprint = fingerprint;
+        }
+
+        public Object reply(Channel channel) {
+            String key = ProtocolUtils.serviceKey(channel.getLocalAddress().getPort(), path, version, group);
+            return new RpcResult(query(key, fingerprint));
+        }
+    }
+
+    // ---- 提供者端 ----
+
+    static void export(String key, Class<?> type, DubboExporter<?> exporter) {
+        MethodTable methodTable = MethodTable.getMethodTable(type);
+        // 接口变化后方法编号含义不同，使用新的服务编号
+        String idKey = key + "#" + methodTable.getFingerprint();
+        Integer id = IDS.get(idKey);
+        if (id == null) {
+            Integer created = Integer.valueOf(NEXT_ID.getAndIncrement());
+            id = IDS.putIfAbsent(idKey, created);
+            if (id == null) {
+                id = created;
+            }
+        }
+        Service service = new Service(id, exporter.getInvoker().getUrl(), methodTable, exporter);
+        SERVICES.put(id, service);
+        Service old = SERVICES_BY_KEY.put(key, service);
+        if (old != null && old.id != service.id) {
+            SERVICES.remove(old.id, old);
+        }
+    }
+
+    static void unexport(String key, DubboExporter<?> exporter) {
+        Service service = SERVICES_BY_KEY.get(key);
+        if (service != null && service.exporter == exporter) {
+            SERVICES_BY_KEY.remove(key, service);
+            SERVICES.remove(service.id, service);
+        }
+    }
+
+    static Service getService(int id) {
+        return SERVICES.get(id);
+    }
+
+    /**
+     * @return 服务编号，服务未暴露或接口不一致时返回-1
+     */
+    static int query(String key, String fingerprint) {
+        Service service = SERVICES_BY_KEY.get(key);
+        if (service == null || ! service.methodTable.getFingerprint().equals(fingerprint)) {
+            return -1;
+        }
+        return service.id;
+    }
+
+    // ---- 消费者端 ----
+
+    /**
+     * 连接协商了方法编号特性并且还没有查询过该服务时，异步查询服务编号
+     */
+    static void resolve(ExchangeClient client, final String key, URL url, Class<?> type) {
+        if (! CodecSupport.isFeatureEnabled(client, DubboCodec.FEATURE_METHOD_INDEX)) {
+            return;
+        }
+        final ConcurrentMap<String, Integer> ids = getServiceIds(client);
+        if (ids.containsKey(key) || ids.putIfAbsent(key, PENDING) != null) {
+            return;
+        }
+        Query query = new Query(url.getPath(), url.getParameter(Constants.VERSION_KEY, "0.0.0"),
+                                url.getParameter(Constants.GROUP_KEY, ""), MethodTable.getMethodTable(type).getFingerprint());
+        try {
+            client.request(query, url.getParameter(Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT)).setCallback(new ResponseCallback() {
+                public void done(Object response) {
+                    Result result = (Result) response;
+                    Object id = result.hasException() ? null : result.getValue();
+                    ids.put(key, id instanceof Integer && (Integer) id >= 0 ? (Integer) id : UNSUPPORTED);
+                }
+
+                public void caught(Throwable exception) {
+                    // 超时或连接异常，下次调用时重新查询
+                    ids.remove(key);
+                }
+            });
+        } catch (RemotingException e) {
+            ids.remove(key);
+            logger.warn("Failed to query method index of " + key + ", cause: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return 服务编号和方法编号，不能按编号分发时返回null
+     */
+    static int[] lookup(Channel channel, RpcInvocation inv) {
+        if (! (inv.getInvoker() instanceof DubboInvoker)) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        ConcurrentMap<String, Integer> ids = (ConcurrentMap<String, Integer>) channel.getAttribute(CHANNEL_KEY);
+        if (ids == null) {
+            return null;
+        }
+        DubboInvoker<?> invoker = (DubboInvoker<?>) inv.getInvoker();
+        Integer serviceId = ids.get(invoker.getMethodIndexKey());
+        if (serviceId == null || serviceId < 0) {
+            return null;
+        }
+        int methodId = MethodTable.getMethodTable(invoker.getInterface()).indexOf(inv.getMethodName(), inv.getParameterTypes());
+        return methodId < 0 ? null : new int[] {serviceId, methodId};
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrentMap<String, Integer> getServiceIds(Channel channel) {
+        ConcurrentMap<String, Integer> ids = (ConcurrentMap<String, Integer>) channel.getAttribute(CHANNEL_KEY);
+        if (ids == null) {
+            synchronized (MethodIndex.class) {
+                ids = (ConcurrentMap<String, Integer>) channel.getAttribute(CHANNEL_KEY);
+                if (ids == null) {
+                    ids = new ConcurrentHashMap<String, Integer>();
+                    channel.setAttribute(CHANNEL_KEY, ids);
+                }
+            }
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alibaba.dubbo.common.utils.ReflectUtils;
+
+/**
+ * 服务接口的方法表：方法按名称和签名排序编号，两端根据同一个接口得到相同的编号。
+ * 接口不一致时指纹不同，两端退回按方法名和签名调用。
+ */
+final class MethodTable {
+
+    private static final ConcurrentMap<Class<?>, MethodTable> TABLES = new ConcurrentHashMap<Class<?>, MethodTable>();
+
+    private final Entry[] entries;
+
+    private final Map<String, Entry[]> entriesByName;
+
+    private final String fingerprint;
+
+    static final class Entry {
+
+        final int id;
+
+        final String name;
+
+        final String desc;
+
+        final Class<?>[] parameterTypes;
+
+        Entry(int id, Method method) {
+            this.id = id;
+            this.name = method.getName();
+            this.desc = ReflectUtils.getDesc(method.getParameterTypes());
+            this.parameterTypes = method.getParameterTypes();
+        }
+    }
+
+    static MethodTable getMethodTable(Class<?> type) {
+        MethodTable table = TABLES.get(type);
+        if (table == null) {
+            TABLES.putIfAbsent(type, new MethodTable(type));
+            table = TABLES.get(type);
+        }
+        return table;
+    }
+
+    private MethodTable(Class<?> type) {
+        Method[] methods = type.getMethods();
+        final Map<Method, String> signatures = new HashMap<Method, String>();
+        for (Method method : methods) {
+            signatures.put(method, method.getName() + "(" + ReflectUtils.getDesc(method.getParameterTypes()) + ")"
+                + ReflectUtils.getDesc(method.getReturnType()));
+        }
+        Arrays.sort(methods, new Comparator<Method>() {
+            public int compare(Method m1, Method m2) {
+                return signatures.get(m1).compareTo(signatures.get(m2));
+            }
+        });
+        entries = new Entry[methods.length];
+        Map<String, List<Entry>> byName = new HashMap<String, List<Entry>>();
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < methods.length; i++) {
+            entries[i] = new Entry(i, methods[i]);
+            List<Entry> list = byName.get(entries[i].name);
+            if (list == null) {
+                list = new ArrayList<Entry>(1);
+                byName.put(entries[i].name, list);
+            }
+            list.add(entries[i]);
+            // FNV-1a
+            String signature = signatures.get(methods[i]);
+            for (int j = 0; j < signature.length(); j++) {
+                hash ^= signature.charAt(j);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= ';';
+            hash *= 0x100000001b3L;
+        }
+        entriesByName = new HashMap<String, Entry[]>();
+        for (Map.Entry<String, List<Entry>> entry : byName.entrySet()) {
+            entriesByName.put(entry.getKey(), entry.getValue().toArray(new Entry[entry.getValue().size()]));
+        }
+        fingerprint = Long.toHexString(hash);
+    }
+
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    Entry get(int id) {
+        return id >= 0 && id < entries.length ? entries[id] : null;
+    }
+
+    /**
+     * @return 方法编号，不在方法表中时返回-1
+     */
+    int indexOf(String name, Class<?>[] parameterTypes) {
+        Entry[] candidates = entriesByName.get(name);
+        if (candidates != null) {
+            for (Entry entry : candidates) {
+                if (Arrays.equals(entry.parameterTypes, parameterTypes)) {
+                    return entry.id;
+                }
+            }
+        }
+        return -1;
+    }
+
+    int size() {
+        return entries.length;
+    }
+
+}
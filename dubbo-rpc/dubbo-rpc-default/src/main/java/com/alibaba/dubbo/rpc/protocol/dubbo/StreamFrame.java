@@ -0,0 +1,80 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+/**
+ * 流式调用的消息帧，以单向请求发送，同一个流的帧带有相同的流编号。
+ * <p>
+ * DATA、COMPLETE、ERROR按发送顺序编号，接收方按编号依次交付；CREDIT和CANCEL是控制帧，不编号。
+ */
+final class StreamFrame {
+
+    static final byte DATA     = 0;
+
+    static final byte COMPLETE = 1;
+
+    static final byte ERROR    = 2;
+
+    /**
+     * 接收方处理完消息后归还的额度
+     */
+    static final byte CREDIT   = 3;
+
+    static final byte CANCEL   = 4;
+
+    private final long   streamId;
+
+    private final byte   type;
+
+    // 消息帧为序号，CREDIT帧为归还的额度
+    private final int    value;
+
+    // DATA帧的消息或者ERROR帧的异常
+    private final Object payload;
+
+    StreamFrame(long streamId, byte type, int value, Object payload) {
+        this.streamId = streamId;
+        this.type = type;
+        this.value = value;
+        this.payload = payload;
+    }
+
+    long getStreamId() {
+        return streamId;
+    }
+
+    byte getType() {
+        return type;
+    }
+
+    int getValue() {
+        return value;
+    }
+
+    Object getPayload() {
+        return payload;
+    }
+
+    boolean hasPayload() {
+        return type == DATA || type == ERROR;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamFrame [streamId=" + streamId + ", type=" + type + ", value=" + value + "]";
+    }
+
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.io.UnsafeByteArrayInputStream;
+import com.alibaba.dubbo.common.io.UnsafeByteArrayOutputStream;
+import com.alibaba.dubbo.remoting.Channel;
+
+/**
+ * 连接级的字符串字典，用于压缩请求中的调用元数据（dubbo版本、path、version、方法名、方法签名、隐式传参）。
+ * <p>
+ * 消费者端为字符串分配编号，第一次发送时在请求中携带定义，之后只发送varint编号；
+ * 提供者在IO线程中按请求到达顺序登记定义。由于编码和写出不是原子的，
+ * 消费者会在每个请求中重复携带尚未确认的定义，直到某个携带该定义的请求收到正常响应。
+ */
+final class StringDictionary {
+
+    /**
+     * 每个连接最多登记的字符串个数
+     */
+    static final int MAX_ENTRIES = 4096;
+
+    /**
+     * 可以登记到字典中的字符串最大长度
+     */
+    static final int MAX_STRING_LENGTH = 256;
+
+    // 令牌：0表示null，1表示后面跟着内联字符串，其他值为字典编号
+    private static final int TOKEN_NULL = 0;
+
+    private static final int TOKEN_INLINE = 1;
+
+    private static final int FIRST_ID = 2;
+
+    private static final int MAX_PENDING = 1024;
+
+    private static final String ENCODER_KEY = "dubbo.codec.dictionary.encoder";
+
+    private static final String DECODER_KEY = "dubbo.codec.dictionary.decoder";
+
+    // 这些隐式传参的值在同一连接上基本不变，适合登记到字典中，其他值（如traceId）总是内联发送
+    private static final Set<String> STABLE_VALUE_KEYS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+        Constants.PATH_KEY, Constants.INTERFACE_KEY, Constants.VERSION_KEY, Constants.GROUP_KEY,
+        Constants.TIMEOUT_KEY, Constants.TOKEN_KEY, Constants.APPLICATION_KEY, Constants.DUBBO_VERSION_KEY)));
+
+    private StringDictionary() {
+    }
+
+    static boolean isStableValueKey(String key) {
+        return STABLE_VALUE_KEYS.contains(key);
+    }
+
+    static Encoder getEncoder(Channel channel) {
+        Encoder encoder = (Encoder) channel.getAttribute(ENCODER_KEY);
+        if (encoder == null) {
+            synchronized (channel) {
+                encoder = (Encoder) channel.getAttribute(ENCODER_KEY);
+                if (encoder == null) {
+                    encoder = new Encoder();
+                    channel.setAttribute(ENCODER_KEY, encoder);
+                }
+            }
+        }
+        return encoder;
+    }
+
+    static Decoder getDecoder(Channel channel) {
+        Decoder decoder = (Decoder) channel.getAttribute(DECODER_KEY);
+        if (decoder == null) {
+            synchronized (channel) {
+                decoder = (Decoder) channel.getAttribute(DECODER_KEY);
+                if (decoder == null) {
+                    decoder = new Decoder();
+                    channel.setAttribute(DECODER_KEY, decoder);
+                }
+            }
+        }
+        return decoder;
+    }
+
+    /**
+     * 收到响应时确认该请求携带的定义，没有编码过字典请求的连接直接返回
+     */
+    static void confirm(Channel channel, long requestId) {
+        Encoder encoder = (Encoder) channel.getAttribute(ENCODER_KEY);
+        if (encoder != null) {
+            encoder.confirm(requestId);
+        }
+    }
+
+    static final class Entry {
+
+        final int id;
+
+        final String value;
+
+        volatile boolean confirmed;
+
+        Entry(int id, String value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 消费者端：字符串到编号的映射，以及等待确认的定义
+     */
+    static final class Encoder {
+
+        private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+        private final ConcurrentMap<Long, Entry[]> pending = new ConcurrentHashMap<Long, Entry[]>();
+
+        private int nextId = FIRST_ID;
+
+        Entry lookup(String value, boolean register) {
+            Entry entry = entries.get(value);
+            if (entry != null || ! register || value.length() > MAX_STRING_LENGTH) {
+                return entry;
+            }
+            synchronized (this) {
+                entry = entries.get(value);
+                if (entry == null && nextId < FIRST_ID + MAX_ENTRIES) {
+                    entry = new Entry(nextId++, value);
+                    entries.put(value, entry);
+                }
+            }
+            return entry;
+        }
+
+        void await(long requestId, List<Entry> defined) {
+            if (pending.size() >= MAX_PENDING) {
+                // 响应丢失时不会被移除，超过上限直接丢弃，未确认的定义会在后续请求中重发
+                pending.clear();
+            }
+            pending.put(requestId, defined.toArray(new Entry[defined.size()]));
+        }
+
+        void confirm(long requestId) {
+            Entry[] defined = pending.remove(requestId);
+            if (defined != null) {
+                for (Entry entry : defined) {
+                    entry.confirmed = true;
+                }
+            }
+        }
+
+        int size() {
+            return entries.size();
+        }
+    }
+
+    /**
+     * 提供者端：编号到字符串的映射，只在连接的IO线程中按请求顺序更新
+     */
+    static final class Decoder {
+
+        private final List<String> values = new ArrayList<String>();
+
+        synchronized void define(int id, String value) throws IOException {
+            if (id < FIRST_ID || id >= FIRST_ID + MAX_ENTRIES) {
+                throw new IOException("Invalid dictionary id " + id);
+            }
+            int index = id - FIRST_ID;
+            while (values.size() <= index) {
+                values.add(null);
+            }
+            values.set(index, value);
+        }
+
+        synchronized String get(int id) throws IOException {
+            int index = id - FIRST_ID;
+            String value = index >= 0 && index < values.size() ? values.get(index) : null;
+            if (value == null) {
+                throw new IOException("Undefined dictionary id " + id);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * 编码一个请求的元数据块：先是本请求携带的定义，再是令牌序列
+     */
+    static final class BlockWriter {
+
+        private final Encoder encoder;
+
+        private final UnsafeByteArrayOutputStream tokens = new UnsafeByteArrayOutputStream(128);
+
+        private final List<Entry> defined = new ArrayList<Entry>();
+
+        BlockWriter(Encoder encoder) {
+            this.encoder = encoder;
+        }
+
+        void writeString(String value, boolean register) {
+            if (value == null) {
+                writeVarint(tokens, TOKEN_NULL);
+                return;
+            }
+            Entry entry = encoder.lookup(value, register);
+            if (entry == null) {
+                writeVarint(tokens, TOKEN_INLINE);
+                writeUtf8(tokens, value);
+                return;
+            }
+            if (! entry.confirmed && ! defined.contains(entry)) {
+                defined.add(entry);
+            }
+            writeVarint(tokens, entry.id);
+        }
+
+        void writeInt(int value) {
+            writeVarint(tokens, value);
+        }
+
+        List<Entry> getDefined() {
+            return defined;
+        }
+
+        byte[] toByteArray() {
+            UnsafeByteArrayOutputStream block = new UnsafeByteArrayOutputStream(tokens.size() + 32 * defined.size() + 4);
+            writeVarint(block, defined.size());
+            for (Entry entry : defined) {
+                writeVarint(block, entry.id);
+                writeUtf8(block, entry.value);
+            }
+            block.write(tokens.toByteArray(), 0, tokens.size());
+            return block.toByteArray();
+        }
+    }
+
+    /**
+     * 解码元数据块，构造时登记块中携带的定义
+     */
+    static final class BlockReader {
+
+        private final Decoder decoder;
+
+        private final UnsafeByteArrayInputStream in;
+
+        BlockReader(Decoder decoder, byte[] block) throws IOException {
+            this.decoder = decoder;
+            this.in = new UnsafeByteArrayInputStream(block);
+            int count = readInt();
+            for (int i = 0; i < count; i++) {
+                int id = readInt();
+                decoder.define(id, readUtf8(in));
+            }
+        }
+
+        String readString() throws IOException {
+            int token = readInt();
+            if (token == TOKEN_NULL) {
+                return null;
+            }
+            if (token == TOKEN_INLINE) {
+                return readUtf8(in);
+            }
+            return decoder.get(token);
+        }
+
+        int readInt() throws IOException {
+            return readVarint(in);
+        }
+    }
+
+    static void writeVarint(UnsafeByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int readVarint(UnsafeByteArrayInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Unexpected end of dictionary block");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in dictionary block");
+    }
+
+    private static void writeUtf8(UnsafeByteArrayOutputStream out, String value) {
+        byte[] bytes;
+        try {
+            bytes = value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readUtf8(UnsafeByteArrayInputStream in) throws IOException {
+        int length = readVarint(in);
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Malformed string in dictionary block");
+        }
+        byte[] bytes = new byte[length];
+        in.read(bytes, 0, length);
+        return new String(bytes, "UTF-8");
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo.filter;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.protocol.dubbo.DecodeableRpcInvocation;
+
+/**
+ * 按消费方传来的时间预算计算本地截止时间，在线程池中排队时已经过期的请求不再执行，
+ * 未过期的请求把截止时间放入RpcContext，其中的级联调用只使用剩余的时间。
+ */
+@Activate(group = Constants.PROVIDER, order = -9000)
+public class DeadlineFilter implements Filter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadlineFilter.class);
+
+    public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+        String budget = invocation.getAttachment(Constants.DEADLINE_BUDGET_KEY);
+        if (budget == null || budget.length() == 0) {
+            return invoker.invoke(invocation);
+        }
+        long millis;
+        try {
+            millis = Long.parseLong(budget);
+        } catch (NumberFormatException e) {
+            millis = -1;
+        }
+        // 非法的预算按未传处理，不影响正常调用
+        if (millis < 0) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Ignore illegal " + Constants.DEADLINE_BUDGET_KEY + " " + budget + " of method "
+                        + invocation.getMethodName() + ", url is " + invoker.getUrl());
+            }
+            return invoker.invoke(invocation);
+        }
+        // 从IO线程收到请求时开始计时，包含排队的时间
+        long arrival = invocation instanceof DecodeableRpcInvocation
+            ? ((DecodeableRpcInvocation) invocation).getArrivalTime() : System.currentTimeMillis();
+        final long deadline = millis > Long.MAX_VALUE - arrival ? Long.MAX_VALUE : arrival + millis;
+        long now = System.currentTimeMillis();
+        if (now >= deadline) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Drop expired request, method: " + invocation.getMethodName() + ", url is " + invoker.getUrl()
+                        + ", budget " + budget + " ms, waited " + (now - arrival) + " ms before execution.");
+            }
+            return new RpcResult(new RpcException(RpcException.TIMEOUT_EXCEPTION, "Request of method " + invocation.getMethodName()
+                    + " expired before execution on provider " + invoker.getUrl().getAddress() + ", budget " + budget
+                    + " ms, waited " + (now - arrival) + " ms"));
+        }
+        final RpcContext context = RpcContext.getContext();
+        final long outer = context.getDeadline();
+        context.setDeadline(deadline);
+        Result result = null;
+        try {
+            result = invoker.invoke(invocation);
+            return result;
+        } finally {
+            if (result instanceof AsyncRpcResult && ! ((AsyncRpcResult) result).isDone()) {
+                // 异步执行完成前截止时间仍然有效，完成时再恢复，上下文已经被重置或者另设了截止时间时不再修改
+                ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                    public void onComplete(Result r) {
+                        if (context.getDeadline() == deadline) {
+                            context.setDeadline(outer);
+                        }
+                    }
+                });
+            } else {
+                context.setDeadline(outer);
+            }
+        }
+    }
+
+}
@@ -23,16 +23,14 @@ import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.extension.Activate;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
-import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
-import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcFuture;
 import com.alibaba.dubbo.rpc.StaticContext;
-import com.alibaba.dubbo.rpc.protocol.dubbo.FutureAdapter;
 import com.alibaba.dubbo.rpc.support.RpcUtils;
 
 /**
@@ -58,6 +56,9 @@ public class FutureFilter implements Filter {
         if (isAsync) {
             // 异步回调
             asyncCallback(invoker, invocation);
+        } else if (RpcContext.getContext().isBatchStarted() && RpcContext.getContext().getFuture() instanceof RpcFuture) {
+            // 批量调用暂存后在flushBatch时才有结果
+            asyncCallback(invoker, invocation);
         } else {
             // 同步回调
             syncCallback(invoker, invocation, result);
@@ -75,27 +76,16 @@ public class FutureFilter implements Filter {
     
     private void asyncCallback(final Invoker<?> invoker, final Invocation invocation) {
         Future<?> f = RpcContext.getContext().getFuture();
-        if (f instanceof FutureAdapter) {
-            ResponseFuture future = ((FutureAdapter<?>)f).getFuture();
-            future.setCallback(new ResponseCallback() {
-                public void done(Object rpcResult) {
-                    if (rpcResult == null){
-                        logger.error(new IllegalStateException("invalid result value : null, expected "+Result.class.getName()));
-                        return;
-                    }
-                    ///must be rpcResult
-                    if (! (rpcResult instanceof Result)){
-                        logger.error(new IllegalStateException("invalid result type :" + rpcResult.getClass() + ", expected "+Result.class.getName()));
-                        return;
-                    }
-                    Result result = (Result) rpcResult;
-                    if (result.hasException()) {
-                        fireThrowCallback(invoker, invocation, result.getException());
-                    } else {
-                        fireReturnCallback(invoker, invocation, result.getValue());
-                    }
+        if (f instanceof RpcFuture) {
+            // 回调在Future的默认Executor中执行，见future.executor配置
+            @SuppressWarnings("unchecked")
+            RpcFuture<Object> future = (RpcFuture<Object>) f;
+            future.addListener(new RpcFuture.Listener<Object>() {
+                public void onSuccess(Object value) {
+                    fireReturnCallback(invoker, invocation, value);
                 }
-                public void caught(Throwable exception) {
+
+                public void onFailure(Throwable exception) {
                     fireThrowCallback(invoker, invocation, exception);
                 }
             });
@@ -0,0 +1,70 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo.page;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.container.page.Menu;
+import com.alibaba.dubbo.container.page.Page;
+import com.alibaba.dubbo.container.page.PageHandler;
+import com.alibaba.dubbo.rpc.protocol.dubbo.InflightSnapshot;
+
+/**
+ * InflightPageHandler
+ * 
+ * 展示消费端在途请求，按服务、方法、提供者地址分组，以及等待最久的请求
+ */
+@Menu(name = "Inflight", desc = "Show in-flight requests.", order = 16000)
+public class InflightPageHandler implements PageHandler {
+
+    public Page handle(URL url) {
+        int limit;
+        try {
+            limit = url.getParameter("limit", 10);
+        } catch (NumberFormatException e) {
+            limit = 10;
+        }
+        InflightSnapshot snapshot = InflightSnapshot.take(limit);
+        List<List<String>> rows = new ArrayList<List<String>>();
+        for (InflightSnapshot.Group group : snapshot.getGroups()) {
+            List<String> row = new ArrayList<String>();
+            row.add(group.getService());
+            row.add(group.getMethod());
+            row.add(group.getAddress());
+            row.add(String.valueOf(group.getCount()));
+            row.add(group.getP50() + "ms / " + group.getP90() + "ms / " + group.getP99() + "ms");
+            row.add(group.getMaxAge() + "ms");
+            rows.add(row);
+        }
+        for (InflightSnapshot.Entry entry : snapshot.getOldest()) {
+            List<String> row = new ArrayList<String>();
+            // 单个请求按表头顺序填充：数量为1，各分位即其自身等待时间
+            row.add("#" + entry.getId() + " " + entry.getService()
+                    + " (" + (entry.isSent() ? "sent" : "sending") + ", timeout " + entry.getTimeout() + "ms)");
+            row.add(entry.getMethod());
+            row.add(entry.getAddress());
+            row.add("1");
+            row.add(entry.getAge() + "ms / " + entry.getAge() + "ms / " + entry.getAge() + "ms");
+            row.add(entry.getAge() + "ms");
+            rows.add(row);
+        }
+        return new Page("Inflight", "Inflight (" + snapshot.getTotal() + ")",
+                new String[] {"Service:", "Method", "Provider", "Count", "Age p50 / p90 / p99", "Max Age"}, rows);
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo.page;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.container.page.Menu;
+import com.alibaba.dubbo.container.page.Page;
+import com.alibaba.dubbo.container.page.PageHandler;
+import com.alibaba.dubbo.remoting.transport.metrics.ChannelMetrics;
+import com.alibaba.dubbo.remoting.transport.metrics.EventLoopStallDetector;
+import com.alibaba.dubbo.remoting.transport.metrics.RemotingMetrics;
+
+/**
+ * TransportPageHandler
+ * 
+ * 展示各端点和通道的传输层统计，以及最近的IO线程卡顿堆栈。
+ */
+@Menu(name = "Transport", desc = "Show transport metrics and io thread stalls.", order = 15000)
+public class TransportPageHandler implements PageHandler {
+
+    public Page handle(URL url) {
+        List<List<String>> rows = new ArrayList<List<String>>();
+        for (ChannelMetrics metrics : RemotingMetrics.getEndpointMetrics()) {
+            rows.add(toRow("<b>" + escape(metrics.getKey()) + "</b>", metrics));
+        }
+        for (ChannelMetrics metrics : RemotingMetrics.getChannelMetrics()) {
+            rows.add(toRow(escape(metrics.getKey()), metrics));
+        }
+        EventLoopStallDetector detector = EventLoopStallDetector.getInstance();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        for (EventLoopStallDetector.Stall stall : detector.getStalls()) {
+            List<String> row = new ArrayList<String>();
+            row.add("stall " + format.format(new Date(stall.getStart())));
+            StringBuilder stack = new StringBuilder();
+            stack.append(escape(stall.getThread())).append(" blocked ").append(stall.getElapsed()).append("ms");
+            for (StackTraceElement element : stall.getStackTrace()) {
+                stack.append("<br/>&nbsp;&nbsp;at ").append(escape(String.valueOf(element)));
+            }
+            row.add(stack.toString());
+            rows.add(row);
+        }
+        return new Page("Transport", "Transport (stalls: " + detector.getStallCount() + ", stalling: " + detector.getStalling() + ")",
+                new String[] {"Channel:", "Bytes In", "Bytes Out", "Msgs In", "Msgs Out", "Decode(us)", "Encode(us)",
+                              "Queue", "Max Queue", "Flush(us)", "Max Flush(us)"}, rows);
+    }
+
+    private List<String> toRow(String name, ChannelMetrics metrics) {
+        List<String> row = new ArrayList<String>();
+        row.add(name);
+        row.add(String.valueOf(metrics.getBytesIn()));
+        row.add(String.valueOf(metrics.getBytesOut()));
+        row.add(String.valueOf(metrics.getMessagesIn()));
+        row.add(String.valueOf(metrics.getMessagesOut()));
+        row.add(String.valueOf(metrics.getAverageDecodeMicros()));
+        row.add(String.valueOf(metrics.getAverageEncodeMicros()));
+        row.add(String.valueOf(metrics.getPendingWrites()));
+        row.add(String.valueOf(metrics.getMaxPendingWrites()));
+        row.add(String.valueOf(metrics.getAverageFlushMicros()));
+        row.add(String.valueOf(metrics.getMaxFlushNanos() / 1000));
+        return row;
+    }
+
+    private static String escape(String value) {
+        return value == null ? "" : value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo.telnet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.utils.StringUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.telnet.TelnetHandler;
+import com.alibaba.dubbo.remoting.telnet.support.Help;
+import com.alibaba.dubbo.remoting.telnet.support.TelnetUtils;
+import com.alibaba.dubbo.rpc.protocol.dubbo.InflightSnapshot;
+
+/**
+ * InflightTelnetHandler
+ * 
+ * 查看消费端还在等待响应的请求
+ */
+@Activate
+@Help(parameter = "[limit]", summary = "Show in-flight requests.", detail = "Show in-flight requests grouped by service, method and provider address, with the oldest [limit] requests, default 10.")
+public class InflightTelnetHandler implements TelnetHandler {
+
+    public String telnet(Channel channel, String message) {
+        int limit = 10;
+        if (message != null && message.length() > 0) {
+            try {
+                limit = StringUtils.isInteger(message) ? Integer.parseInt(message) : -1;
+            } catch (NumberFormatException e) {
+                limit = -1;
+            }
+            if (limit < 0) {
+                return "Illegal limit " + message + ", must be a non-negative integer.";
+            }
+        }
+        InflightSnapshot snapshot = InflightSnapshot.take(limit);
+        StringBuilder buf = new StringBuilder();
+        buf.append("In-flight requests: ").append(snapshot.getTotal()).append("\r\n");
+        List<List<String>> table = new ArrayList<List<String>>();
+        for (InflightSnapshot.Group group : snapshot.getGroups()) {
+            List<String> row = new ArrayList<String>();
+            row.add(group.getService());
+            row.add(group.getMethod());
+            row.add(group.getAddress());
+            row.add(String.valueOf(group.getCount()));
+            row.add(group.getP50() + "ms");
+            row.add(group.getP90() + "ms");
+            row.add(group.getP99() + "ms");
+            row.add(group.getMaxAge() + "ms");
+            table.add(row);
+        }
+        buf.append(TelnetUtils.toTable(new String[] {"service", "method", "provider", "count", "p50", "p90", "p99", "max"}, table));
+        table = new ArrayList<List<String>>();
+        for (InflightSnapshot.Entry entry : snapshot.getOldest()) {
+            List<String> row = new ArrayList<String>();
+            row.add(String.valueOf(entry.getId()));
+            row.add(entry.getService());
+            row.add(entry.getMethod());
+            row.add(entry.getAddress());
+            row.add(entry.getAge() + "ms");
+            row.add(entry.getTimeout() + "ms");
+            row.add(entry.isSent() ? "sent" : "sending");
+            table.add(row);
+        }
+        buf.append("\r\nOldest requests:\r\n");
+        buf.append(TelnetUtils.toTable(new String[] {"id", "service", "method", "provider", "age", "timeout", "state"}, table));
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.store.DataStore;
+import com.alibaba.dubbo.rpc.AsyncContext;
+import com.alibaba.dubbo.rpc.Exporter;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Protocol;
+import com.alibaba.dubbo.rpc.ProxyFactory;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.DemoService;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.DemoServiceImpl;
+
+public class AsyncProviderTest {
+
+    private Protocol protocol = ExtensionLoader.getExtensionLoader(Protocol.class).getAdaptiveExtension();
+
+    private ProxyFactory proxy = ExtensionLoader.getExtensionLoader(ProxyFactory.class).getAdaptiveExtension();
+
+    @Test
+    public void testAsyncExecutionReleasesThread() throws Exception {
+        // 提供者只有一个业务线程，第一个调用挂起期间第二个调用仍能执行，并由它写出第一个调用的结果
+        final AtomicReference<AsyncContext> pending = new AtomicReference<AsyncContext>();
+        final CountDownLatch started = new CountDownLatch(1);
+        DemoService impl = new DemoServiceImpl() {
+            @Override
+            public String echo(String text) {
+                if ("first".equals(text)) {
+                    pending.set(RpcContext.getContext().startAsync());
+                    started.countDown();
+                    return null;
+                }
+                pending.get().write("async:" + text);
+                return text;
+            }
+
+            @Override
+            public int stringLength(String str) {
+                RpcContext.getContext().startAsync().writeException(new IllegalStateException(str));
+                return 0;
+            }
+        };
+        URL url = URL.valueOf("dubbo://127.0.0.1:9040/" + DemoService.class.getName() + "?threads=1&timeout=5000");
+        Exporter<DemoService> exporter = protocol.export(proxy.getInvoker(impl, DemoService.class, url));
+        // 同一端口的消费方线程池也会登记到DataStore，先取出提供方的线程池
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ExtensionLoader.getExtensionLoader(DataStore.class)
+            .getDefaultExtension().get(Constants.EXECUTOR_SERVICE_COMPONENT_KEY, Integer.toString(url.getPort()));
+        // 消费方不限制线程数，避免客户端线程池拒绝响应
+        Invoker<DemoService> invoker = protocol.refer(DemoService.class, url.removeParameter("threads"));
+        try {
+            final DemoService service = proxy.getProxy(invoker);
+            final AtomicReference<String> first = new AtomicReference<String>();
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    first.set(service.echo("first"));
+                }
+            });
+            // 连接事件也在业务线程中处理，等它结束后再发起调用
+            awaitIdle(executor);
+            thread.start();
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            // 第一个调用挂起后业务线程还要经过过滤器返回，等线程空闲后再发起第二个调用
+            awaitIdle(executor);
+            Assert.assertEquals("second", service.echo("second"));
+            thread.join(5000);
+            Assert.assertEquals("async:second", first.get());
+
+            try {
+                service.stringLength("failed");
+                Assert.fail();
+            } catch (IllegalStateException e) {
+                Assert.assertEquals("failed", e.getMessage());
+            }
+        } finally {
+            invoker.destroy();
+            exporter.unexport();
+        }
+    }
+
+    private static void awaitIdle(ThreadPoolExecutor executor) throws InterruptedException {
+        for (int i = 0; i < 100 && executor.getActiveCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        // 线程池没有队列，线程回到等待任务的状态后才能接收新任务
+        Thread.sleep(100);
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.rpc.Exporter;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Protocol;
+import com.alibaba.dubbo.rpc.ProxyFactory;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcFuture;
+import com.alibaba.dubbo.rpc.RpcStatus;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.DemoService;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.DemoServiceImpl;
+
+public class BatchInvocationTest {
+
+    private Protocol protocol = ExtensionLoader.getExtensionLoader(Protocol.class).getAdaptiveExtension();
+
+    private ProxyFactory proxy = ExtensionLoader.getExtensionLoader(ProxyFactory.class).getAdaptiveExtension();
+
+    @Test
+    public void testBatch() throws Exception {
+        DemoService impl = new DemoServiceImpl() {
+            @Override
+            public String echo(String text) {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return text;
+            }
+
+            @Override
+            public int stringLength(String str) {
+                throw new IllegalArgumentException(str);
+            }
+        };
+        URL url = URL.valueOf("dubbo://127.0.0.1:9060/" + DemoService.class.getName() + "?timeout=5000");
+        Exporter<DemoService> exporter = protocol.export(proxy.getInvoker(impl, DemoService.class, url));
+        Invoker<DemoService> invoker = protocol.refer(DemoService.class, url);
+        try {
+            DemoService service = proxy.getProxy(invoker);
+            // 建立连接并完成特性协商
+            Assert.assertEquals("warmup", service.echo("warmup"));
+
+            RpcContext.getContext().startBatch();
+            long start = System.currentTimeMillis();
+            Assert.assertNull(service.echo("a"));
+            Future<String> a = RpcContext.getContext().getFuture();
+            Assert.assertNull(service.echo("b"));
+            Assert.assertNull(service.echo("c"));
+            Assert.assertEquals(0, service.stringLength("bad"));
+            Future<Integer> failed = RpcContext.getContext().getFuture();
+            Assert.assertFalse(a.isDone());
+            RpcFuture<List<Object>> all = RpcContext.getContext().flushBatch();
+            Assert.assertFalse(RpcContext.getContext().isBatchStarted());
+
+            Assert.assertEquals("a", a.get(5, TimeUnit.SECONDS));
+            try {
+                failed.get(5, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+            try {
+                all.get(5, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+            // 三个echo在提供者端并行执行
+            Assert.assertTrue(System.currentTimeMillis() - start < 900);
+
+            RpcContext.getContext().startBatch();
+            service.echo("x");
+            service.echo("y");
+            List<Object> values = RpcContext.getContext().flushBatch().get(5, TimeUnit.SECONDS);
+            Assert.assertEquals("x", values.get(0));
+            Assert.assertEquals("y", values.get(1));
+        } finally {
+            RpcContext.removeContext();
+            invoker.destroy();
+            exporter.unexport();
+        }
+    }
+
+    @Test
+    public void testActiveCountEndsWithBatchItem() throws Exception {
+        URL url = URL.valueOf("dubbo://127.0.0.1:9062/" + DemoService.class.getName() + "?timeout=5000&actives=2");
+        Exporter<DemoService> exporter = protocol.export(proxy.getInvoker(new DemoServiceImpl(), DemoService.class, url));
+        Invoker<DemoService> invoker = protocol.refer(DemoService.class, url);
+        try {
+            DemoService service = proxy.getProxy(invoker);
+            Assert.assertEquals("warmup", service.echo("warmup"));
+            RpcStatus status = RpcStatus.getStatus(invoker.getUrl(), "echo");
+            Assert.assertEquals(0, status.getActive());
+
+            RpcContext.getContext().startBatch();
+            service.echo("a");
+            service.echo("b");
+            // 暂存的调用在flushBatch之后才结束
+            Assert.assertEquals(2, status.getActive());
+            try {
+                service.echo("c");
+                Assert.fail();
+            } catch (RpcException expected) {
+            }
+            List<Object> values = RpcContext.getContext().flushBatch().get(5, TimeUnit.SECONDS);
+            Assert.assertEquals("a", values.get(0));
+            Assert.assertEquals("b", values.get(1));
+            Assert.assertEquals(0, status.getActive());
+            Assert.assertEquals("d", service.echo("d"));
+        } finally {
+            RpcContext.removeContext();
+            invoker.destroy();
+            exporter.unexport();
+        }
+    }
+
+    @Test
+    public void testBatchItemKeepsThrottledStatus() throws Exception {
+        URL url = URL.valueOf("dubbo://127.0.0.1:9061/" + DemoService.class.getName() + "?group=throttled&timeout=5000&echo.tps=1");
+        Exporter<DemoService> exporter = protocol.export(proxy.getInvoker(new DemoServiceImpl(), DemoService.class, url));
+        Invoker<DemoService> invoker = protocol.refer(DemoService.class, url);
+        try {
+            DemoService service = proxy.getProxy(invoker);
+            Assert.assertEquals(3, service.getSize(new String[] {"", "", ""}));
+
+            RpcContext.getContext().startBatch();
+            service.echo("a");
+            Future<String> first = RpcContext.getContext().getFuture();
+            service.echo("b");
+            Future<String> second = RpcContext.getContext().getFuture();
+            RpcContext.getContext().flushBatch();
+            // 两个调用在提供方并行执行，先执行的那个通过
+            int throttled = 0;
+            for (Future<String> future : new Future[] {first, second}) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof RpcException);
+                    Assert.assertTrue(((RpcException) e.getCause()).isThrottled());
+                    throttled ++;
+                }
+            }
+            Assert.assertEquals(1, throttled);
+        } finally {
+            RpcContext.removeContext();
+            invoker.destroy();
+            exporter.unexport();
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.rpc.Exporter;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Protocol;
+import com.alibaba.dubbo.rpc.ProxyFactory;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.filter.capture.CaptureReplayer;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.CustomArgument;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.DemoService;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.DemoServiceImpl;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.Type;
+
+public class CaptureReplayTest {
+
+    private Protocol protocol = ExtensionLoader.getExtensionLoader(Protocol.class).getAdaptiveExtension();
+
+    private ProxyFactory proxy = ExtensionLoader.getExtensionLoader(ProxyFactory.class).getAdaptiveExtension();
+
+    @Test
+    public void testCaptureAndReplay() throws Exception {
+        File file = File.createTempFile("capture", ".bin");
+        file.delete();
+        file.deleteOnExit();
+        final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+        DemoService impl = new DemoServiceImpl() {
+            @Override
+            public String get(CustomArgument arg) {
+                received.add(arg.getName() + ":" + arg.getType() + ":" + RpcContext.getContext().getAttachment("trace"));
+                return arg.getName();
+            }
+        };
+        URL url = URL.valueOf("dubbo://127.0.0.1:9061/" + DemoService.class.getName() + "?timeout=5000");
+        Exporter<DemoService> exporter = protocol.export(proxy.getInvoker(impl, DemoService.class,
+                url.addParameter("capture", file.getAbsolutePath())));
+        Invoker<DemoService> invoker = protocol.refer(DemoService.class, url);
+        try {
+            DemoService service = proxy.getProxy(invoker);
+            for (int i = 0; i < 10; i ++) {
+                RpcContext.getContext().setAttachment("trace", "t" + i);
+                Assert.assertEquals("n" + i, service.get(new CustomArgument(Type.High, "n" + i)));
+            }
+            List<String> expected = new ArrayList<String>(received);
+            Assert.assertEquals(10, expected.size());
+            // 等待写线程写出
+            for (int i = 0; i < 50 && file.length() == 0; i ++) {
+                Thread.sleep(100);
+            }
+            Thread.sleep(200);
+            received.clear();
+
+            CaptureReplayer.Report report = new CaptureReplayer(file, "dubbo://127.0.0.1:9061").setSpeed(0).setThreads(4).replay();
+            Assert.assertEquals(10, report.getCount());
+            Assert.assertEquals(0, report.getErrors());
+            Assert.assertEquals(10, report.getHistogram().getCount());
+            Assert.assertTrue(report.toString().contains("Replayed 10 invocations"));
+            Collections.sort(expected);
+            List<String> actual = new ArrayList<String>(received);
+            Collections.sort(actual);
+            Assert.assertEquals(expected, actual);
+        } finally {
+            invoker.destroy();
+            exporter.unexport();
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.rpc.AsyncContext;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
+import com.alibaba.dubbo.rpc.Exporter;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Protocol;
+import com.alibaba.dubbo.rpc.ProxyFactory;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.protocol.dubbo.filter.DeadlineFilter;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.DemoService;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.DemoServiceImpl;
+
+public class DeadlineTest {
+
+    private Protocol protocol = ExtensionLoader.getExtensionLoader(Protocol.class).getAdaptiveExtension();
+
+    private ProxyFactory proxy = ExtensionLoader.getExtensionLoader(ProxyFactory.class).getAdaptiveExtension();
+
+    @Test
+    public void testDeadline() throws Exception {
+        final AtomicInteger executed = new AtomicInteger();
+        DemoService impl = new DemoServiceImpl() {
+            @Override
+            public String echo(String text) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return text;
+            }
+
+            @Override
+            public int stringLength(String str) {
+                executed.incrementAndGet();
+                return str.length();
+            }
+        };
+        URL url = URL.valueOf("dubbo://127.0.0.1:9080/" + DemoService.class.getName() + "?threads=1&queues=10&timeout=2000");
+        Exporter<DemoService> exporter = protocol.export(proxy.getInvoker(impl, DemoService.class, url));
+        Invoker<DemoService> invoker = protocol.refer(DemoService.class,
+            url.removeParameter("threads").addParameter("stringLength.timeout", 100));
+        try {
+            final DemoService service = proxy.getProxy(invoker);
+            Assert.assertEquals(3, service.stringLength("abc"));
+            Assert.assertEquals(1, executed.get());
+
+            // 唯一的业务线程被占用，排队超过时间预算的请求在提供方被丢弃
+            Thread slow = new Thread(new Runnable() {
+                public void run() {
+                    service.echo("slow");
+                }
+            });
+            slow.start();
+            Thread.sleep(100);
+            try {
+                service.stringLength("abc");
+                Assert.fail();
+            } catch (RpcException e) {
+                Assert.assertTrue(e.isTimeout());
+            }
+            slow.join(3000);
+            Thread.sleep(100);
+            Assert.assertEquals(1, executed.get());
+
+            // 级联调用继承上游剩余的时间
+            RpcContext.getContext().setDeadline(System.currentTimeMillis() + 100);
+            long start = System.currentTimeMillis();
+            try {
+                service.echo("cascade");
+                Assert.fail();
+            } catch (RpcException e) {
+                Assert.assertTrue(e.isTimeout());
+            }
+            Assert.assertTrue(System.currentTimeMillis() - start < 400);
+
+            RpcContext.getContext().setDeadline(System.currentTimeMillis() - 1);
+            try {
+                service.stringLength("abc");
+                Assert.fail();
+            } catch (RpcException e) {
+                Assert.assertTrue(e.isTimeout());
+            }
+            Assert.assertEquals(1, executed.get());
+        } finally {
+            RpcContext.removeContext();
+            invoker.destroy();
+            exporter.unexport();
+        }
+    }
+
+    @Test
+    public void testAsyncResultRestoresDeadlineOnCompletion() throws Exception {
+        final AtomicReference<AsyncContext> async = new AtomicReference<AsyncContext>();
+        DemoService impl = new DemoServiceImpl() {
+            @Override
+            public String echo(String text) {
+                async.set(RpcContext.getContext().startAsync());
+                return null;
+            }
+        };
+        Invoker<DemoService> invoker = proxy.getInvoker(impl, DemoService.class,
+            URL.valueOf("dubbo://127.0.0.1:9080/" + DemoService.class.getName()));
+        RpcInvocation invocation = new RpcInvocation("echo", new Class<?>[] {String.class}, new Object[] {"abc"});
+        invocation.setAttachment(Constants.DEADLINE_BUDGET_KEY, "10000");
+        try {
+            RpcContext.getContext().setDeadline(0);
+            Result result = new DeadlineFilter().invoke(invoker, invocation);
+            Assert.assertTrue(result instanceof AsyncRpcResult);
+            // 异步结果完成前截止时间仍然有效
+            Assert.assertTrue(RpcContext.getContext().getDeadline() > System.currentTimeMillis());
+            async.get().write("abc");
+            Assert.assertEquals("abc", result.getValue());
+            Assert.assertEquals(0, RpcContext.getContext().getDeadline());
+        } finally {
+            RpcContext.removeContext();
+        }
+    }
+
+    @Test
+    public void testIllegalBudget() throws Exception {
+        DeadlineFilter filter = new DeadlineFilter();
+        Invoker<DemoService> invoker = proxy.getInvoker(new DemoServiceImpl(), DemoService.class,
+            URL.valueOf("dubbo://127.0.0.1:9080/" + DemoService.class.getName()));
+        // 非法或溢出的预算按未传处理，请求正常执行
+        for (String budget : new String[] {"abc", "-1", "99999999999999999999", String.valueOf(Long.MAX_VALUE)}) {
+            RpcInvocation invocation = new RpcInvocation("stringLength", new Class<?>[] {String.class}, new Object[] {"abc"});
+            invocation.setAttachment(Constants.DEADLINE_BUDGET_KEY, budget);
+            Result result = filter.invoke(invoker, invocation);
+            Assert.assertFalse(budget, result.hasException());
+            Assert.assertEquals(3, result.getValue());
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffers;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.DemoService;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.Person;
+
+public class DubboCodecTest {
+
+    private final DubboCodec codec = new DubboCodec();
+
+    private int lastLength;
+
+    private Channel mockChannel(Object features) {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        if (features != null) {
+            attributes.put(Constants.CHANNEL_ATTRIBUTE_CODEC_FEATURES_KEY, features);
+        }
+        Channel channel = EasyMock.createMock(Channel.class);
+        EasyMock.expect(channel.getUrl()).andReturn(URL.valueOf("dubbo://127.0.0.1:20880/" + DemoService.class.getName())).anyTimes();
+        EasyMock.expect(channel.getRemoteAddress()).andReturn(new InetSocketAddress("127.0.0.1", 20880)).anyTimes();
+        EasyMock.expect(channel.getLocalAddress()).andReturn(new InetSocketAddress("127.0.0.1", 50000)).anyTimes();
+        EasyMock.expect(channel.getAttribute(EasyMock.<String>anyObject())).andAnswer(new IAnswer<Object>() {
+            public Object answer() throws Throwable {
+                return attributes.get(EasyMock.getCurrentArguments()[0]);
+            }
+        }).anyTimes();
+        channel.setAttribute(EasyMock.<String>anyObject(), EasyMock.anyObject());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            public Object answer() throws Throwable {
+                Object[] args = EasyMock.getCurrentArguments();
+                return attributes.put((String) args[0], args[1]);
+            }
+        }).anyTimes();
+        EasyMock.replay(channel);
+        return channel;
+    }
+
+    private Request newRequest() {
+        RpcInvocation inv = new RpcInvocation("echo", new Class<?>[] {Person.class}, new Object[] {new Person()});
+        inv.setAttachment(Constants.PATH_KEY, DemoService.class.getName());
+        inv.setAttachment(Constants.VERSION_KEY, "1.0.0");
+        inv.setAttachment(Constants.TOKEN_KEY, "secret");
+        Request request = new Request();
+        request.setData(inv);
+        return request;
+    }
+
+    private DecodeableRpcInvocation encodeAndDecode(Channel channel) throws Exception {
+        return encodeAndDecode(channel, channel, newRequest());
+    }
+
+    private DecodeableRpcInvocation encodeAndDecode(Channel client, Channel server, Request request) throws Exception {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(client, buffer, request);
+        lastLength = buffer.readableBytes();
+        Request decoded = (Request) codec.decode(server, buffer);
+        Assert.assertFalse(decoded.isBroken());
+        return (DecodeableRpcInvocation) decoded.getData();
+    }
+
+    private void assertInvocation(DecodeableRpcInvocation inv) {
+        Assert.assertEquals("echo", inv.getMethodName());
+        Assert.assertEquals(DemoService.class.getName(), inv.getAttachment(Constants.PATH_KEY));
+        Assert.assertEquals("1.0.0", inv.getAttachment(Constants.VERSION_KEY));
+        Assert.assertEquals("secret", inv.getAttachment(Constants.TOKEN_KEY));
+        Assert.assertArrayEquals(new Class<?>[] {Person.class}, inv.getParameterTypes());
+        Assert.assertTrue(inv.getArguments()[0] instanceof Person);
+    }
+
+    @Test
+    public void testLegacyLayout() throws Exception {
+        DecodeableRpcInvocation inv = encodeAndDecode(mockChannel(null));
+        Assert.assertEquals("echo", inv.getMethodName());
+        Assert.assertEquals("secret", inv.getAttachment(Constants.TOKEN_KEY));
+        Assert.assertEquals(1, inv.getArguments().length);
+        Assert.assertTrue(inv.getArguments()[0] instanceof Person);
+    }
+
+    @Test
+    public void testHeaderFirstLayout() throws Exception {
+        DecodeableRpcInvocation inv = encodeAndDecode(mockChannel(Collections.singleton(DubboCodec.FEATURE_HEADER_FIRST)));
+        Assert.assertEquals("echo", inv.getMethodName());
+        Assert.assertEquals(DemoService.class.getName(), inv.getAttachment(Constants.PATH_KEY));
+        Assert.assertEquals("1.0.0", inv.getAttachment(Constants.VERSION_KEY));
+        Assert.assertEquals("secret", inv.getAttachment(Constants.TOKEN_KEY));
+        Assert.assertArrayEquals(new Class<?>[] {Person.class}, inv.getParameterTypes());
+        // 上下文中的参数在访问时才解码
+        RpcContext.getContext().setInvocation(inv);
+        try {
+            Object[] args = RpcContext.getContext().getArguments();
+            Assert.assertEquals(1, args.length);
+            Assert.assertTrue(args[0] instanceof Person);
+            Assert.assertSame(args, inv.getArguments());
+        } finally {
+            RpcContext.removeContext();
+        }
+    }
+
+    @Test
+    public void testDictionaryLayout() throws Exception {
+        Set<String> features = Collections.singleton(DubboCodec.FEATURE_DICTIONARY);
+        Channel client = mockChannel(features), server = mockChannel(features);
+
+        Request first = newRequest();
+        assertInvocation(encodeAndDecode(client, server, first));
+        int defining = lastLength;
+        // 未确认前每个请求都重复携带定义
+        assertInvocation(encodeAndDecode(client, server, newRequest()));
+        Assert.assertEquals(defining, lastLength);
+
+        StringDictionary.confirm(client, first.getId());
+        Request request = newRequest();
+        ((RpcInvocation) request.getData()).setAttachment("traceid", "t-1");
+        DecodeableRpcInvocation inv = encodeAndDecode(client, server, request);
+        assertInvocation(inv);
+        Assert.assertEquals("t-1", inv.getAttachment("traceid"));
+        // 只登记key，每次都变化的值不进入字典
+        Assert.assertNull(StringDictionary.getEncoder(client).lookup("t-1", false));
+
+        StringDictionary.confirm(client, request.getId());
+        assertInvocation(encodeAndDecode(client, server, newRequest()));
+        Assert.assertTrue(lastLength < defining);
+    }
+
+    @Test
+    public void testUndefinedDictionaryId() throws Exception {
+        Set<String> features = Collections.singleton(DubboCodec.FEATURE_DICTIONARY);
+        Channel client = mockChannel(features);
+        Request first = newRequest();
+        encodeAndDecode(client, mockChannel(features), first);
+        StringDictionary.confirm(client, first.getId());
+
+        // 提供者端没有登记过定义的连接
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(client, buffer, newRequest());
+        Request decoded = (Request) codec.decode(mockChannel(features), buffer);
+        Assert.assertTrue(decoded.isBroken());
+    }
+
+    @Test
+    public void testBatchLayout() throws Exception {
+        Channel channel = mockChannel(Collections.singleton(DubboCodec.FEATURE_BATCH));
+        List<Invocation> invocations = new ArrayList<Invocation>();
+        invocations.add((Invocation) newRequest().getData());
+        invocations.add(new RpcInvocation("getSize", new Class<?>[] {String[].class}, new Object[] {new String[] {"a", "b"}}));
+        Request request = new Request();
+        request.setData(new BatchInvocation(invocations));
+
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(channel, buffer, request);
+        Request decoded = (Request) codec.decode(channel, buffer);
+        Assert.assertFalse(decoded.isBroken());
+        List<Invocation> items = ((BatchInvocation) decoded.getData()).getInvocations();
+        Assert.assertEquals(2, items.size());
+        assertInvocation((DecodeableRpcInvocation) items.get(0));
+        Assert.assertEquals("getSize", items.get(1).getMethodName());
+        Assert.assertArrayEquals(new String[] {"a", "b"}, (String[]) items.get(1).getArguments()[0]);
+    }
+
+}
@@ -29,6 +29,8 @@ import org.junit.Test;
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.rpc.Exporter;
+import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Protocol;
 import com.alibaba.dubbo.rpc.ProxyFactory;
 import com.alibaba.dubbo.rpc.RpcException;
@@ -188,4 +190,25 @@ public class DubboProtocolTest
             Assert.assertTrue(e.getMessage().contains("com.alibaba.dubbo.rpc.protocol.dubbo.support.NonSerialized must implement java.io.Serializable"));
         }
     }
+
+    @Test
+    public void testThrottled() throws Exception {
+        URL url = URL.valueOf("dubbo://127.0.0.1:9081/" + DemoService.class.getName() + "?tps=1");
+        Exporter<DemoService> exporter = protocol.export(proxy.getInvoker(new DemoServiceImpl(), DemoService.class, url));
+        Invoker<DemoService> invoker = protocol.refer(DemoService.class, url);
+        try {
+            DemoService service = proxy.getProxy(invoker);
+            assertEquals(3, service.stringLength("abc"));
+            try {
+                service.stringLength("abc");
+                Assert.fail();
+            } catch (RpcException e) {
+                // 提供方限流以单独的状态返回，消费方可以据此重试其它提供者
+                Assert.assertTrue(e.isThrottled());
+            }
+        } finally {
+            invoker.destroy();
+            exporter.unexport();
+        }
+    }
 }
\ No newline at end of file
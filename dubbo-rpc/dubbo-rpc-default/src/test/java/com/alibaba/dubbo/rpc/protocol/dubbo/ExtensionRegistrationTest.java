@@ -0,0 +1,50 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.container.page.PageHandler;
+import com.alibaba.dubbo.remoting.telnet.TelnetHandler;
+import com.alibaba.dubbo.rpc.protocol.dubbo.page.ClientsPageHandler;
+import com.alibaba.dubbo.rpc.protocol.dubbo.page.InflightPageHandler;
+import com.alibaba.dubbo.rpc.protocol.dubbo.page.TransportPageHandler;
+import com.alibaba.dubbo.rpc.protocol.dubbo.telnet.CountTelnetHandler;
+import com.alibaba.dubbo.rpc.protocol.dubbo.telnet.InflightTelnetHandler;
+
+/**
+ * 检查SPI配置文件中的每个扩展都能加载
+ */
+public class ExtensionRegistrationTest {
+
+    @Test
+    public void testTelnetHandlers() {
+        ExtensionLoader<TelnetHandler> loader = ExtensionLoader.getExtensionLoader(TelnetHandler.class);
+        Assert.assertTrue(loader.getExtension("count") instanceof CountTelnetHandler);
+        Assert.assertTrue(loader.getExtension("inflight") instanceof InflightTelnetHandler);
+    }
+
+    @Test
+    public void testPageHandlers() {
+        ExtensionLoader<PageHandler> loader = ExtensionLoader.getExtensionLoader(PageHandler.class);
+        Assert.assertTrue(loader.getExtension("clients") instanceof ClientsPageHandler);
+        Assert.assertTrue(loader.getExtension("transport") instanceof TransportPageHandler);
+        Assert.assertTrue(loader.getExtension("inflight") instanceof InflightPageHandler);
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+
+public class InflightSnapshotTest {
+
+    private final List<DefaultFuture> futures = new ArrayList<DefaultFuture>();
+
+    @After
+    public void tearDown() {
+        for (DefaultFuture future : futures) {
+            future.cancel();
+        }
+    }
+
+    private DefaultFuture newFuture(Channel channel, String path, String method) {
+        RpcInvocation inv = new RpcInvocation(method, new Class<?>[0], new Object[0]);
+        inv.setAttachment(Constants.PATH_KEY, path);
+        Request request = new Request();
+        request.setData(inv);
+        DefaultFuture future = new DefaultFuture(channel, request, 60000);
+        futures.add(future);
+        return future;
+    }
+
+    @Test
+    public void testGroupByServiceMethodAndAddress() throws Exception {
+        Channel channel = EasyMock.createMock(Channel.class);
+        EasyMock.expect(channel.getUrl()).andReturn(URL.valueOf("dubbo://127.0.0.1:20880")).anyTimes();
+        EasyMock.expect(channel.getRemoteAddress()).andReturn(new InetSocketAddress("127.0.0.1", 20880)).anyTimes();
+        EasyMock.replay(channel);
+        DefaultFuture oldest = newFuture(channel, "com.foo.BarService", "sayHello");
+        Thread.sleep(20);
+        newFuture(channel, "com.foo.BarService", "sayHello");
+        newFuture(channel, "com.foo.BarService", "sayBye");
+
+        InflightSnapshot snapshot = InflightSnapshot.take(futures, 2);
+        Assert.assertEquals(3, snapshot.getTotal());
+        Assert.assertEquals(2, snapshot.getGroups().size());
+        InflightSnapshot.Group group = snapshot.getGroups().get(0);
+        Assert.assertEquals("com.foo.BarService", group.getService());
+        Assert.assertEquals("sayHello", group.getMethod());
+        Assert.assertEquals("127.0.0.1:20880", group.getAddress());
+        Assert.assertEquals(2, group.getCount());
+        Assert.assertTrue(group.getMaxAge() >= group.getP50());
+        Assert.assertEquals(2, snapshot.getOldest().size());
+        Assert.assertEquals(oldest.getId(), snapshot.getOldest().get(0).getId());
+    }
+
+    @Test
+    public void testDoneFutureSkipped() throws Exception {
+        Channel channel = EasyMock.createMock(Channel.class);
+        EasyMock.expect(channel.getUrl()).andReturn(URL.valueOf("dubbo://127.0.0.1:20880")).anyTimes();
+        EasyMock.expect(channel.getRemoteAddress()).andReturn(new InetSocketAddress("127.0.0.1", 20880)).anyTimes();
+        EasyMock.replay(channel);
+        newFuture(channel, "com.foo.BarService", "sayHello").cancel();
+        Assert.assertEquals(0, InflightSnapshot.take(futures, 10).getTotal());
+    }
+
+    @Test
+    public void testNegativeLimit() throws Exception {
+        Channel channel = EasyMock.createMock(Channel.class);
+        EasyMock.expect(channel.getUrl()).andReturn(URL.valueOf("dubbo://127.0.0.1:20880")).anyTimes();
+        EasyMock.expect(channel.getRemoteAddress()).andReturn(new InetSocketAddress("127.0.0.1", 20880)).anyTimes();
+        EasyMock.replay(channel);
+        newFuture(channel, "com.foo.BarService", "sayHello");
+        InflightSnapshot snapshot = InflightSnapshot.take(futures, -1);
+        Assert.assertEquals(1, snapshot.getTotal());
+        Assert.assertEquals(0, snapshot.getOldest().size());
+    }
+
+}
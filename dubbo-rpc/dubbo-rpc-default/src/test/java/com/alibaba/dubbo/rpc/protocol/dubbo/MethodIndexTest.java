@@ -0,0 +1,149 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.rpc.Exporter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Protocol;
+import com.alibaba.dubbo.rpc.ProxyFactory;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.DemoService;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.DemoServiceImpl;
+import com.alibaba.dubbo.rpc.service.EchoService;
+import com.alibaba.dubbo.rpc.support.ProtocolUtils;
+
+public class MethodIndexTest {
+
+    private Protocol protocol = ExtensionLoader.getExtensionLoader(Protocol.class).getAdaptiveExtension();
+
+    private ProxyFactory proxy = ExtensionLoader.getExtensionLoader(ProxyFactory.class).getAdaptiveExtension();
+
+    @Test
+    public void testMethodTable() {
+        MethodTable table = MethodTable.getMethodTable(DemoService.class);
+        Assert.assertSame(table, MethodTable.getMethodTable(DemoService.class));
+        Assert.assertEquals(DemoService.class.getMethods().length, table.size());
+
+        int echoString = table.indexOf("echo", new Class<?>[] {String.class});
+        int echoMap = table.indexOf("echo", new Class<?>[] {Map.class});
+        Assert.assertTrue(echoString >= 0 && echoMap >= 0 && echoString != echoMap);
+        Assert.assertEquals("echo", table.get(echoString).name);
+        Assert.assertArrayEquals(new Class<?>[] {String.class}, table.get(echoString).parameterTypes);
+        Assert.assertEquals(-1, table.indexOf("echo", new Class<?>[] {Integer.class}));
+        Assert.assertEquals(-1, table.indexOf("$echo", new Class<?>[] {Object.class}));
+        Assert.assertNull(table.get(table.size()));
+
+        Assert.assertFalse(table.getFingerprint().equals(MethodTable.getMethodTable(EchoService.class).getFingerprint()));
+    }
+
+    @Test
+    public void testIndexedDispatch() throws Exception {
+        URL url = URL.valueOf("dubbo://127.0.0.1:9030/" + DemoService.class.getName() + "?version=1.0.0");
+        DemoService impl = new DemoServiceImpl() {
+            @Override
+            public String echo(String text) {
+                Invocation inv = RpcContext.getContext().getInvocation();
+                boolean indexed = inv instanceof DecodeableRpcInvocation
+                    && ((DecodeableRpcInvocation) inv).getIndexedService() != null;
+                return indexed ? "indexed:" + text : text;
+            }
+        };
+        Exporter<DemoService> exporter = protocol.export(proxy.getInvoker(impl, DemoService.class, url));
+        Invoker<DemoService> invoker = protocol.refer(DemoService.class, url);
+        try {
+            DemoService service = proxy.getProxy(invoker);
+            // 第一次调用触发异步查询，查询完成前按方法名调用
+            String result = service.echo("a");
+            for (int i = 0; i < 50 && ! result.startsWith("indexed:"); i++) {
+                Thread.sleep(100);
+                result = service.echo("a");
+            }
+            Assert.assertEquals("indexed:a", result);
+            Assert.assertEquals(3, service.getSize(new String[] {"", "", ""}));
+            Assert.assertEquals("ok", ((EchoService) service).$echo("ok"));
+        } finally {
+            invoker.destroy();
+            exporter.unexport();
+        }
+        Assert.assertEquals(-1, MethodIndex.query(ProtocolUtils.serviceKey(url), MethodTable.getMethodTable(DemoService.class).getFingerprint()));
+    }
+
+    @Test
+    public void testQueryNotUseBusinessThread() throws Exception {
+        // 提供者唯一的业务线程被占用时，服务编号查询仍在IO线程中得到应答
+        URL url = URL.valueOf("dubbo://127.0.0.1:9031/" + DemoService.class.getName() + "?threads=1&timeout=3000");
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        DemoService impl = new DemoServiceImpl() {
+            @Override
+            public String echo(String text) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return text;
+            }
+        };
+        Exporter<DemoService> exporter = protocol.export(proxy.getInvoker(impl, DemoService.class, url));
+        final DubboInvoker<DemoService> invoker = (DubboInvoker<DemoService>) DubboProtocol.getDubboProtocol().refer(DemoService.class, url.removeParameter("threads"));
+        try {
+            final DemoService service = proxy.getProxy(invoker);
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    service.echo("block");
+                }
+            });
+            thread.start();
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Field field = DubboInvoker.class.getDeclaredField("clients");
+            field.setAccessible(true);
+            ExchangeClient client = ((ExchangeClient[]) field.get(invoker))[0];
+            @SuppressWarnings("unchecked")
+            Map<String, Integer> ids = (Map<String, Integer>) client.getAttribute("dubbo.method.index");
+            ids.clear();
+            MethodIndex.resolve(client, invoker.getMethodIndexKey(), url, DemoService.class);
+            Integer id = null;
+            for (int i = 0; i < 50 && (id == null || id.intValue() < 0); i++) {
+                Thread.sleep(20);
+                id = ids.get(invoker.getMethodIndexKey());
+            }
+            Assert.assertNotNull(id);
+            Assert.assertTrue(id.intValue() >= 0);
+            release.countDown();
+            thread.join(5000);
+        } finally {
+            release.countDown();
+            invoker.destroy();
+            exporter.unexport();
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.rpc.Exporter;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Protocol;
+import com.alibaba.dubbo.rpc.ProxyFactory;
+import com.alibaba.dubbo.rpc.RpcFuture;
+
+public class RpcFutureTest {
+
+    public interface FutureService {
+
+        RpcFuture<String> hello(String name);
+
+        RpcFuture<Integer> fail(String message);
+
+    }
+
+    private Protocol protocol = ExtensionLoader.getExtensionLoader(Protocol.class).getAdaptiveExtension();
+
+    private ProxyFactory proxy = ExtensionLoader.getExtensionLoader(ProxyFactory.class).getAdaptiveExtension();
+
+    @Test
+    public void testFutureReturningMethod() throws Exception {
+        FutureService impl = new FutureService() {
+            public RpcFuture<String> hello(final String name) {
+                final RpcFuture<String> future = new RpcFuture<String>();
+                new Thread(new Runnable() {
+                    public void run() {
+                        future.complete("hello " + name);
+                    }
+                }).start();
+                return future;
+            }
+
+            public RpcFuture<Integer> fail(String message) {
+                RpcFuture<Integer> future = new RpcFuture<Integer>();
+                future.completeExceptionally(new IllegalArgumentException(message));
+                return future;
+            }
+        };
+        URL url = URL.valueOf("dubbo://127.0.0.1:9050/" + FutureService.class.getName() + "?timeout=5000");
+        Exporter<FutureService> exporter = protocol.export(proxy.getInvoker(impl, FutureService.class, url));
+        Invoker<FutureService> invoker = protocol.refer(FutureService.class, url);
+        try {
+            FutureService service = proxy.getProxy(invoker);
+
+            RpcFuture<String> future = service.hello("world");
+            final AtomicReference<String> value = new AtomicReference<String>();
+            final CountDownLatch latch = new CountDownLatch(1);
+            future.addListener(new RpcFuture.Listener<String>() {
+                public void onSuccess(String v) {
+                    value.set(v);
+                    latch.countDown();
+                }
+
+                public void onFailure(Throwable exception) {
+                    latch.countDown();
+                }
+            });
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals("hello world", value.get());
+            Assert.assertEquals("hello world", future.get());
+
+            List<Object> all = RpcFuture.allOf(service.hello("a"), service.hello("b")).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals("hello a", all.get(0));
+            Assert.assertEquals("hello b", all.get(1));
+
+            try {
+                service.fail("bad").get(5, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+                Assert.assertEquals("bad", e.getCause().getMessage());
+            }
+        } finally {
+            invoker.destroy();
+            exporter.unexport();
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
+import com.alibaba.dubbo.rpc.Exporter;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Protocol;
+import com.alibaba.dubbo.rpc.ProxyFactory;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcStream;
+import com.alibaba.dubbo.rpc.StreamObserver;
+
+public class StreamingTest {
+
+    public interface StreamService {
+
+        String ping();
+
+        void range(int count, StreamObserver<Integer> responses);
+
+        StreamObserver<String> upper(StreamObserver<String> replies);
+
+        void unfinished(int count, StreamObserver<Integer> responses);
+
+        void stall(StreamObserver<Integer> responses);
+
+    }
+
+    private final AtomicInteger sent = new AtomicInteger();
+
+    private final AtomicReference<Throwable> providerError = new AtomicReference<Throwable>();
+
+    private final CountDownLatch providerDone = new CountDownLatch(1);
+
+    private Protocol protocol = ExtensionLoader.getExtensionLoader(Protocol.class).getAdaptiveExtension();
+
+    private ProxyFactory proxy = ExtensionLoader.getExtensionLoader(ProxyFactory.class).getAdaptiveExtension();
+
+    private Exporter<StreamService> exporter;
+
+    private Invoker<StreamService> invoker;
+
+    private StreamService service;
+
+    @Before
+    public void setUp() throws Exception {
+        StreamService impl = new StreamService() {
+            public String ping() {
+                return "pong";
+            }
+
+            public void range(int count, StreamObserver<Integer> responses) {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        responses.onNext(i);
+                        sent.incrementAndGet();
+                    }
+                    responses.onCompleted();
+                } catch (RuntimeException e) {
+                    providerError.set(e);
+                } finally {
+                    providerDone.countDown();
+                }
+            }
+
+            public StreamObserver<String> upper(final StreamObserver<String> replies) {
+                return new StreamObserver<String>() {
+                    public void onNext(String value) {
+                        replies.onNext(value.toUpperCase());
+                    }
+
+                    public void onError(Throwable t) {
+                        replies.onError(t);
+                    }
+
+                    public void onCompleted() {
+                        replies.onCompleted();
+                    }
+                };
+            }
+
+            public void unfinished(int count, StreamObserver<Integer> responses) {
+                for (int i = 0; i < count; i++) {
+                    responses.onNext(i);
+                }
+            }
+
+            public void stall(StreamObserver<Integer> responses) {
+                responses.onNext(0);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                responses.onCompleted();
+                providerDone.countDown();
+            }
+        };
+        URL url = URL.valueOf("dubbo://127.0.0.1:9070/" + StreamService.class.getName() + "?timeout=5000&stream.window=4&stall.timeout=300");
+        exporter = protocol.export(proxy.getInvoker(impl, StreamService.class, url));
+        invoker = protocol.refer(StreamService.class, url);
+        service = proxy.getProxy(invoker);
+        // 建立连接并完成特性协商
+        Assert.assertEquals("pong", service.ping());
+    }
+
+    @After
+    public void tearDown() {
+        RpcContext.removeContext();
+        invoker.destroy();
+        exporter.unexport();
+    }
+
+    private static class Collector<T> implements StreamObserver<T> {
+
+        final List<T> values = Collections.synchronizedList(new ArrayList<T>());
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        volatile Throwable error;
+
+        volatile CountDownLatch gate;
+
+        public void onNext(T value) {
+            values.add(value);
+            if (gate != null) {
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        public void onError(Throwable t) {
+            error = t;
+            done.countDown();
+        }
+
+        public void onCompleted() {
+            done.countDown();
+        }
+    }
+
+    @Test
+    public void testServerStreamingWithFlowControl() throws Exception {
+        Collector<Integer> collector = new Collector<Integer>();
+        CountDownLatch gate = new CountDownLatch(1);
+        collector.gate = gate;
+        service.range(100, collector);
+        Assert.assertNotNull(RpcContext.getContext().getStream());
+        // 消费方阻塞在第一条消息上，提供方最多只能发送窗口大小的消息
+        Thread.sleep(300);
+        Assert.assertEquals(4, sent.get());
+        gate.countDown();
+        Assert.assertTrue(collector.done.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(collector.error);
+        Assert.assertEquals(100, collector.values.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(Integer.valueOf(i), collector.values.get(i));
+        }
+    }
+
+    @Test
+    public void testBidirectionalStreaming() throws Exception {
+        Collector<String> collector = new Collector<String>();
+        StreamObserver<String> requests = service.upper(collector);
+        requests.onNext("a");
+        requests.onNext("b");
+        requests.onNext("c");
+        requests.onCompleted();
+        Assert.assertTrue(collector.done.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(collector.error);
+        Assert.assertEquals(3, collector.values.size());
+        Assert.assertEquals("A", collector.values.get(0));
+        Assert.assertEquals("C", collector.values.get(2));
+    }
+
+    // 提供方在发出结束帧之后才移除流，等一会再检查
+    private int providerStreams() throws InterruptedException {
+        for (int i = 0; i < 50 && countProviderStreams() > 0; i++) {
+            Thread.sleep(20);
+        }
+        return countProviderStreams();
+    }
+
+    private int countProviderStreams() {
+        int count = 0;
+        for (ExchangeServer server : DubboProtocol.getDubboProtocol().getServers()) {
+            for (Channel channel : server.getChannels()) {
+                Map<?, ?> streams = (Map<?, ?>) channel.getAttribute("dubbo.streams");
+                count += streams == null ? 0 : streams.size();
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testStreamClosedWhenMethodReturnsWithoutCompleting() throws Exception {
+        Collector<Integer> collector = new Collector<Integer>();
+        service.unfinished(3, collector);
+        Assert.assertTrue(collector.done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(3, collector.values.size());
+        Assert.assertTrue(collector.error instanceof RpcException);
+        Assert.assertEquals(0, providerStreams());
+    }
+
+    @Test
+    public void testStreamClosedWhenOpenRequestTimeout() throws Exception {
+        Collector<Integer> collector = new Collector<Integer>();
+        service.stall(collector);
+        Assert.assertTrue(collector.done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(collector.error instanceof RpcException);
+        Assert.assertTrue(((RpcException) collector.error).isTimeout());
+        // 提供方收到取消后结束流，方法返回后的onCompleted被忽略
+        Assert.assertTrue(providerDone.await(3, TimeUnit.SECONDS));
+        Assert.assertEquals(0, providerStreams());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        Collector<Integer> collector = new Collector<Integer>();
+        CountDownLatch gate = new CountDownLatch(1);
+        collector.gate = gate;
+        service.range(1000, collector);
+        RpcStream stream = RpcContext.getContext().getStream();
+        stream.cancel();
+        gate.countDown();
+        Assert.assertTrue(stream.isCancelled());
+        Assert.assertTrue(collector.done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(collector.error instanceof RpcException);
+        // 提供方收到取消后发送失败，不会等到超时
+        Assert.assertTrue(providerDone.await(3, TimeUnit.SECONDS));
+        Assert.assertTrue(providerError.get() instanceof RpcException);
+        Assert.assertTrue(sent.get() < 1000);
+    }
+
+}
@@ -15,33 +15,69 @@
  */
 package com.alibaba.dubbo.rpc.protocol.injvm;
 
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.HashMap;
 import java.util.Map;
 
+import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.io.UnsafeByteArrayInputStream;
+import com.alibaba.dubbo.common.io.UnsafeByteArrayOutputStream;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.serialize.ObjectInput;
+import com.alibaba.dubbo.common.serialize.ObjectOutput;
+import com.alibaba.dubbo.common.serialize.Serialization;
 import com.alibaba.dubbo.common.utils.NetUtils;
-import com.alibaba.dubbo.common.utils.UrlUtils;
+import com.alibaba.dubbo.rpc.AsyncRpcResult;
 import com.alibaba.dubbo.rpc.Exporter;
 import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
 import com.alibaba.dubbo.rpc.protocol.AbstractInvoker;
+import com.alibaba.dubbo.rpc.support.ProtocolUtils;
+import com.alibaba.dubbo.rpc.support.RpcUtils;
 
 /**
  * InjvmInvoker
  * 
+ * 配置injvm.copy=true（或序列化名称）时，参数和返回值经序列化复制后传递，与远程调用一样不共享对象。
+ * 
  * @author william.liangf
  */
 class InjvmInvoker<T> extends AbstractInvoker<T> {
 
+    private static final Logger logger = LoggerFactory.getLogger(InjvmInvoker.class);
+
     private final String key;
 
     private final Map<String, Exporter<?>> exporterMap;
 
+    // 服务键含通配符时才需要逐个匹配
+    private final boolean wildcard;
+
+    // 为null时按引用传递
+    private final Serialization copySerialization;
+
     InjvmInvoker(Class<T> type, URL url, String key, Map<String, Exporter<?>> exporterMap){
         super(type, url);
         this.key = key;
         this.exporterMap = exporterMap;
+        this.wildcard = key.contains("*");
+        String copy = url.getParameter(Constants.INJVM_COPY_KEY);
+        if (copy == null || copy.length() == 0 || "false".equals(copy)) {
+            this.copySerialization = null;
+        } else {
+            if ("true".equals(copy)) {
+                copy = url.getParameter(Constants.SERIALIZATION_KEY, Constants.DEFAULT_REMOTING_SERIALIZATION);
+            }
+            this.copySerialization = ExtensionLoader.getExtensionLoader(Serialization.class).getExtension(copy);
+        }
     }
 
     @Override
@@ -55,11 +91,103 @@ class InjvmInvoker<T> extends AbstractInvoker<T> {
 	}
 
 	public Result doInvoke(Invocation invocation) throws Throwable {
-        Exporter<?> exporter = InjvmProtocol.getExporter(exporterMap, getUrl());
+        Exporter<?> exporter = getExporter();
         if (exporter == null)  {
             throw new RpcException("Service [" + key + "] not found.");
         }
         RpcContext.getContext().setRemoteAddress(NetUtils.LOCALHOST, 0);
-        return exporter.getInvoker().invoke(invocation);
+        if (copySerialization == null) {
+            return exporter.getInvoker().invoke(invocation);
+        }
+        Object[] arguments;
+        try {
+            arguments = copyArguments(invocation.getParameterTypes(), invocation.getArguments());
+        } catch (Exception e) {
+            throw new RpcException(RpcException.SERIALIZATION_EXCEPTION, "Failed to copy arguments of " + invocation.getMethodName()
+                    + " for injvm service " + key + ", cause: " + e.getMessage(), e);
+        }
+        RpcInvocation copied = new RpcInvocation(invocation.getMethodName(), invocation.getParameterTypes(), arguments,
+                new HashMap<String, String>(invocation.getAttachments()), invocation.getInvoker());
+        Result result = exporter.getInvoker().invoke(copied);
+        final Type[] returnTypes = RpcUtils.getReturnTypes(invocation);
+        if (result instanceof AsyncRpcResult) {
+            final AsyncRpcResult future = new AsyncRpcResult();
+            ((AsyncRpcResult) result).addListener(new AsyncRpcResult.Listener() {
+                public void onComplete(Result r) {
+                    future.complete(copyResult(returnTypes, r));
+                }
+            });
+            return future;
+        }
+        return copyResult(returnTypes, result);
+    }
+
+    private Exporter<?> getExporter() {
+        if (wildcard) {
+            return InjvmProtocol.getExporter(exporterMap, getUrl());
+        }
+        Exporter<?> exporter = exporterMap.get(key);
+        if (exporter == null || ProtocolUtils.isGeneric(
+                exporter.getInvoker().getUrl().getParameter(Constants.GENERIC_KEY))) {
+            return null;
+        }
+        return exporter;
+    }
+
+    private Result copyResult(Type[] returnTypes, Result result) {
+        RpcResult copied = new RpcResult();
+        if (result.hasException()) {
+            Throwable exception = result.getException();
+            try {
+                exception = (Throwable) copy(null, exception);
+            } catch (Exception e) {
+                // 异常无法复制时按引用返回，不掩盖原始异常
+                logger.warn("Failed to copy exception " + exception.getClass().getName() + " of injvm service " + key + ", cause: " + e.getMessage(), e);
+            }
+            copied.setException(exception);
+        } else {
+            try {
+                copied.setValue(copy(returnTypes, result.getValue()));
+            } catch (Exception e) {
+                copied.setException(new RpcException(RpcException.SERIALIZATION_EXCEPTION, "Failed to copy result of injvm service "
+                        + key + ", cause: " + e.getMessage(), e));
+            }
+        }
+        copied.setAttachments(result.getAttachments());
+        return copied;
+    }
+
+    // 与DecodeableRpcInvocation一样按参数类型读回，基本类型及其包装类型才能与远程调用一致
+    private Object[] copyArguments(Class<?>[] types, Object[] arguments) throws IOException, ClassNotFoundException {
+        if (arguments == null || arguments.length == 0) {
+            return arguments;
+        }
+        UnsafeByteArrayOutputStream bos = new UnsafeByteArrayOutputStream(256);
+        ObjectOutput out = copySerialization.serialize(getUrl(), bos);
+        for (Object argument : arguments) {
+            out.writeObject(argument);
+        }
+        out.flushBuffer();
+        ObjectInput in = copySerialization.deserialize(getUrl(), new UnsafeByteArrayInputStream(bos.toByteArray(), 0, bos.size()));
+        Object[] copied = new Object[arguments.length];
+        for (int i = 0; i < copied.length; i ++) {
+            copied[i] = types != null && i < types.length ? in.readObject(types[i]) : in.readObject();
+        }
+        return copied;
+    }
+
+    private Object copy(Type[] types, Object value) throws IOException, ClassNotFoundException {
+        if (value == null) {
+            return null;
+        }
+        UnsafeByteArrayOutputStream bos = new UnsafeByteArrayOutputStream(256);
+        ObjectOutput out = copySerialization.serialize(getUrl(), bos);
+        out.writeObject(value);
+        out.flushBuffer();
+        ObjectInput in = copySerialization.deserialize(getUrl(), new UnsafeByteArrayInputStream(bos.toByteArray(), 0, bos.size()));
+        if (types == null || types.length == 0) {
+            return in.readObject();
+        }
+        return types.length == 1 ? in.readObject((Class<?>) types[0]) : in.readObject((Class<?>) types[0], types[1]);
     }
 }
\ No newline at end of file
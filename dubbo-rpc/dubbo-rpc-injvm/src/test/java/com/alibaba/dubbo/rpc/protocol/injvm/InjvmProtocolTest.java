@@ -20,6 +20,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
 
 import org.junit.After;
@@ -31,6 +34,7 @@ import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.rpc.Exporter;
 import com.alibaba.dubbo.rpc.Protocol;
 import com.alibaba.dubbo.rpc.ProxyFactory;
+import com.alibaba.dubbo.rpc.RpcContext;
 
 /**
  * <code>ProxiesTest</code>
@@ -77,4 +81,61 @@ public class InjvmProtocolTest
         assertTrue(InjvmProtocol.getInjvmProtocol().isInjvmRefer(url));
     }
 
+    @Test
+    public void testInjvmFilter() throws Exception {
+        final List<String> methods = new ArrayList<String>();
+        DemoService service = new DemoServiceImpl() {
+            @Override
+            public String getThreadName() {
+                methods.add(RpcContext.getContext().getMethodName());
+                return super.getThreadName();
+            }
+        };
+        URL url = URL.valueOf("injvm://127.0.0.1/TestService")
+            .addParameter(Constants.INTERFACE_KEY, DemoService.class.getName());
+        exporters.add(protocol.export(proxy.getInvoker(service, DemoService.class, url.addParameter(Constants.INJVM_FILTER_KEY, "-default"))));
+        RpcContext.removeContext();
+        proxy.getProxy(protocol.refer(DemoService.class, url.addParameter(Constants.INJVM_FILTER_KEY, "-default"))).getThreadName();
+        // 去掉全部Filter后不再经过ContextFilter和ConsumerContextFilter
+        assertNull(methods.get(0));
+        RpcContext.removeContext();
+        proxy.getProxy(protocol.refer(DemoService.class, url)).getThreadName();
+        assertEquals("getThreadName", methods.get(1));
+    }
+
+    @Test
+    public void testInjvmCopy() throws Exception {
+        final Object shared = new ArrayList<String>();
+        DemoService service = new DemoServiceImpl() {
+            @Override
+            public int getSize(Object[] os) {
+                os[0] = "changed";
+                return os.length;
+            }
+
+            @Override
+            public Object invoke(String service, String method) throws Exception {
+                return shared;
+            }
+        };
+        URL url = URL.valueOf("injvm://127.0.0.1/TestService")
+            .addParameter(Constants.INTERFACE_KEY, DemoService.class.getName());
+        exporters.add(protocol.export(proxy.getInvoker(service, DemoService.class, url)));
+
+        DemoService byReference = proxy.getProxy(protocol.refer(DemoService.class, url));
+        Object[] args = new Object[] {"origin"};
+        assertEquals(1, byReference.getSize(args));
+        assertEquals("changed", args[0]);
+        assertSame(shared, byReference.invoke("a", "b"));
+
+        DemoService byCopy = proxy.getProxy(protocol.refer(DemoService.class, url.addParameter(Constants.INJVM_COPY_KEY, true)));
+        args = new Object[] {"origin"};
+        assertEquals(1, byCopy.getSize(args));
+        assertEquals("origin", args[0]);
+        assertNotSame(shared, byCopy.invoke("a", "b"));
+        assertEquals(shared, byCopy.invoke("a", "b"));
+        assertEquals(3, byCopy.stringLength("abc"));
+        assertEquals(Type.High, byCopy.enumlength(Type.High, Type.Lower));
+    }
+
 }
\ No newline at end of file
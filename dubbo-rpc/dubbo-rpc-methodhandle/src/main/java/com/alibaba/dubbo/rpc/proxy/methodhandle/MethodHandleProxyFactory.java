@@ -0,0 +1,172 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.proxy.methodhandle;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.bytecode.Proxy;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.proxy.AbstractProxyFactory;
+import com.alibaba.dubbo.rpc.proxy.AbstractProxyInvoker;
+import com.alibaba.dubbo.rpc.proxy.InvokerInvocationHandler;
+
+/**
+ * 基于 MethodHandle 的 ProxyFactory，消费端与 javassist 相同，提供端预先为每个方法生成统一签名的 MethodHandle，
+ * 不需要生成 Wrapper 类，需要 JDK 7 及以上版本。
+ * <p>
+ * 单独放在按 1.7 编译的 dubbo-rpc-methodhandle 模块中，使用时加入该依赖并配置: &lt;dubbo:provider proxy="methodhandle" /&gt;
+ */
+public class MethodHandleProxyFactory extends AbstractProxyFactory {
+
+    private static final Object[] EMPTY_ARGUMENTS = new Object[0];
+
+    @SuppressWarnings("unchecked")
+    public <T> T getProxy(Invoker<T> invoker, Class<?>[] interfaces) {
+        return (T) Proxy.getProxy(interfaces).newInstance(new InvokerInvocationHandler(invoker));
+    }
+
+    public <T> Invoker<T> getInvoker(T proxy, Class<T> type, URL url) {
+        // 与 javassist 相同，类名带$时使用接口类型
+        Class<?> c = proxy.getClass().getName().indexOf('$') < 0 ? proxy.getClass() : type;
+        final Map<String, MethodEntry[]> entries = makeEntries(c);
+        return new AbstractProxyInvoker<T>(proxy, type, url) {
+            @Override
+            protected Object doInvoke(T proxy, String methodName,
+                                      Class<?>[] parameterTypes,
+                                      Object[] arguments) throws Throwable {
+                MethodHandle handle = findHandle(entries, methodName, parameterTypes);
+                if (handle == null) {
+                    throw new NoSuchMethodException("Not found method \"" + methodName + "\" in class " + proxy.getClass().getName() + ".");
+                }
+                // invokeExact按调用处的静态类型匹配，参数必须是Object和Object[]
+                Object target = proxy;
+                Object[] args = arguments == null ? EMPTY_ARGUMENTS : arguments;
+                try {
+                    return (Object) handle.invokeExact(target, args);
+                } catch (Throwable e) {
+                    throw new InvocationTargetException(e);
+                }
+            }
+        };
+    }
+
+    private static Map<String, MethodEntry[]> makeEntries(Class<?> c) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Method[] methods = c.getMethods();
+        Map<String, MethodEntry[]> entries = new HashMap<String, MethodEntry[]>();
+        for (Method method : methods) {
+            if (method.getDeclaringClass() == Object.class) {
+                continue;
+            }
+            boolean overloaded = false;
+            for (Method m : methods) {
+                if (m != method && m.getName().equals(method.getName())) {
+                    overloaded = true;
+                    break;
+                }
+            }
+            MethodEntry entry = new MethodEntry(method.getParameterTypes(), overloaded, makeHandle(lookup, method));
+            MethodEntry[] old = entries.get(method.getName());
+            MethodEntry[] list;
+            if (old == null) {
+                list = new MethodEntry[] {entry};
+            } else {
+                list = new MethodEntry[old.length + 1];
+                System.arraycopy(old, 0, list, 0, old.length);
+                list[old.length] = entry;
+            }
+            entries.put(method.getName(), list);
+        }
+        return entries;
+    }
+
+    /**
+     * 转换为 (Object, Object[])Object 签名，参数拆箱、返回值装箱，void 返回 null。
+     */
+    private static MethodHandle makeHandle(MethodHandles.Lookup lookup, Method method) {
+        MethodHandle handle;
+        try {
+            handle = lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            // 公共方法声明在非公共的父类中
+            method.setAccessible(true);
+            try {
+                handle = lookup.unreflect(method);
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException("Can not access method " + method + ", cause: " + ex.getMessage(), ex);
+            }
+        }
+        int count = method.getParameterTypes().length;
+        return handle.asType(MethodType.genericMethodType(count + 1))
+                .asSpreader(Object[].class, count);
+    }
+
+    private static MethodHandle findHandle(Map<String, MethodEntry[]> entries, String methodName, Class<?>[] parameterTypes) {
+        MethodEntry[] list = entries.get(methodName);
+        if (list == null) {
+            return null;
+        }
+        for (MethodEntry entry : list) {
+            if (entry.matches(parameterTypes)) {
+                return entry.handle;
+            }
+        }
+        return null;
+    }
+
+    private static final class MethodEntry {
+
+        private final Class<?>[] parameterTypes;
+
+        private final boolean overloaded;
+
+        private final MethodHandle handle;
+
+        MethodEntry(Class<?>[] parameterTypes, boolean overloaded, MethodHandle handle) {
+            this.parameterTypes = parameterTypes;
+            this.overloaded = overloaded;
+            this.handle = handle;
+        }
+
+        boolean matches(Class<?>[] types) {
+            if (types == null) {
+                return ! overloaded;
+            }
+            if (types.length != parameterTypes.length) {
+                return false;
+            }
+            if (overloaded) {
+                // 有重载时还要比较参数类型
+                for (int i = 0; i < types.length; i ++) {
+                    if (types[i] != parameterTypes[i]
+                            && (types[i] == null || ! types[i].getName().equals(parameterTypes[i].getName()))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.proxy.methodhandle;
+
+public class DemoServiceImpl implements DemoService {
+
+    public void sayHello(String name) {
+    }
+
+    public String echo(String text) {
+        return text;
+    }
+
+    public long timestamp() {
+        return System.currentTimeMillis();
+    }
+
+    public int getSize(String[] strs) {
+        return strs == null ? -1 : strs.length;
+    }
+
+    public int getSize(Object[] os) {
+        return os == null ? -1 : os.length;
+    }
+
+    public int stringLength(String str) {
+        return str.length();
+    }
+
+}
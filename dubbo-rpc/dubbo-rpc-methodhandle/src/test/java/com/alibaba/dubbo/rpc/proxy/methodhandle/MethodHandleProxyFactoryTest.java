@@ -0,0 +1,74 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.proxy.methodhandle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+
+public class MethodHandleProxyFactoryTest {
+
+    private final MethodHandleProxyFactory factory = new MethodHandleProxyFactory();
+
+    private final URL url = URL.valueOf("test://127.0.0.1:21/" + DemoService.class.getName());
+
+    @Test
+    public void testInvoke() throws Exception {
+        Invoker<DemoService> invoker = factory.getInvoker(new DemoServiceImpl(), DemoService.class, url);
+        assertEquals("hi", invoker.invoke(new RpcInvocation("echo", new Class<?>[] {String.class}, new Object[] {"hi"})).getValue());
+        assertEquals(3, invoker.invoke(new RpcInvocation("stringLength", new Class<?>[] {String.class}, new Object[] {"abc"})).getValue());
+        assertNull(invoker.invoke(new RpcInvocation("sayHello", new Class<?>[] {String.class}, new Object[] {"dubbo"})).getValue());
+        assertTrue(invoker.invoke(new RpcInvocation("timestamp", new Class<?>[0], null)).getValue() instanceof Long);
+    }
+
+    @Test
+    public void testOverload() throws Exception {
+        Invoker<DemoService> invoker = factory.getInvoker(new DemoServiceImpl(), DemoService.class, url);
+        assertEquals(2, invoker.invoke(new RpcInvocation("getSize", new Class<?>[] {String[].class},
+                new Object[] {new String[] {"a", "b"}})).getValue());
+        assertEquals(3, invoker.invoke(new RpcInvocation("getSize", new Class<?>[] {Object[].class},
+                new Object[] {new Object[] {"a", "b", "c"}})).getValue());
+    }
+
+    @Test
+    public void testException() throws Exception {
+        Invoker<DemoService> invoker = factory.getInvoker(new DemoServiceImpl(), DemoService.class, url);
+        // 业务异常放在结果中返回
+        Result result = invoker.invoke(new RpcInvocation("stringLength", new Class<?>[] {String.class}, new Object[] {null}));
+        assertTrue(result.getException() instanceof NullPointerException);
+        try {
+            invoker.invoke(new RpcInvocation("notExist", new Class<?>[0], new Object[0]));
+            org.junit.Assert.fail();
+        } catch (RpcException expected) {
+        }
+    }
+
+    @Test
+    public void testProxy() throws Exception {
+        Invoker<DemoService> invoker = factory.getInvoker(new DemoServiceImpl(), DemoService.class, url);
+        DemoService service = factory.getProxy(invoker);
+        assertEquals("hi", service.echo("hi"));
+    }
+
+}